@@ -103,6 +103,7 @@ import org.sonar.server.notification.email.EmailNotificationChannel;
 import org.sonar.server.organization.BillingValidationsProxyImpl;
 import org.sonar.server.organization.DefaultOrganizationProviderImpl;
 import org.sonar.server.permission.GroupPermissionChanger;
+import org.sonar.server.permission.PermissionCache;
 import org.sonar.server.permission.PermissionTemplateService;
 import org.sonar.server.permission.PermissionUpdater;
 import org.sonar.server.permission.UserPermissionChanger;
@@ -339,6 +340,7 @@ public class ComputeEngineContainerImpl implements ComputeEngineContainer {
 
       // permissions
       DefaultTemplatesResolverImpl.class,
+      PermissionCache.class,
       PermissionTemplateService.class,
       PermissionUpdater.class,
       UserPermissionChanger.class,
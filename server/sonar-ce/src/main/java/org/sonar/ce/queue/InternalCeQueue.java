@@ -40,6 +40,9 @@ public interface InternalCeQueue extends CeQueue {
    *
    * <p>Only a single task can be peeked by project.</p>
    *
+   * <p>Implementations may peek several tasks at once and return them to the next callers, as long as
+   * the tasks of a same project are never in progress at the same time.</p>
+   *
    * <p>An unchecked exception may be thrown on technical errors (db connection, ...).</p>
    *
    * <p>Tasks which have been executed twice already but are still {@link org.sonar.db.ce.CeQueueDto.Status#PENDING}
@@ -23,16 +23,21 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.log4j.Logger;
+import org.picocontainer.Startable;
 import org.sonar.api.ce.ComputeEngineSide;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.ce.configuration.CeConfiguration;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.core.util.UuidFactory;
 import org.sonar.db.DbClient;
@@ -46,8 +51,18 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Tasks are peeked by batches of at most one task per idle worker, in a single transaction. The first task of the batch
+ * is returned to the calling worker and the other ones are kept in memory until other workers ask for a task.
+ * These tasks are already {@link CeQueueDto.Status#IN_PROGRESS} in database, so no other task of the same
+ * component can be peeked meanwhile.
+ * <p>
+ * A worker is considered busy from the moment a task is handed to it until this task is removed from the queue
+ * or the worker asks for another task.
+ * </p>
+ */
 @ComputeEngineSide
-public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue {
+public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue, Startable {
   private static final org.sonar.api.utils.log.Logger LOG = Loggers.get(InternalCeQueueImpl.class);
 
   private static final int MAX_EXECUTION_COUNT = 2;
@@ -55,43 +70,109 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
   private final System2 system2;
   private final DbClient dbClient;
   private final CEQueueStatus queueStatus;
+  private final int workerCount;
 
   // state
   private AtomicBoolean peekPaused = new AtomicBoolean(false);
+  // tasks peeked in advance, waiting for a worker. Guarded by this.
+  private final Deque<ReadyTask> readyTasks = new ArrayDeque<>();
+  // uuids of the workers which are executing a task handed by this queue
+  private final Set<String> busyWorkerUuids = ConcurrentHashMap.newKeySet();
 
   public InternalCeQueueImpl(System2 system2, DbClient dbClient, UuidFactory uuidFactory, CEQueueStatus queueStatus,
-    DefaultOrganizationProvider defaultOrganizationProvider) {
+    DefaultOrganizationProvider defaultOrganizationProvider, CeConfiguration ceConfiguration) {
     super(dbClient, uuidFactory, defaultOrganizationProvider);
     this.system2 = system2;
     this.dbClient = dbClient;
     this.queueStatus = queueStatus;
+    this.workerCount = ceConfiguration.getWorkerCount();
   }
 
   @Override
-  public Optional<CeTask> peek(String workerUuid) {
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    releaseReadyTasks();
+  }
+
+  @Override
+  public synchronized Optional<CeTask> peek(String workerUuid) {
     requireNonNull(workerUuid, "workerUuid can't be null");
 
     if (peekPaused.get()) {
       return Optional.empty();
     }
+    // the calling worker is done with its previous task, if any
+    busyWorkerUuids.remove(workerUuid);
     try (DbSession dbSession = dbClient.openSession(false)) {
-      CeQueueDao ceQueueDao = dbClient.ceQueueDao();
-      int i = ceQueueDao.resetToPendingForWorker(dbSession, workerUuid);
-      if (i > 0) {
-        LOG.debug("{} in progress tasks reset for worker uuid {}", i, workerUuid);
+      CeTask task = pollReadyTask(dbSession, workerUuid);
+      if (task == null) {
+        task = peekBatch(dbSession, workerUuid);
       }
-      Optional<CeQueueDto> dto = ceQueueDao.peek(dbSession, workerUuid, MAX_EXECUTION_COUNT);
-      CeTask task = null;
-      if (dto.isPresent()) {
-        task = loadTask(dbSession, dto.get());
+      if (task != null) {
+        busyWorkerUuids.add(workerUuid);
         queueStatus.addInProgress();
       }
       return Optional.ofNullable(task);
     }
   }
 
+  @CheckForNull
+  private CeTask pollReadyTask(DbSession dbSession, String workerUuid) {
+    ReadyTask readyTask = readyTasks.poll();
+    while (readyTask != null) {
+      boolean assigned = dbClient.ceQueueDao().reassignInProgress(dbSession, readyTask.dto, workerUuid);
+      dbSession.commit();
+      if (assigned) {
+        return readyTask.task;
+      }
+      LOG.debug("Task {} peeked in advance is not in progress anymore", readyTask.dto.getUuid());
+      readyTask = readyTasks.poll();
+    }
+    return null;
+  }
+
+  @CheckForNull
+  private CeTask peekBatch(DbSession dbSession, String workerUuid) {
+    CeQueueDao ceQueueDao = dbClient.ceQueueDao();
+    // there's no task peeked in advance anymore, so only the tasks left by a previous execution of the worker can be reset
+    int i = ceQueueDao.resetToPendingForWorker(dbSession, workerUuid);
+    if (i > 0) {
+      LOG.debug("{} in progress tasks reset for worker uuid {}", i, workerUuid);
+    }
+    // the calling worker and the other idle ones
+    int batchSize = Math.max(1, workerCount - busyWorkerUuids.size());
+    List<CeQueueDto> dtos = ceQueueDao.peek(dbSession, workerUuid, MAX_EXECUTION_COUNT, batchSize);
+    if (dtos.isEmpty()) {
+      return null;
+    }
+    List<CeTask> tasks = loadTasks(dbSession, dtos);
+    for (int j = 1; j < dtos.size(); j++) {
+      readyTasks.add(new ReadyTask(dtos.get(j), tasks.get(j)));
+    }
+    return tasks.get(0);
+  }
+
+  /**
+   * Puts back to {@link CeQueueDto.Status#PENDING} the tasks peeked in advance which have not been handed to a worker.
+   */
+  private synchronized void releaseReadyTasks() {
+    if (readyTasks.isEmpty()) {
+      return;
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      readyTasks.forEach(readyTask -> dbClient.ceQueueDao().releaseInProgress(dbSession, readyTask.dto));
+      dbSession.commit();
+    }
+    readyTasks.clear();
+  }
+
   @Override
-  public int clear() {
+  public synchronized int clear() {
+    readyTasks.clear();
     return cancelAll(true);
   }
 
@@ -107,6 +188,10 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
       updateTaskResult(activityDto, taskResult);
       updateError(activityDto, error);
       remove(dbSession, queueDto.get(), activityDto);
+      String workerUuid = queueDto.get().getWorkerUuid();
+      if (workerUuid != null) {
+        busyWorkerUuids.remove(workerUuid);
+      }
     }
   }
 
@@ -181,6 +266,7 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
   @Override
   public void pausePeek() {
     this.peekPaused.set(true);
+    releaseReadyTasks();
   }
 
   @Override
@@ -193,6 +279,16 @@ public class InternalCeQueueImpl extends CeQueueImpl implements InternalCeQueue
     return peekPaused.get();
   }
 
+  private static final class ReadyTask {
+    private final CeQueueDto dto;
+    private final CeTask task;
+
+    private ReadyTask(CeQueueDto dto, CeTask task) {
+      this.dto = dto;
+      this.task = task;
+    }
+  }
+
   /**
    * A {@link PrintWriter} subclass which enforces that line returns are {@code \n} whichever the platform.
    */
@@ -23,4 +23,9 @@ public interface CeProcessingScheduler {
 
   void startScheduling();
 
+  /**
+   * Asks an idle worker to poll the queue right away, instead of waiting for the end of the polling delay.
+   */
+  void wakeUpWorker();
+
 }
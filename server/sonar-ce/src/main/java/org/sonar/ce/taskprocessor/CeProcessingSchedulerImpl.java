@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableScheduledFuture;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.CheckForNull;
@@ -32,7 +33,6 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.ce.configuration.CeConfiguration;
 
-import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startable {
@@ -67,8 +67,21 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
   @Override
   public void startScheduling() {
     for (ChainingCallback chainingCallback : chainingCallbacks) {
-      ListenableScheduledFuture<Boolean> future = executorService.schedule(chainingCallback.worker, delayBetweenTasks, timeUnit);
-      addCallback(future, chainingCallback, executorService);
+      chainingCallback.chainWithDelay();
+    }
+  }
+
+  @Override
+  public void wakeUpWorker() {
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      if (chainingCallback.wakeUpIfWaiting()) {
+        return;
+      }
+    }
+    // all workers are busy. Ask them not to wait the polling delay if they don't find any task
+    // (for instance if the task is committed just after they polled the queue)
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      chainingCallback.requestWakeUp();
     }
   }
 
@@ -85,6 +98,10 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
     @CheckForNull
     private ListenableFuture<Boolean> workerFuture;
+    // not null when the worker is waiting for the polling delay
+    @CheckForNull
+    private ListenableScheduledFuture<Boolean> delayedFuture;
+    private boolean wakeUpRequested = false;
 
     public ChainingCallback(CeWorker worker) {
       this.worker = worker;
@@ -101,6 +118,10 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
     @Override
     public void onFailure(Throwable t) {
+      if (t instanceof CancellationException) {
+        // future has been cancelled either by stop() or by wakeUpIfWaiting(), which takes care of chaining
+        return;
+      }
       if (t instanceof Error) {
         LOG.error("Compute Engine execution failed. Scheduled processing interrupted.", t);
       } else {
@@ -108,20 +129,45 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       }
     }
 
-    private void chainWithoutDelay() {
+    private synchronized void chainWithoutDelay() {
+      delayedFuture = null;
+      wakeUpRequested = false;
       if (keepRunning()) {
         workerFuture = executorService.submit(worker);
       }
       addCallback();
     }
 
-    private void chainWithDelay() {
+    private synchronized void chainWithDelay() {
+      if (wakeUpRequested) {
+        chainWithoutDelay();
+        return;
+      }
       if (keepRunning()) {
-        workerFuture = executorService.schedule(worker, delayBetweenTasks, timeUnit);
+        delayedFuture = executorService.schedule(worker, delayBetweenTasks, timeUnit);
+        workerFuture = delayedFuture;
       }
       addCallback();
     }
 
+    /**
+     * Cancelling a future does not prevent it from running if it is already started. Remaining delay is checked
+     * to make it unlikely, and {@link CeWorkerImpl} does not execute concurrent calls anyway.
+     *
+     * @return true if the worker was waiting for the polling delay and is now chained without delay
+     */
+    private synchronized boolean wakeUpIfWaiting() {
+      if (keepRunning() && delayedFuture != null && delayedFuture.getDelay(MILLISECONDS) > 0 && delayedFuture.cancel(false)) {
+        chainWithoutDelay();
+        return true;
+      }
+      return false;
+    }
+
+    private synchronized void requestWakeUp() {
+      wakeUpRequested = true;
+    }
+
     private void addCallback() {
       if (workerFuture != null && keepRunning()) {
         Futures.addCallback(workerFuture, this, executorService);
@@ -132,7 +178,7 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
       return keepRunning.get();
     }
 
-    public void stop() {
+    public synchronized void stop() {
       this.keepRunning.set(false);
       if (workerFuture != null) {
         workerFuture.cancel(false);
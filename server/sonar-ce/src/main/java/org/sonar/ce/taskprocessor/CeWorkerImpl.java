@@ -48,8 +48,12 @@ public class CeWorkerImpl implements CeWorker {
     this.uuid = uuid;
   }
 
+  /**
+   * Synchronized because a worker woken up by {@link CeProcessingScheduler#wakeUpWorker()} may rarely be
+   * called while the previous call is not finished. A worker must not process two tasks at the same time.
+   */
   @Override
-  public Boolean call() throws Exception {
+  public synchronized Boolean call() throws Exception {
     Optional<CeTask> ceTask = tryAndFindTaskToExecute();
     if (!ceTask.isPresent()) {
       return false;
@@ -113,12 +113,12 @@ public class ComputeEngineContainerImplTest {
     assertThat(picoContainer.getComponentAdapters())
       .hasSize(
         CONTAINER_ITSELF
-          + 73 // level 4
+          + 74 // level 4
           + 4 // content of CeConfigurationModule
           + 4 // content of CeQueueModule
-          + 3 // content of CeHttpModule
+          + 4 // content of CeHttpModule
           + 3 // content of CeTaskCommonsModule
-          + 4 // content of ProjectAnalysisTaskModule
+          + 5 // content of ProjectAnalysisTaskModule
           + 4 // content of CeTaskProcessorModule
           + 3 // CeCleaningModule + its content
           + 1 // CeDistributedInformation
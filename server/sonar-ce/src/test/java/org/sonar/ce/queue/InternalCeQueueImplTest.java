@@ -33,6 +33,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.System2;
 import org.sonar.api.utils.internal.AlwaysIncreasingSystem2;
+import org.sonar.ce.configuration.CeConfigurationRule;
 import org.sonar.ce.monitoring.CEQueueStatus;
 import org.sonar.ce.monitoring.CEQueueStatusImpl;
 import org.sonar.core.util.UuidFactory;
@@ -66,13 +67,16 @@ public class InternalCeQueueImplTest {
   public ExpectedException expectedException = ExpectedException.none();
   @Rule
   public DbTester dbTester = DbTester.create(system2);
+  @Rule
+  public CeConfigurationRule ceConfiguration = new CeConfigurationRule();
 
   private DbSession session = dbTester.getSession();
 
   private UuidFactory uuidFactory = UuidFactoryImpl.INSTANCE;
   private CEQueueStatus queueStatus = new CEQueueStatusImpl(dbTester.getDbClient());
   private DefaultOrganizationProvider defaultOrganizationProvider = mock(DefaultOrganizationProvider.class);
-  private InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, defaultOrganizationProvider);
+  private InternalCeQueue underTest = new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, defaultOrganizationProvider,
+    ceConfiguration);
 
   @Before
   public void setUp() throws Exception {
@@ -303,6 +307,79 @@ public class InternalCeQueueImplTest {
     assertThat(peek.isPresent()).isFalse();
   }
 
+  @Test
+  public void peek_hands_tasks_peeked_in_advance_to_next_workers() {
+    InternalCeQueue batchingQueue = newQueueWithWorkerCount(3);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+
+    assertThat(batchingQueue.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task1.getUuid());
+    // task of PROJECT_2 is peeked in advance, the second task of PROJECT_1 must wait for the first one
+    assertThat(selectByUuid(task3.getUuid()).getStatus()).isEqualTo(CeQueueDto.Status.IN_PROGRESS);
+    assertThat(selectByUuid(task2.getUuid()).getStatus()).isEqualTo(CeQueueDto.Status.PENDING);
+
+    assertThat(batchingQueue.peek(WORKER_UUID_2).get().getUuid()).isEqualTo(task3.getUuid());
+    assertThat(selectByUuid(task3.getUuid()).getWorkerUuid()).isEqualTo(WORKER_UUID_2);
+    assertThat(selectByUuid(task3.getUuid()).getExecutionCount()).isEqualTo(1);
+    assertThat(batchingQueue.peek("worker uuid 3").isPresent()).isFalse();
+
+    batchingQueue.remove(task1, CeActivityDto.Status.SUCCESS, null, null);
+    assertThat(batchingQueue.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task2.getUuid());
+  }
+
+  @Test
+  public void peek_in_advance_only_one_task_per_idle_worker() {
+    InternalCeQueue batchingQueue = newQueueWithWorkerCount(3);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+    assertThat(batchingQueue.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task1.getUuid());
+    assertThat(batchingQueue.peek(WORKER_UUID_2).get().getUuid()).isEqualTo(task2.getUuid());
+    CeTask task3 = submit(CeTaskTypes.REPORT, "PROJECT_3");
+    CeTask task4 = submit(CeTaskTypes.REPORT, "PROJECT_4");
+
+    // workers 1 and 2 are busy
+    assertThat(batchingQueue.peek("worker uuid 3").get().getUuid()).isEqualTo(task3.getUuid());
+    assertThat(selectByUuid(task4.getUuid()).getStatus()).isEqualTo(CeQueueDto.Status.PENDING);
+
+    // worker 1 is idle again once its task is removed
+    batchingQueue.remove(task1, CeActivityDto.Status.SUCCESS, null, null);
+    CeTask task5 = submit(CeTaskTypes.REPORT, "PROJECT_5");
+    assertThat(batchingQueue.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task4.getUuid());
+    assertThat(selectByUuid(task5.getUuid()).getStatus()).isEqualTo(CeQueueDto.Status.PENDING);
+  }
+
+  @Test
+  public void pausePeek_puts_back_to_pending_the_tasks_peeked_in_advance() {
+    InternalCeQueue batchingQueue = newQueueWithWorkerCount(2);
+    CeTask task1 = submit(CeTaskTypes.REPORT, "PROJECT_1");
+    CeTask task2 = submit(CeTaskTypes.REPORT, "PROJECT_2");
+
+    assertThat(batchingQueue.peek(WORKER_UUID_1).get().getUuid()).isEqualTo(task1.getUuid());
+    batchingQueue.pausePeek();
+
+    CeQueueDto dto = selectByUuid(task2.getUuid());
+    assertThat(dto.getStatus()).isEqualTo(CeQueueDto.Status.PENDING);
+    assertThat(dto.getWorkerUuid()).isNull();
+    assertThat(dto.getExecutionCount()).isEqualTo(0);
+    assertThat(selectByUuid(task1.getUuid()).getStatus()).isEqualTo(CeQueueDto.Status.IN_PROGRESS);
+
+    batchingQueue.resumePeek();
+    assertThat(batchingQueue.peek(WORKER_UUID_2).get().getUuid()).isEqualTo(task2.getUuid());
+  }
+
+  @Test
+  public void clear_drops_the_tasks_peeked_in_advance() {
+    InternalCeQueue batchingQueue = newQueueWithWorkerCount(2);
+    submit(CeTaskTypes.REPORT, "PROJECT_1");
+    submit(CeTaskTypes.REPORT, "PROJECT_2");
+    batchingQueue.peek(WORKER_UUID_1);
+
+    assertThat(batchingQueue.clear()).isEqualTo(2);
+
+    assertThat(batchingQueue.peek(WORKER_UUID_2).isPresent()).isFalse();
+  }
+
   @Test
   public void peek_peeks_pending_tasks_with_executionCount_equal_to_0_and_increases_it() {
     dbTester.getDbClient().ceQueueDao().insert(session, new CeQueueDto()
@@ -712,6 +789,15 @@ public class InternalCeQueueImplTest {
     assertThat(dto.getCreatedAt()).isEqualTo(dto.getUpdatedAt()).isNotNull();
   }
 
+  private InternalCeQueue newQueueWithWorkerCount(int workerCount) {
+    return new InternalCeQueueImpl(system2, dbTester.getDbClient(), uuidFactory, queueStatus, defaultOrganizationProvider,
+      ceConfiguration.setWorkerCount(workerCount));
+  }
+
+  private CeQueueDto selectByUuid(String uuid) {
+    return dbTester.getDbClient().ceQueueDao().selectByUuid(session, uuid).get();
+  }
+
   private ComponentDto newComponentDto(String uuid) {
     return ComponentTesting.newPublicProjectDto(dbTester.getDefaultOrganization(), uuid).setName("name_" + uuid).setKey("key_" + uuid);
   }
@@ -222,6 +222,41 @@ public class CeProcessingSchedulerImplTest {
     verify(ceWorkerFactory, times(workerCount)).create();
   }
 
+  @Test
+  public void wakeUpWorker_polls_without_delay_when_worker_is_waiting() throws Exception {
+    when(ceWorker.call())
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    underTest.startScheduling();
+    underTest.wakeUpWorker();
+    processingExecutorService.runFutures();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll,
+      regularDelayedPoll);
+  }
+
+  @Test
+  public void wakeUpWorker_skips_next_delay_when_worker_is_busy() throws Exception {
+    when(ceWorker.call())
+      .thenAnswer(invocation -> {
+        // task is submitted while worker is polling the queue
+        underTest.wakeUpWorker();
+        return false;
+      })
+      .thenReturn(false)
+      .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+      regularDelayedPoll,
+      notDelayedPoll,
+      regularDelayedPoll);
+  }
+
   private void startSchedulingAndRun() throws ExecutionException, InterruptedException {
     underTest.startScheduling();
 
@@ -378,6 +413,7 @@ public class CeProcessingSchedulerImplTest {
         ScheduledFuture<Void> res = new AbstractPartiallyImplementedScheduledFuture<Void>() {
           @Override
           public Void get() throws InterruptedException, ExecutionException {
+            started = true;
             command.run();
             return null;
           }
@@ -392,6 +428,7 @@ public class CeProcessingSchedulerImplTest {
 
           @Override
           public V get() throws InterruptedException, ExecutionException {
+            started = true;
             try {
               return callable.call();
             } catch (Exception e) {
@@ -496,9 +533,12 @@ public class CeProcessingSchedulerImplTest {
   }
 
   private static abstract class AbstractPartiallyImplementedScheduledFuture<V> extends AbstractPartiallyImplementedFuture<V> implements ScheduledFuture<V> {
+    protected boolean started = false;
+
     @Override
     public long getDelay(TimeUnit unit) {
-      throw new UnsupportedOperationException("getDelay(TimeUnit unit) not implemented");
+      // futures are executed on demand, so delay is considered as elapsed only once they are started
+      return started ? 0L : unit.convert(1, TimeUnit.HOURS);
     }
 
     @Override
@@ -54,6 +54,7 @@ public final class SqTables {
     "ce_task_input",
     "ce_scanner_context",
     "duplications_index",
+    "es_queue",
     "events",
     "file_sources",
     "groups",
@@ -31,6 +31,7 @@ import org.sonar.db.component.ComponentLinkDao;
 import org.sonar.db.component.ResourceDao;
 import org.sonar.db.component.SnapshotDao;
 import org.sonar.db.duplication.DuplicationDao;
+import org.sonar.db.es.EsQueueDao;
 import org.sonar.db.event.EventDao;
 import org.sonar.db.issue.IssueChangeDao;
 import org.sonar.db.issue.IssueDao;
@@ -103,6 +104,7 @@ public class DbClient {
   private final AuthorDao authorDao;
   private final ComponentLinkDao componentLinkDao;
   private final EventDao eventDao;
+  private final EsQueueDao esQueueDao;
   private final PurgeDao purgeDao;
   private final QualityGateDao qualityGateDao;
   private final QualityGateConditionDao gateConditionDao;
@@ -158,6 +160,7 @@ public class DbClient {
     authorDao = getDao(map, AuthorDao.class);
     componentLinkDao = getDao(map, ComponentLinkDao.class);
     eventDao = getDao(map, EventDao.class);
+    esQueueDao = getDao(map, EsQueueDao.class);
     purgeDao = getDao(map, PurgeDao.class);
     qualityGateDao = getDao(map, QualityGateDao.class);
     gateConditionDao = getDao(map, QualityGateConditionDao.class);
@@ -307,6 +310,10 @@ public class DbClient {
     return eventDao;
   }
 
+  public EsQueueDao esQueueDao() {
+    return esQueueDao;
+  }
+
   public PurgeDao purgeDao() {
     return purgeDao;
   }
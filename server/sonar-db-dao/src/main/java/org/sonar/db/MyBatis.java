@@ -50,6 +50,7 @@ import org.sonar.db.debt.RequirementMigrationDto;
 import org.sonar.db.duplication.DuplicationMapper;
 import org.sonar.db.duplication.DuplicationUnitDto;
 import org.sonar.db.event.EventDto;
+import org.sonar.db.es.EsQueueMapper;
 import org.sonar.db.event.EventMapper;
 import org.sonar.db.issue.IssueChangeDto;
 import org.sonar.db.issue.IssueChangeMapper;
@@ -201,6 +202,7 @@ public class MyBatis implements Startable {
       ComponentMapper.class,
       CustomMeasureMapper.class,
       DuplicationMapper.class,
+      EsQueueMapper.class,
       EventMapper.class,
       FileSourceMapper.class,
       GroupMapper.class,
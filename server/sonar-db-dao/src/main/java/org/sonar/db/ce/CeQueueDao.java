@@ -19,7 +19,10 @@
  */
 package org.sonar.db.ce;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
@@ -31,6 +34,10 @@ import org.sonar.db.DbSession;
 import org.sonar.db.Pagination;
 
 import static java.util.Collections.emptyList;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static org.sonar.db.DatabaseUtils.executeLargeInputs;
 import static org.sonar.db.DatabaseUtils.executeLargeUpdates;
 import static org.sonar.db.ce.CeQueueDto.Status.IN_PROGRESS;
 import static org.sonar.db.ce.CeQueueDto.Status.PENDING;
@@ -146,6 +153,76 @@ public class CeQueueDao implements Dao {
     return tryToPeek(session, eligible, workerUuid);
   }
 
+  /**
+   * Same as {@link #peek(DbSession, String, int)} but claims up to {@code maxCount} tasks in a single transaction.
+   * Only the oldest eligible task of each component is claimed, so that two tasks of the same component are never
+   * {@link CeQueueDto.Status#IN_PROGRESS} at the same time. All the claimed tasks are assigned to the specified worker.
+   *
+   * @return the claimed tasks, ordered from the oldest to the newest
+   */
+  public List<CeQueueDto> peek(DbSession session, String workerUuid, int maxExecutionCount, int maxCount) {
+    List<EligibleTaskDto> eligibles = mapper(session).selectEligibleForPeek(maxExecutionCount, Pagination.forPage(1).andSize(maxCount));
+    if (eligibles.isEmpty()) {
+      return emptyList();
+    }
+
+    long now = system2.now();
+    Set<String> componentUuids = new HashSet<>();
+    List<String> peekedUuids = new ArrayList<>(eligibles.size());
+    for (EligibleTaskDto eligible : eligibles) {
+      // eligible tasks are ordered by creation date, the first one of a component is the oldest
+      String componentUuid = eligible.getComponentUuid();
+      if ((componentUuid == null || componentUuids.add(componentUuid)) && tryToUpdate(session, eligible, workerUuid, now)) {
+        peekedUuids.add(eligible.getUuid());
+      }
+    }
+    if (peekedUuids.isEmpty()) {
+      return emptyList();
+    }
+
+    Map<String, CeQueueDto> dtosByUuid = executeLargeInputs(peekedUuids, mapper(session)::selectByUuids).stream()
+      .collect(toMap(CeQueueDto::getUuid, identity()));
+    session.commit();
+    return peekedUuids.stream().map(dtosByUuid::get).collect(toList());
+  }
+
+  /**
+   * Assigns a task which is already {@link CeQueueDto.Status#IN_PROGRESS} to the specified worker, and
+   * resets its start date. The change is not committed.
+   *
+   * @return {@code false} if the task is not in progress anymore or has been executed in the meantime
+   */
+  public boolean reassignInProgress(DbSession session, CeQueueDto dto, String workerUuid) {
+    long now = system2.now();
+    int touchedRows = mapper(session).updateIf(dto.getUuid(),
+      new UpdateIf.NewProperties(IN_PROGRESS, workerUuid, dto.getExecutionCount(), now, now),
+      new UpdateIf.OldProperties(IN_PROGRESS, dto.getExecutionCount()));
+    if (touchedRows != 1) {
+      return false;
+    }
+    dto.setWorkerUuid(workerUuid);
+    dto.setStartedAt(now);
+    dto.setUpdatedAt(now);
+    return true;
+  }
+
+  /**
+   * Puts back to {@link CeQueueDto.Status#PENDING} a task which has been peeked but not executed, without
+   * counting the peek as an execution. The change is not committed.
+   */
+  public void releaseInProgress(DbSession session, CeQueueDto dto) {
+    mapper(session).updateIf(dto.getUuid(),
+      new UpdateIf.NewProperties(PENDING, null, Math.max(0, dto.getExecutionCount() - 1), null, system2.now()),
+      new UpdateIf.OldProperties(IN_PROGRESS, dto.getExecutionCount()));
+  }
+
+  private boolean tryToUpdate(DbSession session, EligibleTaskDto eligible, String workerUuid, long now) {
+    int touchedRows = mapper(session).updateIf(eligible.getUuid(),
+      new UpdateIf.NewProperties(IN_PROGRESS, workerUuid, eligible.getExecutionCount() + 1, now, now),
+      new UpdateIf.OldProperties(PENDING, eligible.getExecutionCount()));
+    return touchedRows == 1;
+  }
+
   private Optional<CeQueueDto> tryToPeek(DbSession session, EligibleTaskDto eligible, String workerUuid) {
     long now = system2.now();
     int touchedRows = mapper(session).updateIf(eligible.getUuid(),
@@ -41,6 +41,8 @@ public interface CeQueueMapper {
   @CheckForNull
   CeQueueDto selectByUuid(@Param("uuid") String uuid);
 
+  List<CeQueueDto> selectByUuids(@Param("uuids") List<String> uuids);
+
   /**
    * Select all pending tasks which execution count is greater than or equal to the specified {@code minExecutionCount}.
    */
@@ -233,6 +233,13 @@ public class ComponentDao implements Dao {
     return mapper(session).selectProjects();
   }
 
+  /**
+   * Select the uuids of all root components (projects and views), including disabled ones, sorted by the DB.
+   */
+  public List<String> selectRootUuids(DbSession dbSession) {
+    return mapper(dbSession).selectRootUuids();
+  }
+
   /**
    * Select all root components (projects and views), including disabled ones, for a given organization.
    */
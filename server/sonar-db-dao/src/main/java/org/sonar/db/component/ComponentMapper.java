@@ -80,6 +80,8 @@ public interface ComponentMapper {
 
   List<ComponentDto> selectAllRootsByOrganization(@Param("organizationUuid") String organizationUuid);
 
+  List<String> selectRootUuids();
+
   /**
    * Return all descendant modules (including itself) from a given component uuid and scope
    */
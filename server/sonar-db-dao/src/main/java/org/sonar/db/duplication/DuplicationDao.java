@@ -22,6 +22,7 @@ package org.sonar.db.duplication;
 import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
@@ -38,6 +39,14 @@ public class DuplicationDao implements Dao {
       partition -> session.getMapper(DuplicationMapper.class).selectCandidates(analysisUuid, language, partition));
   }
 
+  /**
+   * Streams the blocks of the last analyses of all projects. Only the fields analysisUuid, hash
+   * and projectUuid of each {@link DuplicationUnitDto} are populated.
+   */
+  public void selectHashesOfLastAnalyses(DbSession session, ResultHandler resultHandler) {
+    session.getMapper(DuplicationMapper.class).selectHashesOfLastAnalyses(resultHandler);
+  }
+
   /**
    * Insert rows in the table DUPLICATIONS_INDEX.
    * Note that generated ids are not returned.
@@ -32,6 +32,7 @@ public final class DuplicationUnitDto {
 
   // Return by join
   private String componentKey;
+  private String projectUuid;
 
   public long getId() {
     return id;
@@ -100,4 +101,8 @@ public final class DuplicationUnitDto {
     return componentKey;
   }
 
+  public String getProjectUuid() {
+    return projectUuid;
+  }
+
 }
@@ -0,0 +1,78 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.es;
+
+import java.util.Collection;
+import java.util.List;
+import org.apache.ibatis.session.RowBounds;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.UuidFactory;
+import org.sonar.db.Dao;
+import org.sonar.db.DatabaseUtils;
+import org.sonar.db.DbSession;
+
+import static java.util.stream.Collectors.toList;
+
+public class EsQueueDao implements Dao {
+
+  private final System2 system2;
+  private final UuidFactory uuidFactory;
+
+  public EsQueueDao(System2 system2, UuidFactory uuidFactory) {
+    this.system2 = system2;
+    this.uuidFactory = uuidFactory;
+  }
+
+  /**
+   * Uuids and dates of insertion are set by this method.
+   */
+  public void insert(DbSession dbSession, Collection<EsQueueDto> items) {
+    long now = system2.now();
+    EsQueueMapper mapper = mapper(dbSession);
+    for (EsQueueDto item : items) {
+      item.setUuid(uuidFactory.create());
+      item.setCreatedAt(now);
+      mapper.insert(item);
+    }
+  }
+
+  /**
+   * The {@code limit} oldest items of the queue
+   */
+  public List<EsQueueDto> selectOldest(DbSession dbSession, int limit) {
+    return selectOldest(dbSession, 0, limit);
+  }
+
+  /**
+   * The {@code limit} oldest items of the queue, the {@code offset} oldest ones being skipped
+   */
+  public List<EsQueueDto> selectOldest(DbSession dbSession, int offset, int limit) {
+    return mapper(dbSession).selectOldest(new RowBounds(offset, limit));
+  }
+
+  public void delete(DbSession dbSession, Collection<EsQueueDto> items) {
+    List<String> uuids = items.stream().map(EsQueueDto::getUuid).collect(toList());
+    DatabaseUtils.executeLargeUpdates(uuids, mapper(dbSession)::deleteByUuids);
+  }
+
+  private static EsQueueMapper mapper(DbSession dbSession) {
+    return dbSession.getMapper(EsQueueMapper.class);
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.es;
+
+/**
+ * Document to be indexed in Elasticsearch, as stored in table ES_QUEUE
+ */
+public final class EsQueueDto {
+
+  private String uuid;
+  private String docType;
+  private String docId;
+  private long createdAt;
+
+  public String getUuid() {
+    return uuid;
+  }
+
+  public EsQueueDto setUuid(String uuid) {
+    this.uuid = uuid;
+    return this;
+  }
+
+  public String getDocType() {
+    return docType;
+  }
+
+  public EsQueueDto setDocType(String docType) {
+    this.docType = docType;
+    return this;
+  }
+
+  public String getDocId() {
+    return docId;
+  }
+
+  public EsQueueDto setDocId(String docId) {
+    this.docId = docId;
+    return this;
+  }
+
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  public EsQueueDto setCreatedAt(long createdAt) {
+    this.createdAt = createdAt;
+    return this;
+  }
+
+  public static EsQueueDto create(String docType, String docId) {
+    return new EsQueueDto().setDocType(docType).setDocId(docId);
+  }
+
+  @Override
+  public String toString() {
+    return "EsQueueDto{uuid='" + uuid + "', docType='" + docType + "', docId='" + docId + "', createdAt=" + createdAt + "}";
+  }
+}
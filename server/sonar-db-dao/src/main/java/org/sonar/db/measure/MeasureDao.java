@@ -31,6 +31,7 @@ import org.sonar.db.component.ComponentDto;
 
 import static java.util.Collections.emptyList;
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
 
 public class MeasureDao implements Dao {
 
@@ -94,6 +95,14 @@ public class MeasureDao implements Dao {
       ids -> mapper(dbSession).selectPastMeasuresOnSingleAnalysis(componentUuid, analysisUuid, ids));
   }
 
+  /**
+   * Streams the measures of all the components of an analysis, for the specified metrics. The component
+   * of each {@link PastMeasureDto} is populated. Measures of developers are ignored.
+   */
+  public void selectPastMeasures(DbSession dbSession, String analysisUuid, Collection<Integer> metricIds, ResultHandler resultHandler) {
+    executeLargeInputsWithoutOutput(metricIds, ids -> mapper(dbSession).selectPastMeasuresOfAnalysis(analysisUuid, ids, resultHandler));
+  }
+
   /**
    * Select measures of:
    * - one component
@@ -26,6 +26,8 @@ import static java.util.Objects.requireNonNull;
 
 public class PastMeasureDto {
 
+  private String componentUuid;
+
   private int metricId;
 
   @CheckForNull
@@ -48,6 +50,18 @@ public class PastMeasureDto {
     return value != null;
   }
 
+  /**
+   * Populated only by {@link MeasureDao#selectPastMeasures(org.sonar.db.DbSession, String, java.util.Collection, org.apache.ibatis.session.ResultHandler)}
+   */
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  PastMeasureDto setComponentUuid(String componentUuid) {
+    this.componentUuid = componentUuid;
+    return this;
+  }
+
   public int getMetricId() {
     return metricId;
   }
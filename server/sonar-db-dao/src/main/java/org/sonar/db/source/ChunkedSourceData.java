@@ -0,0 +1,151 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import com.google.protobuf.CodedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encoding of {@link DbFileSources.Data} in which lines are grouped in chunks that are compressed
+ * independently, so that a range of lines can be read without decompressing the whole file.
+ * <p>
+ * Layout is:
+ * <pre>
+ *   magic number (8 bytes)
+ *   number of chunks (int)
+ *   for each chunk: first line (int), last line (int), size in bytes (int)
+ *   for each chunk: LZ4 compressed {@link DbFileSources.Data} containing the lines of the chunk
+ * </pre>
+ * The magic number differs from the one of {@link LZ4BlockOutputStream}, which was used to compress the whole
+ * message before chunks were introduced.
+ * </p>
+ */
+class ChunkedSourceData {
+
+  static final int LINES_PER_CHUNK = 500;
+  private static final byte[] MAGIC = "SQLines1".getBytes(UTF_8);
+
+  private ChunkedSourceData() {
+    // only static stuff
+  }
+
+  static boolean isChunked(byte[] binaryData) {
+    if (binaryData.length < MAGIC.length) {
+      return false;
+    }
+    return Arrays.equals(MAGIC, Arrays.copyOf(binaryData, MAGIC.length));
+  }
+
+  static byte[] encode(DbFileSources.Data data) throws IOException {
+    List<byte[]> chunks = new ArrayList<>();
+    List<int[]> lineRanges = new ArrayList<>();
+    int linesCount = data.getLinesCount();
+    for (int start = 0; start < linesCount; start += LINES_PER_CHUNK) {
+      List<DbFileSources.Line> lines = data.getLinesList().subList(start, Math.min(start + LINES_PER_CHUNK, linesCount));
+      chunks.add(compress(DbFileSources.Data.newBuilder().addAllLines(lines).build()));
+      lineRanges.add(lineRange(lines));
+    }
+
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(byteOutput)) {
+      output.write(MAGIC);
+      output.writeInt(chunks.size());
+      for (int i = 0; i < chunks.size(); i++) {
+        output.writeInt(lineRanges.get(i)[0]);
+        output.writeInt(lineRanges.get(i)[1]);
+        output.writeInt(chunks.get(i).length);
+      }
+      for (byte[] chunk : chunks) {
+        output.write(chunk);
+      }
+    }
+    return byteOutput.toByteArray();
+  }
+
+  static DbFileSources.Data decode(byte[] binaryData) throws IOException {
+    return decode(binaryData, Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+  }
+
+  /**
+   * Decompresses only the chunks containing lines between {@code from} and {@code toInclusive}. Returned message
+   * can contain other lines of these chunks.
+   */
+  static DbFileSources.Data decode(byte[] binaryData, int from, int toInclusive) throws IOException {
+    return decode(binaryData, from, toInclusive, false);
+  }
+
+  private static DbFileSources.Data decode(byte[] binaryData, int from, int toInclusive, boolean allChunks) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(binaryData));
+    input.skipBytes(MAGIC.length);
+    int chunksCount = input.readInt();
+    int offset = MAGIC.length + 4 + chunksCount * 12;
+
+    DbFileSources.Data.Builder builder = DbFileSources.Data.newBuilder();
+    for (int i = 0; i < chunksCount; i++) {
+      int firstLine = input.readInt();
+      int lastLine = input.readInt();
+      int length = input.readInt();
+      if (allChunks || (firstLine <= toInclusive && lastLine >= from)) {
+        try (InputStream chunk = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData, offset, length))) {
+          CodedInputStream codedInput = CodedInputStream.newInstance(chunk);
+          codedInput.setSizeLimit(Integer.MAX_VALUE);
+          // lines are appended to the ones of previous chunks
+          builder.mergeFrom(codedInput);
+        }
+      }
+      offset += length;
+    }
+    return builder.build();
+  }
+
+  private static byte[] compress(DbFileSources.Data chunk) throws IOException {
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput)) {
+      chunk.writeTo(compressedOutput);
+    }
+    return byteOutput.toByteArray();
+  }
+
+  private static int[] lineRange(List<DbFileSources.Line> lines) {
+    int first = Integer.MAX_VALUE;
+    int last = Integer.MIN_VALUE;
+    for (DbFileSources.Line line : lines) {
+      if (line.hasLine()) {
+        first = Math.min(first, line.getLine());
+        last = Math.max(last, line.getLine());
+      }
+    }
+    // range is empty if no line is numbered
+    return new int[] {first, last};
+  }
+}
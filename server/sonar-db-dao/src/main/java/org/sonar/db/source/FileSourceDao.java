@@ -25,6 +25,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
@@ -35,6 +36,8 @@ import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+
 public class FileSourceDao implements Dao {
 
   private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
@@ -44,11 +47,29 @@ public class FileSourceDao implements Dao {
     return mapper(session).select(fileUuid, Type.SOURCE);
   }
 
+  /**
+   * Data hash of the source of the specified file, without loading the data itself. Only the file uuid
+   * and the data hash of the returned {@link FileSourceDto} are populated.
+   */
+  @CheckForNull
+  public FileSourceDto selectSourceDataHashByFileUuid(DbSession session, String fileUuid) {
+    return mapper(session).selectDataHash(fileUuid, Type.SOURCE);
+  }
+
   @CheckForNull
   public FileSourceDto selectTest(DbSession dbSession, String fileUuid) {
     return mapper(dbSession).select(fileUuid, Type.TEST);
   }
 
+  /**
+   * Line hashes of the sources of the specified files, loaded with as few queries as possible. Only the
+   * file uuid and the line hashes of the returned {@link FileSourceDto} are populated. Files without
+   * source are ignored.
+   */
+  public List<FileSourceDto> selectSourceLineHashesByFileUuids(DbSession dbSession, Collection<String> fileUuids) {
+    return executeLargeInputs(fileUuids, uuids -> mapper(dbSession).selectLineHashesByFileUuids(uuids, Type.SOURCE));
+  }
+
   @CheckForNull
   public List<String> selectLineHashes(DbSession dbSession, String fileUuid) {
     Connection connection = dbSession.getConnection();
@@ -95,14 +95,40 @@ public class FileSourceDto {
 
   public DbFileSources.Data decodeSourceData(byte[] binaryData) {
     try {
+      if (ChunkedSourceData.isChunked(binaryData)) {
+        return ChunkedSourceData.decode(binaryData);
+      }
       return decodeRegularSourceData(binaryData);
     } catch (IOException e) {
-      throw new IllegalStateException(
-        format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
-        e);
+      throw failToDecode(e);
+    }
+  }
+
+  /**
+   * Decodes the lines numbered from {@code from} to {@code toInclusive}. Only the chunks containing these lines
+   * are decompressed, unless data was persisted before the introduction of chunks.
+   */
+  public DbFileSources.Data decodeSourceData(byte[] binaryData, int from, int toInclusive) {
+    try {
+      DbFileSources.Data data = ChunkedSourceData.isChunked(binaryData) ? ChunkedSourceData.decode(binaryData, from, toInclusive) : decodeRegularSourceData(binaryData);
+      DbFileSources.Data.Builder lines = DbFileSources.Data.newBuilder();
+      for (DbFileSources.Line line : data.getLinesList()) {
+        if (line.hasLine() && line.getLine() >= from && line.getLine() <= toInclusive) {
+          lines.addLines(line);
+        }
+      }
+      return lines.build();
+    } catch (IOException e) {
+      throw failToDecode(e);
     }
   }
 
+  private IllegalStateException failToDecode(IOException e) {
+    return new IllegalStateException(
+      format("Fail to decompress and deserialize source data [id=%s,fileUuid=%s,projectUuid=%s]", id, fileUuid, projectUuid),
+      e);
+  }
+
   private static DbFileSources.Data decodeRegularSourceData(byte[] binaryData) throws IOException {
     try (LZ4BlockInputStream lz4Input = new LZ4BlockInputStream(new ByteArrayInputStream(binaryData))) {
       return DbFileSources.Data.parseFrom(lz4Input);
@@ -124,19 +150,14 @@ public class FileSourceDto {
 
   /**
    * Serialize and compress protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
-   * in the column BINARY_DATA.
+   * in the column BINARY_DATA. Lines are compressed by chunks, so that a range of lines can be
+   * decoded with {@link #decodeSourceData(byte[], int, int)}.
    */
   public static byte[] encodeSourceData(DbFileSources.Data data) {
-    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
-    LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput);
     try {
-      data.writeTo(compressedOutput);
-      compressedOutput.close();
-      return byteOutput.toByteArray();
+      return ChunkedSourceData.encode(data);
     } catch (IOException e) {
       throw new IllegalStateException("Fail to serialize and compress source data", e);
-    } finally {
-      IOUtils.closeQuietly(compressedOutput);
     }
   }
 
@@ -212,6 +233,14 @@ public class FileSourceDto {
     return decodeSourceData(binaryData);
   }
 
+  /**
+   * Lines numbered from {@code from} to {@code toInclusive} of the protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
+   * @see #decodeSourceData(byte[], int, int)
+   */
+  public DbFileSources.Data getSourceData(int from, int toInclusive) {
+    return decodeSourceData(binaryData, from, toInclusive);
+  }
+
   public FileSourceDto setSourceData(DbFileSources.Data data) {
     this.dataType = Type.SOURCE;
     this.binaryData = encodeSourceData(data);
@@ -470,6 +470,86 @@ public class CeQueueDaoTest {
     }
   }
 
+  @Test
+  public void peek_batch_of_oldest_pending_tasks_of_distinct_components() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 2_000);
+    insert(TASK_UUID_3, COMPONENT_UUID_2, PENDING);
+
+    List<CeQueueDto> peeked = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 10);
+
+    assertThat(peeked).extracting(CeQueueDto::getUuid).containsExactly(TASK_UUID_1, TASK_UUID_3);
+    assertThat(peeked).extracting(CeQueueDto::getStatus).containsOnly(IN_PROGRESS);
+    assertThat(peeked).extracting(CeQueueDto::getWorkerUuid).containsOnly(WORKER_UUID_1);
+    assertThat(peeked).extracting(CeQueueDto::getExecutionCount).containsOnly(1);
+    verifyCeQueueStatuses(TASK_UUID_1, IN_PROGRESS, TASK_UUID_2, PENDING, TASK_UUID_3, IN_PROGRESS);
+
+    // second task of COMPONENT_UUID_1 can't be peeked as long as the first one is in progress
+    assertThat(underTest.peek(db.getSession(), WORKER_UUID_2, MAX_EXECUTION_COUNT, 10)).isEmpty();
+  }
+
+  @Test
+  public void peek_batch_is_limited_to_maxCount() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    system2.setNow(INIT_TIME + 1_000);
+    insert(TASK_UUID_2, COMPONENT_UUID_2, PENDING);
+
+    assertThat(underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 1))
+      .extracting(CeQueueDto::getUuid)
+      .containsExactly(TASK_UUID_1);
+    verifyCeQueueStatuses(TASK_UUID_1, IN_PROGRESS, TASK_UUID_2, PENDING);
+  }
+
+  @Test
+  public void peek_batch_returns_empty_if_no_pendings() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, IN_PROGRESS);
+
+    assertThat(underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 10)).isEmpty();
+  }
+
+  @Test
+  public void reassignInProgress_changes_worker_and_start_date() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    CeQueueDto peeked = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 10).get(0);
+    system2.setNow(INIT_TIME + 1_000);
+
+    assertThat(underTest.reassignInProgress(db.getSession(), peeked, WORKER_UUID_2)).isTrue();
+
+    CeQueueDto dto = underTest.selectByUuid(db.getSession(), TASK_UUID_1).get();
+    assertThat(dto.getStatus()).isEqualTo(IN_PROGRESS);
+    assertThat(dto.getWorkerUuid()).isEqualTo(WORKER_UUID_2);
+    assertThat(dto.getExecutionCount()).isEqualTo(1);
+    assertThat(dto.getStartedAt()).isEqualTo(INIT_TIME + 1_000);
+    assertThat(peeked.getWorkerUuid()).isEqualTo(WORKER_UUID_2);
+    assertThat(peeked.getStartedAt()).isEqualTo(INIT_TIME + 1_000);
+  }
+
+  @Test
+  public void reassignInProgress_fails_if_task_is_not_in_progress_anymore() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    CeQueueDto peeked = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 10).get(0);
+    underTest.resetAllToPendingStatus(db.getSession());
+
+    assertThat(underTest.reassignInProgress(db.getSession(), peeked, WORKER_UUID_2)).isFalse();
+    assertThat(underTest.selectByUuid(db.getSession(), TASK_UUID_1).get().getStatus()).isEqualTo(PENDING);
+  }
+
+  @Test
+  public void releaseInProgress_puts_task_back_to_pending_without_counting_an_execution() {
+    insert(TASK_UUID_1, COMPONENT_UUID_1, PENDING);
+    CeQueueDto peeked = underTest.peek(db.getSession(), WORKER_UUID_1, MAX_EXECUTION_COUNT, 10).get(0);
+
+    underTest.releaseInProgress(db.getSession(), peeked);
+
+    CeQueueDto dto = underTest.selectByUuid(db.getSession(), TASK_UUID_1).get();
+    assertThat(dto.getStatus()).isEqualTo(PENDING);
+    assertThat(dto.getWorkerUuid()).isNull();
+    assertThat(dto.getStartedAt()).isNull();
+    assertThat(dto.getExecutionCount()).isEqualTo(0);
+  }
+
   @Test
   public void select_by_query() {
     // task status not in query
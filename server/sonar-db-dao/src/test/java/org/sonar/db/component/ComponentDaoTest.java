@@ -546,6 +546,20 @@ public class ComponentDaoTest {
       .containsOnly(provisionedProject.uuid(), projectUuid);
   }
 
+  @Test
+  public void select_root_uuids() {
+    OrganizationDto organization = db.organizations().insert();
+    ComponentDto project = db.components().insertPrivateProject(organization);
+    ComponentDto disabledProject = db.components().insertComponent(ComponentTesting.newPrivateProjectDto(organization).setEnabled(false));
+    ComponentDto view = db.components().insertView(organization);
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    db.components().insertComponent(newFileDto(module));
+
+    assertThat(underTest.selectRootUuids(dbSession))
+      .containsOnly(project.uuid(), disabledProject.uuid(), view.uuid())
+      .isSorted();
+  }
+
   @Test
   public void select_provisioned() {
     OrganizationDto organization = db.organizations().insert();
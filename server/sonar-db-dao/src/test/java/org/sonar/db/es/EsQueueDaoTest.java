@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.es;
+
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.UuidFactoryFast;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EsQueueDaoTest {
+
+  private System2 system2 = mock(System2.class);
+
+  @Rule
+  public DbTester db = DbTester.create(system2);
+
+  private DbSession dbSession = db.getSession();
+  private EsQueueDao underTest = new EsQueueDao(system2, UuidFactoryFast.getInstance());
+
+  @Test
+  public void insert_sets_uuid_and_creation_date() {
+    when(system2.now()).thenReturn(1_000L);
+    EsQueueDto item = EsQueueDto.create("issue", "ISSUE_1");
+
+    underTest.insert(dbSession, asList(item));
+
+    assertThat(item.getUuid()).isNotEmpty();
+    assertThat(item.getCreatedAt()).isEqualTo(1_000L);
+    assertThat(db.countRowsOfTable(dbSession, "es_queue")).isEqualTo(1);
+  }
+
+  @Test
+  public void selectOldest_returns_the_oldest_items() {
+    insert(3_000L, "ISSUE_3");
+    insert(1_000L, "ISSUE_1");
+    insert(2_000L, "ISSUE_2");
+
+    List<EsQueueDto> items = underTest.selectOldest(dbSession, 2);
+
+    assertThat(items).extracting(EsQueueDto::getDocId).containsExactly("ISSUE_1", "ISSUE_2");
+    assertThat(items).extracting(EsQueueDto::getDocType).containsOnly("issue");
+    assertThat(items).extracting(EsQueueDto::getCreatedAt).containsExactly(1_000L, 2_000L);
+  }
+
+  @Test
+  public void selectOldest_skips_the_oldest_items() {
+    insert(3_000L, "ISSUE_3");
+    insert(1_000L, "ISSUE_1");
+    insert(2_000L, "ISSUE_2");
+
+    assertThat(underTest.selectOldest(dbSession, 1, 10)).extracting(EsQueueDto::getDocId).containsExactly("ISSUE_2", "ISSUE_3");
+    assertThat(underTest.selectOldest(dbSession, 3, 10)).isEmpty();
+  }
+
+  @Test
+  public void delete_items() {
+    EsQueueDto item1 = insert(1_000L, "ISSUE_1");
+    insert(2_000L, "ISSUE_2");
+    EsQueueDto item3 = insert(3_000L, "ISSUE_3");
+
+    underTest.delete(dbSession, asList(item1, item3));
+
+    assertThat(underTest.selectOldest(dbSession, 10)).extracting(EsQueueDto::getDocId).containsExactly("ISSUE_2");
+  }
+
+  private EsQueueDto insert(long date, String docId) {
+    when(system2.now()).thenReturn(date);
+    EsQueueDto item = EsQueueDto.create("issue", docId);
+    underTest.insert(dbSession, asList(item));
+    dbSession.commit();
+    return item;
+  }
+}
@@ -19,6 +19,8 @@
  */
 package org.sonar.db.issue;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -31,6 +33,7 @@ import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class IssueMapperTest {
@@ -213,6 +216,20 @@ public class IssueMapperTest {
     assertThat(result.getUpdatedAt()).isEqualTo(1_500_000_000_000L);
   }
 
+  @Test
+  public void selectNonClosedByComponentUuids() {
+    underTest.insert(newIssue().setKee("OPEN_ON_FILE").setStatus("OPEN").setResolution(null));
+    underTest.insert(newIssue().setKee("CLOSED_ON_FILE").setStatus("CLOSED"));
+    underTest.insert(newIssue().setKee("OPEN_ON_FILE2").setComponentUuid(file2.uuid()).setStatus("OPEN").setResolution(null));
+    underTest.insert(newIssue().setKee("OPEN_ON_PROJECT").setComponentUuid(project.uuid()).setStatus("OPEN").setResolution(null));
+    dbSession.commit();
+
+    List<IssueDto> issues = new ArrayList<>();
+    underTest.selectNonClosedByComponentUuids(asList(file.uuid(), file2.uuid()), resultContext -> issues.add((IssueDto) resultContext.getResultObject()));
+
+    assertThat(issues).extracting(IssueDto::getKey).containsOnly("OPEN_ON_FILE", "OPEN_ON_FILE2");
+  }
+
   private IssueDto newIssue() {
     return new IssueDto()
       .setKee("ABCDE")
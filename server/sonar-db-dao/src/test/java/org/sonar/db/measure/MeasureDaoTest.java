@@ -40,6 +40,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.sonar.api.resources.Qualifiers.FILE;
 import static org.sonar.api.resources.Qualifiers.UNIT_TEST_FILE;
 import static org.sonar.api.utils.DateUtils.parseDate;
@@ -327,6 +328,32 @@ public class MeasureDaoTest {
     assertThat(result).hasSize(2).extracting(MeasureDto::getData).containsOnly("PROJECT_M1", "PROJECT_M2");
   }
 
+  @Test
+  public void select_past_measures_of_all_components_of_an_analysis() {
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto module = db.components().insertComponent(newModuleDto(project));
+    insertAnalysis(LAST_ANALYSIS_UUID, project.uuid(), true);
+    insertAnalysis(OTHER_ANALYSIS_UUID, project.uuid(), false);
+    insertMeasure("PROJECT_M1", OTHER_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("PROJECT_M2", OTHER_ANALYSIS_UUID, project.uuid(), COVERAGE_METRIC_ID);
+    insertMeasure("PROJECT_M3", OTHER_ANALYSIS_UUID, project.uuid(), COMPLEXITY_METRIC_ID);
+    insertMeasure("MODULE_M1", OTHER_ANALYSIS_UUID, module.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("LAST_M1", LAST_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID);
+    insertMeasureOnPerson("PERSON_M1", OTHER_ANALYSIS_UUID, project.uuid(), NCLOC_METRIC_ID, 123L);
+    db.commit();
+
+    List<PastMeasureDto> result = new ArrayList<>();
+    underTest.selectPastMeasures(dbSession, OTHER_ANALYSIS_UUID, asList(NCLOC_METRIC_ID, COVERAGE_METRIC_ID),
+      context -> result.add((PastMeasureDto) context.getResultObject()));
+
+    assertThat(result)
+      .extracting(PastMeasureDto::getComponentUuid, PastMeasureDto::getMetricId, PastMeasureDto::getPersonId)
+      .containsOnly(
+        tuple(project.uuid(), NCLOC_METRIC_ID, null),
+        tuple(project.uuid(), COVERAGE_METRIC_ID, null),
+        tuple(module.uuid(), NCLOC_METRIC_ID, null));
+  }
+
   @Test
   public void selectByComponentsAndMetrics() {
     ComponentDto project1 = db.components().insertPrivateProject(db.getDefaultOrganization(), "P1");
@@ -445,6 +472,4 @@ public class MeasureDaoTest {
       .setLast(isLast));
   }
 
-  // TODO test selectPastMeasures
-
 }
@@ -0,0 +1,84 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.source;
+
+import org.junit.Test;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChunkedSourceDataTest {
+
+  @Test
+  public void encode_and_decode_lines() throws Exception {
+    DbFileSources.Data data = createData(1, 2 * ChunkedSourceData.LINES_PER_CHUNK + 1);
+
+    byte[] bytes = ChunkedSourceData.encode(data);
+
+    assertThat(ChunkedSourceData.isChunked(bytes)).isTrue();
+    assertThat(ChunkedSourceData.decode(bytes)).isEqualTo(data);
+  }
+
+  @Test
+  public void encode_empty_data() throws Exception {
+    byte[] bytes = ChunkedSourceData.encode(DbFileSources.Data.getDefaultInstance());
+
+    assertThat(ChunkedSourceData.decode(bytes).getLinesCount()).isZero();
+    assertThat(ChunkedSourceData.decode(bytes, 1, 10).getLinesCount()).isZero();
+  }
+
+  @Test
+  public void decode_only_chunks_of_range() throws Exception {
+    DbFileSources.Data data = createData(1, 3 * ChunkedSourceData.LINES_PER_CHUNK);
+    byte[] bytes = ChunkedSourceData.encode(data);
+    // corrupt the compressed lines of the last chunk, which must not be decompressed
+    bytes[bytes.length - 30] ^= 0xFF;
+
+    DbFileSources.Data lines = ChunkedSourceData.decode(bytes, ChunkedSourceData.LINES_PER_CHUNK, ChunkedSourceData.LINES_PER_CHUNK + 1);
+
+    assertThat(lines.getLinesCount()).isEqualTo(2 * ChunkedSourceData.LINES_PER_CHUNK);
+    assertThat(lines.getLines(0).getLine()).isEqualTo(1);
+  }
+
+  @Test
+  public void keep_lines_without_number_when_decoding_all_lines() throws Exception {
+    DbFileSources.Data data = DbFileSources.Data.newBuilder()
+      .addLines(DbFileSources.Line.newBuilder().setSource("foo"))
+      .build();
+    byte[] bytes = ChunkedSourceData.encode(data);
+
+    assertThat(ChunkedSourceData.decode(bytes)).isEqualTo(data);
+    assertThat(ChunkedSourceData.decode(bytes, 1, 1).getLinesCount()).isZero();
+  }
+
+  @Test
+  public void data_compressed_without_chunks_is_not_chunked() {
+    assertThat(ChunkedSourceData.isChunked(new byte[] {'L', 'Z', '4', 'B', 'l', 'o', 'c', 'k', 1, 2})).isFalse();
+    assertThat(ChunkedSourceData.isChunked(new byte[] {1})).isFalse();
+  }
+
+  private static DbFileSources.Data createData(int from, int to) {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    for (int i = from; i <= to; i++) {
+      dataBuilder.addLinesBuilder().setLine(i).setSource("line " + i).setScmAuthor("author" + (i % 7));
+    }
+    return dataBuilder.build();
+  }
+}
@@ -21,6 +21,8 @@ package org.sonar.db.source;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
@@ -59,6 +61,37 @@ public class FileSourceDaoTest {
     assertThat(fileSourceDto.getRevision()).isEqualTo("123456789");
   }
 
+  @Test
+  public void selectSourceDataHashByFileUuid() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    FileSourceDto fileSourceDto = underTest.selectSourceDataHashByFileUuid(session, "FILE1_UUID");
+
+    assertThat(fileSourceDto.getFileUuid()).isEqualTo("FILE1_UUID");
+    assertThat(fileSourceDto.getDataHash()).isEqualTo("hash");
+    assertThat(fileSourceDto.getBinaryData()).isNull();
+    assertThat(underTest.selectSourceDataHashByFileUuid(session, "unknown")).isNull();
+  }
+
+  @Test
+  public void selectSourceLineHashesByFileUuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    List<FileSourceDto> dtos = underTest.selectSourceLineHashesByFileUuids(session, Arrays.asList("FILE1_UUID", "unknown"));
+
+    assertThat(dtos).hasSize(1);
+    assertThat(dtos.get(0).getFileUuid()).isEqualTo("FILE1_UUID");
+    assertThat(dtos.get(0).getLineHashes()).isEqualTo("ABC\\nDEF\\nGHI");
+    assertThat(dtos.get(0).getBinaryData()).isNull();
+  }
+
+  @Test
+  public void selectSourceLineHashesByFileUuids_ignores_test_data() {
+    dbTester.prepareDbUnit(getClass(), "no_line_hashes_when_only_test_data.xml");
+
+    assertThat(underTest.selectSourceLineHashesByFileUuids(session, Arrays.asList("FILE1_UUID"))).isEmpty();
+  }
+
   @Test
   public void select_line_hashes() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
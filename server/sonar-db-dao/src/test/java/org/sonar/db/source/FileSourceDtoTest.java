@@ -19,8 +19,10 @@
  */
 package org.sonar.db.source;
 
+import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
 import java.util.List;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -80,6 +82,38 @@ public class FileSourceDtoTest {
     assertThat(data.getLinesCount()).isEqualTo(build.getLinesCount());
   }
 
+  @Test
+  public void getSourceData_reads_range_of_lines() {
+    FileSourceDto underTest = new FileSourceDto().setSourceData(createData(1_200));
+
+    DbFileSources.Data data = underTest.getSourceData(499, 502);
+    assertThat(data.getLinesList()).extracting(DbFileSources.Line::getLine).containsExactly(499, 500, 501, 502);
+    assertThat(data.getLines(0).getSource()).isEqualTo("line 499");
+    assertThat(underTest.getSourceData(1_150, Integer.MAX_VALUE).getLinesCount()).isEqualTo(51);
+    assertThat(underTest.getSourceData(1_201, 1_300).getLinesCount()).isZero();
+    assertThat(underTest.getSourceData().getLinesCount()).isEqualTo(1_200);
+  }
+
+  @Test
+  public void decodeSourceData_reads_data_compressed_without_chunks() throws Exception {
+    ByteArrayOutputStream byteOutput = new ByteArrayOutputStream();
+    try (LZ4BlockOutputStream compressedOutput = new LZ4BlockOutputStream(byteOutput)) {
+      createData(10).writeTo(compressedOutput);
+    }
+    FileSourceDto underTest = new FileSourceDto().setBinaryData(byteOutput.toByteArray());
+
+    assertThat(underTest.getSourceData().getLinesCount()).isEqualTo(10);
+    assertThat(underTest.getSourceData(3, 4).getLinesList()).extracting(DbFileSources.Line::getLine).containsExactly(3, 4);
+  }
+
+  private static DbFileSources.Data createData(int lines) {
+    DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
+    for (int i = 1; i <= lines; i++) {
+      dataBuilder.addLinesBuilder().setLine(i).setSource("line " + i);
+    }
+    return dataBuilder.build();
+  }
+
   private static DbFileSources.Data createOver64MBDataStructure() {
     DbFileSources.Data.Builder dataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder lineBuilder = DbFileSources.Line.newBuilder();
@@ -0,0 +1,245 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.db.migration.step;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.sonar.core.util.ProgressLogger;
+import org.sonar.db.Database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static org.sonar.server.platform.db.migration.step.DataChange.createDdlConnection;
+import static org.sonar.server.platform.db.migration.step.DataChange.createReadUncommittedConnection;
+
+/**
+ * Variant of {@link MassUpdate} which processes the rows of a table in parallel. The table is split into
+ * ranges of its numeric id column, which are processed by {@link #threads(int) several threads}, each one
+ * with its own read and write connections.
+ * <p>
+ * The SELECT request must restrict the rows to a range with two parameters, the lower bound (inclusive)
+ * then the upper bound (exclusive), for example {@code select id, kee from issues where id >= ? and id < ? and type is null}.
+ * It must not have other parameters. Handlers are called concurrently, so they must be thread-safe.
+ * </p>
+ * <p>
+ * Updates are committed by batches, then at the end of each range. A migration interrupted in the middle
+ * can be executed again as long as its SELECT request excludes the rows which are already converted.
+ * </p>
+ */
+public class ParallelMassUpdate {
+
+  static final int DEFAULT_THREADS = 4;
+  static final long DEFAULT_RANGE_SIZE = 10_000L;
+
+  private final Database db;
+  private final String table;
+  private final String idColumn;
+  private final AtomicLong counter = new AtomicLong(0L);
+  private final ProgressLogger progress = ProgressLogger.create(getClass(), counter);
+
+  private String select;
+  private List<String> updates = new ArrayList<>(1);
+  private int threads = DEFAULT_THREADS;
+  private int batchSize = UpsertImpl.MAX_BATCH_SIZE;
+  private long rangeSize = DEFAULT_RANGE_SIZE;
+
+  ParallelMassUpdate(Database db, String table, String idColumn) {
+    this.db = db;
+    this.table = table;
+    this.idColumn = idColumn;
+  }
+
+  public ParallelMassUpdate select(String sql) {
+    this.select = sql;
+    return this;
+  }
+
+  public ParallelMassUpdate update(String sql) {
+    this.updates.add(sql);
+    return this;
+  }
+
+  public ParallelMassUpdate rowPluralName(String s) {
+    this.progress.setPluralLabel(s);
+    return this;
+  }
+
+  /**
+   * Number of ranges processed in parallel. Each thread uses two connections of the pool.
+   */
+  public ParallelMassUpdate threads(int i) {
+    checkArgument(i > 0, "Number of threads must be positive");
+    this.threads = i;
+    return this;
+  }
+
+  /**
+   * Number of updates which are executed and committed together
+   */
+  public ParallelMassUpdate batchSize(int i) {
+    checkArgument(i > 0, "Batch size must be positive");
+    this.batchSize = i;
+    return this;
+  }
+
+  /**
+   * Number of ids in each range
+   */
+  public ParallelMassUpdate rangeSize(long l) {
+    checkArgument(l > 0L, "Range size must be positive");
+    this.rangeSize = l;
+    return this;
+  }
+
+  public void execute(MassUpdate.Handler handler) throws SQLException {
+    checkState(select != null && !updates.isEmpty(), "SELECT or UPDATE requests are not defined");
+    checkState(updates.size() == 1, "There should be only one update when using a " + MassUpdate.Handler.class.getName());
+
+    execute((row, update, updateIndex) -> handler.handle(row, update));
+  }
+
+  public void execute(MassUpdate.MultiHandler handler) throws SQLException {
+    checkState(select != null && !updates.isEmpty(), "SELECT or UPDATE(s) requests are not defined");
+
+    Queue<long[]> ranges = computeRanges();
+    if (ranges.isEmpty()) {
+      return;
+    }
+
+    progress.start();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, ranges.size()), new ThreadFactoryBuilder()
+      .setNameFormat("MassUpdate-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      AtomicBoolean failed = new AtomicBoolean(false);
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < Math.min(threads, ranges.size()); i++) {
+        futures.add(executor.submit(() -> {
+          processRanges(ranges, failed, handler);
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        waitFor(future);
+      }
+
+      // log the total number of processed rows
+      progress.log();
+    } finally {
+      executor.shutdownNow();
+      progress.stop();
+    }
+  }
+
+  private Queue<long[]> computeRanges() throws SQLException {
+    Queue<long[]> ranges = new ConcurrentLinkedQueue<>();
+    try (Connection connection = createReadUncommittedConnection(db)) {
+      long[] bounds = SelectImpl.create(db, connection, "select min(" + idColumn + "), max(" + idColumn + ") from " + table)
+        .get(row -> {
+          Long min = row.getNullableLong(1);
+          Long max = row.getNullableLong(2);
+          return min == null || max == null ? null : new long[] {min, max};
+        });
+      if (bounds != null) {
+        for (long start = bounds[0]; start <= bounds[1]; start += rangeSize) {
+          ranges.add(new long[] {start, Math.min(start + rangeSize, bounds[1] + 1)});
+        }
+      }
+    }
+    return ranges;
+  }
+
+  private void processRanges(Queue<long[]> ranges, AtomicBoolean failed, MassUpdate.MultiHandler handler) throws SQLException {
+    try (Connection readConnection = createReadUncommittedConnection(db);
+      Connection writeConnection = createDdlConnection(db)) {
+      List<UpsertImpl> upserts = new ArrayList<>(updates.size());
+      for (String update : updates) {
+        upserts.add(UpsertImpl.create(writeConnection, update, batchSize));
+      }
+      try {
+        long[] range = ranges.poll();
+        while (range != null && !failed.get()) {
+          SelectImpl.create(db, readConnection, select)
+            .setLong(1, range[0])
+            .setLong(2, range[1])
+            .scroll(row -> callMultiHandler(handler, upserts, row));
+          commit(upserts);
+          range = ranges.poll();
+        }
+      } catch (SQLException | RuntimeException e) {
+        failed.set(true);
+        throw e;
+      } finally {
+        for (UpsertImpl upsert : upserts) {
+          upsert.close();
+        }
+      }
+    }
+  }
+
+  private void callMultiHandler(MassUpdate.MultiHandler handler, List<UpsertImpl> upserts, Select.Row row) throws SQLException {
+    int i = 0;
+    for (UpsertImpl upsert : upserts) {
+      if (handler.handle(row, upsert, i)) {
+        upsert.addBatch();
+      }
+      i++;
+    }
+    counter.getAndIncrement();
+  }
+
+  private static void commit(List<UpsertImpl> upserts) throws SQLException {
+    for (UpsertImpl upsert : upserts) {
+      if (upsert.getBatchCount() > 0L) {
+        upsert.execute().commit();
+      }
+    }
+  }
+
+  private static void waitFor(Future<Void> future) throws SQLException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Mass update has been interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Fail to execute mass update", cause);
+    }
+  }
+}
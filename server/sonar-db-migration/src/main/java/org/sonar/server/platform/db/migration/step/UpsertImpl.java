@@ -23,14 +23,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 public class UpsertImpl extends BaseSqlStatement<Upsert> implements Upsert {
 
-  private static final int MAX_BATCH_SIZE = 250;
+  static final int MAX_BATCH_SIZE = 250;
 
+  private final int maxBatchSize;
   private long batchCount = 0L;
 
-  private UpsertImpl(PreparedStatement pstmt) {
+  private UpsertImpl(PreparedStatement pstmt, int maxBatchSize) {
     super(pstmt);
+    this.maxBatchSize = maxBatchSize;
   }
 
   @Override
@@ -38,7 +42,7 @@ public class UpsertImpl extends BaseSqlStatement<Upsert> implements Upsert {
     pstmt.addBatch();
     pstmt.clearParameters();
     batchCount++;
-    if (batchCount % MAX_BATCH_SIZE == 0L) {
+    if (batchCount % maxBatchSize == 0L) {
       pstmt.executeBatch();
       pstmt.getConnection().commit();
     }
@@ -66,6 +70,14 @@ public class UpsertImpl extends BaseSqlStatement<Upsert> implements Upsert {
   }
 
   public static UpsertImpl create(Connection connection, String sql) throws SQLException {
-    return new UpsertImpl(connection.prepareStatement(sql));
+    return create(connection, sql, MAX_BATCH_SIZE);
+  }
+
+  /**
+   * @param maxBatchSize number of batched statements which are executed and committed together
+   */
+  public static UpsertImpl create(Connection connection, String sql, int maxBatchSize) throws SQLException {
+    checkArgument(maxBatchSize > 0, "Batch size must be positive");
+    return new UpsertImpl(connection.prepareStatement(sql), maxBatchSize);
   }
 }
@@ -426,6 +426,116 @@ public class DataChangeTest {
     }
   }
 
+  @Test
+  public void parallel_mass_update() throws Exception {
+    db.prepareDbUnit(getClass(), "persons.xml");
+
+    new DataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        context.prepareParallelMassUpdate("persons", "id")
+          .threads(2)
+          .rangeSize(1L)
+          .select("select id from persons where id>=? and id<? and id>=2")
+          .update("update persons set login=?, age=? where id=?")
+          .execute((row, update) -> {
+            long id = row.getNullableLong(1);
+            update
+              .setString(1, "login" + id)
+              .setInt(2, 10 + (int) id)
+              .setLong(3, id);
+            return true;
+          });
+      }
+    }.execute();
+
+    db.assertDbUnit(getClass(), "mass-update-result.xml", "persons");
+  }
+
+  @Test
+  public void parallel_mass_update_commits_batches_of_updates() throws Exception {
+    final int count = MAX_BATCH_SIZE + 10;
+    for (int i = 1; i <= count; i++) {
+      db.executeInsert("persons", "ID", String.valueOf(i), "LOGIN", "login", "AGE", "0");
+    }
+
+    new DataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        context.prepareParallelMassUpdate("persons", "id")
+          .threads(3)
+          .batchSize(7)
+          .rangeSize(50L)
+          .select("select id from persons where id>=? and id<?")
+          .update("update persons set age=? where id=?")
+          .update("update persons set login=? where id=?")
+          .execute((row, update, updateIndex) -> {
+            long id = row.getNullableLong(1);
+            if (updateIndex == 0) {
+              update.setInt(1, (int) id).setLong(2, id);
+            } else {
+              update.setString(1, "login" + id).setLong(2, id);
+            }
+            return true;
+          });
+      }
+    }.execute();
+
+    assertThat(db.countSql("select count(1) from persons where age=id and login=concat('login', id)")).isEqualTo(count);
+  }
+
+  @Test
+  public void parallel_mass_update_of_empty_table() throws Exception {
+    new DataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        context.prepareParallelMassUpdate("persons", "id")
+          .select("select id from persons where id>=? and id<?")
+          .update("update persons set login=? where id=?")
+          .execute((row, update) -> {
+            throw new IllegalStateException("No rows to update");
+          });
+      }
+    }.execute();
+
+    assertThat(db.countRowsOfTable("persons")).isEqualTo(0);
+  }
+
+  @Test
+  public void display_current_row_details_if_error_during_parallel_mass_update() throws Exception {
+    db.prepareDbUnit(getClass(), "persons.xml");
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Error during processing of row: [id=2]");
+
+    new DataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        context.prepareParallelMassUpdate("persons", "id")
+          .select("select id from persons where id>=? and id<? and id>=2")
+          .update("update persons set login=?, age=? where id=?")
+          .execute((row, update) -> {
+            throw new IllegalStateException("Unexpected error");
+          });
+      }
+    }.execute();
+  }
+
+  @Test
+  public void bad_parallel_mass_update() throws Exception {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("SELECT or UPDATE requests are not defined");
+
+    new DataChange(db.database()) {
+      @Override
+      public void execute(Context context) throws SQLException {
+        context.prepareParallelMassUpdate("persons", "id")
+          .select("select id from persons where id>=? and id<?")
+          .execute((row, update) -> false);
+      }
+    }.execute();
+  }
+
   @Test
   public void read_not_null_fields() throws Exception {
     db.prepareDbUnit(getClass(), "persons.xml");
@@ -23,11 +23,18 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import okhttp3.OkHttpClient;
 import okhttp3.RequestBody;
 import org.apache.commons.io.IOUtils;
+import org.picocontainer.Startable;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.process.DefaultProcessCommands;
 import org.sonar.process.systeminfo.protobuf.ProtobufSystemInfo;
 
@@ -38,17 +45,37 @@ import static org.sonar.process.ProcessId.COMPUTE_ENGINE;
 /**
  * Client for the HTTP server of the Compute Engine.
  */
-public class CeHttpClient {
+public class CeHttpClient implements Startable {
 
   private static final String PATH_CHANGE_LOG_LEVEL = "changeLogLevel";
   private static final String PATH_SYSTEM_INFO = "systemInfo";
+  private static final String PATH_WAKE_UP_WORKER = "wakeUpWorker";
+  private static final long WAKE_UP_TIMEOUT_MS = 1_000L;
 
   private final File ipcSharedDir;
+  private final AtomicBoolean wakeUpPending = new AtomicBoolean(false);
+  private ExecutorService wakeUpExecutor;
 
   public CeHttpClient(Settings props) {
     this.ipcSharedDir = new File(props.getString(PROPERTY_SHARED_PATH));
   }
 
+  @Override
+  public void start() {
+    wakeUpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "CeWakeUp");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public void stop() {
+    if (wakeUpExecutor != null) {
+      wakeUpExecutor.shutdownNow();
+    }
+  }
+
   /**
    * Connects to the specified JVM process and requests system information.
    * @return the system info, or absent if the process is not up or if its HTTP URL
@@ -119,6 +146,67 @@ public class CeHttpClient {
     }
   }
 
+  /**
+   * Asks the Compute Engine to poll the queue right away, so that a task which has just been submitted
+   * does not wait for the end of the polling delay of the workers. This is only a hint: the request is sent
+   * by a background thread, at most once at a time, failures are logged and ignored, and nothing is done
+   * when the client is not started. Workers keep on polling the queue periodically anyway.
+   */
+  public void wakeUpWorker() {
+    if (wakeUpExecutor == null || wakeUpExecutor.isShutdown() || !wakeUpPending.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      wakeUpExecutor.execute(this::doWakeUpWorker);
+    } catch (RejectedExecutionException e) {
+      // stopped concurrently
+      wakeUpPending.set(false);
+    }
+  }
+
+  private void doWakeUpWorker() {
+    // tasks submitted from now on need another wake-up
+    wakeUpPending.set(false);
+    try {
+      call(WakeUpWorkerActionClient.INSTANCE);
+    } catch (IllegalStateException e) {
+      Loggers.get(CeHttpClient.class).debug("Failed to wake up a worker of Compute Engine", e);
+    }
+  }
+
+  private enum WakeUpWorkerActionClient implements ActionClient<Void> {
+    INSTANCE;
+
+    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+      .connectTimeout(WAKE_UP_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+      .readTimeout(WAKE_UP_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+      .build();
+
+    @Override
+    public String getPath() {
+      return PATH_WAKE_UP_WORKER;
+    }
+
+    @Override
+    public Void getDefault() {
+      return null;
+    }
+
+    @Override
+    public Void call(String url) throws Exception {
+      okhttp3.Request request = new okhttp3.Request.Builder()
+        .post(RequestBody.create(null, new byte[0]))
+        .url(url)
+        .build();
+      try (okhttp3.Response response = httpClient.newCall(request).execute()) {
+        if (response.code() != 200) {
+          throw new IOException(String.format("Failed to wake up a worker of Compute Engine. Code was '%s' for url '%s'", response.code(), url));
+        }
+      }
+      return null;
+    }
+  }
+
   private <T> T call(ActionClient<T> actionClient) {
     try (DefaultProcessCommands commands = DefaultProcessCommands.secondary(ipcSharedDir, COMPUTE_ENGINE.getIpcIndex())) {
       if (commands.isUp()) {
@@ -27,6 +27,7 @@ public class BatchWsModule extends Module {
     add(
       BatchIndex.class,
       ProjectAction.class,
+      ProjectDataCache.class,
       ProjectDataLoader.class,
       IssuesAction.class,
       UsersAction.class,
@@ -21,16 +21,23 @@ package org.sonar.server.batch;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.es.EsQueueDto;
 import org.sonar.scanner.protocol.input.ScannerInput;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.issue.index.IssueDoc;
@@ -40,23 +47,35 @@ import org.sonarqube.ws.MediaTypes;
 
 import static com.google.common.collect.Maps.newHashMap;
 import static org.sonar.api.web.UserRole.USER;
+import static org.sonar.core.config.PurgeConstants.DAYS_BEFORE_DELETING_CLOSED_ISSUES;
 import static org.sonar.core.util.Protobuf.setNullable;
 import static org.sonar.server.ws.KeyExamples.KEY_PROJECT_EXAMPLE_001;
 
 public class IssuesAction implements BatchWsAction {
 
   private static final String PARAM_KEY = "key";
+  private static final String PARAM_CHANGED_SINCE = "changedSince";
+  /**
+   * Covers the transactions which are not committed yet when the synchronization date is computed, the refresh
+   * of the index and the differences between the clocks of the nodes.
+   */
+  private static final long CHANGED_SINCE_MARGIN_IN_MS = 5 * 60 * 1000L;
+  private static final long DAY_IN_MS = 24 * 60 * 60 * 1000L;
 
   private final DbClient dbClient;
   private final IssueIndex issueIndex;
   private final UserSession userSession;
   private final ComponentFinder componentFinder;
+  private final System2 system2;
+  private final Settings settings;
 
-  public IssuesAction(DbClient dbClient, IssueIndex issueIndex, UserSession userSession, ComponentFinder componentFinder) {
+  public IssuesAction(DbClient dbClient, IssueIndex issueIndex, UserSession userSession, ComponentFinder componentFinder, System2 system2, Settings settings) {
     this.dbClient = dbClient;
     this.issueIndex = issueIndex;
     this.userSession = userSession;
     this.componentFinder = componentFinder;
+    this.system2 = system2;
+    this.settings = settings;
   }
 
   @Override
@@ -73,6 +92,14 @@ public class IssuesAction implements BatchWsAction {
       .setRequired(true)
       .setDescription("Project, module or file key")
       .setExampleValue(KEY_PROJECT_EXAMPLE_001);
+
+    action
+      .createParam(PARAM_CHANGED_SINCE)
+      .setDescription("Date of the previous synchronization, in milliseconds since epoch, as returned in the header of its response. " +
+        "If set, the response starts with a header, and contains only the issues changed since this date, including the closed ones. " +
+        "All the open issues are returned if the closed issues may have been purged since this date.")
+      .setSince("6.4")
+      .setExampleValue("1491379200000");
   }
 
   @Override
@@ -85,14 +112,58 @@ public class IssuesAction implements BatchWsAction {
       userSession.checkComponentPermission(USER, component);
 
       Map<String, String> keysByUUid = keysByUUid(session, component);
+      Date changedSince = writeSyncHeader(session, component, request.paramAsLong(PARAM_CHANGED_SINCE), response.stream().output());
 
       ScannerInput.ServerIssue.Builder issueBuilder = ScannerInput.ServerIssue.newBuilder();
-      for (Iterator<IssueDoc> issueDocIterator = issueIndex.selectIssuesForBatch(component); issueDocIterator.hasNext();) {
+      for (Iterator<IssueDoc> issueDocIterator = issueIndex.selectIssuesForBatch(component, changedSince); issueDocIterator.hasNext();) {
         handleIssue(issueDocIterator.next(), issueBuilder, keysByUUid, response.stream().output());
       }
     }
   }
 
+  /**
+   * @return the date to be used to filter issues, {@code null} if all open issues must be returned
+   */
+  @CheckForNull
+  private Date writeSyncHeader(DbSession session, ComponentDto component, @Nullable Long requestedChangedSince, OutputStream out) {
+    if (requestedChangedSince == null) {
+      return null;
+    }
+    long now = system2.now();
+    // issues closed before this date may have been purged, so deletions can't be detected
+    long purgeHorizon = now - settings.getInt(DAYS_BEFORE_DELETING_CLOSED_ISSUES) * DAY_IN_MS;
+    boolean full = requestedChangedSince < purgeHorizon;
+    try {
+      ScannerInput.ServerIssuesSync.newBuilder()
+        .setSyncDate(indexedUntil(session, component, now))
+        .setFull(full)
+        .build()
+        .writeDelimitedTo(out);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize synchronization header", e);
+    }
+    return full ? null : new Date(requestedChangedSince - CHANGED_SINCE_MARGIN_IN_MS);
+  }
+
+  /**
+   * Date until which the changes of issues are known to be indexed, so that the next synchronization does not
+   * miss the changes which are not indexed yet. Issues changed by web services wait in table ES_QUEUE, and issues
+   * changed by an analysis are indexed at the end of its processing by the Compute Engine.
+   */
+  private long indexedUntil(DbSession session, ComponentDto component, long now) {
+    long date = now;
+    for (EsQueueDto item : dbClient.esQueueDao().selectOldest(session, 1)) {
+      date = Math.min(date, item.getCreatedAt());
+    }
+    for (CeQueueDto task : dbClient.ceQueueDao().selectByComponentUuid(session, component.projectUuid())) {
+      Long startedAt = task.getStartedAt();
+      if (task.getStatus() == CeQueueDto.Status.IN_PROGRESS && startedAt != null) {
+        date = Math.min(date, startedAt);
+      }
+    }
+    return date;
+  }
+
   private static void handleIssue(IssueDoc issue, ScannerInput.ServerIssue.Builder issueBuilder, Map<String, String> keysByUUid, OutputStream out) {
     issueBuilder.setKey(issue.key());
     issueBuilder.setModuleKey(keysByUUid.get(issue.moduleUuid()));
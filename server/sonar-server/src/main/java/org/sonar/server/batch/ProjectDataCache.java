@@ -0,0 +1,199 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.batch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.scanner.protocol.input.FileData;
+import org.sonar.scanner.protocol.input.ProjectRepositories;
+
+/**
+ * Repositories of projects and modules served to scanners by {@link ProjectAction}, so that the
+ * file hashes and settings of a large project are not loaded from database on each analysis.
+ * <p>
+ * An entry is used only if no analysis of the project has been processed since it was loaded. Entries
+ * are also invalidated when settings are changed by web services and, as settings can be changed by other
+ * means (for example when a key is updated), expire {@value #EXPIRATION_IN_SECONDS} seconds after being loaded.
+ * </p>
+ * <p>
+ * Total size is bounded by property {@link #SIZE_PROPERTY}, in MB. Caching is disabled when it is zero.
+ * </p>
+ */
+@ServerSide
+public class ProjectDataCache {
+
+  public static final String SIZE_PROPERTY = "sonar.web.projectDataCache.sizeInMb";
+  private static final int DEFAULT_SIZE_IN_MB = 128;
+  private static final long MB = 1024L * 1024L;
+  private static final long EXPIRATION_IN_SECONDS = 60L;
+
+  /**
+   * Approximate number of bytes used by a {@link String} on the heap, in addition to its characters
+   */
+  private static final int STRING_OVERHEAD = 40;
+  /**
+   * Approximate number of bytes used by an entry of {@link java.util.HashMap} and by the table slot referencing it
+   */
+  private static final int MAP_ENTRY_OVERHEAD = 40;
+  /**
+   * Approximate number of bytes used by a {@link FileData}, excluding its strings
+   */
+  private static final int FILE_DATA_OVERHEAD = 24;
+
+  private final Cache<Key, Entry> cache;
+  /**
+   * Incremented on each invalidation, so that repositories loaded concurrently to an invalidation
+   * are not cached.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  public ProjectDataCache(Settings settings) {
+    this(settings.hasKey(SIZE_PROPERTY) ? settings.getInt(SIZE_PROPERTY) : DEFAULT_SIZE_IN_MB);
+  }
+
+  @VisibleForTesting
+  ProjectDataCache(int maxSizeInMb) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxSizeInMb * MB)
+      .<Key, Entry>weigher((key, entry) -> entry.weight)
+      .expireAfterWrite(EXPIRATION_IN_SECONDS, TimeUnit.SECONDS)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * @param moduleUuid uuid of the requested project or module
+   * @param withSecuredSettings whether settings {@code *.secured} are included, which depends on permissions of user
+   * @param lastAnalysisUuid uuid of the last analysis of the project, {@code null} if project has never been analyzed
+   * @param loader loads the repositories from database when they are not cached or are outdated
+   */
+  public ProjectRepositories get(String moduleUuid, boolean withSecuredSettings, @Nullable String lastAnalysisUuid, Supplier<ProjectRepositories> loader) {
+    Key key = new Key(moduleUuid, withSecuredSettings);
+    Entry entry = cache.getIfPresent(key);
+    if (entry != null && Objects.equals(entry.lastAnalysisUuid, lastAnalysisUuid)) {
+      return entry.data;
+    }
+    long loadedGeneration = generation.get();
+    ProjectRepositories data = loader.get();
+    synchronized (this) {
+      if (generation.get() == loadedGeneration) {
+        cache.put(key, new Entry(lastAnalysisUuid, data));
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Repositories of all projects, for instance when settings are changed
+   */
+  public void invalidateAll() {
+    synchronized (this) {
+      generation.incrementAndGet();
+      cache.invalidateAll();
+    }
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  @Immutable
+  private static final class Key {
+    private final String moduleUuid;
+    private final boolean withSecuredSettings;
+
+    private Key(String moduleUuid, boolean withSecuredSettings) {
+      this.moduleUuid = moduleUuid;
+      this.withSecuredSettings = withSecuredSettings;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return withSecuredSettings == key.withSecuredSettings && moduleUuid.equals(key.moduleUuid);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(moduleUuid, withSecuredSettings);
+    }
+  }
+
+  private static final class Entry {
+    @CheckForNull
+    private final String lastAnalysisUuid;
+    private final ProjectRepositories data;
+    private final int weight;
+
+    private Entry(@Nullable String lastAnalysisUuid, ProjectRepositories data) {
+      this.lastAnalysisUuid = lastAnalysisUuid;
+      this.data = data;
+      this.weight = (int) Math.min(Integer.MAX_VALUE, sizeOf(data));
+    }
+  }
+
+  /**
+   * Approximate number of bytes used by the repositories on the heap
+   */
+  @VisibleForTesting
+  static long sizeOf(ProjectRepositories data) {
+    long size = 0L;
+    for (Map.Entry<String, Map<String, FileData>> module : data.fileDataByModuleAndPath().entrySet()) {
+      size += MAP_ENTRY_OVERHEAD + sizeOf(module.getKey());
+      for (Map.Entry<String, FileData> file : module.getValue().entrySet()) {
+        FileData fileData = file.getValue();
+        size += MAP_ENTRY_OVERHEAD + FILE_DATA_OVERHEAD + sizeOf(file.getKey()) + sizeOf(fileData.hash()) + sizeOf(fileData.revision());
+      }
+    }
+    for (Map.Entry<String, Map<String, String>> module : data.settings().entrySet()) {
+      size += MAP_ENTRY_OVERHEAD + sizeOf(module.getKey());
+      for (Map.Entry<String, String> setting : module.getValue().entrySet()) {
+        size += MAP_ENTRY_OVERHEAD + sizeOf(setting.getKey()) + sizeOf(setting.getValue());
+      }
+    }
+    return size;
+  }
+
+  private static long sizeOf(@Nullable String s) {
+    return s == null ? 0L : (STRING_OVERHEAD + 2L * s.length());
+  }
+}
@@ -33,6 +33,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.FilePathWithHashDto;
+import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.scanner.protocol.input.FileData;
 import org.sonar.scanner.protocol.input.ProjectRepositories;
@@ -52,15 +53,16 @@ public class ProjectDataLoader {
 
   private final DbClient dbClient;
   private final UserSession userSession;
+  private final ProjectDataCache cache;
 
-  public ProjectDataLoader(DbClient dbClient, UserSession userSession) {
+  public ProjectDataLoader(DbClient dbClient, UserSession userSession, ProjectDataCache cache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
+    this.cache = cache;
   }
 
   public ProjectRepositories load(ProjectDataQuery query) {
     try (DbSession session = dbClient.openSession(false)) {
-      ProjectRepositories data = new ProjectRepositories();
       ComponentDto module = checkFoundWithOptional(dbClient.componentDao().selectByKey(session, query.getModuleKey()),
         "Project or module with key '%s' is not found", query.getModuleKey());
       checkRequest(isProjectOrModule(module), "Key '%s' belongs to a component which is not a Project", query.getModuleKey());
@@ -70,28 +72,36 @@ public class ProjectDataLoader {
       boolean hasBrowsePerm = userSession.hasComponentPermission(USER, module);
       checkPermission(query.isIssuesMode(), hasScanPerm, hasBrowsePerm);
 
-      ComponentDto project = getProject(module, session);
-      if (!project.key().equals(module.key())) {
-        addSettings(data, module.getKey(), getSettingsFromParents(module, hasScanPerm, session));
-      }
+      String lastAnalysisUuid = dbClient.snapshotDao().selectLastAnalysisByRootComponentUuid(session, module.projectUuid())
+        .map(SnapshotDto::getUuid)
+        .orElse(null);
+      return cache.get(module.uuid(), hasScanPerm, lastAnalysisUuid, () -> loadData(session, module, hasScanPerm));
+    }
+  }
 
-      List<ComponentDto> modulesTree = dbClient.componentDao().selectEnabledDescendantModules(session, module.uuid());
-      Map<String, String> moduleUuidsByKey = moduleUuidsByKey(modulesTree);
-      Map<String, Long> moduleIdsByKey = moduleIdsByKey(modulesTree);
+  private ProjectRepositories loadData(DbSession session, ComponentDto module, boolean hasScanPerm) {
+    ProjectRepositories data = new ProjectRepositories();
+    ComponentDto project = getProject(module, session);
+    if (!project.key().equals(module.key())) {
+      addSettings(data, module.getKey(), getSettingsFromParents(module, hasScanPerm, session));
+    }
 
-      List<PropertyDto> modulesTreeSettings = dbClient.propertiesDao().selectEnabledDescendantModuleProperties(module.uuid(), session);
-      TreeModuleSettings treeModuleSettings = new TreeModuleSettings(moduleUuidsByKey, moduleIdsByKey, modulesTree, modulesTreeSettings);
+    List<ComponentDto> modulesTree = dbClient.componentDao().selectEnabledDescendantModules(session, module.uuid());
+    Map<String, String> moduleUuidsByKey = moduleUuidsByKey(modulesTree);
+    Map<String, Long> moduleIdsByKey = moduleIdsByKey(modulesTree);
 
-      addSettingsToChildrenModules(data, query.getModuleKey(), Maps.<String, String>newHashMap(), treeModuleSettings, hasScanPerm);
-      List<FilePathWithHashDto> files = searchFilesWithHashAndRevision(session, module);
-      addFileData(data, modulesTree, files);
+    List<PropertyDto> modulesTreeSettings = dbClient.propertiesDao().selectEnabledDescendantModuleProperties(module.uuid(), session);
+    TreeModuleSettings treeModuleSettings = new TreeModuleSettings(moduleUuidsByKey, moduleIdsByKey, modulesTree, modulesTreeSettings);
 
-      // FIXME need real value but actually only used to know if there is a previous analysis in local issue tracking mode so any value is
-      // ok
-      data.setLastAnalysisDate(new Date());
+    addSettingsToChildrenModules(data, module.getKey(), Maps.<String, String>newHashMap(), treeModuleSettings, hasScanPerm);
+    List<FilePathWithHashDto> files = searchFilesWithHashAndRevision(session, module);
+    addFileData(data, modulesTree, files);
 
-      return data;
-    }
+    // FIXME need real value but actually only used to know if there is a previous analysis in local issue tracking mode so any value is
+    // ok
+    data.setLastAnalysisDate(new Date());
+
+    return data;
   }
 
   private static boolean isProjectOrModule(ComponentDto module) {
@@ -25,6 +25,7 @@ import org.apache.commons.lang.StringUtils;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
+import org.sonar.ce.http.CeHttpClient;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.server.computation.queue.ReportSubmitter;
 import org.sonar.server.organization.DefaultOrganizationProvider;
@@ -41,10 +42,12 @@ public class SubmitAction implements CeWsAction {
 
   private final ReportSubmitter reportSubmitter;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final CeHttpClient ceHttpClient;
 
-  public SubmitAction(ReportSubmitter reportSubmitter, DefaultOrganizationProvider defaultOrganizationProvider) {
+  public SubmitAction(ReportSubmitter reportSubmitter, DefaultOrganizationProvider defaultOrganizationProvider, CeHttpClient ceHttpClient) {
     this.reportSubmitter = reportSubmitter;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.ceHttpClient = ceHttpClient;
   }
 
   @Override
@@ -100,6 +103,7 @@ public class SubmitAction implements CeWsAction {
     try (InputStream report = new BufferedInputStream(wsRequest.paramAsInputStream(PARAM_REPORT_DATA))) {
       task = reportSubmitter.submit(organizationKey, projectKey, projectBranch, projectName, report);
     }
+    ceHttpClient.wakeUpWorker();
 
     WsCe.SubmitResponse submitResponse = WsCe.SubmitResponse.newBuilder()
       .setTaskId(task.getUuid())
@@ -48,14 +48,17 @@ public class BatchReportReaderImpl implements BatchReportReader {
     this.batchReportDirectoryHolder = batchReportDirectoryHolder;
   }
 
-  private void ensureInitialized() {
+  /**
+   * Synchronized as the reader can be shared by computation steps executed concurrently.
+   */
+  private synchronized void ensureInitialized() {
     if (this.delegate == null) {
       this.delegate = new org.sonar.scanner.protocol.output.ScannerReportReader(batchReportDirectoryHolder.getDirectory());
     }
   }
 
   @Override
-  public ScannerReport.Metadata readMetadata() {
+  public synchronized ScannerReport.Metadata readMetadata() {
     ensureInitialized();
     if (this.metadata == null) {
       this.metadata = delegate.readMetadata();
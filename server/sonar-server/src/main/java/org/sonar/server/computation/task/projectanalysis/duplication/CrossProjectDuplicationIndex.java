@@ -0,0 +1,416 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.duplication.DuplicationUnitDto;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * In-memory index of the hashes of the blocks stored in table DUPLICATIONS_INDEX, shared by all the analyses
+ * processed by the Compute Engine. It tells which blocks of a file may be duplicated in the last analysis of another
+ * project, so that the database is requested only for these blocks.
+ * <p>
+ * Each hash is stored as a 64-bit fingerprint, in an open-addressing table, along with the project which owns it (or
+ * a marker if several projects do). Collisions of fingerprints and blocks which have been removed from the last
+ * analyses since they were indexed can only make a block look like a candidate. The database query filters them out.
+ * </p>
+ * <p>
+ * The index is loaded from database on first use. Then blocks must be {@link #add(String, String, Collection) added}
+ * before being inserted in database. As removed blocks are never evicted, the index is cleared when it grows over
+ * its maximum number of entries, then loaded again from the last analyses on next use. It is disabled, and candidates
+ * are always requested from database, when the last analyses alone exceed this maximum.
+ * </p>
+ * <p>
+ * Added blocks are also kept in a journal, by analysis, as the analyses which add them may still be in progress when
+ * the index is loaded again, in which case their blocks are not part of the last analyses yet. The journal is applied
+ * after each load. The blocks of an analysis are dropped from the journal once they are loaded from database, or when
+ * a new analysis of the same project adds blocks. The index is also loaded again when half of the maximum number of
+ * entries have been added to the journal since the last load, and it is disabled if the journal grows over the maximum
+ * number of entries.
+ * </p>
+ */
+@ComputeEngineSide
+public class CrossProjectDuplicationIndex {
+
+  private static final Logger LOGGER = Loggers.get(CrossProjectDuplicationIndex.class);
+
+  /**
+   * Bytes used by an entry in the worst case: a slot of the table takes 12 bytes, there are up to 8/3 slots per entry
+   * once the table has grown, and the slots of the old and of the new table are allocated while rehashing. An entry of
+   * the journal takes up to 16 bytes, and both the table and the journal can be full.
+   */
+  private static final int BYTES_PER_ENTRY = 64;
+  /**
+   * At most 10% of the heap is used by the index
+   */
+  private static final int HEAP_RATIO = 10;
+  private static final int INITIAL_CAPACITY = 1 << 16;
+  private static final int EMPTY = 0;
+  private static final int SEVERAL_PROJECTS = -1;
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private enum State {
+    NOT_LOADED, LOADING, LOADED, DISABLED
+  }
+
+  private final DbClient dbClient;
+  private final int maxEntries;
+  private final Map<String, Integer> projectIds = new HashMap<>();
+  // fingerprints added by each analysis, by analysis uuid
+  private final Map<String, JournaledAnalysis> journal = new LinkedHashMap<>();
+  private State state = State.NOT_LOADED;
+  private FingerprintTable table = new FingerprintTable(INITIAL_CAPACITY);
+  private int lastProjectId = EMPTY;
+  private int journalSize = 0;
+  private int journalSizeAfterLoad = 0;
+
+  public CrossProjectDuplicationIndex(DbClient dbClient) {
+    this(dbClient, (int) Math.min(Integer.MAX_VALUE / 4, Runtime.getRuntime().maxMemory() / HEAP_RATIO / BYTES_PER_ENTRY));
+  }
+
+  @VisibleForTesting
+  CrossProjectDuplicationIndex(DbClient dbClient, int maxEntries) {
+    checkArgument(maxEntries > 0, "Maximum number of entries must be positive");
+    this.dbClient = dbClient;
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * Must be called before the blocks of the analysis {@code analysisUuid} of project {@code projectUuid} are inserted
+   * in table DUPLICATIONS_INDEX.
+   */
+  public synchronized void add(String projectUuid, String analysisUuid, Collection<String> hashes) {
+    if (state == State.DISABLED) {
+      return;
+    }
+    int projectId = idOf(projectUuid);
+    JournaledAnalysis journaledAnalysis = journal.get(analysisUuid);
+    if (journaledAnalysis == null) {
+      // previous analysis of the project is either the last one in database, or has failed
+      dropFromJournal(entry -> entry.projectId == projectId);
+      journaledAnalysis = new JournaledAnalysis(projectId);
+      journal.put(analysisUuid, journaledAnalysis);
+    }
+    for (String hash : hashes) {
+      if (journalSize == maxEntries) {
+        disable("Cross project duplication index is disabled because blocks of recent analyses exceed {} hashes");
+        return;
+      }
+      long fingerprint = fingerprint(hash);
+      journaledAnalysis.add(fingerprint);
+      journalSize++;
+      if (state == State.LOADED && journalSize - journalSizeAfterLoad >= Math.max(1, maxEntries / 2)) {
+        LOGGER.debug("Cross project duplication index is cleared to drop hashes of complete analyses from journal");
+        unload();
+      }
+      // a table which is not loaded yet is filled by the journal once loaded
+      if (state != State.NOT_LOADED) {
+        putInTable(fingerprint, projectId);
+        if (state == State.DISABLED) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Subset of {@code hashes} which may be duplicated in the last analyses of projects other than {@code projectUuid}.
+   * All the hashes are returned when the index is not available.
+   */
+  public Collection<String> filterCandidates(String projectUuid, Collection<String> hashes) {
+    if (!ensureLoaded()) {
+      return hashes;
+    }
+    synchronized (this) {
+      if (state != State.LOADED) {
+        return hashes;
+      }
+      Integer excludedProjectId = projectIds.get(projectUuid);
+      int excludedId = excludedProjectId == null ? EMPTY : excludedProjectId;
+      List<String> candidates = new ArrayList<>();
+      for (String hash : hashes) {
+        int projectId = table.get(fingerprint(hash));
+        if (projectId != EMPTY && projectId != excludedId) {
+          candidates.add(hash);
+        }
+      }
+      return candidates;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return table.size;
+  }
+
+  @VisibleForTesting
+  synchronized int journalSize() {
+    return journalSize;
+  }
+
+  @VisibleForTesting
+  synchronized boolean isAvailable() {
+    return state == State.LOADED;
+  }
+
+  /**
+   * Loads the index in the calling thread if it's the first one to use it since the index has been cleared.
+   * Meanwhile, other threads request database.
+   */
+  private boolean ensureLoaded() {
+    synchronized (this) {
+      if (state != State.NOT_LOADED) {
+        return state == State.LOADED;
+      }
+      state = State.LOADING;
+    }
+    Set<String> loadedAnalysisUuids = null;
+    try {
+      loadedAnalysisUuids = load();
+    } finally {
+      synchronized (this) {
+        if (state == State.LOADING) {
+          if (loadedAnalysisUuids == null) {
+            unload();
+          } else {
+            applyJournal(loadedAnalysisUuids);
+          }
+        }
+      }
+    }
+    return isAvailable();
+  }
+
+  /**
+   * @return uuids of the loaded analyses
+   */
+  private Set<String> load() {
+    LOGGER.debug("Load cross project duplication index");
+    Set<String> analysisUuids = new HashSet<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.duplicationDao().selectHashesOfLastAnalyses(dbSession, context -> {
+        DuplicationUnitDto dto = (DuplicationUnitDto) context.getResultObject();
+        analysisUuids.add(dto.getAnalysisUuid());
+        if (!addLoadedHash(dto.getProjectUuid(), dto.getHash())) {
+          context.stop();
+        }
+      });
+    }
+    LOGGER.debug("Cross project duplication index contains {} hashes", size());
+    return analysisUuids;
+  }
+
+  /**
+   * @return false if the index has been disabled
+   */
+  private synchronized boolean addLoadedHash(String projectUuid, String hash) {
+    if (state == State.DISABLED) {
+      return false;
+    }
+    putInTable(fingerprint(hash), idOf(projectUuid));
+    return state != State.DISABLED;
+  }
+
+  /**
+   * Adds the hashes of the analyses which were not complete when they were loaded, then makes the index available
+   */
+  private void applyJournal(Set<String> loadedAnalysisUuids) {
+    for (String analysisUuid : loadedAnalysisUuids) {
+      JournaledAnalysis journaledAnalysis = journal.remove(analysisUuid);
+      if (journaledAnalysis != null) {
+        journalSize -= journaledAnalysis.size;
+      }
+    }
+    for (JournaledAnalysis journaledAnalysis : journal.values()) {
+      for (int i = 0; i < journaledAnalysis.size && state == State.LOADING; i++) {
+        putInTable(journaledAnalysis.fingerprints[i], journaledAnalysis.projectId);
+      }
+    }
+    if (state == State.LOADING) {
+      state = State.LOADED;
+      journalSizeAfterLoad = journalSize;
+    }
+  }
+
+  private void dropFromJournal(Predicate<JournaledAnalysis> predicate) {
+    journal.values().removeIf(journaledAnalysis -> {
+      if (predicate.test(journaledAnalysis)) {
+        journalSize -= journaledAnalysis.size;
+        return true;
+      }
+      return false;
+    });
+  }
+
+  private int idOf(String projectUuid) {
+    Integer id = projectIds.get(projectUuid);
+    if (id == null) {
+      lastProjectId++;
+      id = lastProjectId;
+      projectIds.put(projectUuid, id);
+    }
+    return id;
+  }
+
+  private void putInTable(long fingerprint, int projectId) {
+    if (!table.put(fingerprint, projectId, maxEntries)) {
+      clear();
+    }
+  }
+
+  /**
+   * Drops the removed blocks by loading the index again on next use, unless the index is full while being
+   * loaded, in which case it is disabled until the Compute Engine restarts. The journal is kept.
+   */
+  private void clear() {
+    if (state == State.LOADING) {
+      disable("Cross project duplication index is disabled because last analyses exceed {} hashes");
+    } else {
+      LOGGER.debug("Cross project duplication index is cleared because it exceeds {} hashes", maxEntries);
+      unload();
+    }
+  }
+
+  private void unload() {
+    state = State.NOT_LOADED;
+    table = new FingerprintTable(INITIAL_CAPACITY);
+  }
+
+  private void disable(String message) {
+    LOGGER.info(message, maxEntries);
+    state = State.DISABLED;
+    projectIds.clear();
+    journal.clear();
+    journalSize = 0;
+    table = new FingerprintTable(1);
+  }
+
+  private static long fingerprint(String hash) {
+    return HASH_FUNCTION.hashUnencodedChars(hash).asLong();
+  }
+
+  private static final class JournaledAnalysis {
+    private final int projectId;
+    private long[] fingerprints = new long[16];
+    private int size = 0;
+
+    private JournaledAnalysis(int projectId) {
+      this.projectId = projectId;
+    }
+
+    private void add(long fingerprint) {
+      if (size == fingerprints.length) {
+        fingerprints = Arrays.copyOf(fingerprints, size * 2);
+      }
+      fingerprints[size] = fingerprint;
+      size++;
+    }
+  }
+
+  /**
+   * Open-addressing table of fingerprints and of the ids of the projects which own them
+   */
+  private static final class FingerprintTable {
+    private long[] fingerprints;
+    private int[] projects;
+    private int size;
+
+    private FingerprintTable(int capacity) {
+      this.fingerprints = new long[capacity];
+      this.projects = new int[capacity];
+    }
+
+    private int get(long fingerprint) {
+      int mask = fingerprints.length - 1;
+      int slot = (int) fingerprint & mask;
+      while (projects[slot] != EMPTY) {
+        if (fingerprints[slot] == fingerprint) {
+          return projects[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return EMPTY;
+    }
+
+    /**
+     * @return false if the entry can't be added because the table already contains {@code maxEntries} entries
+     */
+    private boolean put(long fingerprint, int projectId, int maxEntries) {
+      int mask = fingerprints.length - 1;
+      int slot = (int) fingerprint & mask;
+      while (projects[slot] != EMPTY) {
+        if (fingerprints[slot] == fingerprint) {
+          if (projects[slot] != projectId) {
+            projects[slot] = SEVERAL_PROJECTS;
+          }
+          return true;
+        }
+        slot = (slot + 1) & mask;
+      }
+      if (size == maxEntries) {
+        return false;
+      }
+      fingerprints[slot] = fingerprint;
+      projects[slot] = projectId;
+      size++;
+      if (size > fingerprints.length / 4 * 3) {
+        rehash(fingerprints.length * 2);
+      }
+      return true;
+    }
+
+    private void rehash(int capacity) {
+      long[] oldFingerprints = fingerprints;
+      int[] oldProjects = projects;
+      fingerprints = new long[capacity];
+      projects = new int[capacity];
+      int mask = capacity - 1;
+      for (int i = 0; i < oldFingerprints.length; i++) {
+        if (oldProjects[i] != EMPTY) {
+          int slot = (int) oldFingerprints[i] & mask;
+          while (projects[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+          }
+          fingerprints[slot] = oldFingerprints[i];
+          projects[slot] = oldProjects[i];
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity.File;
+
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+/**
+ * Index of the files added in the report. It finds the added files which may reach a score of
+ * {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE} with a removed file, so that the other files do not have to be scored.
+ * <p>
+ * The score of {@link SourceSimilarityImpl} is based on the Levenshtein distance between the line hashes of two files.
+ * This distance is at least the difference between the line counts of the files. It is also at least the line count of
+ * the bigger file minus the number of lines the two files have in common. This number is counted with an
+ * inverted index of line hashes, without comparing the files. Line hashes present in many files, such as blank lines
+ * or closing braces, are not indexed. They are assumed to be shared by the two files, so the bounds stay valid.
+ * </p>
+ */
+@NotThreadSafe
+final class AddedFilesIndex {
+  private static final int MIN_FREQUENT_HASH_FILE_COUNT = 20;
+  private static final int[] NO_CANDIDATE = new int[0];
+
+  private final List<File> files;
+  private final int[] lineCounts;
+  private final int[] frequentLineCounts;
+  private final Map<String, Postings> postingsByHash = new HashMap<>();
+  private final Set<String> frequentHashes = new HashSet<>();
+  // number of lines in common with the file being searched, by index of added file
+  private final int[] commonLineCounts;
+  private final int[] touchedFiles;
+
+  AddedFilesIndex(List<File> files) {
+    this.files = files;
+    this.lineCounts = new int[files.size()];
+    this.frequentLineCounts = new int[files.size()];
+    this.commonLineCounts = new int[files.size()];
+    this.touchedFiles = new int[files.size()];
+    for (int fileIndex = 0; fileIndex < files.size(); fileIndex++) {
+      List<String> lineHashes = files.get(fileIndex).getLineHashes();
+      lineCounts[fileIndex] = lineHashes.size();
+      for (Map.Entry<String, Integer> entry : countByHash(lineHashes).entrySet()) {
+        postingsByHash.computeIfAbsent(entry.getKey(), hash -> new Postings()).add(fileIndex, entry.getValue());
+      }
+    }
+    excludeFrequentHashes(Math.max(MIN_FREQUENT_HASH_FILE_COUNT, files.size() / 10));
+  }
+
+  private void excludeFrequentHashes(int maxFileCount) {
+    Iterator<Map.Entry<String, Postings>> iterator = postingsByHash.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Postings> entry = iterator.next();
+      Postings postings = entry.getValue();
+      if (postings.size > maxFileCount) {
+        frequentHashes.add(entry.getKey());
+        for (int i = 0; i < postings.size; i++) {
+          frequentLineCounts[postings.fileIndexes[i]] += postings.lineCounts[i];
+        }
+        iterator.remove();
+      }
+    }
+  }
+
+  File get(int fileIndex) {
+    return files.get(fileIndex);
+  }
+
+  /**
+   * Indexes of the added files which may be similar enough to the specified file, in ascending order.
+   */
+  int[] candidatesOf(File file) {
+    int lineCount = file.getLineHashes().size();
+    if (lineCount == 0) {
+      return NO_CANDIDATE;
+    }
+
+    int touchedCount = 0;
+    int frequentLineCount = 0;
+    for (Map.Entry<String, Integer> entry : countByHash(file.getLineHashes()).entrySet()) {
+      if (frequentHashes.contains(entry.getKey())) {
+        frequentLineCount += entry.getValue();
+        continue;
+      }
+      Postings postings = postingsByHash.get(entry.getKey());
+      if (postings != null) {
+        touchedCount = postings.addCommonLineCounts(entry.getValue(), commonLineCounts, touchedFiles, touchedCount);
+      }
+    }
+
+    int[] candidates;
+    if (canReachMinScore(lineCount, lineCount, frequentLineCount)) {
+      // file is mostly made of frequent lines, it may be similar to files with which it has no indexed line in common
+      candidates = selectCandidates(lineCount, frequentLineCount, allFiles(), files.size());
+    } else {
+      candidates = selectCandidates(lineCount, frequentLineCount, touchedFiles, touchedCount);
+      Arrays.sort(candidates);
+    }
+    for (int i = 0; i < touchedCount; i++) {
+      commonLineCounts[touchedFiles[i]] = 0;
+    }
+    return candidates;
+  }
+
+  private int[] selectCandidates(int lineCount, int frequentLineCount, int[] fileIndexes, int fileCount) {
+    int[] candidates = new int[fileCount];
+    int candidateCount = 0;
+    for (int i = 0; i < fileCount; i++) {
+      int fileIndex = fileIndexes[i];
+      int maxCommonLineCount = commonLineCounts[fileIndex] + Math.min(frequentLineCount, frequentLineCounts[fileIndex]);
+      if (canReachMinScore(lineCount, lineCounts[fileIndex], maxCommonLineCount)) {
+        candidates[candidateCount] = fileIndex;
+        candidateCount++;
+      }
+    }
+    return Arrays.copyOf(candidates, candidateCount);
+  }
+
+  private int[] allFiles() {
+    int[] res = new int[files.size()];
+    for (int i = 0; i < res.length; i++) {
+      res[i] = i;
+    }
+    return res;
+  }
+
+  /**
+   * Same formula as {@link SourceSimilarityImpl#score(List, List)}, applied to the lower bound of the distance.
+   */
+  static boolean canReachMinScore(int lineCount1, int lineCount2, int maxCommonLineCount) {
+    int maxLineCount = Math.max(lineCount1, lineCount2);
+    if (maxLineCount == 0) {
+      return false;
+    }
+    int minDistance = Math.max(Math.abs(lineCount1 - lineCount2), maxLineCount - maxCommonLineCount);
+    return (int) (100 * (1.0 - ((double) minDistance) / maxLineCount)) >= MIN_REQUIRED_SCORE;
+  }
+
+  private static Map<String, Integer> countByHash(List<String> lineHashes) {
+    Map<String, Integer> res = new HashMap<>();
+    for (String lineHash : lineHashes) {
+      res.merge(lineHash, 1, Integer::sum);
+    }
+    return res;
+  }
+
+  private static final class Postings {
+    private int[] fileIndexes = new int[1];
+    private int[] lineCounts = new int[1];
+    private int size = 0;
+
+    private void add(int fileIndex, int lineCount) {
+      if (size == fileIndexes.length) {
+        fileIndexes = Arrays.copyOf(fileIndexes, size * 2);
+        lineCounts = Arrays.copyOf(lineCounts, size * 2);
+      }
+      fileIndexes[size] = fileIndex;
+      lineCounts[size] = lineCount;
+      size++;
+    }
+
+    private int addCommonLineCounts(int lineCount, int[] commonLineCounts, int[] touchedFiles, int touchedCount) {
+      int res = touchedCount;
+      for (int i = 0; i < size; i++) {
+        int fileIndex = fileIndexes[i];
+        if (commonLineCounts[fileIndex] == 0) {
+          touchedFiles[res] = fileIndex;
+          res++;
+        }
+        commonLineCounts[fileIndex] += Math.min(lineCount, lineCounts[i]);
+      }
+      return res;
+    }
+  }
+}
@@ -23,15 +23,18 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.annotation.CheckForNull;
+import java.util.function.Function;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import org.sonar.api.resources.Qualifiers;
@@ -60,6 +63,8 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Splitter.on;
 import static com.google.common.collect.FluentIterable.from;
 import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
 public class FileMoveDetectionStep implements ComputationStep {
@@ -67,6 +72,7 @@ public class FileMoveDetectionStep implements ComputationStep {
   private static final Logger LOG = Loggers.get(FileMoveDetectionStep.class);
   private static final List<String> FILE_QUALIFIERS = asList(Qualifiers.FILE, Qualifiers.UNIT_TEST_FILE);
   private static final Splitter LINES_HASHES_SPLITTER = on('\n');
+  private static final int DB_FILES_PARTITION_SIZE = 1_000;
 
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final TreeRootHolder rootHolder;
@@ -197,45 +203,51 @@ public class FileMoveDetectionStep implements ComputationStep {
   }
 
   private ScoreMatrix computeScoreMatrix(Map<String, DbComponent> dtosByKey, Set<String> dbFileKeys, Map<String, File> reportFileSourcesByKey) {
-    int[][] scoreMatrix = new int[dbFileKeys.size()][reportFileSourcesByKey.size()];
-    int maxScore = 0;
+    List<String> reportFileKeys = new ArrayList<>(reportFileSourcesByKey.keySet());
+    AddedFilesIndex addedFilesIndex = new AddedFilesIndex(reportFileKeys.stream().map(reportFileSourcesByKey::get).collect(toList()));
+    List<String> dbFileKeysWithSource = new ArrayList<>(dbFileKeys.size());
+    List<File> dbFiles = new ArrayList<>(dbFileKeys.size());
 
     try (DbSession dbSession = dbClient.openSession(false)) {
-      int dbFileIndex = 0;
-      for (String removedFileKey : dbFileKeys) {
-        File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
-        if (fileInDb == null) {
-          continue;
-        }
-
-        int reportFileIndex = 0;
-        for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-          File unmatchedFile = reportFileSourceAndKey.getValue();
-          int score = fileSimilarity.score(fileInDb, unmatchedFile);
-          scoreMatrix[dbFileIndex][reportFileIndex] = score;
-          if (score > maxScore) {
-            maxScore = score;
+      for (List<String> partition : Lists.partition(new ArrayList<>(dbFileKeys), DB_FILES_PARTITION_SIZE)) {
+        Map<String, File> filesByKey = getFiles(dbSession, partition.stream().map(dtosByKey::get).collect(toList()));
+        for (String dbFileKey : partition) {
+          File fileInDb = filesByKey.get(dbFileKey);
+          if (fileInDb != null) {
+            dbFileKeysWithSource.add(dbFileKey);
+            dbFiles.add(fileInDb);
           }
-          reportFileIndex++;
         }
-        dbFileIndex++;
       }
     }
 
-    return new ScoreMatrix(dbFileKeys, reportFileSourcesByKey, scoreMatrix, maxScore);
+    ScoreMatrix.Builder scoreMatrix = ScoreMatrix.builder(dbFileKeysWithSource, reportFileKeys);
+    for (int dbFileIndex = 0; dbFileIndex < dbFiles.size(); dbFileIndex++) {
+      File fileInDb = dbFiles.get(dbFileIndex);
+      for (int reportFileIndex : addedFilesIndex.candidatesOf(fileInDb)) {
+        scoreMatrix.add(dbFileIndex, reportFileIndex, fileSimilarity.score(fileInDb, addedFilesIndex.get(reportFileIndex)));
+      }
+    }
+    return scoreMatrix.build();
   }
 
-  @CheckForNull
-  private File getFile(DbSession dbSession, DbComponent dbComponent) {
-    if (dbComponent.getPath() == null) {
-      return null;
+  /**
+   * Loads the line hashes of the specified files which have a path and a source in db, by file key.
+   */
+  private Map<String, File> getFiles(DbSession dbSession, List<DbComponent> dbComponents) {
+    Map<String, DbComponent> dbComponentsByUuid = dbComponents.stream()
+      .filter(dbComponent -> dbComponent.getPath() != null)
+      .collect(toMap(DbComponent::getUuid, Function.identity()));
+    if (dbComponentsByUuid.isEmpty()) {
+      return Collections.emptyMap();
     }
-    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, dbComponent.getUuid());
-    if (fileSourceDto == null) {
-      return null;
+    Map<String, File> res = new HashMap<>(dbComponentsByUuid.size());
+    for (FileSourceDto fileSourceDto : dbClient.fileSourceDao().selectSourceLineHashesByFileUuids(dbSession, dbComponentsByUuid.keySet())) {
+      DbComponent dbComponent = dbComponentsByUuid.get(fileSourceDto.getFileUuid());
+      String lineHashes = firstNonNull(fileSourceDto.getLineHashes(), "");
+      res.put(dbComponent.getKey(), new File(dbComponent.getPath(), LINES_HASHES_SPLITTER.splitToList(lineHashes)));
     }
-    String lineHashes = firstNonNull(fileSourceDto.getLineHashes(), "");
-    return new File(dbComponent.getPath(), LINES_HASHES_SPLITTER.splitToList(lineHashes));
+    return res;
   }
 
   private static void printIfDebug(ScoreMatrix scoreMatrix) {
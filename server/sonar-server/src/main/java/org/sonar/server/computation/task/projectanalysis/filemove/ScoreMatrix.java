@@ -19,33 +19,37 @@
  */
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Scores of the pairs of removed file (from db) and added file (from report) which have been compared. Pairs which
+ * have not been compared can not reach {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE} and are considered to have
+ * a score of 0.
+ */
 final class ScoreMatrix {
-  private final Set<String> dbFileKeys;
-  private final Map<String, FileSimilarity.File> reportFileSourcesByKey;
-  private final int[][] scores;
+  private final List<String> dbFileKeys;
+  private final List<String> reportFileKeys;
+  private final List<Score> scores;
   private final int maxScore;
 
-  public ScoreMatrix(Set<String> dbFileKeys, Map<String, FileSimilarity.File> reportFileSourcesByKey, int[][] scores, int maxScore) {
-    this.dbFileKeys = dbFileKeys;
-    this.reportFileSourcesByKey = reportFileSourcesByKey;
-    this.scores = scores;
-    this.maxScore = maxScore;
+  private ScoreMatrix(Builder builder) {
+    this.dbFileKeys = builder.dbFileKeys;
+    this.reportFileKeys = builder.reportFileKeys;
+    this.scores = builder.scores;
+    this.maxScore = builder.maxScore;
+  }
+
+  public static Builder builder(List<String> dbFileKeys, List<String> reportFileKeys) {
+    return new Builder(dbFileKeys, reportFileKeys);
   }
 
+  /**
+   * Visits the scored pairs, ordered by db file then by report file.
+   */
   public void accept(ScoreMatrixVisitor visitor) {
-    int dbFileIndex = 0;
-    for (String dbFileKey : dbFileKeys) {
-      int reportFileIndex = 0;
-      for (Map.Entry<String, FileSimilarity.File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-        int score = scores[dbFileIndex][reportFileIndex];
-        visitor.visit(dbFileKey, reportFileSourceAndKey.getKey(), score);
-        reportFileIndex++;
-      }
-      dbFileIndex++;
+    for (Score score : scores) {
+      visitor.visit(dbFileKeys.get(score.dbFileIndex), reportFileKeys.get(score.reportFileIndex), score.value);
     }
   }
 
@@ -53,22 +57,22 @@ final class ScoreMatrix {
     StringBuilder res = new StringBuilder();
     // first row: empty column, then one column for each report file (its key)
     res.append(separator);
-    for (Map.Entry<String, FileSimilarity.File> reportEntry : reportFileSourcesByKey.entrySet()) {
-      res.append(reportEntry.getKey()).append(separator);
+    for (String reportFileKey : reportFileKeys) {
+      res.append(reportFileKey).append(separator);
     }
     // rows with data: column with db file (its key), then one column for each value
-    accept(new ScoreMatrixVisitor() {
-      private String previousDbFileKey = null;
-
-      @Override
-      public void visit(String dbFileKey, String reportFileKey, int score) {
-        if (!Objects.equals(previousDbFileKey, dbFileKey)) {
-          res.append('\n').append(dbFileKey).append(separator);
-          previousDbFileKey = dbFileKey;
+    int scoreIndex = 0;
+    for (int dbFileIndex = 0; dbFileIndex < dbFileKeys.size(); dbFileIndex++) {
+      res.append('\n').append(dbFileKeys.get(dbFileIndex)).append(separator);
+      for (int reportFileIndex = 0; reportFileIndex < reportFileKeys.size(); reportFileIndex++) {
+        int value = 0;
+        if (scoreIndex < scores.size() && scores.get(scoreIndex).is(dbFileIndex, reportFileIndex)) {
+          value = scores.get(scoreIndex).value;
+          scoreIndex++;
         }
-        res.append(score).append(separator);
+        res.append(value).append(separator);
       }
-    });
+    }
     return res.toString();
   }
 
@@ -80,4 +84,47 @@ final class ScoreMatrix {
   public int getMaxScore() {
     return maxScore;
   }
+
+  public static final class Builder {
+    private final List<String> dbFileKeys;
+    private final List<String> reportFileKeys;
+    private final List<Score> scores = new ArrayList<>();
+    private int maxScore = 0;
+
+    private Builder(List<String> dbFileKeys, List<String> reportFileKeys) {
+      this.dbFileKeys = dbFileKeys;
+      this.reportFileKeys = reportFileKeys;
+    }
+
+    /**
+     * Scores must be added ordered by db file index then by report file index.
+     */
+    public Builder add(int dbFileIndex, int reportFileIndex, int score) {
+      scores.add(new Score(dbFileIndex, reportFileIndex, score));
+      if (score > maxScore) {
+        maxScore = score;
+      }
+      return this;
+    }
+
+    public ScoreMatrix build() {
+      return new ScoreMatrix(this);
+    }
+  }
+
+  private static final class Score {
+    private final int dbFileIndex;
+    private final int reportFileIndex;
+    private final int value;
+
+    private Score(int dbFileIndex, int reportFileIndex, int value) {
+      this.dbFileIndex = dbFileIndex;
+      this.reportFileIndex = reportFileIndex;
+      this.value = value;
+    }
+
+    private boolean is(int dbFileIndex, int reportFileIndex) {
+      return this.dbFileIndex == dbFileIndex && this.reportFileIndex == reportFileIndex;
+    }
+  }
 }
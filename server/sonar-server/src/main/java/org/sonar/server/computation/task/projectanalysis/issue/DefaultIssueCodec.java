@@ -0,0 +1,471 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.Codec;
+
+/**
+ * Compact binary encoding of {@link DefaultIssue} for {@link IssueCache}. All the fields are written
+ * in a fixed order. Strings and sizes are prefixed by their length, encoded as var-ints.
+ * <p>
+ * A {@link FieldDiffs} can be referenced several times by {@link DefaultIssue#changes()} and by
+ * {@link DefaultIssue#currentChange()}. These references are kept when decoding.
+ */
+public class DefaultIssueCodec implements Codec<DefaultIssue> {
+
+  private static final int NULL_LENGTH = -1;
+
+  private static final byte NO_LOCATIONS = 0;
+  private static final byte DB_LOCATIONS = 1;
+  private static final byte SERIALIZED_LOCATIONS = 2;
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte STRING_VALUE = 1;
+  private static final byte LONG_VALUE = 2;
+  private static final byte INTEGER_VALUE = 3;
+  private static final byte DOUBLE_VALUE = 4;
+  private static final byte DATE_VALUE = 5;
+  private static final byte SERIALIZED_VALUE = 6;
+
+  @Override
+  public void write(DefaultIssue issue, DataOutput output) throws IOException {
+    writeString(output, issue.key());
+    writeVarInt(output, issue.type() == null ? 0 : issue.type().getDbConstant());
+    writeString(output, issue.componentUuid());
+    writeString(output, issue.componentKey());
+    writeString(output, issue.moduleUuid());
+    writeString(output, issue.moduleUuidPath());
+    writeString(output, issue.projectUuid());
+    writeString(output, issue.projectKey());
+    RuleKey ruleKey = issue.ruleKey();
+    output.writeBoolean(ruleKey != null);
+    if (ruleKey != null) {
+      writeString(output, ruleKey.repository());
+      writeString(output, ruleKey.rule());
+    }
+    writeString(output, issue.language());
+    writeString(output, issue.severity());
+    output.writeBoolean(issue.manualSeverity());
+    writeString(output, issue.message());
+    writeVarInt(output, issue.line() == null ? 0 : issue.line());
+    output.writeBoolean(issue.gap() != null);
+    if (issue.gap() != null) {
+      output.writeDouble(issue.gap());
+    }
+    writeLong(output, issue.effortInMinutes());
+    writeString(output, issue.status());
+    writeString(output, issue.resolution());
+    writeString(output, issue.assignee());
+    writeString(output, issue.checksum());
+    writeString(output, issue.authorLogin());
+    writeDate(output, issue.creationDate());
+    writeDate(output, issue.updateDate());
+    writeDate(output, issue.closeDate());
+    writeLong(output, issue.selectedAt());
+    output.writeBoolean(issue.isNew());
+    output.writeBoolean(issue.isBeingClosed());
+    output.writeBoolean(issue.isOnDisabledRule());
+    output.writeBoolean(issue.isChanged());
+    output.writeBoolean(issue.mustSendNotifications());
+
+    Map<String, String> attributes = issue.attributes();
+    writeVarInt(output, attributes.size());
+    for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+      writeString(output, attribute.getKey());
+      writeString(output, attribute.getValue());
+    }
+    Set<String> tags = issue.tags();
+    writeVarInt(output, tags.size());
+    for (String tag : tags) {
+      writeString(output, tag);
+    }
+    List<IssueComment> comments = issue.comments();
+    writeVarInt(output, comments.size());
+    for (IssueComment comment : comments) {
+      writeComment(output, (DefaultIssueComment) comment);
+    }
+    writeLocations(output, issue.getLocations());
+    writeChanges(output, issue);
+  }
+
+  @Override
+  public DefaultIssue read(DataInput input) throws IOException {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(readString(input));
+    int type = readVarInt(input);
+    if (type != 0) {
+      issue.setType(RuleType.valueOf(type));
+    }
+    issue.setComponentUuid(readString(input));
+    issue.setComponentKey(readString(input));
+    issue.setModuleUuid(readString(input));
+    issue.setModuleUuidPath(readString(input));
+    issue.setProjectUuid(readString(input));
+    issue.setProjectKey(readString(input));
+    if (input.readBoolean()) {
+      issue.setRuleKey(RuleKey.of(readString(input), readString(input)));
+    }
+    issue.setLanguage(readString(input));
+    issue.setSeverity(readString(input));
+    issue.setManualSeverity(input.readBoolean());
+    issue.setMessage(readString(input));
+    int line = readVarInt(input);
+    issue.setLine(line == 0 ? null : line);
+    if (input.readBoolean()) {
+      issue.setGap(input.readDouble());
+    }
+    Long effort = readLong(input);
+    if (effort != null) {
+      issue.setEffort(Duration.create(effort));
+    }
+    String status = readString(input);
+    if (status != null) {
+      issue.setStatus(status);
+    }
+    issue.setResolution(readString(input));
+    issue.setAssignee(readString(input));
+    issue.setChecksum(readString(input));
+    issue.setAuthorLogin(readString(input));
+    issue.setCreationDate(readDate(input));
+    issue.setUpdateDate(readDate(input));
+    issue.setCloseDate(readDate(input));
+    issue.setSelectedAt(readLong(input));
+    issue.setNew(input.readBoolean());
+    issue.setBeingClosed(input.readBoolean());
+    issue.setOnDisabledRule(input.readBoolean());
+    issue.setChanged(input.readBoolean());
+    issue.setSendNotifications(input.readBoolean());
+
+    int attributes = readVarInt(input);
+    if (attributes > 0) {
+      Map<String, String> map = new HashMap<>(attributes);
+      for (int i = 0; i < attributes; i++) {
+        map.put(readString(input), readString(input));
+      }
+      issue.setAttributes(map);
+    }
+    int tagCount = readVarInt(input);
+    if (tagCount > 0) {
+      List<String> tags = new ArrayList<>(tagCount);
+      for (int i = 0; i < tagCount; i++) {
+        tags.add(readString(input));
+      }
+      issue.setTags(tags);
+    }
+    int comments = readVarInt(input);
+    for (int i = 0; i < comments; i++) {
+      issue.addComment(readComment(input));
+    }
+    issue.setLocations(readLocations(input));
+    readChanges(input, issue);
+    return issue;
+  }
+
+  private static void writeComment(DataOutput output, DefaultIssueComment comment) throws IOException {
+    writeString(output, comment.key());
+    writeString(output, comment.issueKey());
+    writeString(output, comment.userLogin());
+    writeString(output, comment.markdownText());
+    writeDate(output, comment.createdAt());
+    writeDate(output, comment.updatedAt());
+    output.writeBoolean(comment.isNew());
+  }
+
+  private static DefaultIssueComment readComment(DataInput input) throws IOException {
+    return new DefaultIssueComment()
+      .setKey(readString(input))
+      .setIssueKey(readString(input))
+      .setUserLogin(readString(input))
+      .setMarkdownText(readString(input))
+      .setCreatedAt(readDate(input))
+      .setUpdatedAt(readDate(input))
+      .setNew(input.readBoolean());
+  }
+
+  private static void writeLocations(DataOutput output, @Nullable Object locations) throws IOException {
+    if (locations == null) {
+      output.writeByte(NO_LOCATIONS);
+    } else if (locations instanceof DbIssues.Locations) {
+      output.writeByte(DB_LOCATIONS);
+      writeBytes(output, ((DbIssues.Locations) locations).toByteArray());
+    } else {
+      output.writeByte(SERIALIZED_LOCATIONS);
+      writeBytes(output, serialize((Serializable) locations));
+    }
+  }
+
+  @CheckForNull
+  private static Object readLocations(DataInput input) throws IOException {
+    byte type = input.readByte();
+    switch (type) {
+      case NO_LOCATIONS:
+        return null;
+      case DB_LOCATIONS:
+        return DbIssues.Locations.parseFrom(readBytes(input));
+      case SERIALIZED_LOCATIONS:
+        return deserialize(readBytes(input));
+      default:
+        throw new IllegalStateException("Unsupported type of locations: " + type);
+    }
+  }
+
+  private static void writeChanges(DataOutput output, DefaultIssue issue) throws IOException {
+    List<FieldDiffs> changes = issue.changes();
+    FieldDiffs currentChange = issue.currentChange();
+
+    // the same instance can be referenced multiple times, so distinct instances are written first
+    Map<FieldDiffs, Integer> indices = new IdentityHashMap<>();
+    List<FieldDiffs> distinct = new ArrayList<>();
+    for (FieldDiffs change : changes) {
+      indices.computeIfAbsent(change, c -> {
+        distinct.add(c);
+        return distinct.size() - 1;
+      });
+    }
+    if (currentChange != null) {
+      indices.computeIfAbsent(currentChange, c -> {
+        distinct.add(c);
+        return distinct.size() - 1;
+      });
+    }
+
+    writeVarInt(output, distinct.size());
+    for (FieldDiffs diffs : distinct) {
+      writeFieldDiffs(output, diffs);
+    }
+    writeVarInt(output, changes.size());
+    for (FieldDiffs change : changes) {
+      writeVarInt(output, indices.get(change));
+    }
+    writeVarInt(output, currentChange == null ? NULL_LENGTH : indices.get(currentChange));
+  }
+
+  private static void readChanges(DataInput input, DefaultIssue issue) throws IOException {
+    int distinctCount = readVarInt(input);
+    FieldDiffs[] distinct = new FieldDiffs[distinctCount];
+    for (int i = 0; i < distinctCount; i++) {
+      distinct[i] = readFieldDiffs(input);
+    }
+    int changeCount = readVarInt(input);
+    List<FieldDiffs> changes = new ArrayList<>(changeCount);
+    for (int i = 0; i < changeCount; i++) {
+      changes.add(distinct[readVarInt(input)]);
+    }
+    int currentChange = readVarInt(input);
+    if (currentChange != NULL_LENGTH) {
+      // also adds the instance to changes, which are replaced just below
+      issue.setCurrentChange(distinct[currentChange]);
+    }
+    if (!changes.isEmpty() || currentChange != NULL_LENGTH) {
+      issue.setChanges(changes);
+    }
+  }
+
+  private static void writeFieldDiffs(DataOutput output, FieldDiffs diffs) throws IOException {
+    writeString(output, diffs.issueKey());
+    writeString(output, diffs.userLogin());
+    writeDate(output, diffs.creationDate());
+    Map<String, FieldDiffs.Diff> map = diffs.diffs();
+    writeVarInt(output, map.size());
+    for (Map.Entry<String, FieldDiffs.Diff> entry : map.entrySet()) {
+      writeString(output, entry.getKey());
+      writeValue(output, entry.getValue().oldValue());
+      writeValue(output, entry.getValue().newValue());
+    }
+  }
+
+  private static FieldDiffs readFieldDiffs(DataInput input) throws IOException {
+    FieldDiffs diffs = new FieldDiffs()
+      .setIssueKey(readString(input))
+      .setUserLogin(readString(input))
+      .setCreationDate(readDate(input));
+    int count = readVarInt(input);
+    for (int i = 0; i < count; i++) {
+      diffs.setDiff(readString(input), readValue(input), readValue(input));
+    }
+    return diffs;
+  }
+
+  private static void writeValue(DataOutput output, @Nullable Serializable value) throws IOException {
+    if (value == null) {
+      output.writeByte(NULL_VALUE);
+    } else if (value instanceof String) {
+      output.writeByte(STRING_VALUE);
+      writeString(output, (String) value);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG_VALUE);
+      output.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      output.writeByte(INTEGER_VALUE);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Double) {
+      output.writeByte(DOUBLE_VALUE);
+      output.writeDouble((Double) value);
+    } else if (value instanceof Date) {
+      output.writeByte(DATE_VALUE);
+      output.writeLong(((Date) value).getTime());
+    } else {
+      output.writeByte(SERIALIZED_VALUE);
+      writeBytes(output, serialize(value));
+    }
+  }
+
+  @CheckForNull
+  private static Serializable readValue(DataInput input) throws IOException {
+    byte type = input.readByte();
+    switch (type) {
+      case NULL_VALUE:
+        return null;
+      case STRING_VALUE:
+        return readString(input);
+      case LONG_VALUE:
+        return input.readLong();
+      case INTEGER_VALUE:
+        return input.readInt();
+      case DOUBLE_VALUE:
+        return input.readDouble();
+      case DATE_VALUE:
+        return new Date(input.readLong());
+      case SERIALIZED_VALUE:
+        return deserialize(readBytes(input));
+      default:
+        throw new IllegalStateException("Unsupported type of value: " + type);
+    }
+  }
+
+  private static void writeDate(DataOutput output, @Nullable Date date) throws IOException {
+    writeLong(output, date == null ? null : date.getTime());
+  }
+
+  @CheckForNull
+  private static Date readDate(DataInput input) throws IOException {
+    Long time = readLong(input);
+    return time == null ? null : new Date(time);
+  }
+
+  private static void writeLong(DataOutput output, @Nullable Long l) throws IOException {
+    output.writeBoolean(l != null);
+    if (l != null) {
+      output.writeLong(l);
+    }
+  }
+
+  @CheckForNull
+  private static Long readLong(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readLong() : null;
+  }
+
+  private static void writeString(DataOutput output, @Nullable String s) throws IOException {
+    writeBytes(output, s == null ? null : s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @CheckForNull
+  private static String readString(DataInput input) throws IOException {
+    byte[] bytes = readBytes(input);
+    return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeBytes(DataOutput output, @Nullable byte[] bytes) throws IOException {
+    if (bytes == null) {
+      writeVarInt(output, NULL_LENGTH);
+    } else {
+      writeVarInt(output, bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  private static byte[] readBytes(DataInput input) throws IOException {
+    int length = readVarInt(input);
+    if (length == NULL_LENGTH) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * Values greater than or equal to -1 are encoded on 1 to 5 bytes. Value -1 is shifted to 0,
+   * so that nullable lengths take a single byte.
+   */
+  private static void writeVarInt(DataOutput output, int value) throws IOException {
+    int v = value + 1;
+    while ((v & ~0x7F) != 0) {
+      output.writeByte((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    output.writeByte(v);
+  }
+
+  private static int readVarInt(DataInput input) throws IOException {
+    int result = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = input.readByte();
+      result |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return result - 1;
+      }
+    }
+    throw new IllegalStateException("Malformed var-int");
+  }
+
+  private static byte[] serialize(Serializable object) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(object);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Serializable deserialize(byte[] bytes) throws IOException {
+    try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (Serializable) input.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Fail to deserialize value", e);
+    }
+  }
+}
@@ -28,15 +28,17 @@ import org.sonar.server.util.cache.DiskCache;
 /**
  * Cache of all the issues involved in the analysis. Their state is as it will be
  * persisted in database (after issue tracking, auto-assignment, ...)
+ * <p>
+ * Issues are encoded with {@link DefaultIssueCodec} rather than with Java serialization.
  */
 public class IssueCache extends DiskCache<DefaultIssue> {
 
   // this constructor is used by picocontainer
   public IssueCache(TempFolder tempFolder, System2 system2) {
-    super(tempFolder.newFile("issues", ".dat"), system2);
+    this(tempFolder.newFile("issues", ".dat"), system2);
   }
 
   public IssueCache(File file, System2 system2) {
-    super(file, system2);
+    super(file, system2, new DefaultIssueCodec());
   }
 }
@@ -19,8 +19,12 @@
  */
 package org.sonar.server.computation.task.projectanalysis.issue;
 
+import com.google.common.base.Splitter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.core.issue.DefaultIssue;
@@ -29,38 +33,152 @@ import org.sonar.core.issue.tracking.LazyInput;
 import org.sonar.core.issue.tracking.LineHashSequence;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository.OriginalFile;
 
 /**
- * Factory of {@link Input} of base data for issue tracking. Data are lazy-loaded.
+ * Factory of {@link Input} of base data for issue tracking.
+ * <p>
+ * Components are expected to be requested in the order of {@link IntegrateIssuesVisitor} (post-order traversal of
+ * the tree down to files). When a component is requested, the open issues and the line hashes of the next
+ * {@link #PREFETCH_WINDOW_SIZE} components are loaded with a few bulk queries, instead of two queries per component.
+ * Line hashes are loaded only for the files which have open issues, as they are useless to the tracking of other files.
+ * Only one window is kept in memory at a time. Data of components which are not in the window, for example
+ * when components are requested in another order, are lazy-loaded.
+ * </p>
  */
 public class TrackerBaseInputFactory {
   private static final LineHashSequence EMPTY_LINE_HASH_SEQUENCE = new LineHashSequence(Collections.<String>emptyList());
+  private static final Splitter LINE_HASHES_SPLITTER = Splitter.on('\n');
 
+  static final int PREFETCH_WINDOW_SIZE = 500;
+
+  private final TreeRootHolder treeRootHolder;
   private final BaseIssuesLoader baseIssuesLoader;
   private final DbClient dbClient;
   private final MovedFilesRepository movedFilesRepository;
 
-  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
+  /**
+   * Components in the order they are tracked, lazily computed
+   */
+  private List<Component> trackedComponents;
+  private Map<String, Integer> trackedComponentIndexesByUuid;
+  /**
+   * Base data of the components of the current window, by component uuid
+   */
+  private final Map<String, BaseData> prefetched = new HashMap<>();
+
+  public TrackerBaseInputFactory(TreeRootHolder treeRootHolder, BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
+    this.treeRootHolder = treeRootHolder;
     this.baseIssuesLoader = baseIssuesLoader;
     this.dbClient = dbClient;
     this.movedFilesRepository = movedFilesRepository;
   }
 
   public Input<DefaultIssue> create(Component component) {
-    return new BaseLazyInput(component, movedFilesRepository.getOriginalFile(component).orNull());
+    if (!prefetched.containsKey(component.getUuid())) {
+      prefetch(component);
+    }
+    return new BaseLazyInput(component, movedFilesRepository.getOriginalFile(component).orNull(), prefetched.remove(component.getUuid()));
+  }
+
+  private void prefetch(Component component) {
+    prefetched.clear();
+    Integer index = getTrackedComponentIndexesByUuid().get(component.getUuid());
+    if (index == null) {
+      return;
+    }
+
+    List<Component> window = trackedComponents.subList(index, Math.min(index + PREFETCH_WINDOW_SIZE, trackedComponents.size()));
+    Map<String, String> effectiveUuidsByUuid = new HashMap<>(window.size());
+    for (Component c : window) {
+      effectiveUuidsByUuid.put(c.getUuid(), effectiveUuid(c, movedFilesRepository.getOriginalFile(c).orNull()));
+    }
+
+    Map<String, List<DefaultIssue>> issuesByEffectiveUuid = baseIssuesLoader.loadForComponentUuids(effectiveUuidsByUuid.values());
+    // optimization - line hashes are not used for tracking when there are no base issues
+    List<String> fileEffectiveUuids = new ArrayList<>();
+    for (Component c : window) {
+      String effectiveUuid = effectiveUuidsByUuid.get(c.getUuid());
+      List<DefaultIssue> issues = issuesByEffectiveUuid.get(effectiveUuid);
+      if (c.getType() == Component.Type.FILE && issues != null && !issues.isEmpty()) {
+        fileEffectiveUuids.add(effectiveUuid);
+      }
+    }
+    Map<String, LineHashSequence> lineHashesByEffectiveUuid = loadLineHashSequences(fileEffectiveUuids);
+    for (Component c : window) {
+      String effectiveUuid = effectiveUuidsByUuid.get(c.getUuid());
+      List<DefaultIssue> issues = issuesByEffectiveUuid.get(effectiveUuid);
+      LineHashSequence lineHashes = lineHashesByEffectiveUuid.get(effectiveUuid);
+      prefetched.put(c.getUuid(), new BaseData(
+        issues == null ? new ArrayList<>() : issues,
+        lineHashes == null ? EMPTY_LINE_HASH_SEQUENCE : lineHashes));
+    }
+  }
+
+  private Map<String, LineHashSequence> loadLineHashSequences(List<String> fileUuids) {
+    if (fileUuids.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, LineHashSequence> result = new HashMap<>(fileUuids.size());
+    try (DbSession session = dbClient.openSession(false)) {
+      for (FileSourceDto dto : dbClient.fileSourceDao().selectSourceLineHashesByFileUuids(session, fileUuids)) {
+        String lineHashes = dto.getLineHashes();
+        if (lineHashes != null) {
+          result.put(dto.getFileUuid(), new LineHashSequence(LINE_HASHES_SPLITTER.splitToList(lineHashes)));
+        }
+      }
+    }
+    return result;
+  }
+
+  private Map<String, Integer> getTrackedComponentIndexesByUuid() {
+    if (trackedComponentIndexesByUuid == null) {
+      trackedComponents = new ArrayList<>();
+      addInPostOrder(treeRootHolder.getRoot(), trackedComponents);
+      trackedComponentIndexesByUuid = new HashMap<>(trackedComponents.size());
+      for (int i = 0; i < trackedComponents.size(); i++) {
+        trackedComponentIndexesByUuid.put(trackedComponents.get(i).getUuid(), i);
+      }
+    }
+    return trackedComponentIndexesByUuid;
+  }
+
+  private static void addInPostOrder(Component component, List<Component> components) {
+    for (Component child : component.getChildren()) {
+      addInPostOrder(child, components);
+    }
+    components.add(component);
+  }
+
+  private static String effectiveUuid(Component component, @Nullable OriginalFile originalFile) {
+    return originalFile == null ? component.getUuid() : originalFile.getUuid();
+  }
+
+  private static final class BaseData {
+    private final List<DefaultIssue> issues;
+    private final LineHashSequence lineHashes;
+
+    private BaseData(List<DefaultIssue> issues, LineHashSequence lineHashes) {
+      this.issues = issues;
+      this.lineHashes = lineHashes;
+    }
   }
 
   private class BaseLazyInput extends LazyInput<DefaultIssue> {
     private final Component component;
     @CheckForNull
     private final String effectiveUuid;
+    @CheckForNull
+    private final BaseData prefetchedData;
 
-    private BaseLazyInput(Component component, @Nullable OriginalFile originalFile) {
+    private BaseLazyInput(Component component, @Nullable OriginalFile originalFile, @Nullable BaseData prefetchedData) {
       this.component = component;
-      this.effectiveUuid = originalFile == null ? component.getUuid() : originalFile.getUuid();
+      this.effectiveUuid = effectiveUuid(component, originalFile);
+      this.prefetchedData = prefetchedData;
     }
 
     @Override
@@ -68,6 +186,9 @@ public class TrackerBaseInputFactory {
       if (component.getType() != Component.Type.FILE) {
         return EMPTY_LINE_HASH_SEQUENCE;
       }
+      if (prefetchedData != null) {
+        return prefetchedData.lineHashes;
+      }
 
       try (DbSession session = dbClient.openSession(false)) {
         List<String> hashes = dbClient.fileSourceDao().selectLineHashes(session, effectiveUuid);
@@ -80,6 +201,9 @@ public class TrackerBaseInputFactory {
 
     @Override
     protected List<DefaultIssue> loadIssues() {
+      if (prefetchedData != null) {
+        return prefetchedData.issues;
+      }
       return baseIssuesLoader.loadForComponentUuid(effectiveUuid);
     }
   }
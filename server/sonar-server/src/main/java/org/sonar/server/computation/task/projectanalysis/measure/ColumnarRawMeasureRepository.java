@@ -0,0 +1,294 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures and stores them in columns of primitive values,
+ * one column per metric, indexed by the report ref of the component. Unlike {@link MapBasedRawMeasureRepository}, no
+ * object is kept per measure: {@link Measure} objects are created when measures are read.
+ * <p>
+ * Data of measures and quality gate statuses are stored on the side. Measures associated to a developer are rare, they
+ * are stored as is.
+ * </p>
+ *
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ */
+public final class ColumnarRawMeasureRepository implements MeasureRepository {
+  private static final Measure.ValueType[] VALUE_TYPES = Measure.ValueType.values();
+  private static final Measure.Level[] LEVELS = Measure.Level.values();
+
+  private final Map<String, MetricColumn> columnsByMetricKey = new HashMap<>();
+  private final Map<Integer, Map<MeasureKey, Measure>> developerMeasuresByRef = new HashMap<>();
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    if (column == null) {
+      return Optional.absent();
+    }
+    return Optional.fromNullable(column.get(refOf(component)));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (contains(component, metric, measure)) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (!contains(component, metric, measure)) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+    checkArgument(
+      measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
+      format(
+        "Measure's ValueType (%s) is not consistent with the Metric's ValueType (%s)",
+        measure.getValueType(), metric.getType().getValueType()));
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+    int ref = refOf(component);
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    if (column != null && column.contains(ref)) {
+      builder.add(column.get(ref));
+    }
+    for (Map.Entry<MeasureKey, Measure> entry : developerMeasuresOf(ref).entrySet()) {
+      if (entry.getKey().getMetricKey().equals(metric.getKey())) {
+        builder.add(entry.getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int ref = refOf(component);
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (MetricColumn column : columnsByMetricKey.values()) {
+      if (column.contains(ref)) {
+        builder.put(column.metricKey, column.get(ref));
+      }
+    }
+    for (Map.Entry<MeasureKey, Measure> entry : developerMeasuresOf(ref).entrySet()) {
+      builder.put(entry.getKey().getMetricKey(), entry.getValue());
+    }
+    return builder.build();
+  }
+
+  private boolean contains(Component component, Metric metric, Measure measure) {
+    int ref = refOf(component);
+    if (measure.getDeveloper() != null) {
+      return developerMeasuresOf(ref).containsKey(new MeasureKey(metric.getKey(), measure.getDeveloper()));
+    }
+    MetricColumn column = columnsByMetricKey.get(metric.getKey());
+    return column != null && column.contains(ref);
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    int ref = refOf(component);
+    if (measure.getDeveloper() != null) {
+      Map<MeasureKey, Measure> developerMeasures = developerMeasuresByRef.computeIfAbsent(ref, r -> new HashMap<>());
+      MeasureKey key = new MeasureKey(metric.getKey(), measure.getDeveloper());
+      if (!developerMeasures.containsKey(key) || overridePolicy == OverridePolicy.OVERRIDE) {
+        developerMeasures.put(key, measure);
+      }
+      return;
+    }
+
+    MetricColumn column = columnsByMetricKey.computeIfAbsent(metric.getKey(), MetricColumn::new);
+    if (!column.contains(ref) || overridePolicy == OverridePolicy.OVERRIDE) {
+      column.set(ref, measure);
+    }
+  }
+
+  private Map<MeasureKey, Measure> developerMeasuresOf(int ref) {
+    Map<MeasureKey, Measure> res = developerMeasuresByRef.get(ref);
+    return res == null ? Collections.emptyMap() : res;
+  }
+
+  private static int refOf(Component component) {
+    return component.getReportAttributes().getRef();
+  }
+
+  /**
+   * Measures of a metric, indexed by component ref.
+   */
+  private static final class MetricColumn {
+    private static final int INITIAL_CAPACITY = 64;
+    // lowest bits: ordinal of the value type + 1, 0 if there is no measure
+    private static final byte VALUE_TYPE_MASK = 0x0F;
+    private static final byte HAS_VARIATION = 0x10;
+
+    private final String metricKey;
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    // exact values of long, int, boolean and level measures, raw bits of double measures
+    private long[] values = new long[INITIAL_CAPACITY];
+    // allocated when a measure has a variation or data
+    private double[] variations;
+    private String[] data;
+    private final Map<Integer, QualityGateStatus> qualityGateStatuses = new HashMap<>();
+
+    private MetricColumn(String metricKey) {
+      this.metricKey = metricKey;
+    }
+
+    private boolean contains(int ref) {
+      return ref < flags.length && flags[ref] != 0;
+    }
+
+    private void set(int ref, Measure measure) {
+      ensureCapacity(ref);
+      byte flag = (byte) (measure.getValueType().ordinal() + 1);
+      values[ref] = valueOf(measure);
+      if (measure.hasVariation()) {
+        flag |= HAS_VARIATION;
+        if (variations == null) {
+          variations = new double[flags.length];
+        }
+        variations[ref] = measure.getVariation();
+      }
+      if (data != null || measure.getData() != null) {
+        if (data == null) {
+          data = new String[flags.length];
+        }
+        data[ref] = measure.getData();
+      }
+      if (measure.hasQualityGateStatus()) {
+        qualityGateStatuses.put(ref, measure.getQualityGateStatus());
+      } else {
+        qualityGateStatuses.remove(ref);
+      }
+      flags[ref] = flag;
+    }
+
+    @CheckForNull
+    private Measure get(int ref) {
+      if (!contains(ref)) {
+        return null;
+      }
+      Measure.ValueType valueType = VALUE_TYPES[(flags[ref] & VALUE_TYPE_MASK) - 1];
+      Double variation = (flags[ref] & HAS_VARIATION) == 0 ? null : variations[ref];
+      String measureData = data == null ? null : data[ref];
+      Double value = null;
+      long longValue = 0L;
+      Measure.Level level = null;
+      if (valueType == Measure.ValueType.LEVEL) {
+        level = LEVELS[(int) values[ref]];
+      } else if (valueType == Measure.ValueType.DOUBLE) {
+        value = Double.longBitsToDouble(values[ref]);
+      } else if (valueType != Measure.ValueType.NO_VALUE && valueType != Measure.ValueType.STRING) {
+        value = (double) values[ref];
+        longValue = valueType == Measure.ValueType.LONG ? values[ref] : 0L;
+      }
+      return new Measure(valueType, null, value, longValue, measureData, level, qualityGateStatuses.get(ref), variation);
+    }
+
+    private static long valueOf(Measure measure) {
+      switch (measure.getValueType()) {
+        case BOOLEAN:
+          return measure.getBooleanValue() ? 1L : 0L;
+        case INT:
+          return measure.getIntValue();
+        case LONG:
+          return measure.getLongValue();
+        case DOUBLE:
+          return Double.doubleToRawLongBits(measure.getDoubleValue());
+        case LEVEL:
+          return measure.getLevelValue().ordinal();
+        default:
+          return 0L;
+      }
+    }
+
+    private void ensureCapacity(int ref) {
+      if (ref < flags.length) {
+        return;
+      }
+      int capacity = Math.max(ref + 1, flags.length + (flags.length >> 1));
+      flags = Arrays.copyOf(flags, capacity);
+      values = Arrays.copyOf(values, capacity);
+      if (variations != null) {
+        variations = Arrays.copyOf(variations, capacity);
+      }
+      if (data != null) {
+        data = Arrays.copyOf(data, capacity);
+      }
+    }
+  }
+}
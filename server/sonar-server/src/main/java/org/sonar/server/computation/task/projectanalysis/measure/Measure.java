@@ -71,6 +71,10 @@ public final class Measure {
   private final Developer developer;
   @CheckForNull
   private final Double value;
+  /**
+   * Exact value when type is {@link ValueType#LONG}, as {@link #value} loses precision above 2^53
+   */
+  private final long longValue;
   @CheckForNull
   private final String data;
   @CheckForNull
@@ -80,12 +84,13 @@ public final class Measure {
   @CheckForNull
   private final Double variation;
 
-  private Measure(ValueType valueType, @Nullable Developer developer,
-    @Nullable Double value, @Nullable String data, @Nullable Level dataLevel,
+  Measure(ValueType valueType, @Nullable Developer developer,
+    @Nullable Double value, long longValue, @Nullable String data, @Nullable Level dataLevel,
     @Nullable QualityGateStatus qualityGateStatus, @Nullable Double variation) {
     this.valueType = valueType;
     this.developer = developer;
     this.value = value;
+    this.longValue = longValue;
     this.data = data;
     this.dataLevel = dataLevel;
     this.qualityGateStatus = qualityGateStatus;
@@ -125,7 +130,7 @@ public final class Measure {
     }
 
     public Measure create(boolean value, @Nullable String data) {
-      return new Measure(ValueType.BOOLEAN, developer, value ? 1.0d : 0.0d, data, null, qualityGateStatus, variation);
+      return new Measure(ValueType.BOOLEAN, developer, value ? 1.0d : 0.0d, 0L, data, null, qualityGateStatus, variation);
     }
 
     public Measure create(boolean value) {
@@ -133,7 +138,7 @@ public final class Measure {
     }
 
     public Measure create(int value, @Nullable String data) {
-      return new Measure(ValueType.INT, developer, (double) value, data, null, qualityGateStatus, variation);
+      return new Measure(ValueType.INT, developer, (double) value, 0L, data, null, qualityGateStatus, variation);
     }
 
     public Measure create(int value) {
@@ -141,7 +146,7 @@ public final class Measure {
     }
 
     public Measure create(long value, @Nullable String data) {
-      return new Measure(ValueType.LONG, developer, (double) value, data, null, qualityGateStatus, variation);
+      return new Measure(ValueType.LONG, developer, (double) value, value, data, null, qualityGateStatus, variation);
     }
 
     public Measure create(long value) {
@@ -151,7 +156,7 @@ public final class Measure {
     public Measure create(double value, int decimalScale, @Nullable String data) {
       checkArgument(!Double.isNaN(value), "NaN is not allowed as a Measure value");
       double scaledValue = scale(value, decimalScale);
-      return new Measure(ValueType.DOUBLE, developer, scaledValue, data, null, qualityGateStatus, variation);
+      return new Measure(ValueType.DOUBLE, developer, scaledValue, 0L, data, null, qualityGateStatus, variation);
     }
 
     public Measure create(double value, int decimalScale) {
@@ -159,15 +164,15 @@ public final class Measure {
     }
 
     public Measure create(String value) {
-      return new Measure(ValueType.STRING, developer, null, requireNonNull(value), null, qualityGateStatus, variation);
+      return new Measure(ValueType.STRING, developer, null, 0L, requireNonNull(value), null, qualityGateStatus, variation);
     }
 
     public Measure create(Level level) {
-      return new Measure(ValueType.LEVEL, developer, null, null, requireNonNull(level), qualityGateStatus, variation);
+      return new Measure(ValueType.LEVEL, developer, null, 0L, null, requireNonNull(level), qualityGateStatus, variation);
     }
 
     public Measure createNoValue() {
-      return new Measure(ValueType.NO_VALUE, developer, null, null, null, qualityGateStatus, variation);
+      return new Measure(ValueType.NO_VALUE, developer, null, 0L, null, null, qualityGateStatus, variation);
     }
 
     private static double scale(double value, int decimalScale) {
@@ -214,7 +219,7 @@ public final class Measure {
 
     public Measure create() {
       return new Measure(source.valueType, source.developer,
-        source.value, source.data, source.dataLevel,
+        source.value, source.longValue, source.data, source.dataLevel,
         source.qualityGateStatus == null ? qualityGateStatus : source.qualityGateStatus,
         source.variation == null ? variation : source.variation);
     }
@@ -259,7 +264,7 @@ public final class Measure {
    */
   public long getLongValue() {
     checkValueType(ValueType.LONG);
-    return value.longValue();
+    return longValue;
   }
 
   /**
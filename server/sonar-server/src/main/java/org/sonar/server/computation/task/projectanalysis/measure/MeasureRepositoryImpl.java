@@ -37,10 +37,9 @@ import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository
 import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricValidator;
 
 import static java.util.Objects.requireNonNull;
-import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
 
 public class MeasureRepositoryImpl implements MeasureRepository {
-  private final MapBasedRawMeasureRepository<Integer> delegate = new MapBasedRawMeasureRepository<>(toReportRef());
+  private final ColumnarRawMeasureRepository delegate = new ColumnarRawMeasureRepository();
   private final DbClient dbClient;
   private final BatchReportReader reportReader;
   private final BatchMeasureToMeasure batchMeasureToMeasure;
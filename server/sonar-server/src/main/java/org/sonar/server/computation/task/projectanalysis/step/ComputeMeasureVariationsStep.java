@@ -24,7 +24,6 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.StreamSupport;
 import javax.annotation.CheckForNull;
@@ -49,8 +48,6 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
-import static java.util.function.Function.identity;
-import static org.sonar.core.util.stream.MoreCollectors.uniqueIndex;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.SUBVIEW;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
@@ -63,6 +60,9 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
  */
 public class ComputeMeasureVariationsStep implements ComputationStep {
 
+  // measures on files are currently purged, so past measures are not available on files
+  private static final CrawlerDepthLimit VISITED_DEPTH = CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW);
+
   private final DbClient dbClient;
   private final TreeRootHolder treeRootHolder;
   private final PeriodHolder periodHolder;
@@ -80,53 +80,64 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
 
   @Override
   public void execute() {
+    if (!periodHolder.hasPeriod()) {
+      return;
+    }
+    List<Metric> metrics = StreamSupport.stream(metricRepository.getAll().spliterator(), false).filter(isNumeric()).collect(MoreCollectors.toList());
+    PastMeasures pastMeasures = loadPastMeasures(periodHolder.getPeriod(), metrics);
+    new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(pastMeasures, metrics))
+      .visit(treeRootHolder.getRoot());
+  }
+
+  /**
+   * Loads the measures of the analysis of the period on all the visited components with a single stream,
+   * instead of one query per component.
+   */
+  private PastMeasures loadPastMeasures(Period period, List<Metric> metrics) {
+    Map<String, Integer> componentIndexesByUuid = new HashMap<>();
+    new DepthTraversalTypeAwareCrawler(new TypeAwareVisitorAdapter(VISITED_DEPTH, PRE_ORDER) {
+      @Override
+      public void visitAny(Component component) {
+        componentIndexesByUuid.put(component.getUuid(), componentIndexesByUuid.size());
+      }
+    }).visit(treeRootHolder.getRoot());
+
+    PastMeasures pastMeasures = new PastMeasures(componentIndexesByUuid, metrics);
+    if (metrics.isEmpty()) {
+      return pastMeasures;
+    }
     try (DbSession dbSession = dbClient.openSession(false)) {
-      List<Metric> metrics = StreamSupport.stream(metricRepository.getAll().spliterator(), false).filter(isNumeric()).collect(MoreCollectors.toList());
-      new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(dbSession, metrics))
-        .visit(treeRootHolder.getRoot());
+      dbClient.measureDao().selectPastMeasures(dbSession, period.getAnalysisUuid(), pastMeasures.metricIndexesById.keySet(),
+        context -> pastMeasures.add((PastMeasureDto) context.getResultObject()));
     }
+    return pastMeasures;
   }
 
   private class VariationMeasuresVisitor extends TypeAwareVisitorAdapter {
 
-    private final DbSession session;
-    private final Set<Integer> metricIds;
+    private final PastMeasures pastMeasures;
     private final List<Metric> metrics;
 
-    VariationMeasuresVisitor(DbSession session, List<Metric> metrics) {
-      // measures on files are currently purged, so past measures are not available on files
-      super(CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW), PRE_ORDER);
-      this.session = session;
-      this.metricIds = metrics.stream().map(Metric::getId).collect(MoreCollectors.toSet());
+    VariationMeasuresVisitor(PastMeasures pastMeasures, List<Metric> metrics) {
+      super(VISITED_DEPTH, PRE_ORDER);
+      this.pastMeasures = pastMeasures;
       this.metrics = metrics;
     }
 
     @Override
     public void visitAny(Component component) {
-      MeasuresWithVariationRepository measuresWithVariationRepository = computeMeasuresWithVariations(component);
-      processMeasuresWithVariation(component, measuresWithVariationRepository);
-    }
-
-    private MeasuresWithVariationRepository computeMeasuresWithVariations(Component component) {
       MeasuresWithVariationRepository measuresWithVariationRepository = new MeasuresWithVariationRepository();
-      if (periodHolder.hasPeriod()) {
-        Period period = periodHolder.getPeriod();
-        List<PastMeasureDto> pastMeasures = dbClient.measureDao()
-          .selectPastMeasures(session, component.getUuid(), period.getAnalysisUuid(), metricIds);
-        setVariationMeasures(component, pastMeasures, measuresWithVariationRepository);
-      }
-      return measuresWithVariationRepository;
+      setVariationMeasures(component, measuresWithVariationRepository);
+      processMeasuresWithVariation(component, measuresWithVariationRepository);
     }
 
-    private void setVariationMeasures(Component component, List<PastMeasureDto> pastMeasures, MeasuresWithVariationRepository measuresWithVariationRepository) {
-      Map<MeasureKey, PastMeasureDto> pastMeasuresByMeasureKey = pastMeasures
-        .stream()
-        .collect(uniqueIndex(m -> new MeasureKey(metricRepository.getById((long) m.getMetricId()).getKey(), null), identity()));
-      for (Metric metric : metrics) {
+    private void setVariationMeasures(Component component, MeasuresWithVariationRepository measuresWithVariationRepository) {
+      double[] pastValues = pastMeasures.getValues(component);
+      for (int i = 0; i < metrics.size(); i++) {
+        Metric metric = metrics.get(i);
         Optional<Measure> measure = measureRepository.getRawMeasure(component, metric);
         if (measure.isPresent() && !measure.get().hasVariation()) {
-          PastMeasureDto pastMeasure = pastMeasuresByMeasureKey.get(new MeasureKey(metric.getKey(), null));
-          double pastValue = (pastMeasure != null && pastMeasure.hasValue()) ? pastMeasure.getValue() : 0d;
+          double pastValue = pastValues == null ? 0d : pastValues[i];
           measuresWithVariationRepository.add(metric, measure.get(), computeVariation(measure.get(), pastValue));
         }
       }
@@ -158,6 +169,47 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
     }
   }
 
+  /**
+   * Values of past measures, indexed by component then by position of metric in the list of
+   * variation metrics. Missing measures and measures without value are 0.
+   */
+  private static final class PastMeasures {
+    private final Map<String, Integer> componentIndexesByUuid;
+    private final Map<Integer, Integer> metricIndexesById;
+    private final int metricCount;
+    private final double[][] valuesByComponentIndex;
+
+    PastMeasures(Map<String, Integer> componentIndexesByUuid, List<Metric> metrics) {
+      this.componentIndexesByUuid = componentIndexesByUuid;
+      this.metricIndexesById = new HashMap<>(metrics.size());
+      for (int i = 0; i < metrics.size(); i++) {
+        metricIndexesById.put(metrics.get(i).getId(), i);
+      }
+      this.metricCount = metrics.size();
+      this.valuesByComponentIndex = new double[componentIndexesByUuid.size()][];
+    }
+
+    void add(PastMeasureDto dto) {
+      Integer componentIndex = componentIndexesByUuid.get(dto.getComponentUuid());
+      Integer metricIndex = metricIndexesById.get(dto.getMetricId());
+      if (componentIndex == null || metricIndex == null || !dto.hasValue()) {
+        return;
+      }
+      double[] values = valuesByComponentIndex[componentIndex];
+      if (values == null) {
+        values = new double[metricCount];
+        valuesByComponentIndex[componentIndex] = values;
+      }
+      values[metricIndex] = dto.getValue();
+    }
+
+    @CheckForNull
+    double[] getValues(Component component) {
+      Integer componentIndex = componentIndexesByUuid.get(component.getUuid());
+      return componentIndex == null ? null : valuesByComponentIndex[componentIndex];
+    }
+  }
+
   private static final class MeasuresWithVariationRepository {
 
     private final Map<MeasureKey, MeasureWithVariation> measuresWithVariations = new HashMap<>();
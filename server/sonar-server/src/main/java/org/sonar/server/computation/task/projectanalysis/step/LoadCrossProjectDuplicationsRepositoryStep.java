@@ -23,6 +23,7 @@ import com.google.common.base.Function;
 import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.DbClient;
@@ -38,6 +39,7 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
@@ -63,16 +65,19 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final IntegrateCrossProjectDuplications integrateCrossProjectDuplications;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
+  private final CrossProjectDuplicationIndex crossProjectDuplicationIndex;
   private final DbClient dbClient;
 
   public LoadCrossProjectDuplicationsRepositoryStep(TreeRootHolder treeRootHolder, BatchReportReader reportReader,
     AnalysisMetadataHolder analysisMetadataHolder, CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder,
-    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient) {
+    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, CrossProjectDuplicationIndex crossProjectDuplicationIndex,
+    DbClient dbClient) {
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.integrateCrossProjectDuplications = integrateCrossProjectDuplications;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
+    this.crossProjectDuplicationIndex = crossProjectDuplicationIndex;
     this.dbClient = dbClient;
   }
 
@@ -103,7 +108,14 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
       }
 
       Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
+      Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
+      String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
+      Collection<String> candidateHashes = crossProjectDuplicationIndex.filterCandidates(treeRootHolder.getRoot().getUuid(), hashes);
+      if (candidateHashes.isEmpty()) {
+        return;
+      }
+
+      List<DuplicationUnitDto> dtos = selectDuplicates(file, analysisUuid, candidateHashes);
       if (dtos.isEmpty()) {
         return;
       }
@@ -115,10 +127,8 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
       integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
     }
 
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
+    private List<DuplicationUnitDto> selectDuplicates(Component file, @Nullable String analysisUuid, Collection<String> hashes) {
       try (DbSession dbSession = dbClient.openSession(false)) {
-        Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
-        String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
         return dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, file.getFileAttributes().getLanguageKey(), hashes);
       }
     }
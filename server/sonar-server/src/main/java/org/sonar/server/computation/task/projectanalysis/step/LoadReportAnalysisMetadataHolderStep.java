@@ -21,9 +21,11 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableSet;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.sonar.api.utils.MessageException;
 import org.sonar.ce.queue.CeTask;
@@ -37,7 +39,7 @@ import org.sonar.scanner.protocol.output.ScannerReport.Metadata.QProfile;
 import org.sonar.server.computation.task.projectanalysis.analysis.MutableAnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.analysis.Organization;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 import org.sonar.server.organization.BillingValidations;
 import org.sonar.server.organization.BillingValidations.BillingValidationsException;
 import org.sonar.server.organization.BillingValidationsProxy;
@@ -53,7 +55,7 @@ import static org.sonar.core.util.stream.MoreCollectors.toList;
 /**
  * Feed analysis metadata holder with metadata from the analysis report.
  */
-public class LoadReportAnalysisMetadataHolderStep implements ComputationStep {
+public class LoadReportAnalysisMetadataHolderStep implements ConcurrentComputationStep {
 
   private static final ToComputeQProfile TO_COMPUTE_QPROFILE = new ToComputeQProfile();
 
@@ -186,6 +188,16 @@ public class LoadReportAnalysisMetadataHolderStep implements ComputationStep {
     return reportMetadata.getProjectKey();
   }
 
+  @Override
+  public Set<String> reads() {
+    return ImmutableSet.of(StepData.REPORT);
+  }
+
+  @Override
+  public Set<String> writes() {
+    return ImmutableSet.of(StepData.ANALYSIS_METADATA);
+  }
+
   @Override
   public String getDescription() {
     return "Load analysis metadata";
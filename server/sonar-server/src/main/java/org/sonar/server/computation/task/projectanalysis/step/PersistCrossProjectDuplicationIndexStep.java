@@ -19,6 +19,9 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.List;
+import java.util.Set;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -31,30 +34,35 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.stream.Collectors.toList;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
 /**
  * Persist cross project duplications text blocks into DUPLICATIONS_INDEX table
  */
-public class PersistCrossProjectDuplicationIndexStep implements ComputationStep {
+public class PersistCrossProjectDuplicationIndexStep implements ConcurrentComputationStep {
 
   private final DbClient dbClient;
   private final TreeRootHolder treeRootHolder;
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final BatchReportReader reportReader;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
+  private final CrossProjectDuplicationIndex crossProjectDuplicationIndex;
 
   public PersistCrossProjectDuplicationIndexStep(CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder, DbClient dbClient,
     TreeRootHolder treeRootHolder, AnalysisMetadataHolder analysisMetadataHolder,
-    BatchReportReader reportReader) {
+    BatchReportReader reportReader, CrossProjectDuplicationIndex crossProjectDuplicationIndex) {
     this.dbClient = dbClient;
     this.treeRootHolder = treeRootHolder;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.reportReader = reportReader;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
+    this.crossProjectDuplicationIndex = crossProjectDuplicationIndex;
   }
 
   @Override
@@ -87,28 +95,39 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
     }
 
     private void visitComponent(Component component) {
+      List<ScannerReport.CpdTextBlock> blocks;
+      try (CloseableIterator<ScannerReport.CpdTextBlock> it = reportReader.readCpdTextBlocks(component.getReportAttributes().getRef())) {
+        blocks = newArrayList(it);
+      }
+      // hashes must be indexed before being visible in database
+      crossProjectDuplicationIndex.add(treeRootHolder.getRoot().getUuid(), analysisUuid, blocks.stream().map(ScannerReport.CpdTextBlock::getHash).collect(toList()));
+
       int indexInFile = 0;
-      CloseableIterator<ScannerReport.CpdTextBlock> blocks = reportReader.readCpdTextBlocks(component.getReportAttributes().getRef());
-      try {
-        while (blocks.hasNext()) {
-          ScannerReport.CpdTextBlock block = blocks.next();
-          dbClient.duplicationDao().insert(
-            session,
-            new DuplicationUnitDto()
-              .setHash(block.getHash())
-              .setStartLine(block.getStartLine())
-              .setEndLine(block.getEndLine())
-              .setIndexInFile(indexInFile)
-              .setAnalysisUuid(analysisUuid)
-              .setComponentUuid(component.getUuid()));
-          indexInFile++;
-        }
-      } finally {
-        blocks.close();
+      for (ScannerReport.CpdTextBlock block : blocks) {
+        dbClient.duplicationDao().insert(
+          session,
+          new DuplicationUnitDto()
+            .setHash(block.getHash())
+            .setStartLine(block.getStartLine())
+            .setEndLine(block.getEndLine())
+            .setIndexInFile(indexInFile)
+            .setAnalysisUuid(analysisUuid)
+            .setComponentUuid(component.getUuid()));
+        indexInFile++;
       }
     }
   }
 
+  @Override
+  public Set<String> reads() {
+    return ImmutableSet.of(StepData.REPORT, StepData.COMPONENT_TREE, StepData.ANALYSIS_METADATA);
+  }
+
+  @Override
+  public Set<String> writes() {
+    return ImmutableSet.of(StepData.TABLE_DUPLICATIONS_INDEX);
+  }
+
   @Override
   public String getDescription() {
     return "Persist cross project duplications index";
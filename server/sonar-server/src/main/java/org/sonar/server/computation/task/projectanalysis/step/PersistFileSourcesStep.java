@@ -19,12 +19,21 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -56,11 +65,29 @@ import org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConve
 import org.sonar.server.computation.task.projectanalysis.source.ScmLineReader;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SymbolsLineReader;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
-public class PersistFileSourcesStep implements ComputationStep {
+/**
+ * Persists the sources of files. Sources are built, encoded and compared to the sources in db by a pool of
+ * {@value #ENCODING_THREADS} threads, while the calling thread writes the changed sources in batches.
+ * <p>
+ * Sources being encoded, waiting to be written or held by the JDBC batch until it's committed retain at most
+ * {@value #MAX_PENDING_BYTES} bytes of heap (or the size of a single file when it is bigger). Bytes are reserved from the
+ * number of lines of the file before building its sources, then adjusted to the size of its data and line hashes.
+ * The batch is committed each time it reaches {@value #FLUSH_BYTES} bytes, or when no encoded source is waiting.
+ * </p>
+ */
+public class PersistFileSourcesStep implements ConcurrentComputationStep {
+
+  static final int ENCODING_THREADS = 4;
+  static final int MAX_PENDING_BYTES = 64 * 1024 * 1024;
+  static final int FLUSH_BYTES = 8 * 1024 * 1024;
+  /**
+   * Approximate number of bytes of a line once encoded, including its hash
+   */
+  static final int ESTIMATED_BYTES_PER_LINE = 128;
 
   private final DbClient dbClient;
   private final System2 system2;
@@ -69,9 +96,17 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final int maxPendingBytes;
+  private final int flushBytes;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
     ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    this(dbClient, system2, treeRootHolder, reportReader, sourceLinesRepository, scmInfoRepository, duplicationRepository, MAX_PENDING_BYTES, FLUSH_BYTES);
+  }
+
+  @VisibleForTesting
+  PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, int maxPendingBytes, int flushBytes) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -79,56 +114,113 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.maxPendingBytes = maxPendingBytes;
+    this.flushBytes = flushBytes;
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
+    String projectUuid = treeRootHolder.getRoot().getUuid();
+    List<Component> files = new ArrayList<>();
+    new DepthTraversalTypeAwareCrawler(new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, PRE_ORDER) {
+      @Override
+      public void visitFile(Component file) {
+        files.add(file);
+      }
+    }).visit(treeRootHolder.getRoot());
+
+    Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     try (DbSession dbSession = dbClient.openSession(false)) {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession))
-        .visit(treeRootHolder.getRoot());
+      dbSession.select("org.sonar.db.source.FileSourceMapper.selectHashesForProject", ImmutableMap.of("projectUuid", projectUuid, "dataType", Type.SOURCE),
+        context -> {
+          FileSourceDto dto = (FileSourceDto) context.getResultObject();
+          previousFileSourcesByUuid.put(dto.getFileUuid(), dto);
+        });
     }
-  }
 
-  private class FileSourceVisitor extends TypeAwareVisitorAdapter {
-
-    private final DbSession session;
+    ExecutorService executor = Executors.newFixedThreadPool(ENCODING_THREADS, new ThreadFactoryBuilder()
+      .setNameFormat("CE_file_sources-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      Pipeline pipeline = new Pipeline(projectUuid, previousFileSourcesByUuid);
+      for (Component file : files) {
+        executor.submit(() -> pipeline.encode(file));
+      }
+      pipeline.write(files.size());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while persisting sources", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-    private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
-    private String projectUuid;
+  /**
+   * Sources encoded by the pool of threads and written by the calling thread
+   */
+  private class Pipeline {
+    private final String projectUuid;
+    private final Map<String, FileSourceDto> previousFileSourcesByUuid;
+    private final BlockingQueue<EncodedSource> encodedSources = new LinkedBlockingQueue<>();
+    private final Semaphore pendingBytes = new Semaphore(maxPendingBytes);
 
-    private FileSourceVisitor(DbSession session) {
-      super(CrawlerDepthLimit.FILE, PRE_ORDER);
-      this.session = session;
+    private Pipeline(String projectUuid, Map<String, FileSourceDto> previousFileSourcesByUuid) {
+      this.projectUuid = projectUuid;
+      this.previousFileSourcesByUuid = previousFileSourcesByUuid;
     }
 
-    @Override
-    public void visitProject(Component project) {
-      this.projectUuid = project.getUuid();
-      session.select("org.sonar.db.source.FileSourceMapper.selectHashesForProject", ImmutableMap.of("projectUuid", projectUuid, "dataType", Type.SOURCE),
-        context -> {
-          FileSourceDto dto = (FileSourceDto) context.getResultObject();
-          previousFileSourcesByUuid.put(dto.getFileUuid(), dto);
-        });
+    /**
+     * Executed by the pool of threads. A failure entry is always queued when sources can't be encoded, even
+     * because of an {@link Error}, so that the calling thread never waits for them.
+     */
+    private void encode(Component file) {
+      int heldPermits = 0;
+      try {
+        int estimatedPermits = permitsOf((long) file.getFileAttributes().getLines() * ESTIMATED_BYTES_PER_LINE);
+        pendingBytes.acquire(estimatedPermits);
+        heldPermits = estimatedPermits;
+
+        FileSourceDto dto = toDto(file);
+        int permits = dto == null ? 0 : permitsOf(sizeOf(dto));
+        if (permits < heldPermits) {
+          pendingBytes.release(heldPermits - permits);
+        } else if (permits > heldPermits && !pendingBytes.tryAcquire(permits - heldPermits)) {
+          // do not hold the reservation while waiting, otherwise encoding threads could wait for each other
+          pendingBytes.release(heldPermits);
+          heldPermits = 0;
+          pendingBytes.acquire(permits);
+        }
+        heldPermits = permits;
+        encodedSources.add(new EncodedSource(dto, permits));
+      } catch (InterruptedException e) {
+        pendingBytes.release(heldPermits);
+        Thread.currentThread().interrupt();
+      } catch (Throwable t) {
+        pendingBytes.release(heldPermits);
+        encodedSources.add(new EncodedSource(new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), t)));
+      }
     }
 
-    @Override
-    public void visitFile(Component file) {
+    /**
+     * @return the DTO to be inserted or updated, {@code null} if sources are not changed
+     */
+    @CheckForNull
+    private FileSourceDto toDto(Component file) {
       CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
       LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
       try {
         ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
         ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
-      } catch (Exception e) {
-        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+        return toDto(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
       } finally {
         linesIterator.close();
         lineReaders.close();
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
+    @CheckForNull
+    private FileSourceDto toDto(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
       DbFileSources.Data fileData = fileSourceData.getFileSourceData();
 
       byte[] data = FileSourceDto.encodeSourceData(fileData);
@@ -138,7 +230,7 @@ public class PersistFileSourcesStep implements ComputationStep {
       FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
 
       if (previousDto == null) {
-        FileSourceDto dto = new FileSourceDto()
+        return new FileSourceDto()
           .setProjectUuid(projectUuid)
           .setFileUuid(componentUuid)
           .setDataType(Type.SOURCE)
@@ -149,35 +241,115 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
           .setRevision(computeRevision(latestChange));
-        dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
-      } else {
-        // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
-        boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
-        boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(latestChange);
-        boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
-        if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
-          previousDto
-            .setBinaryData(data)
-            .setDataHash(dataHash)
-            .setSrcHash(srcHash)
-            .setLineHashes(lineHashes)
-            .setRevision(revision)
-            .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
+      }
+      // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
+      boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
+      boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
+      String revision = computeRevision(latestChange);
+      boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
+      if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
+        // the DTO is modified by the single thread which encodes the file
+        return previousDto
+          .setBinaryData(data)
+          .setDataHash(dataHash)
+          .setSrcHash(srcHash)
+          .setLineHashes(lineHashes)
+          .setRevision(revision)
+          .setUpdatedAt(system2.now());
+      }
+      return null;
+    }
+
+    /**
+     * Executed by the calling thread
+     */
+    private void write(int fileCount) throws InterruptedException {
+      try (DbSession batchSession = dbClient.openSession(true)) {
+        int batchPermits = 0;
+        long batchBytes = 0L;
+        for (int i = 0; i < fileCount; i++) {
+          EncodedSource encodedSource = encodedSources.poll();
+          if (encodedSource == null) {
+            // commit while encoding threads are busy, so that they are never blocked by the permits of the batch
+            commit(batchSession, batchPermits);
+            batchPermits = 0;
+            batchBytes = 0L;
+            encodedSource = encodedSources.take();
+          }
+          if (encodedSource.failure != null) {
+            throw encodedSource.failure;
+          }
+          FileSourceDto dto = encodedSource.dto;
+          if (dto != null) {
+            if (!previousFileSourcesByUuid.containsKey(dto.getFileUuid())) {
+              dbClient.fileSourceDao().insert(batchSession, dto);
+            } else {
+              dbClient.fileSourceDao().update(batchSession, dto);
+            }
+            batchPermits += encodedSource.permits;
+            batchBytes += sizeOf(dto);
+          }
+          if (batchBytes >= flushBytes) {
+            commit(batchSession, batchPermits);
+            batchPermits = 0;
+            batchBytes = 0L;
+          }
         }
+        commit(batchSession, batchPermits);
       }
     }
 
+    private void commit(DbSession batchSession, int permits) {
+      batchSession.commit();
+      pendingBytes.release(permits);
+    }
+  }
+
+  private static final class EncodedSource {
     @CheckForNull
-    private String computeRevision(@Nullable Changeset latestChange) {
-      if (latestChange == null) {
-        return null;
-      }
-      return latestChange.getRevision();
+    private final FileSourceDto dto;
+    @CheckForNull
+    private final RuntimeException failure;
+    /**
+     * Bytes retained until the source is written and committed
+     */
+    private final int permits;
+
+    private EncodedSource(@Nullable FileSourceDto dto, int permits) {
+      this.dto = dto;
+      this.failure = null;
+      this.permits = permits;
+    }
+
+    private EncodedSource(RuntimeException failure) {
+      this.dto = null;
+      this.failure = failure;
+      this.permits = 0;
+    }
+  }
+
+  /**
+   * Number of bytes of heap retained by the data and the line hashes of a source
+   */
+  private static long sizeOf(FileSourceDto dto) {
+    String lineHashes = dto.getLineHashes();
+    return (long) dto.getBinaryData().length + (lineHashes == null ? 0L : (2L * lineHashes.length()));
+  }
+
+  /**
+   * Permits are capped so that a file bigger than the maximum number of pending bytes can be encoded once all the
+   * other pending sources are written
+   */
+  private int permitsOf(long bytes) {
+    return (int) Math.min(bytes, maxPendingBytes);
+  }
+
+  @CheckForNull
+  private static String computeRevision(@Nullable Changeset latestChange) {
+    if (latestChange == null) {
+      return null;
     }
+    return latestChange.getRevision();
   }
 
   private static class LineReaders {
@@ -231,6 +403,16 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<String> reads() {
+    return ImmutableSet.of(StepData.REPORT, StepData.COMPONENT_TREE, StepData.DUPLICATIONS);
+  }
+
+  @Override
+  public Set<String> writes() {
+    return ImmutableSet.of(StepData.SCM_INFO, StepData.TABLE_FILE_SOURCES);
+  }
+
   @Override
   public String getDescription() {
     return "Persist sources";
@@ -20,6 +20,7 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -37,7 +38,7 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
 import static com.google.common.collect.Sets.newHashSet;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
@@ -45,7 +46,7 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 /**
  * Persist project and module links
  */
-public class PersistProjectLinksStep implements ComputationStep {
+public class PersistProjectLinksStep implements ConcurrentComputationStep {
 
   private final DbClient dbClient;
   private final I18n i18n;
@@ -147,6 +148,16 @@ public class PersistProjectLinksStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<String> reads() {
+    return ImmutableSet.of(StepData.REPORT, StepData.COMPONENT_TREE);
+  }
+
+  @Override
+  public Set<String> writes() {
+    return ImmutableSet.of(StepData.TABLE_PROJECT_LINKS);
+  }
+
   @Override
   public String getDescription() {
     return "Persist project links";
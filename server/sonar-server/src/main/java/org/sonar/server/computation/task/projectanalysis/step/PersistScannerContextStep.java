@@ -19,16 +19,18 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
 
 import static java.util.Collections.singleton;
 
-public class PersistScannerContextStep implements ComputationStep {
+public class PersistScannerContextStep implements ConcurrentComputationStep {
   private final BatchReportReader reportReader;
   private final DbClient dbClient;
   private final CeTask ceTask;
@@ -39,6 +41,16 @@ public class PersistScannerContextStep implements ComputationStep {
     this.ceTask = ceTask;
   }
 
+  @Override
+  public Set<String> reads() {
+    return ImmutableSet.of(StepData.REPORT);
+  }
+
+  @Override
+  public Set<String> writes() {
+    return ImmutableSet.of(StepData.TABLE_CE_SCANNER_CONTEXT);
+  }
+
   @Override
   public String getDescription() {
     return "Persist scanner context";
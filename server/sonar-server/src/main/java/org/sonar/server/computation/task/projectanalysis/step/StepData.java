@@ -0,0 +1,45 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.step;
+
+import org.sonar.server.computation.task.step.ConcurrentComputationStep;
+
+/**
+ * Keys of the data read or written by the {@link ConcurrentComputationStep}s of the processing of an analysis report.
+ */
+final class StepData {
+  static final String REPORT = "report";
+  static final String COMPONENT_TREE = "componentTree";
+  static final String ANALYSIS_METADATA = "analysisMetadata";
+  static final String EVENTS = "events";
+  static final String DUPLICATIONS = "duplications";
+  static final String SCM_INFO = "scmInfo";
+
+  static final String TABLE_CE_SCANNER_CONTEXT = "table:ce_scanner_context";
+  static final String TABLE_PROJECT_LINKS = "table:project_links";
+  static final String TABLE_EVENTS = "table:events";
+  static final String TABLE_FILE_SOURCES = "table:file_sources";
+  static final String TABLE_FILE_SOURCES_OF_TESTS = "table:file_sources:tests";
+  static final String TABLE_DUPLICATIONS_INDEX = "table:duplications_index";
+
+  private StepData() {
+    // only constants
+  }
+}
@@ -19,14 +19,30 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.slf4j.MDC;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.logs.Profiler;
 
+/**
+ * Executes the {@link ComputationStep}s in sequence. When some steps are {@link ConcurrentComputationStep}s, the
+ * steps which don't conflict with each other (see {@link ComputationStepGraph}) are executed at the same time,
+ * by a pool of at most {@link #MAX_CONCURRENT_STEPS} threads.
+ */
 public final class ComputationStepExecutor {
   private static final Logger LOGGER = Loggers.get(ComputationStepExecutor.class);
+  static final int MAX_CONCURRENT_STEPS = 4;
 
   private final ComputationSteps steps;
   @CheckForNull
@@ -59,7 +75,13 @@ public final class ComputationStepExecutor {
   }
 
   private void executeSteps(Profiler stepProfiler) {
-    for (ComputationStep step : steps.instances()) {
+    List<ComputationStep> stepList = new ArrayList<>();
+    steps.instances().forEach(stepList::add);
+    if (stepList.stream().anyMatch(ConcurrentComputationStep.class::isInstance)) {
+      new ConcurrentExecution(new ComputationStepGraph(stepList)).execute();
+      return;
+    }
+    for (ComputationStep step : stepList) {
       stepProfiler.start();
       step.execute();
       stepProfiler.stopDebug(step.getDescription());
@@ -76,6 +98,124 @@ public final class ComputationStepExecutor {
     }
   }
 
+  /**
+   * Steps which are not {@link ConcurrentComputationStep} are executed in the calling thread, the other ones are
+   * executed by the pool. Once a step fails, no other step is started and the failure is thrown as soon as the
+   * running steps are done.
+   */
+  private static final class ConcurrentExecution {
+    private final ComputationStepGraph graph;
+    private final boolean[] started;
+    private final boolean[] done;
+    @CheckForNull
+    private final Map<String, String> mdcContext = MDC.getCopyOfContextMap();
+    private int runningCount = 0;
+    @CheckForNull
+    private Throwable failure = null;
+
+    private ConcurrentExecution(ComputationStepGraph graph) {
+      this.graph = graph;
+      this.started = new boolean[graph.size()];
+      this.done = new boolean[graph.size()];
+    }
+
+    void execute() {
+      ExecutorService executorService = Executors.newFixedThreadPool(MAX_CONCURRENT_STEPS, new ThreadFactoryBuilder()
+        .setNameFormat("CE_step-%d")
+        .setDaemon(true)
+        .build());
+      try {
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executorService);
+        startReadySteps(completionService);
+        while (runningCount > 0) {
+          waitForCompletion(completionService);
+          if (failure == null) {
+            startReadySteps(completionService);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while executing computation steps", e);
+      } finally {
+        executorService.shutdownNow();
+      }
+      if (failure != null) {
+        throw propagate(failure);
+      }
+    }
+
+    private void startReadySteps(CompletionService<Integer> completionService) {
+      boolean executedInCallingThread;
+      do {
+        executedInCallingThread = false;
+        for (int i = 0; i < graph.size(); i++) {
+          if (started[i] || !isReady(i)) {
+            continue;
+          }
+          ComputationStep step = graph.get(i);
+          started[i] = true;
+          if (step instanceof ConcurrentComputationStep) {
+            int index = i;
+            runningCount++;
+            completionService.submit(() -> {
+              executeWithMdcContext(step);
+              return index;
+            });
+          } else {
+            // all the previous steps are done and none of the next ones is started
+            executeStep(step);
+            done[i] = true;
+            executedInCallingThread = true;
+          }
+        }
+      } while (executedInCallingThread);
+    }
+
+    private boolean isReady(int index) {
+      return graph.dependenciesOf(index).stream().allMatch(dependency -> done[dependency]);
+    }
+
+    private void waitForCompletion(CompletionService<Integer> completionService) throws InterruptedException {
+      try {
+        int index = completionService.take().get();
+        done[index] = true;
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      } finally {
+        runningCount--;
+      }
+    }
+
+    private void executeWithMdcContext(ComputationStep step) {
+      if (mdcContext != null) {
+        MDC.setContextMap(mdcContext);
+      }
+      try {
+        executeStep(step);
+      } finally {
+        MDC.clear();
+      }
+    }
+
+    private static void executeStep(ComputationStep step) {
+      Profiler stepProfiler = Profiler.create(LOGGER).start();
+      step.execute();
+      stepProfiler.stopDebug(step.getDescription());
+    }
+
+    private static RuntimeException propagate(Throwable failure) {
+      if (failure instanceof RuntimeException) {
+        return (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      return new IllegalStateException("Execution of computation step failed", failure);
+    }
+  }
+
   @FunctionalInterface
   public interface Listener {
     void finished(boolean allStepsExecuted);
@@ -0,0 +1,83 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Dependencies between the {@link ComputationStep}s to be executed. A step depends on all the previous
+ * steps it conflicts with:
+ * <ul>
+ *   <li>any step conflicts with a step which is not a {@link ConcurrentComputationStep}</li>
+ *   <li>two {@link ConcurrentComputationStep}s conflict when one of them writes data accessed by the other one</li>
+ * </ul>
+ * Executing the steps according to these dependencies is equivalent to executing them in sequence.
+ */
+final class ComputationStepGraph {
+  private final List<ComputationStep> steps;
+  private final List<List<Integer>> dependencies;
+
+  ComputationStepGraph(List<ComputationStep> steps) {
+    this.steps = steps;
+    this.dependencies = new ArrayList<>(steps.size());
+    for (int i = 0; i < steps.size(); i++) {
+      List<Integer> stepDependencies = new ArrayList<>();
+      for (int j = 0; j < i; j++) {
+        if (conflict(steps.get(i), steps.get(j))) {
+          stepDependencies.add(j);
+        }
+      }
+      dependencies.add(stepDependencies);
+    }
+  }
+
+  int size() {
+    return steps.size();
+  }
+
+  ComputationStep get(int index) {
+    return steps.get(index);
+  }
+
+  /**
+   * Indexes of the steps which must be done before the execution of the specified step.
+   */
+  List<Integer> dependenciesOf(int index) {
+    return dependencies.get(index);
+  }
+
+  static boolean conflict(ComputationStep step1, ComputationStep step2) {
+    if (!(step1 instanceof ConcurrentComputationStep) || !(step2 instanceof ConcurrentComputationStep)) {
+      return true;
+    }
+    ConcurrentComputationStep concurrentStep1 = (ConcurrentComputationStep) step1;
+    ConcurrentComputationStep concurrentStep2 = (ConcurrentComputationStep) step2;
+    return intersect(concurrentStep1.writes(), concurrentStep2.writes())
+      || intersect(concurrentStep1.writes(), concurrentStep2.reads())
+      || intersect(concurrentStep1.reads(), concurrentStep2.writes());
+  }
+
+  private static boolean intersect(Set<String> keys1, Set<String> keys2) {
+    return !Collections.disjoint(keys1, keys2);
+  }
+}
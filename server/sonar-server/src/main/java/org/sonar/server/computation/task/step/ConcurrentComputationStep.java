@@ -0,0 +1,47 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import java.util.Set;
+
+/**
+ * A {@link ComputationStep} which declares the data it reads and writes, so that {@link ComputationStepExecutor}
+ * can execute it at the same time as the other {@link ConcurrentComputationStep}s which do not access the same
+ * data, unless one of them is read-only.
+ * <p>
+ * Data are identified by arbitrary keys shared by the steps. Implementations must support being executed in
+ * another thread than the previous and next steps.
+ * </p>
+ * <p>
+ * Steps which do not implement this interface are executed alone, once all the previous steps are done.
+ * </p>
+ */
+public interface ConcurrentComputationStep extends ComputationStep {
+
+  /**
+   * Keys of the data which are only read by the step.
+   */
+  Set<String> reads();
+
+  /**
+   * Keys of the data which are created or modified by the step.
+   */
+  Set<String> writes();
+}
@@ -22,9 +22,12 @@ package org.sonar.server.es;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.DocumentRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequestBuilder;
 import org.elasticsearch.action.bulk.BackoffPolicy;
@@ -68,13 +71,19 @@ public class BulkIndexer implements Startable {
   private final EsClient client;
   private final String indexName;
   private final BulkProcessor bulkProcessor;
-  private final AtomicLong counter = new AtomicLong(0L);
+  private final AtomicLong counter;
+  private final Set<String> failedIds = ConcurrentHashMap.newKeySet();
   private final SizeHandler sizeHandler;
 
   public BulkIndexer(EsClient client, String indexName, Size size) {
+    this(client, indexName, size.createHandler(Runtime2.INSTANCE), new AtomicLong(0L));
+  }
+
+  private BulkIndexer(EsClient client, String indexName, SizeHandler sizeHandler, AtomicLong counter) {
     this.client = client;
     this.indexName = indexName;
-    this.sizeHandler = size.createHandler(Runtime2.INSTANCE);
+    this.sizeHandler = sizeHandler;
+    this.counter = counter;
     this.bulkProcessor = BulkProcessor.builder(client.nativeClient(), new BulkProcessorListener())
       .setBackoffPolicy(BackoffPolicy.exponentialBackoff())
       .setBulkSize(FLUSH_BYTE_SIZE)
@@ -101,6 +110,30 @@ public class BulkIndexer implements Startable {
     sizeHandler.afterStop(this);
   }
 
+  /**
+   * Creates an indexer on the same index, to be used by another thread while this indexer is started.
+   * Its requests are executed synchronously, so they are acknowledged by Elasticsearch when
+   * {@link #flush()} returns. They are counted in the progress of this indexer. It does not need
+   * to be started, but must be stopped before this indexer.
+   */
+  public BulkIndexer newConcurrentIndexer() {
+    return new BulkIndexer(client, indexName, new SizeHandler(), counter);
+  }
+
+  /**
+   * Sends the pending requests
+   */
+  public void flush() {
+    bulkProcessor.flush();
+  }
+
+  /**
+   * Ids of the documents that failed to be indexed or deleted. Failures are also logged.
+   */
+  public Set<String> getFailedIds() {
+    return failedIds;
+  }
+
   public void add(ActionRequest<?> request) {
     bulkProcessor.add(request);
   }
@@ -173,6 +206,7 @@ public class BulkIndexer implements Startable {
 
       for (BulkItemResponse item : response.getItems()) {
         if (item.isFailed()) {
+          failedIds.add(item.getId());
           LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
         }
       }
@@ -180,6 +214,11 @@ public class BulkIndexer implements Startable {
 
     @Override
     public void afterBulk(long executionId, BulkRequest req, Throwable e) {
+      for (Object request : req.requests()) {
+        if (request instanceof DocumentRequest) {
+          failedIds.add(((DocumentRequest<?>) request).id());
+        }
+      }
       LOGGER.error("Fail to execute bulk index request: " + req, e);
     }
   }
@@ -0,0 +1,235 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Settings;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.es.EsQueueDto;
+import org.sonar.server.issue.index.IssueIndexer;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toSet;
+import static org.sonar.server.issue.index.IssueIndexDefinition.INDEX_TYPE_ISSUE;
+
+/**
+ * Indexes the documents enqueued in table ES_QUEUE, so that web requests do not wait for Elasticsearch.
+ * <p>
+ * Documents are enqueued in the same transaction as the changes of the related rows, so that
+ * they are not lost if Elasticsearch is unavailable or if the server is stopped. The queue is consumed
+ * by a background thread, when woken up by {@link #wakeUp()} and periodically (see {@link #DELAY_PROPERTY}).
+ * The items related to the same document are indexed only once.
+ * </p>
+ * <p>
+ * Items that fail to be indexed are kept in the queue and skipped until the end of the run, so that they do not
+ * prevent the newer items from being indexed. They are retried with an exponential backoff, then removed from the
+ * queue after {@value #MAX_ATTEMPTS} failed attempts. Failures of Elasticsearch which abort a run are not counted.
+ * </p>
+ */
+@ServerSide
+public class EsQueueIndexer implements Startable {
+
+  public static final String DELAY_PROPERTY = "sonar.search.queue.delayInMs";
+  static final int MAX_ATTEMPTS = 10;
+  static final int BATCH_SIZE = 1_000;
+  private static final long DEFAULT_DELAY_IN_MS = 5_000L;
+  private static final long MAX_BACKOFF_IN_MS = 60 * 60 * 1_000L;
+  private static final String THREAD_NAME_PREFIX = "es-queue-indexer-";
+  private static final Logger LOG = Loggers.get(EsQueueIndexer.class);
+
+  private final DbClient dbClient;
+  private final IssueIndexer issueIndexer;
+  private final System2 system2;
+  private final long delayInMs;
+  private final AtomicBoolean wakeUpPending = new AtomicBoolean(false);
+
+  private ScheduledExecutorService executorService;
+  /**
+   * Failed attempts of the items still in queue, by uuid of item
+   */
+  private Map<String, Failure> failuresByUuid = new HashMap<>();
+
+  public EsQueueIndexer(DbClient dbClient, IssueIndexer issueIndexer, System2 system2, Settings settings) {
+    this.dbClient = dbClient;
+    this.issueIndexer = issueIndexer;
+    this.system2 = system2;
+    this.delayInMs = settings.hasKey(DELAY_PROPERTY) ? settings.getLong(DELAY_PROPERTY) : DEFAULT_DELAY_IN_MS;
+  }
+
+  @Override
+  public void start() {
+    executorService = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder()
+        .setNameFormat(THREAD_NAME_PREFIX + "%d")
+        .setDaemon(true)
+        .build());
+    executorService.scheduleWithFixedDelay(this::consumeSafely, 0, delayInMs, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void stop() {
+    if (executorService == null) {
+      return;
+    }
+    try {
+      executorService.shutdown();
+      executorService.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      LOG.error("Error during stop of Elasticsearch queue indexer", e);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Requests the queue to be consumed as soon as possible. Calls received while a request
+   * is already pending are coalesced. Calls received once stopped are ignored, as the queue
+   * is consumed again at next startup.
+   */
+  public void wakeUp() {
+    if (executorService == null || executorService.isShutdown() || !wakeUpPending.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executorService.execute(this::consumeSafely);
+    } catch (RejectedExecutionException e) {
+      // stopped meanwhile
+      LOG.debug("Elasticsearch queue indexer is stopped", e);
+    }
+  }
+
+  private void consumeSafely() {
+    wakeUpPending.set(false);
+    try {
+      consume();
+    } catch (Exception e) {
+      LOG.error("Fail to index documents of Elasticsearch queue. They will be retried later.", e);
+    }
+  }
+
+  /**
+   * Consumes the queue until all the items have been indexed or have failed to be indexed.
+   */
+  @VisibleForTesting
+  synchronized void consume() {
+    long now = system2.now();
+    Map<String, Failure> remainingFailures = new HashMap<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      // the items kept in queue are the oldest ones, so they are skipped by the next selects
+      int kept = 0;
+      List<EsQueueDto> items = dbClient.esQueueDao().selectOldest(dbSession, kept, BATCH_SIZE);
+      while (!items.isEmpty()) {
+        List<EsQueueDto> toIndex = new ArrayList<>(items.size());
+        for (EsQueueDto item : items) {
+          Failure failure = failuresByUuid.get(item.getUuid());
+          if (failure != null && failure.nextAttemptAt > now) {
+            remainingFailures.put(item.getUuid(), failure);
+            kept++;
+          } else {
+            toIndex.add(item);
+          }
+        }
+
+        Set<EsQueueDto> failedItems = index(toIndex);
+        List<EsQueueDto> done = new ArrayList<>(toIndex.size());
+        for (EsQueueDto item : toIndex) {
+          if (!failedItems.contains(item)) {
+            done.add(item);
+          } else if (keepFailedItem(item, now, remainingFailures)) {
+            kept++;
+          } else {
+            done.add(item);
+          }
+        }
+        dbClient.esQueueDao().delete(dbSession, done);
+        dbSession.commit();
+        items = dbClient.esQueueDao().selectOldest(dbSession, kept, BATCH_SIZE);
+      }
+    }
+    failuresByUuid = remainingFailures;
+  }
+
+  /**
+   * @return false if the item must be removed from queue because it failed too many times
+   */
+  private boolean keepFailedItem(EsQueueDto item, long now, Map<String, Failure> remainingFailures) {
+    Failure previousFailure = failuresByUuid.get(item.getUuid());
+    int attempts = previousFailure == null ? 1 : (previousFailure.attempts + 1);
+    if (attempts >= MAX_ATTEMPTS) {
+      LOG.error("Document {} of type {} failed to be indexed {} times. It is removed from Elasticsearch queue, index must be rebuilt.",
+        item.getDocId(), item.getDocType(), attempts);
+      return false;
+    }
+    long backoff = Math.min(MAX_BACKOFF_IN_MS, delayInMs << (attempts - 1));
+    remainingFailures.put(item.getUuid(), new Failure(attempts, now + backoff));
+    return true;
+  }
+
+  /**
+   * @return the items that failed to be indexed
+   */
+  private Set<EsQueueDto> index(List<EsQueueDto> items) {
+    Set<EsQueueDto> failed = new HashSet<>();
+    Map<String, List<EsQueueDto>> itemsByType = items.stream().collect(groupingBy(EsQueueDto::getDocType));
+    itemsByType.forEach((docType, itemsOfType) -> {
+      if (INDEX_TYPE_ISSUE.getType().equals(docType)) {
+        Set<String> failedIds = issueIndexer.tryIndex(docIds(itemsOfType));
+        itemsOfType.stream()
+          .filter(item -> failedIds.contains(item.getDocId()))
+          .forEach(failed::add);
+      } else {
+        LOG.error("Unsupported type of document in Elasticsearch queue: {}", docType);
+      }
+    });
+    return failed;
+  }
+
+  private static Collection<String> docIds(List<EsQueueDto> items) {
+    return items.stream().map(EsQueueDto::getDocId).collect(toSet());
+  }
+
+  private static final class Failure {
+    private final int attempts;
+    private final long nextAttemptAt;
+
+    private Failure(int attempts, long nextAttemptAt) {
+      this.attempts = attempts;
+      this.nextAttemptAt = nextAttemptAt;
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.ProgressLogger;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.server.es.BulkIndexer.Size;
+import org.sonar.server.property.InternalProperties;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Indexes on startup a type whose documents are read from tables that can be filtered by project uuid.
+ * <p>
+ * Root components are split into ranges of {@value #PROJECTS_PER_RANGE} projects. The ranges are read and
+ * indexed by a pool of threads (see {@link #THREADS_PROPERTY}), each of them with its own SQL requests and
+ * bulk requests. The ranges that are indexed are persisted in internal properties, so that an indexing
+ * interrupted by the stop of the server is resumed at next startup instead of being restarted from scratch.
+ * </p>
+ */
+public class PartitionedStartupIndexing {
+
+  public static final String THREADS_PROPERTY = "sonar.search.startupIndexing.threads";
+  private static final int DEFAULT_THREADS = 4;
+  private static final int PROJECTS_PER_RANGE = 100;
+  private static final String PROGRESS_PROPERTY_PREFIX = "es.startupIndexing.";
+  private static final Logger LOG = Loggers.get(PartitionedStartupIndexing.class);
+
+  @FunctionalInterface
+  public interface RangeIndexer {
+    /**
+     * Adds to {@code bulk} the documents related to the projects of {@code range}.
+     */
+    void index(ProjectUuidRange range, BulkIndexer bulk);
+  }
+
+  private final EsClient esClient;
+  private final DbClient dbClient;
+  private final InternalProperties internalProperties;
+  private final Settings settings;
+
+  public PartitionedStartupIndexing(EsClient esClient, DbClient dbClient, InternalProperties internalProperties, Settings settings) {
+    this.esClient = esClient;
+    this.dbClient = dbClient;
+    this.internalProperties = internalProperties;
+    this.settings = settings;
+  }
+
+  public void index(IndexType indexType, RangeIndexer rangeIndexer) {
+    String progressKey = PROGRESS_PROPERTY_PREFIX + indexType.getIndex() + "." + indexType.getType();
+    Plan plan = loadOrCreatePlan(indexType, progressKey);
+    Queue<Integer> pendingRanges = new ConcurrentLinkedQueue<>(plan.pendingRanges());
+    int threads = Math.max(1, Math.min(getThreads(), pendingRanges.size()));
+    LOG.info("Index {} in {} ranges of projects with {} threads ({} ranges already indexed)", indexType, pendingRanges.size(), threads,
+      plan.size() - pendingRanges.size());
+
+    AtomicLong indexedRanges = new AtomicLong(0L);
+    ProgressLogger progress = new ProgressLogger(format("Progress[StartupIndexing%s]", indexType), indexedRanges, LOG)
+      .setPluralLabel("ranges of projects");
+    BulkIndexer bulk = new BulkIndexer(esClient, indexType.getIndex(), Size.LARGE);
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("StartupIndexing" + indexType + "-%d")
+      .setDaemon(true)
+      .build());
+    progress.start();
+    bulk.start();
+    try {
+      List<Future<?>> futures = new ArrayList<>(threads);
+      for (int i = 0; i < threads; i++) {
+        BulkIndexer threadBulk = bulk.newConcurrentIndexer();
+        futures.add(executor.submit(() -> indexRanges(pendingRanges, threadBulk, rangeIndexer, plan, progressKey, indexedRanges)));
+      }
+      awaitCompletion(indexType, futures);
+    } finally {
+      executor.shutdown();
+      bulk.stop();
+      progress.stop();
+    }
+    internalProperties.write(progressKey, null);
+  }
+
+  private void indexRanges(Queue<Integer> pendingRanges, BulkIndexer bulk, RangeIndexer rangeIndexer, Plan plan, String progressKey, AtomicLong indexedRanges) {
+    try {
+      Integer range = pendingRanges.poll();
+      while (range != null) {
+        rangeIndexer.index(plan.range(range), bulk);
+        // requests are executed synchronously, the range is entirely indexed after the flush
+        bulk.flush();
+        synchronized (plan) {
+          plan.setIndexed(range);
+          internalProperties.write(progressKey, plan.serialize());
+        }
+        indexedRanges.incrementAndGet();
+        range = pendingRanges.poll();
+      }
+    } catch (RuntimeException e) {
+      // other threads stop once their current range is indexed
+      pendingRanges.clear();
+      throw e;
+    } finally {
+      bulk.stop();
+    }
+  }
+
+  private static void awaitCompletion(IndexType indexType, List<Future<?>> futures) {
+    IllegalStateException failure = null;
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted during indexing of " + indexType, e);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = new IllegalStateException("Fail to index " + indexType, e.getCause());
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private Plan loadOrCreatePlan(IndexType indexType, String progressKey) {
+    String indexUuid = esClient.nativeClient().admin().indices().prepareGetSettings(indexType.getIndex()).get()
+      .getSetting(indexType.getIndex(), IndexMetaData.SETTING_INDEX_UUID);
+    Optional<Plan> existingPlan = internalProperties.read(progressKey)
+      .flatMap(Plan::parse)
+      .filter(plan -> plan.indexUuid.equals(indexUuid));
+    if (existingPlan.isPresent()) {
+      LOG.info("Resume indexing of {}", indexType);
+      return existingPlan.get();
+    }
+    List<String> rootUuids;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      rootUuids = dbClient.componentDao().selectRootUuids(dbSession);
+    }
+    List<String> boundaries = new ArrayList<>();
+    for (int i = PROJECTS_PER_RANGE; i < rootUuids.size(); i += PROJECTS_PER_RANGE) {
+      boundaries.add(rootUuids.get(i));
+    }
+    return new Plan(indexUuid, boundaries, new BitSet());
+  }
+
+  private int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    return threads > 0 ? threads : DEFAULT_THREADS;
+  }
+
+  /**
+   * Ranges of projects to be indexed. Boundaries are sorted by the DB, so that the ranges
+   * cover all the projects whatever the collation.
+   */
+  private static class Plan {
+    private static final String SEPARATOR = ",";
+
+    private final String indexUuid;
+    private final List<String> boundaries;
+    private final BitSet indexed;
+
+    private Plan(String indexUuid, List<String> boundaries, BitSet indexed) {
+      this.indexUuid = indexUuid;
+      this.boundaries = boundaries;
+      this.indexed = indexed;
+    }
+
+    int size() {
+      return boundaries.size() + 1;
+    }
+
+    ProjectUuidRange range(int index) {
+      return new ProjectUuidRange(index == 0 ? null : boundaries.get(index - 1), index == boundaries.size() ? null : boundaries.get(index));
+    }
+
+    List<Integer> pendingRanges() {
+      List<Integer> pending = new ArrayList<>();
+      for (int i = indexed.nextClearBit(0); i < size(); i = indexed.nextClearBit(i + 1)) {
+        pending.add(i);
+      }
+      return pending;
+    }
+
+    void setIndexed(int index) {
+      indexed.set(index);
+    }
+
+    String serialize() {
+      return indexUuid + "\n" + String.join(SEPARATOR, boundaries) + "\n" + indexed.stream().mapToObj(String::valueOf).collect(joining(SEPARATOR));
+    }
+
+    static Optional<Plan> parse(String s) {
+      String[] lines = s.split("\n", -1);
+      if (lines.length != 3) {
+        return Optional.empty();
+      }
+      List<String> boundaries = lines[1].isEmpty() ? Collections.emptyList() : Arrays.asList(lines[1].split(SEPARATOR));
+      BitSet indexed = new BitSet();
+      if (!lines[2].isEmpty()) {
+        Arrays.stream(lines[2].split(SEPARATOR)).mapToInt(Integer::parseInt).forEach(indexed::set);
+      }
+      return Optional.of(new Plan(lines[0], boundaries, indexed));
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Range of project uuids, used to split the indexing of a table into partitions.
+ * Bounds are {@code null} when the range is not limited on the related side. They
+ * are compared by the DB, according to its collation.
+ */
+@Immutable
+public class ProjectUuidRange {
+
+  public static final ProjectUuidRange ALL = new ProjectUuidRange(null, null);
+
+  private final String fromInclusive;
+  private final String toExclusive;
+
+  public ProjectUuidRange(@Nullable String fromInclusive, @Nullable String toExclusive) {
+    this.fromInclusive = fromInclusive;
+    this.toExclusive = toExclusive;
+  }
+
+  @CheckForNull
+  public String getFromInclusive() {
+    return fromInclusive;
+  }
+
+  @CheckForNull
+  public String getToExclusive() {
+    return toExclusive;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + (fromInclusive == null ? "" : fromInclusive) + ", " + (toExclusive == null ? "" : toExclusive) + ")";
+  }
+}
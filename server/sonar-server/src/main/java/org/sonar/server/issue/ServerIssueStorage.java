@@ -20,6 +20,7 @@
 package org.sonar.server.issue;
 
 import java.util.Collection;
+import javax.annotation.Nullable;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.server.ServerSide;
 import org.sonar.api.utils.System2;
@@ -27,9 +28,14 @@ import org.sonar.core.issue.DefaultIssue;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.es.EsQueueDto;
 import org.sonar.db.issue.IssueDto;
+import org.sonar.server.es.EsQueueIndexer;
 import org.sonar.server.issue.index.IssueIndexer;
 
+import static java.util.Collections.singletonList;
+import static org.sonar.server.issue.index.IssueIndexDefinition.INDEX_TYPE_ISSUE;
+
 /**
  * @since 3.6
  */
@@ -37,10 +43,24 @@ import org.sonar.server.issue.index.IssueIndexer;
 public class ServerIssueStorage extends IssueStorage {
 
   private final IssueIndexer indexer;
+  @Nullable
+  private final EsQueueIndexer esQueueIndexer;
 
+  /**
+   * Issues are indexed synchronously, once saved.
+   */
   public ServerIssueStorage(System2 system2, RuleFinder ruleFinder, DbClient dbClient, IssueIndexer indexer) {
+    this(system2, ruleFinder, dbClient, indexer, null);
+  }
+
+  /**
+   * Issues are enqueued in the same transaction as their changes, then indexed asynchronously
+   * by {@link EsQueueIndexer}.
+   */
+  public ServerIssueStorage(System2 system2, RuleFinder ruleFinder, DbClient dbClient, IssueIndexer indexer, @Nullable EsQueueIndexer esQueueIndexer) {
     super(system2, dbClient, ruleFinder);
     this.indexer = indexer;
+    this.esQueueIndexer = esQueueIndexer;
   }
 
   @Override
@@ -51,6 +71,7 @@ public class ServerIssueStorage extends IssueStorage {
     IssueDto dto = IssueDto.toDtoForServerInsert(issue, component, project, ruleId, now);
 
     getDbClient().issueDao().insert(session, dto);
+    enqueue(session, dto.getKey());
     return dto.getKey();
   }
 
@@ -58,12 +79,23 @@ public class ServerIssueStorage extends IssueStorage {
   protected String doUpdate(DbSession session, long now, DefaultIssue issue) {
     IssueDto dto = IssueDto.toDtoForUpdate(issue, now);
     getDbClient().issueDao().update(session, dto);
+    enqueue(session, dto.getKey());
     return dto.getKey();
   }
 
+  private void enqueue(DbSession session, String issueKey) {
+    if (esQueueIndexer != null) {
+      getDbClient().esQueueDao().insert(session, singletonList(EsQueueDto.create(INDEX_TYPE_ISSUE.getType(), issueKey)));
+    }
+  }
+
   @Override
   protected void doAfterSave(Collection<String> issueKeys) {
-    indexer.index(issueKeys);
+    if (esQueueIndexer == null) {
+      indexer.index(issueKeys);
+    } else if (!issueKeys.isEmpty()) {
+      esQueueIndexer.wakeUp();
+    }
   }
 
   protected ComponentDto component(DbSession session, DefaultIssue issue) {
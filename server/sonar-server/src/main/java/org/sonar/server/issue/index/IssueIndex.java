@@ -649,9 +649,21 @@ public class IssueIndex {
    * Only fields needed for the batch are returned.
    */
   public Iterator<IssueDoc> selectIssuesForBatch(ComponentDto component) {
+    return selectIssuesForBatch(component, null);
+  }
+
+  /**
+   * Same as {@link #selectIssuesForBatch(ComponentDto)}, but if {@code changedSince} is set, only the issues
+   * updated since this date are returned, including the closed ones.
+   */
+  public Iterator<IssueDoc> selectIssuesForBatch(ComponentDto component, @Nullable Date changedSince) {
     BoolQueryBuilder filter = boolQuery()
-      .must(createAuthorizationFilter(true))
-      .mustNot(termsQuery(IssueIndexDefinition.FIELD_ISSUE_STATUS, Issue.STATUS_CLOSED));
+      .must(createAuthorizationFilter(true));
+    if (changedSince == null) {
+      filter.mustNot(termsQuery(IssueIndexDefinition.FIELD_ISSUE_STATUS, Issue.STATUS_CLOSED));
+    } else {
+      filter.must(QueryBuilders.rangeQuery(IssueIndexDefinition.FIELD_ISSUE_TECHNICAL_UPDATED_AT).gte(changedSince));
+    }
 
     switch (component.scope()) {
       case Scopes.PROJECT:
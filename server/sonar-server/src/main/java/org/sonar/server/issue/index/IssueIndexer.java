@@ -34,7 +34,9 @@ import org.sonar.server.es.BulkIndexer.Size;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsUtils;
 import org.sonar.server.es.IndexType;
+import org.sonar.server.es.PartitionedStartupIndexing;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.es.ProjectUuidRange;
 import org.sonar.server.es.StartupIndexer;
 import org.sonar.server.permission.index.AuthorizationScope;
 import org.sonar.server.permission.index.NeedAuthorizationIndexer;
@@ -52,10 +54,17 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, S
 
   private final EsClient esClient;
   private final IssueIteratorFactory issueIteratorFactory;
+  @Nullable
+  private final PartitionedStartupIndexing partitionedStartupIndexing;
 
   public IssueIndexer(EsClient esClient, IssueIteratorFactory issueIteratorFactory) {
+    this(esClient, issueIteratorFactory, null);
+  }
+
+  public IssueIndexer(EsClient esClient, IssueIteratorFactory issueIteratorFactory, @Nullable PartitionedStartupIndexing partitionedStartupIndexing) {
     this.esClient = esClient;
     this.issueIteratorFactory = issueIteratorFactory;
+    this.partitionedStartupIndexing = partitionedStartupIndexing;
   }
 
   @Override
@@ -70,7 +79,19 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, S
 
   @Override
   public void indexOnStartup(Set<IndexType> emptyIndexTypes) {
-    doIndex(createBulkIndexer(Size.LARGE), (String) null);
+    if (partitionedStartupIndexing == null) {
+      doIndex(createBulkIndexer(Size.LARGE), (String) null);
+    } else {
+      partitionedStartupIndexing.index(INDEX_TYPE_ISSUE, this::indexProjectRange);
+    }
+  }
+
+  private void indexProjectRange(ProjectUuidRange projectRange, BulkIndexer bulk) {
+    try (IssueIterator issues = issueIteratorFactory.createForProjectRange(projectRange)) {
+      while (issues.hasNext()) {
+        bulk.add(newIndexRequest(issues.next()));
+      }
+    }
   }
 
   @Override
@@ -102,6 +123,17 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, S
     doIndex(createBulkIndexer(Size.REGULAR), issueKeys);
   }
 
+  /**
+   * Indexes the issues with the given keys. Keys of issues which do not exist anymore are ignored.
+   *
+   * @return the keys of the issues which failed to be indexed
+   */
+  public Set<String> tryIndex(Collection<String> issueKeys) {
+    BulkIndexer bulk = createBulkIndexer(Size.REGULAR);
+    doIndex(bulk, issueKeys);
+    return bulk.getFailedIds();
+  }
+
   private void doIndex(BulkIndexer bulk, Collection<String> issueKeys) {
     try (IssueIterator issues = issueIteratorFactory.createForIssueKeys(issueKeys)) {
       doIndex(bulk, issues);
@@ -22,6 +22,7 @@ package org.sonar.server.issue.index;
 import java.util.Collection;
 import javax.annotation.Nullable;
 import org.sonar.db.DbClient;
+import org.sonar.server.es.ProjectUuidRange;
 
 public class IssueIteratorFactory {
 
@@ -39,6 +40,10 @@ public class IssueIteratorFactory {
     return new IssueIteratorForSingleChunk(dbClient, projectUuid, null);
   }
 
+  public IssueIterator createForProjectRange(ProjectUuidRange projectRange) {
+    return new IssueIteratorForSingleChunk(dbClient, projectRange);
+  }
+
   public IssueIterator createForIssueKeys(Collection<String> issueKeys) {
     return new IssueIteratorForMultipleChunks(dbClient, issueKeys);
   }
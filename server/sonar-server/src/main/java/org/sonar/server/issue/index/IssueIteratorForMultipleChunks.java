@@ -22,6 +22,7 @@ package org.sonar.server.issue.index;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbClient;
 
@@ -40,16 +41,21 @@ public class IssueIteratorForMultipleChunks implements IssueIterator {
 
   @Override
   public boolean hasNext() {
-    if (currentChunk != null && currentChunk.hasNext()) {
-      return true;
+    // chunks can be empty when some issues do not exist anymore
+    while (currentChunk == null || !currentChunk.hasNext()) {
+      if (!iteratorOverChunks.hasNext()) {
+        return false;
+      }
+      close();
+      currentChunk = nextChunk();
     }
-    return iteratorOverChunks.hasNext();
+    return true;
   }
 
   @Override
   public IssueDoc next() {
-    if (currentChunk == null || !currentChunk.hasNext()) {
-      currentChunk = nextChunk();
+    if (!hasNext()) {
+      throw new NoSuchElementException();
     }
     return currentChunk.next();
   }
@@ -41,6 +41,7 @@ import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.ResultSetIterator;
+import org.sonar.server.es.ProjectUuidRange;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.sonar.api.utils.DateUtils.longToDate;
@@ -94,6 +95,8 @@ class IssueIteratorForSingleChunk implements IssueIterator {
     "inner join projects root on root.uuid=i.project_uuid";
 
   private static final String PROJECT_FILTER = " AND root.uuid=?";
+  private static final String PROJECT_RANGE_FROM_FILTER = " AND root.uuid>=?";
+  private static final String PROJECT_RANGE_TO_FILTER = " AND root.uuid<?";
   private static final String ISSUE_KEY_FILTER_PREFIX = " AND i.kee IN (";
   private static final String ISSUE_KEY_FILTER_SUFFIX = ")";
 
@@ -108,14 +111,25 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   @CheckForNull
   private final Collection<String> issueKeys;
 
+  private final ProjectUuidRange projectRange;
+
   private final PreparedStatement stmt;
   private final ResultSetIterator<IssueDoc> iterator;
 
   IssueIteratorForSingleChunk(DbClient dbClient, @Nullable String projectUuid, @Nullable Collection<String> issueKeys) {
+    this(dbClient, projectUuid, issueKeys, ProjectUuidRange.ALL);
+  }
+
+  IssueIteratorForSingleChunk(DbClient dbClient, ProjectUuidRange projectRange) {
+    this(dbClient, null, null, projectRange);
+  }
+
+  private IssueIteratorForSingleChunk(DbClient dbClient, @Nullable String projectUuid, @Nullable Collection<String> issueKeys, ProjectUuidRange projectRange) {
     checkArgument(issueKeys == null || issueKeys.size() <= DatabaseUtils.PARTITION_SIZE_FOR_ORACLE,
       "Cannot search for more than " + DatabaseUtils.PARTITION_SIZE_FOR_ORACLE + " issue keys at once. Please provide the keys in smaller chunks.");
     this.projectUuid = projectUuid;
     this.issueKeys = issueKeys;
+    this.projectRange = projectRange;
     this.session = dbClient.openSession(false);
 
     try {
@@ -151,6 +165,8 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   private String createSql() {
     String sql = SQL_ALL;
     sql += projectUuid == null ? "" : PROJECT_FILTER;
+    sql += projectRange.getFromInclusive() == null ? "" : PROJECT_RANGE_FROM_FILTER;
+    sql += projectRange.getToExclusive() == null ? "" : PROJECT_RANGE_TO_FILTER;
     if (issueKeys != null && !issueKeys.isEmpty()) {
       sql += ISSUE_KEY_FILTER_PREFIX;
       sql += IntStream.range(0, issueKeys.size()).mapToObj(i -> "?").collect(Collectors.joining(","));
@@ -165,6 +181,14 @@ class IssueIteratorForSingleChunk implements IssueIterator {
       stmt.setString(index, projectUuid);
       index++;
     }
+    if (projectRange.getFromInclusive() != null) {
+      stmt.setString(index, projectRange.getFromInclusive());
+      index++;
+    }
+    if (projectRange.getToExclusive() != null) {
+      stmt.setString(index, projectRange.getToExclusive());
+      index++;
+    }
     if (issueKeys != null) {
       for (String key : issueKeys) {
         stmt.setString(index, key);
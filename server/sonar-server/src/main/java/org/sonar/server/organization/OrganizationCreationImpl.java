@@ -44,6 +44,7 @@ import org.sonar.db.permission.template.PermissionTemplateDto;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
+import org.sonar.server.permission.PermissionCache;
 import org.sonar.server.qualityprofile.ActiveRuleChange;
 import org.sonar.server.qualityprofile.DefinedQProfile;
 import org.sonar.server.qualityprofile.DefinedQProfileCreation;
@@ -75,11 +76,12 @@ public class OrganizationCreationImpl implements OrganizationCreation {
   private final DefaultGroupCreator defaultGroupCreator;
   private final ActiveRuleIndexer activeRuleIndexer;
   private final UserIndexer userIndexer;
+  private final PermissionCache permissionCache;
 
   public OrganizationCreationImpl(DbClient dbClient, System2 system2, UuidFactory uuidFactory,
     OrganizationValidation organizationValidation, Settings settings, UserIndexer userIndexer,
     DefinedQProfileRepository definedQProfileRepository, DefinedQProfileCreation definedQProfileCreation, DefaultGroupCreator defaultGroupCreator,
-    ActiveRuleIndexer activeRuleIndexer) {
+    ActiveRuleIndexer activeRuleIndexer, PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.uuidFactory = uuidFactory;
@@ -90,6 +92,7 @@ public class OrganizationCreationImpl implements OrganizationCreation {
     this.definedQProfileCreation = definedQProfileCreation;
     this.defaultGroupCreator = defaultGroupCreator;
     this.activeRuleIndexer = activeRuleIndexer;
+    this.permissionCache = permissionCache;
   }
 
   @Override
@@ -111,6 +114,7 @@ public class OrganizationCreationImpl implements OrganizationCreation {
     addCurrentUserToGroup(dbSession, defaultGroup, userCreator.getId());
 
     dbSession.commit();
+    permissionCache.invalidateUser(userCreator.getId());
 
     // Elasticsearch is updated when DB session is committed
     userIndexer.index(userCreator.getLogin());
@@ -147,6 +151,7 @@ public class OrganizationCreationImpl implements OrganizationCreation {
     addCurrentUserToGroup(dbSession, defaultGroup, newUser.getId());
 
     dbSession.commit();
+    permissionCache.invalidateUser(newUser.getId());
 
     // Elasticsearch is updated when DB session is committed
     activeRuleIndexer.index(activeRuleChanges);
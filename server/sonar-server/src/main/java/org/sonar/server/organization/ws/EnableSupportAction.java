@@ -36,6 +36,7 @@ import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserGroupDto;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.OrganizationFlags;
+import org.sonar.server.permission.PermissionCache;
 import org.sonar.server.rule.index.RuleIndexer;
 import org.sonar.server.user.UserSession;
 import org.sonar.server.usergroups.DefaultGroupCreator;
@@ -54,9 +55,11 @@ public class EnableSupportAction implements OrganizationsWsAction {
   private final DefaultGroupCreator defaultGroupCreator;
   private final DefaultGroupFinder defaultGroupFinder;
   private final RuleIndexer ruleIndexer;
+  private final PermissionCache permissionCache;
 
   public EnableSupportAction(UserSession userSession, DbClient dbClient, DefaultOrganizationProvider defaultOrganizationProvider,
-    OrganizationFlags organizationFlags, DefaultGroupCreator defaultGroupCreator, DefaultGroupFinder defaultGroupFinder, RuleIndexer ruleIndexer) {
+    OrganizationFlags organizationFlags, DefaultGroupCreator defaultGroupCreator, DefaultGroupFinder defaultGroupFinder, RuleIndexer ruleIndexer,
+    PermissionCache permissionCache) {
     this.userSession = userSession;
     this.dbClient = dbClient;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
@@ -64,6 +67,7 @@ public class EnableSupportAction implements OrganizationsWsAction {
     this.defaultGroupCreator = defaultGroupCreator;
     this.defaultGroupFinder = defaultGroupFinder;
     this.ruleIndexer = ruleIndexer;
+    this.permissionCache = permissionCache;
   }
 
   @Override
@@ -90,6 +94,7 @@ public class EnableSupportAction implements OrganizationsWsAction {
         List<RuleKey> disabledTemplateAndCustomRuleKeys = disableTemplateRulesAndCustomRules(dbSession);
         enableFeature(dbSession);
         dbSession.commit();
+        permissionCache.invalidateAll();
         ruleIndexer.indexRuleDefinitions(disabledTemplateAndCustomRuleKeys);
       }
     }
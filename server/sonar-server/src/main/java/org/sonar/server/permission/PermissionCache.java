@@ -0,0 +1,176 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.permission;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import org.sonar.api.server.ServerSide;
+
+/**
+ * Permissions of users on organizations and projects, shared by the requests of web server.
+ * <p>
+ * Entries must be invalidated by all the components of web server which change permissions, group memberships,
+ * organization memberships or visibility of projects, once the changes are committed. As the permissions applied
+ * by the Compute Engine to new projects are not notified, entries also expire {@value #EXPIRATION_IN_SECONDS}
+ * seconds after being loaded.
+ * </p>
+ */
+@ServerSide
+public class PermissionCache {
+
+  private static final long MAX_SIZE = 10_000L;
+  private static final long EXPIRATION_IN_SECONDS = 60L;
+
+  private final Cache<Key, Set<String>> cache = CacheBuilder.newBuilder()
+    .maximumSize(MAX_SIZE)
+    .expireAfterWrite(EXPIRATION_IN_SECONDS, TimeUnit.SECONDS)
+    .recordStats()
+    .build();
+  /**
+   * Incremented on each invalidation, so that permissions loaded concurrently to an invalidation
+   * are not cached.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * @param userId id of user, {@code null} for anonymous
+   * @param loader loads the keys of permissions from database when they are not cached
+   */
+  public Set<String> getOrganizationPermissions(@Nullable Integer userId, String organizationUuid, Supplier<Set<String>> loader) {
+    return get(new Key(Scope.ORGANIZATION, userId, organizationUuid), loader);
+  }
+
+  /**
+   * @param userId id of user, {@code null} for anonymous
+   * @param loader loads the keys of permissions from database when they are not cached
+   */
+  public Set<String> getProjectPermissions(@Nullable Integer userId, String projectUuid, Supplier<Set<String>> loader) {
+    return get(new Key(Scope.PROJECT, userId, projectUuid), loader);
+  }
+
+  private Set<String> get(Key key, Supplier<Set<String>> loader) {
+    Set<String> permissions = cache.getIfPresent(key);
+    if (permissions != null) {
+      return permissions;
+    }
+    long loadedGeneration = generation.get();
+    permissions = ImmutableSet.copyOf(loader.get());
+    synchronized (this) {
+      if (generation.get() == loadedGeneration) {
+        cache.put(key, permissions);
+      }
+    }
+    return permissions;
+  }
+
+  /**
+   * Permissions of all users on all organizations and projects, for instance when a group is deleted
+   */
+  public void invalidateAll() {
+    synchronized (this) {
+      generation.incrementAndGet();
+      cache.invalidateAll();
+    }
+  }
+
+  /**
+   * Permissions of all users on the organization
+   */
+  public void invalidateOrganization(String organizationUuid) {
+    invalidateIf(key -> key.scope == Scope.ORGANIZATION && key.uuid.equals(organizationUuid));
+  }
+
+  /**
+   * Permissions of all users on the projects
+   */
+  public void invalidateProjects(Collection<String> projectUuids) {
+    invalidateIf(key -> key.scope == Scope.PROJECT && projectUuids.contains(key.uuid));
+  }
+
+  /**
+   * Permissions of the user on all organizations and projects, for instance when the
+   * groups of the user are changed
+   */
+  public void invalidateUser(int userId) {
+    invalidateIf(key -> Objects.equals(key.userId, userId));
+  }
+
+  private void invalidateIf(Predicate<Key> predicate) {
+    synchronized (this) {
+      generation.incrementAndGet();
+      cache.asMap().keySet().removeIf(predicate);
+    }
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  private enum Scope {
+    ORGANIZATION, PROJECT
+  }
+
+  @Immutable
+  private static final class Key {
+    private final Scope scope;
+    @CheckForNull
+    private final Integer userId;
+    private final String uuid;
+
+    private Key(Scope scope, @Nullable Integer userId, String uuid) {
+      this.scope = scope;
+      this.userId = userId;
+      this.uuid = uuid;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return scope == key.scope && Objects.equals(userId, key.userId) && uuid.equals(key.uuid);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(scope, userId, uuid);
+    }
+  }
+}
@@ -62,13 +62,15 @@ public class PermissionTemplateService {
   private final PermissionIndexer permissionIndexer;
   private final UserSession userSession;
   private final DefaultTemplatesResolver defaultTemplatesResolver;
+  private final PermissionCache permissionCache;
 
   public PermissionTemplateService(DbClient dbClient, PermissionIndexer permissionIndexer, UserSession userSession,
-    DefaultTemplatesResolver defaultTemplatesResolver) {
+    DefaultTemplatesResolver defaultTemplatesResolver, PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.permissionIndexer = permissionIndexer;
     this.userSession = userSession;
     this.defaultTemplatesResolver = defaultTemplatesResolver;
+    this.permissionCache = permissionCache;
   }
 
   public boolean wouldUserHaveScanPermissionWithDefaultTemplate(DbSession dbSession,
@@ -104,7 +106,9 @@ public class PermissionTemplateService {
       copyPermissions(dbSession, template, project, null);
     }
     dbSession.commit();
-    indexProjectPermissions(dbSession, projects.stream().map(ComponentDto::uuid).collect(MoreCollectors.toList()));
+    List<String> projectUuids = projects.stream().map(ComponentDto::uuid).collect(MoreCollectors.toList());
+    permissionCache.invalidateProjects(projectUuids);
+    indexProjectPermissions(dbSession, projectUuids);
   }
 
   /**
@@ -117,6 +121,7 @@ public class PermissionTemplateService {
     checkArgument(template != null, "Cannot retrieve default permission template");
     copyPermissions(dbSession, template, component, projectCreatorUserId);
     dbSession.commit();
+    permissionCache.invalidateProjects(singletonList(component.uuid()));
     indexProjectPermissions(dbSession, asList(component.uuid()));
   }
 
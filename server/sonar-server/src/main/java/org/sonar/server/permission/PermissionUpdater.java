@@ -40,24 +40,29 @@ public class PermissionUpdater {
   private final PermissionIndexer permissionIndexer;
   private final UserPermissionChanger userPermissionChanger;
   private final GroupPermissionChanger groupPermissionChanger;
+  private final PermissionCache permissionCache;
 
   public PermissionUpdater(DbClient dbClient, PermissionIndexer permissionIndexer,
-                           UserPermissionChanger userPermissionChanger, GroupPermissionChanger groupPermissionChanger) {
+                           UserPermissionChanger userPermissionChanger, GroupPermissionChanger groupPermissionChanger, PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.permissionIndexer = permissionIndexer;
     this.userPermissionChanger = userPermissionChanger;
     this.groupPermissionChanger = groupPermissionChanger;
+    this.permissionCache = permissionCache;
   }
 
   public void apply(DbSession dbSession, Collection<PermissionChange> changes) {
     Set<Long> projectIds = new HashSet<>();
     List<String> projectOrViewUuids = new ArrayList<>();
+    Set<String> organizationUuids = new HashSet<>();
     for (PermissionChange change : changes) {
       boolean changed = doApply(dbSession, change);
       Optional<ProjectId> projectId = change.getProjectId();
       if (changed && projectId.isPresent()) {
         projectIds.add(projectId.get().getId());
         projectOrViewUuids.add(projectId.get().getUuid());
+      } else if (changed) {
+        organizationUuids.add(change.getOrganizationUuid());
       }
     }
     for (Long projectId : projectIds) {
@@ -65,6 +70,11 @@ public class PermissionUpdater {
     }
     dbSession.commit();
 
+    organizationUuids.forEach(permissionCache::invalidateOrganization);
+    if (!projectOrViewUuids.isEmpty()) {
+      permissionCache.invalidateProjects(projectOrViewUuids);
+    }
+
     if (!projectIds.isEmpty()) {
       permissionIndexer.indexProjectsByUuids(dbSession, projectOrViewUuids);
     }
@@ -0,0 +1,56 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import com.google.common.cache.CacheStats;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.sonar.server.permission.PermissionCache;
+
+import static java.lang.String.format;
+
+/**
+ * Usage of the cache of permissions shared by web requests
+ */
+public class PermissionCacheMonitor implements Monitor {
+  private final PermissionCache permissionCache;
+
+  public PermissionCacheMonitor(PermissionCache permissionCache) {
+    this.permissionCache = permissionCache;
+  }
+
+  @Override
+  public String name() {
+    return "Permission Cache";
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    CacheStats stats = permissionCache.stats();
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Entries", permissionCache.size());
+    attributes.put("Hits", stats.hitCount());
+    attributes.put("Misses", stats.missCount());
+    attributes.put("Hit Rate", format(Locale.ENGLISH, "%.1f%%", stats.hitRate() * 100));
+    attributes.put("Evictions", stats.evictionCount());
+    return attributes;
+  }
+}
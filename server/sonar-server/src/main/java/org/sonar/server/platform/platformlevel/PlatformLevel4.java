@@ -51,8 +51,10 @@ import org.sonar.server.duplication.ws.DuplicationsJsonWriter;
 import org.sonar.server.duplication.ws.DuplicationsParser;
 import org.sonar.server.duplication.ws.DuplicationsWs;
 import org.sonar.server.email.ws.EmailsWsModule;
+import org.sonar.server.es.EsQueueIndexer;
 import org.sonar.server.es.IndexCreator;
 import org.sonar.server.es.IndexDefinitions;
+import org.sonar.server.es.PartitionedStartupIndexing;
 import org.sonar.server.event.NewAlerts;
 import org.sonar.server.favorite.FavoriteModule;
 import org.sonar.server.issue.AddTagsAction;
@@ -89,6 +91,7 @@ import org.sonar.server.organization.OrganizationCreationImpl;
 import org.sonar.server.organization.OrganizationValidationImpl;
 import org.sonar.server.organization.ws.OrganizationsWsModule;
 import org.sonar.server.permission.GroupPermissionChanger;
+import org.sonar.server.permission.PermissionCache;
 import org.sonar.server.permission.PermissionTemplateService;
 import org.sonar.server.permission.PermissionUpdater;
 import org.sonar.server.permission.UserPermissionChanger;
@@ -102,6 +105,7 @@ import org.sonar.server.platform.SettingsChangeNotifier;
 import org.sonar.server.platform.monitoring.DatabaseMonitor;
 import org.sonar.server.platform.monitoring.EsMonitor;
 import org.sonar.server.platform.monitoring.JvmPropsMonitor;
+import org.sonar.server.platform.monitoring.PermissionCacheMonitor;
 import org.sonar.server.platform.monitoring.PluginsMonitor;
 import org.sonar.server.platform.monitoring.SettingsMonitor;
 import org.sonar.server.platform.monitoring.SonarQubeMonitor;
@@ -176,6 +180,7 @@ import org.sonar.server.rule.ws.TagsAction;
 import org.sonar.server.serverid.ws.ServerIdWsModule;
 import org.sonar.server.setting.ws.SettingsWsModule;
 import org.sonar.server.source.HtmlSourceDecorator;
+import org.sonar.server.source.SourceLinesCache;
 import org.sonar.server.source.SourceService;
 import org.sonar.server.source.ws.HashAction;
 import org.sonar.server.source.ws.IndexAction;
@@ -356,6 +361,7 @@ public class PlatformLevel4 extends PlatformLevel {
       // permissions
       DefaultTemplatesResolverImpl.class,
       PermissionsWsModule.class,
+      PermissionCache.class,
       PermissionTemplateService.class,
       PermissionUpdater.class,
       UserPermissionChanger.class,
@@ -387,6 +393,8 @@ public class PlatformLevel4 extends PlatformLevel {
       IssueIndexDefinition.class,
       IssueIndexer.class,
       IssueIteratorFactory.class,
+      PartitionedStartupIndexing.class,
+      EsQueueIndexer.class,
       PermissionIndexer.class,
       IssueWsModule.class,
       NewIssuesEmailTemplate.class,
@@ -418,6 +426,7 @@ public class PlatformLevel4 extends PlatformLevel {
 
       // source
       HtmlSourceDecorator.class,
+      SourceLinesCache.class,
       SourceService.class,
       SourcesWs.class,
       org.sonar.server.source.ws.ShowAction.class,
@@ -480,6 +489,7 @@ public class PlatformLevel4 extends PlatformLevel {
       PluginsMonitor.class,
       JvmPropsMonitor.class,
       DatabaseMonitor.class,
+      PermissionCacheMonitor.class,
       MigrateDbAction.class,
       LogsAction.class,
       ChangeLogLevelAction.class,
@@ -34,6 +34,7 @@ import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.permission.GroupPermissionDto;
 import org.sonar.db.permission.UserPermissionDto;
 import org.sonar.server.component.ComponentFinder;
+import org.sonar.server.permission.PermissionCache;
 import org.sonar.server.permission.index.PermissionIndexer;
 import org.sonar.server.project.Visibility;
 import org.sonar.server.user.UserSession;
@@ -55,14 +56,16 @@ public class UpdateVisibilityAction implements ProjectsWsAction {
   private final UserSession userSession;
   private final PermissionIndexer permissionIndexer;
   private final ProjectsWsSupport projectsWsSupport;
+  private final PermissionCache permissionCache;
 
   public UpdateVisibilityAction(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession,
-    PermissionIndexer permissionIndexer, ProjectsWsSupport projectsWsSupport) {
+    PermissionIndexer permissionIndexer, ProjectsWsSupport projectsWsSupport, PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.componentFinder = componentFinder;
     this.userSession = userSession;
     this.permissionIndexer = permissionIndexer;
     this.projectsWsSupport = projectsWsSupport;
+    this.permissionCache = permissionCache;
   }
 
   public void define(WebService.NewController context) {
@@ -109,6 +112,7 @@ public class UpdateVisibilityAction implements ProjectsWsAction {
           updatePermissionsToPublic(dbSession, component);
         }
         dbSession.commit();
+        permissionCache.invalidateProjects(singletonList(component.uuid()));
         permissionIndexer.indexProjectsByUuids(dbSession, singletonList(component.uuid()));
       }
     }
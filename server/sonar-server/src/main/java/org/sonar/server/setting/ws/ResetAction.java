@@ -33,6 +33,7 @@ import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.server.batch.ProjectDataCache;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.setting.ws.SettingValidations.SettingData;
 import org.sonar.server.user.UserSession;
@@ -52,15 +53,17 @@ public class ResetAction implements SettingsWsAction {
   private final UserSession userSession;
   private final PropertyDefinitions definitions;
   private final SettingValidations validations;
+  private final ProjectDataCache projectDataCache;
 
   public ResetAction(DbClient dbClient, ComponentFinder componentFinder, SettingsUpdater settingsUpdater, UserSession userSession, PropertyDefinitions definitions,
-    SettingValidations validations) {
+    SettingValidations validations, ProjectDataCache projectDataCache) {
     this.dbClient = dbClient;
     this.settingsUpdater = settingsUpdater;
     this.userSession = userSession;
     this.componentFinder = componentFinder;
     this.definitions = definitions;
     this.validations = validations;
+    this.projectDataCache = projectDataCache;
   }
 
   @Override
@@ -105,6 +108,9 @@ public class ResetAction implements SettingsWsAction {
         settingsUpdater.deleteGlobalSettings(dbSession, keys);
       }
       dbSession.commit();
+      if (component.isPresent()) {
+        projectDataCache.invalidateAll();
+      }
       response.noContent();
     }
   }
@@ -49,6 +49,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.scanner.protocol.GsonHelper;
+import org.sonar.server.batch.ProjectDataCache;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.platform.SettingsChangeNotifier;
@@ -76,9 +77,10 @@ public class SetAction implements SettingsWsAction {
   private final SettingsUpdater settingsUpdater;
   private final SettingsChangeNotifier settingsChangeNotifier;
   private final SettingValidations validations;
+  private final ProjectDataCache projectDataCache;
 
   public SetAction(PropertyDefinitions propertyDefinitions, DbClient dbClient, ComponentFinder componentFinder, UserSession userSession,
-    SettingsUpdater settingsUpdater, SettingsChangeNotifier settingsChangeNotifier, SettingValidations validations) {
+    SettingsUpdater settingsUpdater, SettingsChangeNotifier settingsChangeNotifier, SettingValidations validations, ProjectDataCache projectDataCache) {
     this.propertyDefinitions = propertyDefinitions;
     this.dbClient = dbClient;
     this.componentFinder = componentFinder;
@@ -86,6 +88,7 @@ public class SetAction implements SettingsWsAction {
     this.settingsUpdater = settingsUpdater;
     this.settingsChangeNotifier = settingsChangeNotifier;
     this.validations = validations;
+    this.projectDataCache = projectDataCache;
   }
 
   @Override
@@ -155,7 +158,9 @@ public class SetAction implements SettingsWsAction {
 
     dbSession.commit();
 
-    if (!component.isPresent()) {
+    if (component.isPresent()) {
+      projectDataCache.invalidateAll();
+    } else {
       settingsChangeNotifier.onGlobalPropertyChange(persistedKey(request), value);
     }
   }
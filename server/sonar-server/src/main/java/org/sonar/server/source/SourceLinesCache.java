@@ -0,0 +1,192 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import org.sonar.api.config.Settings;
+import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.server.platform.monitoring.BaseMonitorMBean;
+
+/**
+ * Decoded lines of the most recently read file sources, and their decoration in HTML. Entries are keyed
+ * by file uuid and data hash, so that the entry of a file becomes stale as soon as a new analysis changes
+ * its data. Stale entries are not read anymore and are evicted as least recently used.
+ * <p>
+ * Total size is bounded by property {@link #SIZE_PROPERTY}, in MB. Caching is disabled when it is zero.
+ * </p>
+ */
+public class SourceLinesCache extends BaseMonitorMBean implements SourceLinesCacheMBean {
+
+  public static final String SIZE_PROPERTY = "sonar.web.sourceCache.sizeInMb";
+  private static final int DEFAULT_SIZE_IN_MB = 64;
+  private static final long MB = 1024L * 1024L;
+
+  /**
+   * HTML of lines is decorated lazily, so its size can't be known when lines are cached. It's
+   * estimated to twice the size of the raw data.
+   */
+  private static final int HTML_FACTOR = 2;
+  /**
+   * Weight of an entry is the size of its raw data multiplied by this factor, which counts both the raw data
+   * and the estimated HTML
+   */
+  private static final int WEIGHT_FACTOR = 1 + HTML_FACTOR;
+
+  private final int maxSizeInMb;
+  private final Cache<Key, Source> cache;
+
+  public SourceLinesCache(Settings settings) {
+    this.maxSizeInMb = settings.hasKey(SIZE_PROPERTY) ? settings.getInt(SIZE_PROPERTY) : DEFAULT_SIZE_IN_MB;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxSizeInMb * MB)
+      .weigher((Key key, Source source) -> source.weight)
+      .recordStats()
+      .build();
+  }
+
+  boolean isEnabled() {
+    return maxSizeInMb > 0;
+  }
+
+  /**
+   * Lines of the given version of the file, loaded by {@code loader} if they are not in cache.
+   */
+  Source get(String fileUuid, String dataHash, Supplier<List<DbFileSources.Line>> loader) {
+    try {
+      return cache.get(new Key(fileUuid, dataHash), () -> new Source(loader.get()));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  @Override
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  @Override
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  @Override
+  public long getSize() {
+    return cache.size();
+  }
+
+  @Override
+  public int getMaxSizeInMb() {
+    return maxSizeInMb;
+  }
+
+  @Override
+  public String name() {
+    return "Source Lines Cache";
+  }
+
+  @Override
+  public Map<String, Object> attributes() {
+    CacheStats stats = cache.stats();
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Max Size (MB)", maxSizeInMb);
+    attributes.put("Files", cache.size());
+    attributes.put("Hits", stats.hitCount());
+    attributes.put("Misses", stats.missCount());
+    attributes.put("Evictions", stats.evictionCount());
+    return attributes;
+  }
+
+  static class Source {
+    private final List<DbFileSources.Line> lines;
+    private final AtomicReferenceArray<String> htmlLines;
+    private final int weight;
+
+    Source(List<DbFileSources.Line> lines) {
+      this.lines = lines;
+      this.htmlLines = new AtomicReferenceArray<>(lines.size());
+      long size = 0L;
+      for (DbFileSources.Line line : lines) {
+        size += line.getSerializedSize();
+      }
+      this.weight = (int) Math.min(Integer.MAX_VALUE, size * WEIGHT_FACTOR);
+    }
+
+    List<DbFileSources.Line> lines() {
+      return lines;
+    }
+
+    /**
+     * HTML of the line at the given index of {@link #lines()}, decorated by {@code decorator} on first call
+     */
+    String html(int index, HtmlSourceDecorator decorator) {
+      String html = htmlLines.get(index);
+      if (html == null) {
+        DbFileSources.Line line = lines.get(index);
+        html = decorator.getDecoratedSourceAsHtml(line.getSource(), line.getHighlighting(), line.getSymbols());
+        // concurrent requests may decorate the same line, but result is the same
+        htmlLines.set(index, html);
+      }
+      return html;
+    }
+  }
+
+  private static class Key {
+    private final String fileUuid;
+    private final String dataHash;
+
+    private Key(String fileUuid, String dataHash) {
+      this.fileUuid = fileUuid;
+      this.dataHash = dataHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return fileUuid.equals(key.fileUuid) && dataHash.equals(key.dataHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(fileUuid, dataHash);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+/**
+ * Statistics of {@link SourceLinesCache}, exported over JMX
+ */
+public interface SourceLinesCacheMBean {
+
+  /**
+   * Number of reads of file sources that did not need to load them from database
+   */
+  long getHitCount();
+
+  /**
+   * Number of reads of file sources that loaded them from database
+   */
+  long getMissCount();
+
+  /**
+   * Number of file sources removed from cache to respect its maximum size
+   */
+  long getEvictionCount();
+
+  /**
+   * Number of file sources currently in cache
+   */
+  long getSize();
+
+  /**
+   * Maximum size of cache, as configured by property {@link SourceLinesCache#SIZE_PROPERTY}
+   */
+  int getMaxSizeInMb();
+}
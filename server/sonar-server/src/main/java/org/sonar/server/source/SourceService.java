@@ -19,9 +19,9 @@
  */
 package org.sonar.server.source;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
-import java.util.function.Function;
-import org.sonar.core.util.stream.MoreCollectors;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.protobuf.DbFileSources;
@@ -33,10 +33,12 @@ public class SourceService {
 
   private final DbClient dbClient;
   private final HtmlSourceDecorator htmlDecorator;
+  private final SourceLinesCache cache;
 
-  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator) {
+  public SourceService(DbClient dbClient, HtmlSourceDecorator htmlDecorator, SourceLinesCache cache) {
     this.dbClient = dbClient;
     this.htmlDecorator = htmlDecorator;
+    this.cache = cache;
   }
 
   /**
@@ -45,7 +47,7 @@ public class SourceService {
    * @param toInclusive starts from 1, must be greater than or equal param {@code from}
    */
   public Optional<Iterable<DbFileSources.Line>> getLines(DbSession dbSession, String fileUuid, int from, int toInclusive) {
-    return getLines(dbSession, fileUuid, from, toInclusive, Function.identity());
+    return getLines(dbSession, fileUuid, from, toInclusive, (source, index) -> source.lines().get(index));
   }
 
   /**
@@ -53,33 +55,59 @@ public class SourceService {
    * @see #getLines(DbSession, String, int, int)
    */
   public Optional<Iterable<String>> getLinesAsRawText(DbSession dbSession, String fileUuid, int from, int toInclusive) {
-    return getLines(dbSession, fileUuid, from, toInclusive, DbFileSources.Line::getSource);
+    return getLines(dbSession, fileUuid, from, toInclusive, (source, index) -> source.lines().get(index).getSource());
   }
 
   public Optional<Iterable<String>> getLinesAsHtml(DbSession dbSession, String fileUuid, int from, int toInclusive) {
-    return getLines(dbSession, fileUuid, from, toInclusive, lineToHtml());
+    return getLines(dbSession, fileUuid, from, toInclusive, (source, index) -> source.html(index, htmlDecorator));
   }
 
-  private <E> Optional<Iterable<E>> getLines(DbSession dbSession, String fileUuid, int from, int toInclusive, Function<DbFileSources.Line, E> function) {
+  private <E> Optional<Iterable<E>> getLines(DbSession dbSession, String fileUuid, int from, int toInclusive, LineFunction<E> function) {
     verifyLine(from);
     checkArgument(toInclusive >= from, String.format("Line number must greater than or equal to %d, got %d", from, toInclusive));
+    FileSourceDto hashDto = dbClient.fileSourceDao().selectSourceDataHashByFileUuid(dbSession, fileUuid);
+    if (hashDto == null) {
+      return Optional.empty();
+    }
+    String dataHash = hashDto.getDataHash();
+    if (dataHash == null || !cache.isEnabled()) {
+      // data is not cached when its version is unknown
+      return loadLines(dbSession, fileUuid, from, toInclusive)
+        .map(lines -> filter(new SourceLinesCache.Source(lines), from, toInclusive, function));
+    }
+    SourceLinesCache.Source source = cache.get(fileUuid, dataHash, () -> loadLines(dbSession, fileUuid, 1, Integer.MAX_VALUE).orElseThrow(
+      () -> new IllegalStateException(String.format("Source of file %s has been deleted", fileUuid))));
+    return Optional.of(filter(source, from, toInclusive, function));
+  }
+
+  private Optional<List<DbFileSources.Line>> loadLines(DbSession dbSession, String fileUuid, int from, int toInclusive) {
     FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
     if (dto == null) {
       return Optional.empty();
     }
-    return Optional.of(dto.getSourceData().getLinesList().stream()
-      .filter(line -> line.hasLine() && line.getLine() >= from)
-      .limit((toInclusive - from) + 1L)
-      .map(function)
-      .collect(MoreCollectors.toList()));
+    // only the chunks of lines in the range are decompressed
+    return Optional.of(dto.getSourceData(from, toInclusive).getLinesList());
+  }
+
+  private static <E> Iterable<E> filter(SourceLinesCache.Source source, int from, int toInclusive, LineFunction<E> function) {
+    List<E> result = new ArrayList<>();
+    List<DbFileSources.Line> lines = source.lines();
+    for (int index = 0; index < lines.size(); index++) {
+      DbFileSources.Line line = lines.get(index);
+      if (line.getLine() >= from && line.getLine() <= toInclusive) {
+        result.add(function.apply(source, index));
+      }
+    }
+    return result;
   }
 
   private static void verifyLine(int line) {
     checkArgument(line >= 1, String.format("Line number must start at 1, got %d", line));
   }
 
-  private Function<DbFileSources.Line, String> lineToHtml() {
-    return line -> htmlDecorator.getDecoratedSourceAsHtml(line.getSource(), line.getHighlighting(), line.getSymbols());
+  @FunctionalInterface
+  private interface LineFunction<E> {
+    E apply(SourceLinesCache.Source source, int lineIndex);
   }
 
 }
@@ -41,6 +41,7 @@ import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.OrganizationFlags;
+import org.sonar.server.permission.PermissionCache;
 
 import static com.google.common.collect.Maps.newHashMap;
 
@@ -53,6 +54,7 @@ public class ServerUserSession extends AbstractUserSession {
   private final DbClient dbClient;
   private final OrganizationFlags organizationFlags;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final PermissionCache permissionCache;
   private final Supplier<Collection<GroupDto>> groups = Suppliers.memoize(this::loadGroups);
   private final Supplier<Boolean> isSystemAdministratorSupplier = Suppliers.memoize(this::loadIsSystemAdministrator);
   private final Map<String, String> projectUuidByComponentUuid = newHashMap();
@@ -60,10 +62,11 @@ public class ServerUserSession extends AbstractUserSession {
   private Map<String, Set<String>> permissionsByProjectUuid;
 
   ServerUserSession(DbClient dbClient, OrganizationFlags organizationFlags,
-    DefaultOrganizationProvider defaultOrganizationProvider, @Nullable UserDto userDto) {
+    DefaultOrganizationProvider defaultOrganizationProvider, PermissionCache permissionCache, @Nullable UserDto userDto) {
     this.dbClient = dbClient;
     this.organizationFlags = organizationFlags;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.permissionCache = permissionCache;
     this.userDto = userDto;
   }
 
@@ -119,19 +122,31 @@ public class ServerUserSession extends AbstractUserSession {
   }
 
   private Set<OrganizationPermission> loadOrganizationPermissions(String organizationUuid) {
-    Set<String> permissionKeys;
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      if (userDto != null && userDto.getId() != null) {
-        permissionKeys = dbClient.authorizationDao().selectOrganizationPermissions(dbSession, organizationUuid, userDto.getId());
-      } else {
-        permissionKeys = dbClient.authorizationDao().selectOrganizationPermissionsOfAnonymous(dbSession, organizationUuid);
-      }
-    }
+    Set<String> permissionKeys = permissionCache.getOrganizationPermissions(permissionUserId(), organizationUuid,
+      () -> loadDbOrganizationPermissions(organizationUuid));
     return permissionKeys.stream()
       .map(OrganizationPermission::fromKey)
       .collect(MoreCollectors.toSet(permissionKeys.size()));
   }
 
+  private Set<String> loadDbOrganizationPermissions(String organizationUuid) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      Integer userId = permissionUserId();
+      if (userId != null) {
+        return dbClient.authorizationDao().selectOrganizationPermissions(dbSession, organizationUuid, userId);
+      }
+      return dbClient.authorizationDao().selectOrganizationPermissionsOfAnonymous(dbSession, organizationUuid);
+    }
+  }
+
+  /**
+   * Id of user as used to load permissions, {@code null} for anonymous
+   */
+  @CheckForNull
+  private Integer permissionUserId() {
+    return userDto == null ? null : userDto.getId();
+  }
+
   @Override
   protected Optional<String> componentUuidToProjectUuid(String componentUuid) {
     String projectUuid = projectUuidByComponentUuid.get(componentUuid);
@@ -154,7 +169,8 @@ public class ServerUserSession extends AbstractUserSession {
     if (permissionsByProjectUuid == null) {
       permissionsByProjectUuid = new HashMap<>();
     }
-    Set<String> permissions = permissionsByProjectUuid.computeIfAbsent(projectUuid, this::loadProjectPermissions);
+    Set<String> permissions = permissionsByProjectUuid.computeIfAbsent(projectUuid,
+      uuid -> permissionCache.getProjectPermissions(permissionUserId(), uuid, () -> loadProjectPermissions(uuid)));
     return permissions.contains(permission);
   }
 
@@ -175,8 +191,9 @@ public class ServerUserSession extends AbstractUserSession {
   }
 
   private Set<String> loadDbPermissions(DbSession dbSession, String projectUuid) {
-    if (userDto != null && userDto.getId() != null) {
-      return dbClient.authorizationDao().selectProjectPermissions(dbSession, projectUuid, userDto.getId());
+    Integer userId = permissionUserId();
+    if (userId != null) {
+      return dbClient.authorizationDao().selectProjectPermissions(dbSession, projectUuid, userId);
     }
     return dbClient.authorizationDao().selectProjectPermissionsOfAnonymous(dbSession, projectUuid);
   }
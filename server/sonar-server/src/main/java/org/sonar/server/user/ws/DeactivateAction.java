@@ -37,6 +37,7 @@ import org.sonar.db.property.PropertyQuery;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.organization.DefaultOrganizationProvider;
+import org.sonar.server.permission.PermissionCache;
 import org.sonar.server.user.UserSession;
 import org.sonar.server.user.index.UserIndexer;
 
@@ -55,14 +56,16 @@ public class DeactivateAction implements UsersWsAction {
   private final UserSession userSession;
   private final UserJsonWriter userWriter;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final PermissionCache permissionCache;
 
   public DeactivateAction(DbClient dbClient, UserIndexer userIndexer, UserSession userSession, UserJsonWriter userWriter,
-    DefaultOrganizationProvider defaultOrganizationProvider) {
+    DefaultOrganizationProvider defaultOrganizationProvider, PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.userIndexer = userIndexer;
     this.userSession = userSession;
     this.userWriter = userWriter;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.permissionCache = permissionCache;
   }
 
   @Override
@@ -103,6 +106,7 @@ public class DeactivateAction implements UsersWsAction {
       dbClient.organizationMemberDao().deleteByUserId(dbSession, userId);
       dbClient.userDao().deactivateUserById(dbSession, userId);
       dbSession.commit();
+      permissionCache.invalidateUser(userId);
     }
 
     userIndexer.index(login);
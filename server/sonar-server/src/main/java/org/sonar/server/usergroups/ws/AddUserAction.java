@@ -30,6 +30,7 @@ import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
+import org.sonar.server.permission.PermissionCache;
 import org.sonar.server.user.UserSession;
 
 import static java.lang.String.format;
@@ -47,11 +48,13 @@ public class AddUserAction implements UserGroupsWsAction {
   private final DbClient dbClient;
   private final UserSession userSession;
   private final GroupWsSupport support;
+  private final PermissionCache permissionCache;
 
-  public AddUserAction(DbClient dbClient, UserSession userSession, GroupWsSupport support) {
+  public AddUserAction(DbClient dbClient, UserSession userSession, GroupWsSupport support, PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
     this.support = support;
+    this.permissionCache = permissionCache;
   }
 
   @Override
@@ -87,6 +90,7 @@ public class AddUserAction implements UserGroupsWsAction {
         UserGroupDto membershipDto = new UserGroupDto().setGroupId(group.getId()).setUserId(user.getId());
         dbClient.userGroupDao().insert(dbSession, membershipDto);
         dbSession.commit();
+        permissionCache.invalidateUser(user.getId());
       }
 
       response.noContent();
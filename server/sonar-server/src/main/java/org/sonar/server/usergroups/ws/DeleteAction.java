@@ -27,6 +27,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.permission.OrganizationPermission;
 import org.sonar.db.user.GroupDto;
+import org.sonar.server.permission.PermissionCache;
 import org.sonar.server.user.UserSession;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -40,11 +41,13 @@ public class DeleteAction implements UserGroupsWsAction {
   private final DbClient dbClient;
   private final UserSession userSession;
   private final GroupWsSupport support;
+  private final PermissionCache permissionCache;
 
-  public DeleteAction(DbClient dbClient, UserSession userSession, GroupWsSupport support) {
+  public DeleteAction(DbClient dbClient, UserSession userSession, GroupWsSupport support, PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
     this.support = support;
+    this.permissionCache = permissionCache;
   }
 
   @Override
@@ -75,6 +78,7 @@ public class DeleteAction implements UserGroupsWsAction {
       dbClient.groupDao().deleteById(dbSession, group.getId());
 
       dbSession.commit();
+      permissionCache.invalidateAll();
       response.noContent();
     }
   }
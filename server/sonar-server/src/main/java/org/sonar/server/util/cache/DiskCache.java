@@ -19,12 +19,24 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
@@ -33,21 +45,38 @@ import org.sonar.server.util.ObjectInputStreamIterator;
 
 /**
  * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * <p>
+ * Objects are serialized with Java serialization, unless a {@link Codec} is provided. In this case the
+ * file is a sequence of records written by the codec and it is read through a memory-mapped buffer
+ * (except on Windows, where mapped files can't be deleted as long as they are not garbage-collected).
  */
 public class DiskCache<O extends Serializable> {
 
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final byte RECORD_MARKER = 1;
+
   private final File file;
   private final System2 system2;
+  @Nullable
+  private final Codec<O> codec;
 
   public DiskCache(File file, System2 system2) {
+    this(file, system2, null);
+  }
+
+  public DiskCache(File file, System2 system2, @Nullable Codec<O> codec) {
     this.system2 = system2;
     this.file = file;
+    this.codec = codec;
     OutputStream output = null;
     boolean threw = true;
     try {
-      // writes the serialization stream header required when calling "traverse()"
-      // on empty stream. Moreover it allows to call multiple times "newAppender()"
-      output = new ObjectOutputStream(new FileOutputStream(file));
+      output = new FileOutputStream(file);
+      if (codec == null) {
+        // writes the serialization stream header required when calling "traverse()"
+        // on empty stream. Moreover it allows to call multiple times "newAppender()"
+        output = new ObjectOutputStream(output);
+      }
       output.flush();
       threw = false;
     } catch (IOException e) {
@@ -69,23 +98,46 @@ public class DiskCache<O extends Serializable> {
 
   public CloseableIterator<O> traverse() {
     try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      if (codec == null) {
+        return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      }
+      InputStream input;
+      if (system2.isOsWindows() || file.length() > Integer.MAX_VALUE) {
+        input = new BufferedInputStream(FileUtils.openInputStream(file), BUFFER_SIZE);
+      } else {
+        input = new ByteBufferInputStream(map(file));
+      }
+      return new CodecIterator<>(codec, new DataInputStream(input));
     } catch (IOException e) {
       throw new IllegalStateException("Fail to traverse file: " + file, e);
     }
   }
 
+  private static MappedByteBuffer map(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      // the mapping stays valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final ObjectOutputStream objectOutput;
+    private final DataOutputStream dataOutput;
 
     private DiskAppender() {
       try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
+        if (codec == null) {
+          this.objectOutput = new ObjectOutputStream(new FileOutputStream(file, true)) {
+            @Override
+            protected void writeStreamHeader() throws IOException {
+              // do not write stream headers as it's already done in constructor of DiskCache
+            }
+          };
+          this.dataOutput = null;
+        } else {
+          this.objectOutput = null;
+          this.dataOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE));
+        }
       } catch (IOException e) {
         throw new IllegalStateException("Fail to open file " + file, e);
       }
@@ -93,8 +145,13 @@ public class DiskCache<O extends Serializable> {
 
     public DiskAppender append(O object) {
       try {
-        output.writeObject(object);
-        output.reset();
+        if (codec == null) {
+          objectOutput.writeObject(object);
+          objectOutput.reset();
+        } else {
+          dataOutput.writeByte(RECORD_MARKER);
+          codec.write(object, dataOutput);
+        }
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
@@ -103,7 +160,72 @@ public class DiskCache<O extends Serializable> {
 
     @Override
     public void close() {
-      system2.close(output);
+      system2.close(codec == null ? objectOutput : dataOutput);
+    }
+  }
+
+  private static class CodecIterator<O> extends CloseableIterator<O> {
+    private final Codec<O> codec;
+    private final DataInputStream input;
+
+    private CodecIterator(Codec<O> codec, DataInputStream input) {
+      this.codec = codec;
+      this.input = input;
+    }
+
+    @Override
+    @CheckForNull
+    protected O doNext() {
+      try {
+        int marker = input.read();
+        if (marker == -1) {
+          return null;
+        }
+        if (marker != RECORD_MARKER) {
+          throw new IllegalStateException("Corrupted cache, unexpected record marker: " + marker);
+        }
+        return codec.read(input);
+      } catch (EOFException e) {
+        throw new IllegalStateException("Corrupted cache, unexpected end of file", e);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read cache", e);
+      }
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(len, buffer.remaining());
+      buffer.get(bytes, off, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
     }
   }
 }
@@ -22,9 +22,12 @@ package org.sonar.ce.http;
 import java.io.File;
 import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import okio.Buffer;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -61,6 +64,11 @@ public class CeHttpClientTest {
     underTest = new CeHttpClient(settings);
   }
 
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
+
   @Test
   public void retrieveSystemInfo_returns_absent_if_process_is_down() throws Exception {
     Optional<ProtobufSystemInfo.SystemInfo> info = underTest.retrieveSystemInfo();
@@ -134,6 +142,50 @@ public class CeHttpClientTest {
     underTest.changeLogLevel(LoggerLevel.INFO);
   }
 
+  @Test
+  public void wakeUpWorker_posts_to_compute_engine_in_background() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(200).setBodyDelay(10, TimeUnit.SECONDS));
+    setUpWithHttpUrl(ProcessId.COMPUTE_ENGINE);
+    underTest.start();
+
+    long startTime = System.currentTimeMillis();
+    underTest.wakeUpWorker();
+
+    assertThat(System.currentTimeMillis() - startTime).isLessThan(1_000L);
+    RecordedRequest request = server.takeRequest(10, TimeUnit.SECONDS);
+    assertThat(request.getMethod()).isEqualTo("POST");
+    assertThat(request.getPath()).isEqualTo("/wakeUpWorker");
+  }
+
+  @Test
+  public void wakeUpWorker_does_not_fail_if_http_error() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(500));
+    setUpWithHttpUrl(ProcessId.COMPUTE_ENGINE);
+    underTest.start();
+
+    underTest.wakeUpWorker();
+
+    assertThat(server.takeRequest(10, TimeUnit.SECONDS)).isNotNull();
+  }
+
+  @Test
+  public void wakeUpWorker_does_not_fail_if_process_is_down() {
+    underTest.start();
+
+    underTest.wakeUpWorker();
+
+    assertThat(server.getRequestCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void wakeUpWorker_does_nothing_if_client_is_not_started() throws Exception {
+    setUpWithHttpUrl(ProcessId.COMPUTE_ENGINE);
+
+    underTest.wakeUpWorker();
+
+    assertThat(server.takeRequest(100, TimeUnit.MILLISECONDS)).isNull();
+  }
+
   private void setUpWithHttpUrl(ProcessId processId) {
     try (DefaultProcessCommands processCommands = DefaultProcessCommands.secondary(ipcSharedDir, processId.getIpcIndex())) {
       processCommands.setUp();
@@ -21,19 +21,28 @@ package org.sonar.server.batch;
 
 import com.google.common.base.Throwables;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
 import org.sonar.db.DbTester;
+import org.sonar.db.ce.CeQueueDto;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.es.EsQueueDto;
+import org.sonar.db.es.EsQueueMapper;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.rule.RuleDefinitionDto;
 import org.sonar.scanner.protocol.Constants.Severity;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssuesSync;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.ForbiddenException;
@@ -48,7 +57,11 @@ import org.sonar.server.ws.TestResponse;
 import org.sonar.server.ws.WsActionTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.sonar.api.rules.RuleType.BUG;
+import static org.sonar.core.config.PurgeConstants.DAYS_BEFORE_DELETING_CLOSED_ISSUES;
 import static org.sonar.db.component.ComponentTesting.newFileDto;
 import static org.sonar.db.component.ComponentTesting.newModuleDto;
 import static org.sonar.db.component.ComponentTesting.newPrivateProjectDto;
@@ -62,6 +75,7 @@ public class IssuesActionTest {
   private static final String MODULE_UUID = "BCDE";
   private final static String FILE_KEY = "Action.java";
   private static final String FILE_UUID = "CDEF";
+  private static final long DAY_IN_MS = 24 * 60 * 60 * 1000L;
 
   private System2 system2 = System2.INSTANCE;
 
@@ -81,9 +95,11 @@ public class IssuesActionTest {
 
   private IssueIndexer issueIndexer = new IssueIndexer(es.client(), new IssueIteratorFactory(db.getDbClient()));
   private PermissionIndexerTester authorizationIndexerTester = new PermissionIndexerTester(es, issueIndexer);
+  private System2 clock = mock(System2.class);
+  private Settings settings = new MapSettings().setProperty(DAYS_BEFORE_DELETING_CLOSED_ISSUES, 30);
   private WsActionTester tester = new WsActionTester(new IssuesAction(db.getDbClient(),
     new IssueIndex(es.client(), system2, userSessionRule, new AuthorizationTypeSupport(userSessionRule)),
-    userSessionRule, new ComponentFinder(db.getDbClient())));
+    userSessionRule, new ComponentFinder(db.getDbClient()), clock, settings));
 
   @Test
   public void return_minimal_fields() throws Exception {
@@ -305,6 +321,110 @@ public class IssuesActionTest {
     tester.newRequest().setParam("key", file.key()).execute();
   }
 
+  @Test
+  public void return_changed_issues_including_closed_ones_when_changedSince_is_set() throws Exception {
+    long now = 100 * DAY_IN_MS;
+    when(clock.now()).thenReturn(now);
+    ComponentDto project = db.components().insertComponent(newPrivateProjectDto(db.getDefaultOrganization(), PROJECT_UUID).setKey(PROJECT_KEY));
+    ComponentDto file = db.components().insertComponent(newFileDto(project, null, FILE_UUID).setKey(FILE_KEY));
+    db.rules().insert(RULE_DEFINITION);
+    db.issues().insert(RULE_DEFINITION, project, file, issue -> issue.setKee("OLD").setStatus("OPEN").setUpdatedAt(now - 2 * DAY_IN_MS));
+    db.issues().insert(RULE_DEFINITION, project, file, issue -> issue.setKee("CHANGED").setStatus("OPEN").setUpdatedAt(now - 1_000L));
+    db.issues().insert(RULE_DEFINITION, project, file, issue -> issue.setKee("CLOSED").setStatus("CLOSED").setResolution("FIXED").setUpdatedAt(now - 1_000L));
+    indexIssues(project);
+    addBrowsePermissionOnComponent(project);
+
+    InputStream response = tester.newRequest()
+      .setParam("key", PROJECT_KEY)
+      .setParam("changedSince", String.valueOf(now - DAY_IN_MS))
+      .execute().getInputStream();
+
+    ServerIssuesSync header = ServerIssuesSync.parseDelimitedFrom(response);
+    assertThat(header.getSyncDate()).isEqualTo(now);
+    assertThat(header.getFull()).isFalse();
+    assertThat(readIssues(response)).extracting(ServerIssue::getKey, ServerIssue::getStatus)
+      .containsOnly(tuple("CHANGED", "OPEN"), tuple("CLOSED", "CLOSED"));
+  }
+
+  @Test
+  public void return_all_open_issues_when_changedSince_is_older_than_purge_of_closed_issues() throws Exception {
+    long now = 100 * DAY_IN_MS;
+    when(clock.now()).thenReturn(now);
+    ComponentDto project = db.components().insertComponent(newPrivateProjectDto(db.getDefaultOrganization(), PROJECT_UUID).setKey(PROJECT_KEY));
+    ComponentDto file = db.components().insertComponent(newFileDto(project, null, FILE_UUID).setKey(FILE_KEY));
+    db.rules().insert(RULE_DEFINITION);
+    db.issues().insert(RULE_DEFINITION, project, file, issue -> issue.setKee("OLD").setStatus("OPEN").setUpdatedAt(now - 40 * DAY_IN_MS));
+    db.issues().insert(RULE_DEFINITION, project, file, issue -> issue.setKee("CLOSED").setStatus("CLOSED").setResolution("FIXED").setUpdatedAt(now - 1_000L));
+    indexIssues(project);
+    addBrowsePermissionOnComponent(project);
+
+    InputStream response = tester.newRequest()
+      .setParam("key", PROJECT_KEY)
+      .setParam("changedSince", String.valueOf(now - 31 * DAY_IN_MS))
+      .execute().getInputStream();
+
+    ServerIssuesSync header = ServerIssuesSync.parseDelimitedFrom(response);
+    assertThat(header.getFull()).isTrue();
+    assertThat(readIssues(response)).extracting(ServerIssue::getKey).containsOnly("OLD");
+  }
+
+  @Test
+  public void sync_date_is_the_date_of_the_oldest_change_waiting_for_indexing() throws Exception {
+    long now = 100 * DAY_IN_MS;
+    when(clock.now()).thenReturn(now);
+    ComponentDto project = db.components().insertComponent(newPrivateProjectDto(db.getDefaultOrganization(), PROJECT_UUID).setKey(PROJECT_KEY));
+    addBrowsePermissionOnComponent(project);
+    db.getSession().getMapper(EsQueueMapper.class).insert(EsQueueDto.create("issues", "ISSUE_1").setUuid("U1").setCreatedAt(now - 2_000L));
+    db.getSession().getMapper(EsQueueMapper.class).insert(EsQueueDto.create("issues", "ISSUE_2").setUuid("U2").setCreatedAt(now - 1_000L));
+    db.commit();
+
+    InputStream response = tester.newRequest()
+      .setParam("key", PROJECT_KEY)
+      .setParam("changedSince", String.valueOf(now - DAY_IN_MS))
+      .execute().getInputStream();
+
+    assertThat(ServerIssuesSync.parseDelimitedFrom(response).getSyncDate()).isEqualTo(now - 2_000L);
+  }
+
+  @Test
+  public void sync_date_is_the_start_of_the_analysis_of_project_being_processed() throws Exception {
+    long now = 100 * DAY_IN_MS;
+    when(clock.now()).thenReturn(now);
+    ComponentDto project = db.components().insertComponent(newPrivateProjectDto(db.getDefaultOrganization(), PROJECT_UUID).setKey(PROJECT_KEY));
+    ComponentDto file = db.components().insertComponent(newFileDto(project, null, FILE_UUID).setKey(FILE_KEY));
+    addBrowsePermissionOnComponent(project);
+    insertCeTask("T1", project, CeQueueDto.Status.IN_PROGRESS, now - 3_000L);
+    insertCeTask("T2", project, CeQueueDto.Status.PENDING, null);
+    insertCeTask("T3", db.components().insertPrivateProject(), CeQueueDto.Status.IN_PROGRESS, now - 5_000L);
+
+    InputStream response = tester.newRequest()
+      .setParam("key", file.key())
+      .setParam("changedSince", String.valueOf(now - DAY_IN_MS))
+      .execute().getInputStream();
+
+    assertThat(ServerIssuesSync.parseDelimitedFrom(response).getSyncDate()).isEqualTo(now - 3_000L);
+  }
+
+  private void insertCeTask(String uuid, ComponentDto project, CeQueueDto.Status status, @Nullable Long startedAt) {
+    db.getDbClient().ceQueueDao().insert(db.getSession(), new CeQueueDto()
+      .setUuid(uuid)
+      .setTaskType("REPORT")
+      .setComponentUuid(project.uuid())
+      .setStatus(status)
+      .setStartedAt(startedAt));
+    db.commit();
+  }
+
+  private static List<ServerIssue> readIssues(InputStream input) throws IOException {
+    List<ServerIssue> issues = new ArrayList<>();
+    ServerIssue issue = ServerIssue.parseDelimitedFrom(input);
+    while (issue != null) {
+      issues.add(issue);
+      issue = ServerIssue.parseDelimitedFrom(input);
+    }
+    return issues;
+  }
+
   private void indexIssues(ComponentDto project) {
     issueIndexer.indexOnStartup(null);
     authorizationIndexerTester.allowOnlyAnyone(project);
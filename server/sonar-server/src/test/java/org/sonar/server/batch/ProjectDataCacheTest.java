@@ -0,0 +1,132 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.batch;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.scanner.protocol.input.FileData;
+import org.sonar.scanner.protocol.input.ProjectRepositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProjectDataCacheTest {
+
+  private AtomicInteger loads = new AtomicInteger();
+  private ProjectDataCache underTest = new ProjectDataCache(new MapSettings());
+
+  @Test
+  public void repositories_are_loaded_once() {
+    ProjectRepositories first = underTest.get("P1", true, "A1", this::load);
+    ProjectRepositories second = underTest.get("P1", true, "A1", this::load);
+
+    assertThat(second).isSameAs(first);
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void repositories_are_reloaded_when_project_has_been_analyzed() {
+    underTest.get("P1", true, null, this::load);
+    underTest.get("P1", true, "A1", this::load);
+    underTest.get("P1", true, "A2", this::load);
+    underTest.get("P1", true, "A2", this::load);
+
+    assertThat(loads.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void repositories_with_and_without_secured_settings_are_cached_separately() {
+    ProjectRepositories withSecured = underTest.get("P1", true, "A1", this::load);
+    ProjectRepositories withoutSecured = underTest.get("P1", false, "A1", this::load);
+
+    assertThat(withoutSecured).isNotSameAs(withSecured);
+    assertThat(underTest.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void invalidateAll() {
+    underTest.get("P1", true, "A1", this::load);
+    underTest.get("P2", true, "A2", this::load);
+
+    underTest.invalidateAll();
+
+    assertThat(underTest.size()).isZero();
+    underTest.get("P1", true, "A1", this::load);
+    assertThat(loads.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void repositories_loaded_during_invalidation_are_not_cached() {
+    underTest.get("P1", true, "A1", () -> {
+      underTest.invalidateAll();
+      return load();
+    });
+
+    assertThat(underTest.size()).isZero();
+  }
+
+  @Test
+  public void caching_is_disabled_when_size_is_zero() {
+    underTest = new ProjectDataCache(new MapSettings().setProperty(ProjectDataCache.SIZE_PROPERTY, 0));
+
+    underTest.get("P1", true, "A1", this::load);
+    underTest.get("P1", true, "A1", this::load);
+
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(underTest.size()).isZero();
+  }
+
+  @Test
+  public void repositories_larger_than_cache_are_not_kept() {
+    underTest = new ProjectDataCache(1);
+
+    underTest.get("P1", true, "A1", () -> loadFiles(20_000));
+
+    assertThat(underTest.size()).isZero();
+  }
+
+  @Test
+  public void size_of_repositories_grows_with_files_and_settings() {
+    ProjectRepositories data = new ProjectRepositories();
+    long emptySize = ProjectDataCache.sizeOf(data);
+
+    data.addFileData("module", "src/Foo.java", new FileData("hash", "revision"));
+    long withFileSize = ProjectDataCache.sizeOf(data);
+    data.addSettings("module", Collections.singletonMap("sonar.key", "value"));
+
+    assertThat(withFileSize).isGreaterThan(emptySize + "src/Foo.java".length() * 2 + "hash".length() * 2 + "revision".length() * 2);
+    assertThat(ProjectDataCache.sizeOf(data)).isGreaterThan(withFileSize + "sonar.key".length() * 2 + "value".length() * 2);
+  }
+
+  private ProjectRepositories loadFiles(int files) {
+    ProjectRepositories data = load();
+    for (int i = 0; i < files; i++) {
+      data.addFileData("module", "src/File" + i + ".java", new FileData("hash" + i, "revision" + i));
+    }
+    return data;
+  }
+
+  private ProjectRepositories load() {
+    loads.incrementAndGet();
+    return new ProjectRepositories();
+  }
+}
@@ -23,6 +23,7 @@ import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.utils.System2;
@@ -42,6 +43,7 @@ import org.sonar.server.tester.UserSessionRule;
 import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
+import static org.sonar.db.property.PropertyTesting.newComponentPropertyDto;
 import static org.sonar.db.permission.OrganizationPermission.SCAN;
 
 public class ProjectDataLoaderTest {
@@ -55,7 +57,8 @@ public class ProjectDataLoaderTest {
   private DbClient dbClient = dbTester.getDbClient();
   private DbSession dbSession = dbTester.getSession();
 
-  private ProjectDataLoader underTest = new ProjectDataLoader(dbClient, userSession);
+  private ProjectDataCache cache = new ProjectDataCache(new MapSettings());
+  private ProjectDataLoader underTest = new ProjectDataLoader(dbClient, userSession, cache);
 
   @After
   public void tearDown() throws Exception {
@@ -180,4 +183,33 @@ public class ProjectDataLoaderTest {
 
     assertThat(repositories).isNotNull();
   }
+
+  @Test
+  public void repositories_are_cached_until_project_is_analyzed() {
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    userSession.logIn().addProjectPermission(GlobalPermissions.SCAN_EXECUTION, project);
+    ProjectDataQuery query = ProjectDataQuery.create().setModuleKey(project.key());
+
+    ProjectRepositories first = underTest.load(query);
+    assertThat(underTest.load(query)).isSameAs(first);
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+
+    dbTester.components().insertSnapshot(project);
+
+    assertThat(underTest.load(query)).isNotSameAs(first);
+  }
+
+  @Test
+  public void secured_settings_are_not_shared_with_users_without_scan_permission() {
+    ComponentDto project = dbTester.components().insertPrivateProject();
+    dbTester.properties().insertProperty(newComponentPropertyDto("sonar.jira.login.secured", "john", project));
+    userSession.logIn().addProjectPermission(GlobalPermissions.SCAN_EXECUTION, project).addProjectPermission(UserRole.USER, project);
+    ProjectRepositories scanned = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()));
+    assertThat(scanned.settings(project.key())).containsKey("sonar.jira.login.secured");
+
+    userSession.logIn().addProjectPermission(UserRole.USER, project);
+    ProjectRepositories repositories = underTest.load(ProjectDataQuery.create().setModuleKey(project.key()).setIssuesMode(true));
+
+    assertThat(repositories.settings(project.key())).doesNotContainKey("sonar.jira.login.secured");
+  }
 }
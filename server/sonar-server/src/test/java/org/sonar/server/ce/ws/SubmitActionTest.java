@@ -22,6 +22,7 @@ package org.sonar.server.ce.ws;
 import java.io.InputStream;
 import org.junit.Test;
 import org.mockito.Matchers;
+import org.sonar.ce.http.CeHttpClient;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.server.computation.queue.ReportSubmitter;
@@ -52,7 +53,8 @@ public class SubmitActionTest {
   private DefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.fromUuid("org1");
   private String organizationKey = defaultOrganizationProvider.get().getKey();
   private ReportSubmitter reportSubmitter = mock(ReportSubmitter.class);
-  private SubmitAction underTest = new SubmitAction(reportSubmitter, defaultOrganizationProvider);
+  private CeHttpClient ceHttpClient = mock(CeHttpClient.class);
+  private SubmitAction underTest = new SubmitAction(reportSubmitter, defaultOrganizationProvider, ceHttpClient);
   private WsActionTester tester = new WsActionTester(underTest);
 
   @Test
@@ -68,6 +70,7 @@ public class SubmitActionTest {
       .executeProtobuf(WsCe.SubmitResponse.class);
 
     verify(reportSubmitter).submit(eq(organizationKey), eq("my_project"), Matchers.isNull(String.class), eq("My Project"), any(InputStream.class));
+    verify(ceHttpClient).wakeUpWorker();
 
     assertThat(submitResponse.getTaskId()).isEqualTo("TASK_1");
     assertThat(submitResponse.getProjectId()).isEqualTo("PROJECT_1");
@@ -0,0 +1,232 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.duplication.DuplicationUnitDto;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.component.ComponentTesting.newPrivateProjectDto;
+
+public class CrossProjectDuplicationIndexTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private CrossProjectDuplicationIndex underTest = new CrossProjectDuplicationIndex(db.getDbClient());
+
+  @Test
+  public void load_hashes_of_last_analyses() {
+    SnapshotDto analysis = insertBlocks("aa", "bb");
+    SnapshotDto otherAnalysis = insertBlocks("bb", "cc");
+    insertBlocks(db.components().insertSnapshot(db.components().insertPrivateProject(), s -> s.setLast(false)), "dd");
+
+    assertThat(underTest.filterCandidates("unknown_project", asList("aa", "bb", "cc", "dd", "ee"))).containsExactly("aa", "bb", "cc");
+    assertThat(underTest.filterCandidates(analysis.getComponentUuid(), asList("aa", "bb", "cc", "dd", "ee"))).containsExactly("bb", "cc");
+    assertThat(underTest.filterCandidates(otherAnalysis.getComponentUuid(), asList("aa", "bb", "cc", "dd", "ee"))).containsExactly("aa", "bb");
+    assertThat(underTest.isAvailable()).isTrue();
+    assertThat(underTest.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void hashes_added_before_loading_are_kept() {
+    underTest.add("new_project", "new_analysis", asList("aa", "bb"));
+    SnapshotDto analysis = insertBlocks("aa");
+
+    assertThat(underTest.filterCandidates("unknown_project", asList("aa", "bb", "cc"))).containsExactly("aa", "bb");
+    assertThat(underTest.filterCandidates(analysis.getComponentUuid(), asList("aa", "bb", "cc"))).containsExactly("aa", "bb");
+    assertThat(underTest.filterCandidates("new_project", asList("aa", "bb", "cc"))).containsExactly("aa");
+  }
+
+  @Test
+  public void hashes_added_after_loading_are_candidates() {
+    assertThat(underTest.filterCandidates("unknown_project", singletonList("aa"))).isEmpty();
+
+    underTest.add("new_project", "new_analysis", asList("aa", "bb"));
+
+    assertThat(underTest.filterCandidates("other_project", asList("aa", "bb", "cc"))).containsExactly("aa", "bb");
+    assertThat(underTest.filterCandidates("new_project", asList("aa", "bb", "cc"))).isEmpty();
+  }
+
+  @Test
+  public void hashes_indexed_again_by_the_same_project_are_not_candidates_for_this_project() {
+    SnapshotDto analysis = insertBlocks("aa", "bb");
+    assertThat(underTest.filterCandidates(analysis.getComponentUuid(), asList("aa", "bb"))).isEmpty();
+
+    // new analysis of the same project
+    underTest.add(analysis.getComponentUuid(), "new_analysis", asList("aa", "bb", "cc"));
+
+    assertThat(underTest.filterCandidates(analysis.getComponentUuid(), asList("aa", "bb", "cc"))).isEmpty();
+    assertThat(underTest.filterCandidates("other_project", asList("aa", "bb", "cc"))).containsExactly("aa", "bb", "cc");
+  }
+
+  @Test
+  public void index_grows_beyond_initial_capacity() {
+    String[] hashes = new String[100_000];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = Integer.toHexString(i);
+    }
+    underTest.add("new_project", "new_analysis", asList(hashes));
+
+    assertThat(underTest.filterCandidates("other_project", asList(hashes))).hasSize(hashes.length);
+    assertThat(underTest.filterCandidates("other_project", singletonList("not_indexed"))).isEmpty();
+    assertThat(underTest.size()).isEqualTo(hashes.length);
+  }
+
+  @Test
+  public void index_is_loaded_again_when_added_hashes_exceed_maximum_number_of_entries() {
+    underTest = new CrossProjectDuplicationIndex(db.getDbClient(), 6);
+    SnapshotDto analysis = insertBlocks("aa", "bb", "cc", "dd", "ee");
+    assertThat(underTest.filterCandidates("other_project", asList("aa", "ee"))).containsExactly("aa", "ee");
+    // blocks "aa" to "dd" are removed by a new analysis
+    insertLastBlocks(analysis.getComponentUuid(), "ee");
+
+    underTest.add("new_project", "new_analysis", asList("ff", "gg"));
+    assertThat(underTest.isAvailable()).isFalse();
+    assertThat(underTest.size()).isEqualTo(0);
+
+    // hashes of last analyses are loaded again, the ones added since the last load are kept
+    assertThat(underTest.filterCandidates("other_project", asList("aa", "bb", "cc", "dd", "ee", "ff", "gg"))).containsExactly("ee", "ff", "gg");
+    assertThat(underTest.isAvailable()).isTrue();
+    assertThat(underTest.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void hashes_of_analyses_in_progress_are_kept_when_index_is_loaded_again() {
+    underTest = new CrossProjectDuplicationIndex(db.getDbClient(), 8);
+    insertBlocks("aa", "bb");
+    assertThat(underTest.filterCandidates("other_project", asList("aa", "bb"))).containsExactly("aa", "bb");
+    ComponentDto newProject = db.components().insertPrivateProject();
+    SnapshotDto analysisInProgress = db.components().insertSnapshot(newProject, s -> s.setLast(false));
+
+    // analysis of new project is in progress, the journal exceeds half of the maximum number of entries
+    underTest.add(newProject.uuid(), analysisInProgress.getUuid(), asList("cc", "dd", "ee", "ff"));
+    insertBlocks(analysisInProgress, "cc", "dd", "ee", "ff");
+    assertThat(underTest.isAvailable()).isFalse();
+
+    assertThat(underTest.filterCandidates("other_project", asList("aa", "bb", "cc", "dd", "ee", "ff", "gg"))).containsExactly("aa", "bb", "cc", "dd", "ee", "ff");
+    assertThat(underTest.filterCandidates(newProject.uuid(), asList("aa", "bb", "cc", "dd", "ee", "ff", "gg"))).containsExactly("aa", "bb");
+    assertThat(underTest.isAvailable()).isTrue();
+    assertThat(underTest.journalSize()).isEqualTo(4);
+  }
+
+  @Test
+  public void journal_drops_hashes_of_complete_analyses_when_index_is_loaded_again() {
+    underTest = new CrossProjectDuplicationIndex(db.getDbClient(), 8);
+    assertThat(underTest.filterCandidates("other_project", asList("aa", "bb"))).isEmpty();
+    ComponentDto project = db.components().insertPrivateProject();
+    SnapshotDto completeAnalysis = db.components().insertSnapshot(project);
+    underTest.add(project.uuid(), completeAnalysis.getUuid(), asList("aa", "bb"));
+    insertBlocks(completeAnalysis, "aa", "bb");
+
+    underTest.add("new_project", "new_analysis", asList("cc", "dd"));
+    assertThat(underTest.isAvailable()).isFalse();
+
+    assertThat(underTest.filterCandidates("other_project", asList("aa", "bb", "cc", "dd", "ee"))).containsExactly("aa", "bb", "cc", "dd");
+    assertThat(underTest.filterCandidates(project.uuid(), asList("aa", "bb", "cc", "dd", "ee"))).containsExactly("cc", "dd");
+    assertThat(underTest.journalSize()).isEqualTo(2);
+  }
+
+  @Test
+  public void journal_drops_hashes_of_previous_analysis_of_the_same_project() {
+    underTest.add("new_project", "failed_analysis", asList("aa", "bb"));
+    underTest.add("new_project", "new_analysis", singletonList("cc"));
+    underTest.add("new_project", "new_analysis", singletonList("dd"));
+    assertThat(underTest.journalSize()).isEqualTo(2);
+
+    assertThat(underTest.filterCandidates("other_project", asList("aa", "bb", "cc", "dd"))).containsExactly("cc", "dd");
+  }
+
+  @Test
+  public void index_is_disabled_when_journal_exceeds_maximum_number_of_entries() {
+    underTest = new CrossProjectDuplicationIndex(db.getDbClient(), 2);
+
+    underTest.add("new_project", "new_analysis", asList("aa", "bb", "cc"));
+
+    assertThat(underTest.filterCandidates("other_project", asList("aa", "dd"))).containsExactly("aa", "dd");
+    assertThat(underTest.isAvailable()).isFalse();
+    assertThat(underTest.journalSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void all_hashes_are_candidates_when_last_analyses_exceed_maximum_number_of_entries() {
+    underTest = new CrossProjectDuplicationIndex(db.getDbClient(), 2);
+    insertBlocks("aa", "bb", "cc");
+
+    assertThat(underTest.filterCandidates("other_project", asList("dd", "ee"))).containsExactly("dd", "ee");
+    assertThat(underTest.isAvailable()).isFalse();
+    assertThat(underTest.size()).isEqualTo(0);
+
+    underTest.add("new_project", "new_analysis", asList("aa", "bb", "cc"));
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void fail_if_maximum_number_of_entries_is_not_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Maximum number of entries must be positive");
+
+    new CrossProjectDuplicationIndex(db.getDbClient(), 0);
+  }
+
+  private SnapshotDto insertBlocks(String... hashes) {
+    return insertBlocks(db.components().insertProjectAndSnapshot(newPrivateProject()), hashes);
+  }
+
+  private SnapshotDto insertBlocks(SnapshotDto analysis, String... hashes) {
+    int indexInFile = 0;
+    for (String hash : hashes) {
+      db.getDbClient().duplicationDao().insert(db.getSession(), new DuplicationUnitDto()
+        .setAnalysisUuid(analysis.getUuid())
+        .setComponentUuid("file_of_" + analysis.getUuid())
+        .setHash(hash)
+        .setIndexInFile(indexInFile)
+        .setStartLine(1)
+        .setEndLine(2));
+      indexInFile++;
+    }
+    db.commit();
+    return analysis;
+  }
+
+  /**
+   * Inserts a new analysis of the project, which becomes the last one
+   */
+  private void insertLastBlocks(String projectUuid, String... hashes) {
+    ComponentDto project = db.getDbClient().componentDao().selectOrFailByUuid(db.getSession(), projectUuid);
+    SnapshotDto analysis = insertBlocks(db.components().insertSnapshot(project, s -> s.setLast(false)), hashes);
+    db.getDbClient().snapshotDao().switchIsLastFlagAndSetProcessedStatus(db.getSession(), projectUuid, analysis.getUuid());
+    db.commit();
+  }
+
+  private ComponentDto newPrivateProject() {
+    return newPrivateProjectDto(db.organizations().insert());
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity.File;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+public class AddedFilesIndexTest {
+
+  private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
+
+  @Test
+  public void candidatesOf_returns_files_with_same_content() {
+    AddedFilesIndex underTest = new AddedFilesIndex(asList(
+      file("a", "b", "c"),
+      file("d", "e", "f"),
+      file("a", "b", "c")));
+
+    assertThat(underTest.candidatesOf(file("a", "b", "c"))).containsExactly(0, 2);
+    assertThat(underTest.candidatesOf(file("d", "e", "f"))).containsExactly(1);
+  }
+
+  @Test
+  public void candidatesOf_excludes_files_with_too_different_line_count() {
+    AddedFilesIndex underTest = new AddedFilesIndex(asList(
+      file(lines(0, 100)),
+      file(lines(0, 80)),
+      file(lines(0, 90))));
+
+    assertThat(underTest.candidatesOf(file(lines(0, 100)))).containsExactly(0, 2);
+  }
+
+  @Test
+  public void candidatesOf_excludes_files_with_too_few_lines_in_common() {
+    List<String> lines = lines(0, 100);
+    List<String> tenChangedLines = new ArrayList<>(lines);
+    List<String> twentyChangedLines = new ArrayList<>(lines);
+    for (int i = 0; i < 20; i++) {
+      if (i < 10) {
+        tenChangedLines.set(i * 5, "changed" + i);
+      }
+      twentyChangedLines.set(i * 5, "changed" + i);
+    }
+    AddedFilesIndex underTest = new AddedFilesIndex(asList(file(tenChangedLines), file(twentyChangedLines), file(lines(100, 200))));
+
+    assertThat(underTest.candidatesOf(file(lines))).containsExactly(0);
+  }
+
+  @Test
+  public void candidatesOf_does_not_miss_files_made_of_frequent_lines() {
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      files.add(file("}", "", "}", "", "}", "", "}", "", "}", "line" + i));
+    }
+    AddedFilesIndex underTest = new AddedFilesIndex(files);
+
+    assertThat(underTest.candidatesOf(file("}", "", "}", "", "}", "", "}", "", "}", "other"))).hasSize(100);
+    assertThat(underTest.candidatesOf(file("}", "", "}", "", "}", "", "}", "", "}", "line7", "line8"))).containsExactly(7, 8);
+  }
+
+  @Test
+  public void candidatesOf_returns_nothing_for_empty_file() {
+    AddedFilesIndex underTest = new AddedFilesIndex(asList(file(), file("a")));
+
+    assertThat(underTest.candidatesOf(file())).isEmpty();
+  }
+
+  @Test
+  public void candidatesOf_returns_nothing_if_index_is_empty() {
+    AddedFilesIndex underTest = new AddedFilesIndex(emptyList());
+
+    assertThat(underTest.candidatesOf(file("a"))).isEmpty();
+  }
+
+  @Test
+  public void candidatesOf_contains_all_files_reaching_min_required_score() {
+    Random random = new Random(42);
+    List<File> addedFiles = new ArrayList<>();
+    List<File> removedFiles = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      addedFiles.add(randomFile(random));
+    }
+    for (int i = 0; i < 200; i++) {
+      removedFiles.add(randomChange(random, addedFiles.get(random.nextInt(addedFiles.size()))));
+    }
+    AddedFilesIndex underTest = new AddedFilesIndex(addedFiles);
+
+    for (File removedFile : removedFiles) {
+      int[] candidates = underTest.candidatesOf(removedFile);
+      for (int i = 0; i < addedFiles.size(); i++) {
+        if (fileSimilarity.score(removedFile, addedFiles.get(i)) >= MIN_REQUIRED_SCORE) {
+          assertThat(candidates).contains(i);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void canReachMinScore() {
+    assertThat(AddedFilesIndex.canReachMinScore(0, 0, 0)).isFalse();
+    assertThat(AddedFilesIndex.canReachMinScore(100, 0, 0)).isFalse();
+    assertThat(AddedFilesIndex.canReachMinScore(100, 100, 100)).isTrue();
+    assertThat(AddedFilesIndex.canReachMinScore(100, 85, 85)).isTrue();
+    assertThat(AddedFilesIndex.canReachMinScore(100, 84, 84)).isFalse();
+    assertThat(AddedFilesIndex.canReachMinScore(100, 100, 85)).isTrue();
+    assertThat(AddedFilesIndex.canReachMinScore(100, 100, 84)).isFalse();
+  }
+
+  private static File randomFile(Random random) {
+    List<String> lines = new ArrayList<>();
+    int lineCount = 5 + random.nextInt(40);
+    for (int i = 0; i < lineCount; i++) {
+      lines.add(random.nextInt(4) == 0 ? "}" : ("line" + random.nextInt(2_000)));
+    }
+    return file(lines);
+  }
+
+  /**
+   * Removes, adds or replaces up to 3 lines of the specified file
+   */
+  private static File randomChange(Random random, File file) {
+    List<String> lines = new ArrayList<>(file.getLineHashes());
+    int changes = random.nextInt(4);
+    for (int i = 0; i < changes; i++) {
+      int change = random.nextInt(3);
+      if (change == 0) {
+        lines.remove(random.nextInt(lines.size()));
+      } else if (change == 1) {
+        lines.add(random.nextInt(lines.size() + 1), "added" + random.nextInt(5));
+      } else {
+        lines.set(random.nextInt(lines.size()), "}");
+      }
+    }
+    return file(lines);
+  }
+
+  private static List<String> lines(int from, int to) {
+    List<String> res = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      res.add("line" + i);
+    }
+    return res;
+  }
+
+  private static File file(String... lineHashes) {
+    return file(Arrays.asList(lineHashes));
+  }
+
+  private static File file(List<String> lineHashes) {
+    return new File("path", Collections.unmodifiableList(lineHashes));
+  }
+}
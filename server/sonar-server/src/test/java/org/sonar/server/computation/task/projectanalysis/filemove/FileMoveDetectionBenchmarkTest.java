@@ -0,0 +1,111 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity.File;
+import org.sonar.test.Benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+/**
+ * Compares the scoring of the candidates returned by {@link AddedFilesIndex} with the scoring of all the pairs of files,
+ * when {@value #FILES} files are moved.
+ */
+public class FileMoveDetectionBenchmarkTest {
+
+  private static final int FILES = 5_000;
+  private static final int LINES = 20;
+  // scoring all the pairs of 5k x 5k files is too long, only a sample of the removed files is compared to all the added files
+  private static final int ALL_PAIRS_SAMPLE = FILES / 10;
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
+  private List<File> removedFiles = new ArrayList<>();
+  private List<File> addedFiles = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    Benchmark.assumeEnabled();
+    for (int i = 0; i < FILES; i++) {
+      removedFiles.add(newFile(i, -1));
+      addedFiles.add(newFile(i, i % LINES));
+    }
+  }
+
+  @Test
+  public void compare_with_scoring_of_all_pairs() {
+    long indexDuration = benchmark.measure("Index - score " + FILES + "x" + FILES + " files", this::scoreCandidates);
+    long allPairsDuration = benchmark.measure("All pairs - score " + ALL_PAIRS_SAMPLE + "x" + FILES + " files", this::scoreAllPairsOfSample);
+
+    benchmark.expectLessThanOrEqualTo("Index - duration of " + FILES + "x" + FILES + " files (ms)", indexDuration, allPairsDuration);
+  }
+
+  private void scoreCandidates() {
+    AddedFilesIndex index = new AddedFilesIndex(addedFiles);
+    int matches = 0;
+    for (int i = 0; i < FILES; i++) {
+      File removedFile = removedFiles.get(i);
+      for (int candidate : index.candidatesOf(removedFile)) {
+        if (fileSimilarity.score(removedFile, index.get(candidate)) >= MIN_REQUIRED_SCORE) {
+          assertThat(candidate).isEqualTo(i);
+          matches++;
+        }
+      }
+    }
+    assertThat(matches).isEqualTo(FILES);
+  }
+
+  private void scoreAllPairsOfSample() {
+    int matches = 0;
+    for (int i = 0; i < ALL_PAIRS_SAMPLE; i++) {
+      for (File addedFile : addedFiles) {
+        if (fileSimilarity.score(removedFiles.get(i), addedFile) >= MIN_REQUIRED_SCORE) {
+          matches++;
+        }
+      }
+    }
+    assertThat(matches).isEqualTo(ALL_PAIRS_SAMPLE);
+  }
+
+  /**
+   * Java-like file whose line at index {@code changedLine} differs between the removed and the added versions.
+   */
+  private static File newFile(int index, int changedLine) {
+    List<String> lineHashes = new ArrayList<>(LINES);
+    for (int line = 0; line < LINES; line++) {
+      if (line == changedLine) {
+        lineHashes.add("changed line of file " + index);
+      } else if (line % 5 == 4) {
+        lineHashes.add(line % 10 == 4 ? "}" : "");
+      } else {
+        lineHashes.add("line " + line + " of file " + index);
+      }
+    }
+    return new File("src/main/java/File" + index + ".java", lineHashes);
+  }
+}
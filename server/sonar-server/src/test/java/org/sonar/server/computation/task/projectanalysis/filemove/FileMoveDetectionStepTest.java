@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -54,6 +55,7 @@ import static java.util.Arrays.stream;
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -228,6 +230,7 @@ public class FileMoveDetectionStepTest {
   private ComponentDao componentDao = mock(ComponentDao.class);
   private FileSourceDao fileSourceDao = mock(FileSourceDao.class);
   private FileSimilarity fileSimilarity = new FileSimilarityImpl(new SourceSimilarityImpl());
+  private Map<String, FileSourceDto> fileSourcesInDb = new HashMap<>();
   private long dbIdGenerator = 0;
 
   private FileMoveDetectionStep underTest = new FileMoveDetectionStep(analysisMetadataHolder, treeRootHolder, dbClient,
@@ -238,6 +241,11 @@ public class FileMoveDetectionStepTest {
     when(dbClient.openSession(false)).thenReturn(dbSession);
     when(dbClient.componentDao()).thenReturn(componentDao);
     when(dbClient.fileSourceDao()).thenReturn(fileSourceDao);
+    when(fileSourceDao.selectSourceLineHashesByFileUuids(eq(dbSession), anyCollectionOf(String.class)))
+      .thenAnswer(invocation -> ((Collection<String>) invocation.getArguments()[1]).stream()
+        .filter(fileSourcesInDb::containsKey)
+        .map(fileSourcesInDb::get)
+        .collect(toList()));
     treeRootHolder.setRoot(PROJECT);
   }
 
@@ -508,14 +516,14 @@ public class FileMoveDetectionStepTest {
   }
 
   private void mockContentOfFileInDb(String key, @Nullable String[] content) {
-    FileSourceDto dto = new FileSourceDto();
+    FileSourceDto dto = new FileSourceDto().setFileUuid(componentUuidOf(key));
     if (content != null) {
       SourceLinesHashesComputer linesHashesComputer = new SourceLinesHashesComputer();
       stream(content).forEach(linesHashesComputer::addLine);
       dto.setLineHashes(on('\n').join(linesHashesComputer.getLineHashes()));
     }
 
-    when(fileSourceDao.selectSourceByFileUuid(dbSession, componentUuidOf(key))).thenReturn(dto);
+    fileSourcesInDb.put(dto.getFileUuid(), dto);
   }
 
   private void setFilesInReport(Component... files) {
@@ -20,18 +20,11 @@
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import org.junit.Test;
 
-import static com.google.common.collect.ImmutableSet.of;
-import static java.util.Collections.emptyList;
-import static java.util.Collections.emptySet;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
 
@@ -41,30 +34,37 @@ public class MatchesByScoreTest {
 
   @Test
   public void creates_returns_always_the_same_instance_of_maxScore_is_less_than_min_required_score() {
-    Set<String> doesNotMatterDbFileKeys = emptySet();
-    Map<String, FileSimilarity.File> doesNotMatterReportFiles = Collections.emptyMap();
-    int[][] doesNotMatterScores = new int[0][0];
-
-    ScoreMatrix scoreMatrix1 = new ScoreMatrix(doesNotMatterDbFileKeys, doesNotMatterReportFiles, doesNotMatterScores, MIN_REQUIRED_SCORE - 1);
+    ScoreMatrix scoreMatrix1 = ScoreMatrix.builder(ImmutableList.of("A"), ImmutableList.of("1"))
+      .add(0, 0, MIN_REQUIRED_SCORE - 1)
+      .build();
     MatchesByScore matchesByScore = MatchesByScore.create(scoreMatrix1);
 
     assertThat(matchesByScore.getSize()).isEqualTo(0);
     assertThat(matchesByScore).isEmpty();
 
-    ScoreMatrix scoreMatrix2 = new ScoreMatrix(doesNotMatterDbFileKeys, doesNotMatterReportFiles, doesNotMatterScores, MIN_REQUIRED_SCORE - 5);
+    ScoreMatrix scoreMatrix2 = ScoreMatrix.builder(ImmutableList.of("A"), ImmutableList.of("1"))
+      .add(0, 0, MIN_REQUIRED_SCORE - 5)
+      .build();
     assertThat(MatchesByScore.create(scoreMatrix2)).isSameAs(matchesByScore);
   }
 
+  @Test
+  public void creates_returns_always_the_same_instance_if_no_score() {
+    ScoreMatrix scoreMatrix = ScoreMatrix.builder(ImmutableList.of("A"), ImmutableList.of("1")).build();
+
+    assertThat(scoreMatrix.getMaxScore()).isEqualTo(0);
+    assertThat(MatchesByScore.create(scoreMatrix)).isEmpty();
+  }
+
   @Test
   public void creates_supports_score_with_same_value_as_min_required_score() {
     int maxScore = 92;
-    int[][] scores = {
-      {maxScore},
-      {8},
-      {85},
-    };
-    MatchesByScore matchesByScore = MatchesByScore.create(new ScoreMatrix(
-      of("A", "B", "C"), ImmutableMap.of("1", fileOf("1")), scores, maxScore));
+    ScoreMatrix scoreMatrix = ScoreMatrix.builder(ImmutableList.of("A", "B", "C"), ImmutableList.of("1"))
+      .add(0, 0, maxScore)
+      .add(1, 0, 8)
+      .add(2, 0, 85)
+      .build();
+    MatchesByScore matchesByScore = MatchesByScore.create(scoreMatrix);
 
     assertThat(matchesByScore.getSize()).isEqualTo(2);
     assertThat(Lists.newArrayList(matchesByScore)).isEqualTo(Arrays.asList(
@@ -79,7 +79,13 @@ public class MatchesByScoreTest {
     ));
   }
 
-  private static FileSimilarity.File fileOf(String key) {
-    return new FileSimilarity.File("path of " + key, emptyList());
+  @Test
+  public void toCsv_prints_0_for_pairs_without_score() {
+    ScoreMatrix scoreMatrix = ScoreMatrix.builder(ImmutableList.of("A", "B"), ImmutableList.of("1", "2"))
+      .add(0, 1, 90)
+      .add(1, 0, 12)
+      .build();
+
+    assertThat(scoreMatrix.toCsv(';')).isEqualTo(";1;2;\nA;0;90;\nB;12;0;");
   }
 }
@@ -0,0 +1,209 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class DefaultIssueCodecTest {
+
+  private static final Date DATE = new Date(1_500_000_000_000L);
+
+  private DefaultIssueCodec underTest = new DefaultIssueCodec();
+
+  @Test
+  public void encode_and_decode_issue_with_all_fields() throws IOException {
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE_1")
+      .setType(RuleType.BUG)
+      .setComponentUuid("FILE_UUID")
+      .setComponentKey("FILE_KEY")
+      .setModuleUuid("MODULE_UUID")
+      .setModuleUuidPath(".MODULE_UUID.")
+      .setProjectUuid("PROJECT_UUID")
+      .setProjectKey("PROJECT_KEY")
+      .setRuleKey(RuleKey.of("java", "S001"))
+      .setLanguage("java")
+      .setSeverity(Severity.CRITICAL)
+      .setManualSeverity(true)
+      .setMessage("message with accents: \u00e9\u00e0")
+      .setLine(42)
+      .setGap(3.5)
+      .setEffort(Duration.create(20L))
+      .setStatus("RESOLVED")
+      .setResolution("FIXED")
+      .setAssignee("john")
+      .setChecksum("abcd")
+      .setAuthorLogin("smith")
+      .setCreationDate(DATE)
+      .setUpdateDate(DATE)
+      .setCloseDate(DATE)
+      .setSelectedAt(1_000L)
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setAttribute("jira", "FOO-123")
+      .setTags(asList("security", "cwe"))
+      .setLocations(DbIssues.Locations.newBuilder().setTextRange(DbCommons.TextRange.newBuilder().setStartLine(42).setEndLine(43)).build());
+    issue.addComment(new DefaultIssueComment().setKey("COMMENT_1").setIssueKey("ISSUE_1").setUserLogin("john").setMarkdownText("*text*")
+      .setCreatedAt(DATE).setUpdatedAt(DATE).setNew(true));
+    issue.addChange(new FieldDiffs().setIssueKey("ISSUE_1").setUserLogin("john").setCreationDate(DATE).setDiff("assignee", "smith", "john"));
+    issue.setFieldChange(IssueChangeContext.createUser(DATE, "john"), "technicalDebt", 10L, 20L);
+    issue.setFieldChange(IssueChangeContext.createUser(DATE, "john"), "type", RuleType.CODE_SMELL, RuleType.BUG);
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ISSUE_1");
+    assertThat(decoded.type()).isEqualTo(RuleType.BUG);
+    assertThat(decoded.componentUuid()).isEqualTo("FILE_UUID");
+    assertThat(decoded.componentKey()).isEqualTo("FILE_KEY");
+    assertThat(decoded.moduleUuid()).isEqualTo("MODULE_UUID");
+    assertThat(decoded.moduleUuidPath()).isEqualTo(".MODULE_UUID.");
+    assertThat(decoded.projectUuid()).isEqualTo("PROJECT_UUID");
+    assertThat(decoded.projectKey()).isEqualTo("PROJECT_KEY");
+    assertThat(decoded.ruleKey()).isEqualTo(RuleKey.of("java", "S001"));
+    assertThat(decoded.language()).isEqualTo("java");
+    assertThat(decoded.severity()).isEqualTo(Severity.CRITICAL);
+    assertThat(decoded.manualSeverity()).isTrue();
+    assertThat(decoded.message()).isEqualTo(issue.message());
+    assertThat(decoded.line()).isEqualTo(42);
+    assertThat(decoded.gap()).isEqualTo(3.5);
+    assertThat(decoded.effort()).isEqualTo(Duration.create(20L));
+    assertThat(decoded.status()).isEqualTo("RESOLVED");
+    assertThat(decoded.resolution()).isEqualTo("FIXED");
+    assertThat(decoded.assignee()).isEqualTo("john");
+    assertThat(decoded.checksum()).isEqualTo("abcd");
+    assertThat(decoded.authorLogin()).isEqualTo("smith");
+    assertThat(decoded.creationDate()).isEqualTo(DATE);
+    assertThat(decoded.updateDate()).isEqualTo(DATE);
+    assertThat(decoded.closeDate()).isEqualTo(DATE);
+    assertThat(decoded.selectedAt()).isEqualTo(1_000L);
+    assertThat(decoded.isNew()).isFalse();
+    assertThat(decoded.isBeingClosed()).isTrue();
+    assertThat(decoded.isOnDisabledRule()).isTrue();
+    assertThat(decoded.isChanged()).isTrue();
+    assertThat(decoded.mustSendNotifications()).isTrue();
+    assertThat(decoded.attributes()).containsOnly(entry("jira", "FOO-123"));
+    assertThat(decoded.tags()).containsExactly("security", "cwe");
+    assertThat((DbIssues.Locations) decoded.getLocations()).isEqualTo(issue.getLocations());
+
+    assertThat(decoded.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) decoded.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT_1");
+    assertThat(comment.issueKey()).isEqualTo("ISSUE_1");
+    assertThat(comment.userLogin()).isEqualTo("john");
+    assertThat(comment.markdownText()).isEqualTo("*text*");
+    assertThat(comment.createdAt()).isEqualTo(DATE);
+    assertThat(comment.updatedAt()).isEqualTo(DATE);
+    assertThat(comment.isNew()).isTrue();
+
+    assertThat(decoded.changes().stream().map(FieldDiffs::toString).collect(Collectors.toList()))
+      .containsExactlyElementsOf(issue.changes().stream().map(FieldDiffs::toString).collect(Collectors.toList()));
+    assertThat(decoded.currentChange().get("technicalDebt").newValueLong()).isEqualTo(20L);
+    assertThat(decoded.currentChange().get("type").newValue()).isEqualTo(RuleType.BUG);
+    assertThat(decoded.currentChange().userLogin()).isEqualTo("john");
+    assertThat(decoded.currentChange().creationDate()).isEqualTo(DATE);
+  }
+
+  @Test
+  public void keep_references_to_current_change() throws IOException {
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE_1");
+    issue.setFieldChange(IssueChangeContext.createScan(DATE), "status", "OPEN", "CLOSED");
+    issue.setFieldChange(IssueChangeContext.createScan(DATE), "resolution", null, "FIXED");
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.changes()).hasSize(2);
+    assertThat(decoded.changes().get(0)).isSameAs(decoded.currentChange());
+    assertThat(decoded.changes().get(1)).isSameAs(decoded.currentChange());
+    assertThat(decoded.currentChange().get("resolution").oldValue()).isNull();
+    assertThat(decoded.currentChange().get("resolution").newValue()).isEqualTo("FIXED");
+  }
+
+  @Test
+  public void encode_and_decode_issue_without_optional_fields() throws IOException {
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE_1");
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ISSUE_1");
+    assertThat(decoded.type()).isNull();
+    assertThat(decoded.ruleKey()).isNull();
+    assertThat(decoded.line()).isNull();
+    assertThat(decoded.gap()).isNull();
+    assertThat(decoded.effort()).isNull();
+    assertThat(decoded.status()).isNull();
+    assertThat(decoded.creationDate()).isNull();
+    assertThat(decoded.selectedAt()).isNull();
+    assertThat(decoded.isNew()).isTrue();
+    assertThat(decoded.attributes()).isEmpty();
+    assertThat(decoded.tags()).isEmpty();
+    assertThat(decoded.comments()).isEmpty();
+    assertThat((Object) decoded.getLocations()).isNull();
+    assertThat(decoded.changes()).isEmpty();
+    assertThat(decoded.currentChange()).isNull();
+  }
+
+  @Test
+  public void encode_several_issues_in_same_stream() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+    underTest.write(new DefaultIssue().setKey("ISSUE_1").setMessage("first"), output);
+    underTest.write(new DefaultIssue().setKey("ISSUE_2").setMessage("second"), output);
+    output.flush();
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    assertThat(underTest.read(input).message()).isEqualTo("first");
+    assertThat(underTest.read(input).message()).isEqualTo("second");
+    assertThat(input.read()).isEqualTo(-1);
+  }
+
+  private DefaultIssue encodeAndDecode(DefaultIssue issue) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      underTest.write(issue, output);
+    }
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return underTest.read(input);
+    }
+  }
+}
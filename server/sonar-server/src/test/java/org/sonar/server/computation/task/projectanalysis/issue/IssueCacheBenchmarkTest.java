@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.File;
+import java.util.Date;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.DiskCache;
+import org.sonar.test.Benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares {@link IssueCache} (encoded with {@link DefaultIssueCodec}) with {@link DiskCache} based on Java serialization
+ */
+public class IssueCacheBenchmarkTest {
+
+  private static final int ISSUES = 500_000;
+  private static final Date NOW = new Date();
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  @Before
+  public void setUp() {
+    Benchmark.assumeEnabled();
+  }
+
+  @Test
+  public void compare_with_java_serialization() throws Exception {
+    File serializationFile = temp.newFile();
+    File codecFile = temp.newFile();
+    DiskCache<DefaultIssue> serializationCache = new DiskCache<>(serializationFile, System2.INSTANCE);
+    IssueCache codecCache = new IssueCache(codecFile, System2.INSTANCE);
+
+    long serializationWrite = benchmark.measure("Java serialization - append " + ISSUES + " issues", () -> append(serializationCache));
+    long codecWrite = benchmark.measure("Codec - append " + ISSUES + " issues", () -> append(codecCache));
+    long serializationRead = benchmark.measure("Java serialization - traverse " + ISSUES + " issues", () -> traverse(serializationCache));
+    long codecRead = benchmark.measure("Codec - traverse " + ISSUES + " issues", () -> traverse(codecCache));
+
+    benchmark.expectLessThanOrEqualTo("Codec - append duration (ms)", codecWrite, serializationWrite / 2);
+    benchmark.expectLessThanOrEqualTo("Codec - traverse duration (ms)", codecRead, serializationRead / 2);
+    benchmark.expectLessThanOrEqualTo("Codec - file size (bytes)", codecFile.length(), serializationFile.length() / 2);
+  }
+
+  private static void append(DiskCache<DefaultIssue> cache) {
+    DiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender();
+    for (int i = 0; i < ISSUES; i++) {
+      appender.append(newIssue(i));
+    }
+    appender.close();
+  }
+
+  private static void traverse(DiskCache<DefaultIssue> cache) {
+    int count = 0;
+    try (CloseableIterator<DefaultIssue> issues = cache.traverse()) {
+      while (issues.hasNext()) {
+        issues.next();
+        count++;
+      }
+    }
+    assertThat(count).isEqualTo(ISSUES);
+  }
+
+  private static DefaultIssue newIssue(int i) {
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("AVtj2Y8Rn3fS4QfT" + i)
+      .setType(RuleType.CODE_SMELL)
+      .setComponentUuid("AVtj2Y8Rn3fS4QfTxfile" + (i / 100))
+      .setComponentKey("org.sonarsource:project:src/main/java/org/sonar/File" + (i / 100) + ".java")
+      .setModuleUuid("AVtj2Y8Rn3fS4QfTxmod")
+      .setModuleUuidPath(".AVtj2Y8Rn3fS4QfTxmod.")
+      .setProjectUuid("AVtj2Y8Rn3fS4QfTxmod")
+      .setProjectKey("org.sonarsource:project")
+      .setRuleKey(RuleKey.of("squid", "S" + (i % 500)))
+      .setLanguage("java")
+      .setSeverity(Severity.MAJOR)
+      .setMessage("Remove this unused private \"field" + i + "\" field.")
+      .setLine(1 + i % 1000)
+      .setEffort(Duration.create(5L))
+      .setStatus("OPEN")
+      .setChecksum("8d01a2d86f5d0b3d2e0c17e1f3b9b2a1")
+      .setAuthorLogin("john.smith")
+      .setCreationDate(NOW)
+      .setUpdateDate(NOW)
+      .setNew(i % 10 == 0)
+      .setLocations(DbIssues.Locations.newBuilder()
+        .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(1 + i % 1000).setEndLine(1 + i % 1000).setStartOffset(4).setEndOffset(20))
+        .build());
+    if (i % 10 == 0) {
+      issue.setFieldChange(IssueChangeContext.createScan(NOW), "status", "OPEN", "CLOSED");
+    }
+    return issue;
+  }
+}
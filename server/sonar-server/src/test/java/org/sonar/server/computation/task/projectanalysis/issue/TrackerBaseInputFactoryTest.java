@@ -20,17 +20,28 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.tracking.Input;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDao;
+import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -39,6 +50,9 @@ public class TrackerBaseInputFactoryTest {
   private static final String FILE_UUID = "uuid";
   private static final ReportComponent FILE = ReportComponent.builder(Component.Type.FILE, 1).setUuid(FILE_UUID).build();
 
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
+
   private BaseIssuesLoader baseIssuesLoader = mock(BaseIssuesLoader.class);
   private DbClient dbClient = mock(DbClient.class);
   private DbSession dbSession = mock(DbSession.class);
@@ -46,10 +60,11 @@ public class TrackerBaseInputFactoryTest {
 
   private MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
 
-  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, dbClient, movedFilesRepository);
+  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(treeRootHolder, baseIssuesLoader, dbClient, movedFilesRepository);
 
   @Before
   public void setUp() throws Exception {
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 10).setUuid("project uuid").build());
     when(dbClient.openSession(false)).thenReturn(dbSession);
     when(dbClient.fileSourceDao()).thenReturn(fileSourceDao);
     when(movedFilesRepository.getOriginalFile(any(Component.class)))
@@ -97,4 +112,45 @@ public class TrackerBaseInputFactoryTest {
     verify(baseIssuesLoader).loadForComponentUuid(originalUuid);
     verify(baseIssuesLoader, times(0)).loadForComponentUuid(FILE_UUID);
   }
+
+  @Test
+  public void create_returns_Input_with_prefetched_issues_and_line_hashes_of_the_next_components() {
+    Component file2 = ReportComponent.builder(Component.Type.FILE, 2).setUuid("uuid2").build();
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 10).setUuid("project uuid").addChildren(FILE, file2).build();
+    treeRootHolder.setRoot(project);
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE_1");
+    when(baseIssuesLoader.loadForComponentUuids(any())).thenReturn(ImmutableMap.of("uuid2", newArrayList(issue)));
+    when(fileSourceDao.selectSourceLineHashesByFileUuids(dbSession, singletonList("uuid2"))).thenReturn(singletonList(
+      new FileSourceDto().setFileUuid("uuid2").setLineHashes("c")));
+
+    Input<DefaultIssue> input1 = underTest.create(FILE);
+    Input<DefaultIssue> input2 = underTest.create(file2);
+    Input<DefaultIssue> inputOfProject = underTest.create(project);
+
+    assertThat(input1.getLineHashSequence().length()).isEqualTo(0);
+    assertThat(input1.getIssues()).isEmpty();
+    assertThat(input2.getLineHashSequence().length()).isEqualTo(1);
+    assertThat(input2.getIssues()).containsExactly(issue);
+    assertThat(inputOfProject.getIssues()).isEmpty();
+    verify(baseIssuesLoader, times(1)).loadForComponentUuids(any());
+    verify(baseIssuesLoader, never()).loadForComponentUuid(anyString());
+    verify(fileSourceDao, never()).selectLineHashes(any(DbSession.class), anyString());
+    verify(fileSourceDao, times(1)).selectSourceLineHashesByFileUuids(any(DbSession.class), any());
+  }
+
+  @Test
+  public void create_does_not_prefetch_line_hashes_of_files_without_issues() {
+    Component file2 = ReportComponent.builder(Component.Type.FILE, 2).setUuid("uuid2").build();
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 10).setUuid("project uuid").addChildren(FILE, file2).build();
+    treeRootHolder.setRoot(project);
+    when(baseIssuesLoader.loadForComponentUuids(any())).thenReturn(ImmutableMap.of(FILE_UUID, newArrayList()));
+
+    Input<DefaultIssue> input1 = underTest.create(FILE);
+    Input<DefaultIssue> input2 = underTest.create(file2);
+
+    assertThat(input1.getLineHashSequence().length()).isEqualTo(0);
+    assertThat(input2.getLineHashSequence().length()).isEqualTo(0);
+    verify(fileSourceDao, never()).selectSourceLineHashesByFileUuids(any(DbSession.class), any());
+    verify(fileSourceDao, never()).selectLineHashes(any(DbSession.class), anyString());
+  }
 }
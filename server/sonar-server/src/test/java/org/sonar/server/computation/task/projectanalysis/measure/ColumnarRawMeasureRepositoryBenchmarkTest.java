@@ -0,0 +1,107 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+import org.sonar.test.Benchmark;
+
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+/**
+ * Compares the heap retained by {@link ColumnarRawMeasureRepository} and by {@link MapBasedRawMeasureRepository}
+ */
+public class ColumnarRawMeasureRepositoryBenchmarkTest {
+
+  // the map based repository of 100k files does not fit in the heap of tests
+  private static final int FILES = 20_000;
+  private static final int METRICS = 60;
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  private List<Component> files = new ArrayList<>();
+  private List<Metric> metrics = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    Benchmark.assumeEnabled();
+    for (int i = 1; i <= FILES; i++) {
+      files.add(ReportComponent.builder(Component.Type.FILE, i).build());
+    }
+    for (int i = 0; i < METRICS; i++) {
+      Metric.MetricType type = i % 3 == 0 ? Metric.MetricType.FLOAT : Metric.MetricType.INT;
+      metrics.add(new MetricImpl(i, "metric" + i, "metric " + i, type));
+    }
+  }
+
+  @Test
+  public void compare_heap_with_map_based_repository() {
+    long mapBasedHeap = retainedHeapOf(() -> fill(new MapBasedRawMeasureRepository<>(ComponentFunctions.toReportRef())));
+    long columnarHeap = retainedHeapOf(() -> fill(new ColumnarRawMeasureRepository()));
+
+    benchmark.expectLessThanOrEqualTo(
+      "ColumnarRawMeasureRepository - heap of " + FILES + "x" + METRICS + " measures (MB), compared to " + mapBasedHeap + " MB with MapBasedRawMeasureRepository",
+      columnarHeap, mapBasedHeap / 5);
+  }
+
+  private MeasureRepository fill(MeasureRepository repository) {
+    for (Component file : files) {
+      int ref = file.getReportAttributes().getRef();
+      for (Metric metric : metrics) {
+        Measure measure = metric.getType() == Metric.MetricType.FLOAT
+          ? newMeasureBuilder().setVariation(1.0d).create(ref / 3.0d, 1)
+          : newMeasureBuilder().create(ref + metric.getId());
+        repository.add(file, metric, measure);
+      }
+    }
+    return repository;
+  }
+
+  /**
+   * Heap (in MB) used by the object returned by the supplier
+   */
+  private static long retainedHeapOf(Supplier<Object> supplier) {
+    long before = usedHeap();
+    Object retained = supplier.get();
+    long after = usedHeap();
+    if (retained == null) {
+      throw new IllegalStateException("Object must be retained until heap is measured");
+    }
+    return (after - before) / (1024 * 1024);
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.collect.SetMultimap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+public class ColumnarRawMeasureRepositoryTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey("file cpt key").build();
+  private static final ReportComponent OTHER_COMPONENT = ReportComponent.builder(Component.Type.FILE, 2).setKey("some other key").build();
+  private static final ReportComponent FAR_COMPONENT = ReportComponent.builder(Component.Type.FILE, 10_000).setKey("far key").build();
+
+  private static final Metric INT_METRIC = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+  private static final Metric LONG_METRIC = new MetricImpl(2, "long", "long", Metric.MetricType.WORK_DUR);
+  private static final Metric DOUBLE_METRIC = new MetricImpl(3, "double", "double", Metric.MetricType.FLOAT);
+  private static final Metric BOOLEAN_METRIC = new MetricImpl(4, "boolean", "boolean", Metric.MetricType.BOOL);
+  private static final Metric STRING_METRIC = new MetricImpl(5, "string", "string", Metric.MetricType.STRING);
+  private static final Metric LEVEL_METRIC = new MetricImpl(6, "level", "level", Metric.MetricType.LEVEL);
+  private static final Developer SOME_DEVELOPER = new DumbDeveloper("DEV1");
+
+  private ColumnarRawMeasureRepository underTest = new ColumnarRawMeasureRepository();
+
+  @Test
+  public void getBaseMeasure_is_not_supported() {
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.getBaseMeasure(FILE_COMPONENT, INT_METRIC);
+  }
+
+  @Test
+  public void getRawMeasure_returns_values_of_all_types() {
+    verifyRoundTrip(INT_METRIC, newMeasureBuilder().create(12));
+    verifyRoundTrip(INT_METRIC, newMeasureBuilder().create(-3, "some data"));
+    verifyRoundTrip(LONG_METRIC, newMeasureBuilder().create(123_456_789_123L));
+    verifyRoundTrip(DOUBLE_METRIC, newMeasureBuilder().create(1.235d, 2));
+    verifyRoundTrip(BOOLEAN_METRIC, newMeasureBuilder().create(true));
+    verifyRoundTrip(BOOLEAN_METRIC, newMeasureBuilder().create(false));
+    verifyRoundTrip(STRING_METRIC, newMeasureBuilder().create("some value"));
+    verifyRoundTrip(LEVEL_METRIC, newMeasureBuilder().create(Measure.Level.WARN));
+    verifyRoundTrip(INT_METRIC, newMeasureBuilder().createNoValue());
+  }
+
+  @Test
+  public void getRawMeasure_returns_exact_value_of_long_measures() {
+    long value = (1L << 53) + 1;
+
+    underTest.add(FILE_COMPONENT, LONG_METRIC, newMeasureBuilder().create(value));
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, LONG_METRIC).get().getLongValue()).isEqualTo(value);
+  }
+
+  @Test
+  public void getRawMeasure_returns_variation_and_quality_gate_status() {
+    QualityGateStatus qualityGateStatus = new QualityGateStatus(Measure.Level.ERROR, "too bad");
+
+    verifyRoundTrip(INT_METRIC, newMeasureBuilder().setVariation(-2.5d).setQualityGateStatus(qualityGateStatus).create(12));
+    verifyRoundTrip(INT_METRIC, newMeasureBuilder().create(12));
+  }
+
+  @Test
+  public void getRawMeasure_returns_absent_if_no_measure() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(12));
+
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, INT_METRIC)).isAbsent();
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, LONG_METRIC)).isAbsent();
+    assertThat(underTest.getRawMeasure(FAR_COMPONENT, INT_METRIC)).isAbsent();
+  }
+
+  @Test
+  public void add_supports_any_component_ref() {
+    Measure measure = newMeasureBuilder().create(12);
+
+    underTest.add(FAR_COMPONENT, INT_METRIC, measure);
+    underTest.add(FILE_COMPONENT, INT_METRIC, measure);
+
+    assertThat(underTest.getRawMeasure(FAR_COMPONENT, INT_METRIC).get()).isEqualToComparingFieldByField(measure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get()).isEqualToComparingFieldByField(measure);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, INT_METRIC)).isAbsent();
+  }
+
+  @Test
+  public void add_throws_UOE_if_measure_already_exists() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(12));
+
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(13));
+  }
+
+  @Test
+  public void update_throws_UOE_if_measure_does_not_exist() {
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.update(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(12));
+  }
+
+  @Test
+  public void update_throws_IAE_if_value_type_is_not_consistent_with_metric() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(12));
+
+    expectedException.expect(IllegalArgumentException.class);
+
+    underTest.update(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create("some value"));
+  }
+
+  @Test
+  public void update_replaces_value_data_and_quality_gate_status() {
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().setQualityGateStatus(new QualityGateStatus(Measure.Level.OK)).create(12, "data"));
+    Measure newMeasure = newMeasureBuilder().createNoValue();
+
+    underTest.update(FILE_COMPONENT, INT_METRIC, newMeasure);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get()).isEqualToComparingFieldByField(newMeasure);
+  }
+
+  @Test
+  public void add_with_DO_NOT_OVERRIDE_keeps_existing_measure() {
+    Measure measure = newMeasureBuilder().create(12);
+    underTest.add(FILE_COMPONENT, INT_METRIC, measure);
+
+    underTest.add(FILE_COMPONENT, INT_METRIC, newMeasureBuilder().create(13), OverridePolicy.DO_NOT_OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC).get()).isEqualToComparingFieldByField(measure);
+  }
+
+  @Test
+  public void developer_measures_are_not_returned_by_getRawMeasure() {
+    Measure devMeasure = newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(3);
+    underTest.add(FILE_COMPONENT, INT_METRIC, devMeasure);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, INT_METRIC)).isAbsent();
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT, INT_METRIC)).containsOnly(devMeasure);
+  }
+
+  @Test
+  public void getRawMeasures_returns_measures_of_component_by_metric_key() {
+    Measure measure = newMeasureBuilder().create(12);
+    Measure devMeasure = newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(3);
+    underTest.add(FILE_COMPONENT, INT_METRIC, measure);
+    underTest.add(FILE_COMPONENT, INT_METRIC, devMeasure);
+    underTest.add(FILE_COMPONENT, STRING_METRIC, newMeasureBuilder().create("some value"));
+    underTest.add(OTHER_COMPONENT, LONG_METRIC, newMeasureBuilder().create(5L));
+
+    SetMultimap<String, Measure> rawMeasures = underTest.getRawMeasures(FILE_COMPONENT);
+
+    assertThat(rawMeasures.keySet()).containsOnly(INT_METRIC.getKey(), STRING_METRIC.getKey());
+    assertThat(rawMeasures.get(INT_METRIC.getKey())).hasSize(2).contains(devMeasure);
+    assertThat(rawMeasures.get(STRING_METRIC.getKey()).iterator().next().getStringValue()).isEqualTo("some value");
+    assertThat(underTest.getRawMeasures(FAR_COMPONENT).isEmpty()).isTrue();
+  }
+
+  private void verifyRoundTrip(Metric metric, Measure measure) {
+    ColumnarRawMeasureRepository repository = new ColumnarRawMeasureRepository();
+    repository.add(FILE_COMPONENT, metric, measure);
+
+    assertThat(repository.getRawMeasure(FILE_COMPONENT, metric).get()).isEqualToComparingFieldByField(measure);
+  }
+}
@@ -285,7 +285,7 @@ public class MeasureRepositoryImplTest {
     underTest.add(FILE_COMPONENT, metric1, SOME_MEASURE);
     underTest.update(FILE_COMPONENT, metric1, newMeasure);
 
-    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1).get()).isSameAs(newMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, metric1).get()).isEqualToComparingFieldByField(newMeasure);
   }
 
   @Test
@@ -315,7 +315,7 @@ public class MeasureRepositoryImplTest {
     Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, metric1);
 
     assertThat(res).isPresent();
-    assertThat(res.get()).isSameAs(SOME_MEASURE);
+    assertThat(res.get()).isEqualToComparingFieldByField(SOME_MEASURE);
 
     // make sure we really match on the specified component and metric
     assertThat(underTest.getRawMeasure(OTHER_COMPONENT, metric1)).isAbsent();
@@ -360,13 +360,13 @@ public class MeasureRepositoryImplTest {
     reportReader.putMeasures(FILE_COMPONENT.getReportAttributes().getRef(), ImmutableList.of(
       ScannerReport.Measure.newBuilder().setMetricKey(METRIC_KEY_1).setStringValue(StringValue.newBuilder().setValue("some value")).build()));
 
-    Measure addedMeasure = SOME_MEASURE;
+    Measure addedMeasure = Measure.newMeasureBuilder().create("added value");
     underTest.add(FILE_COMPONENT, metric1, addedMeasure);
 
     Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, metric1);
 
     assertThat(res).isPresent();
-    assertThat(res.get()).isSameAs(addedMeasure);
+    assertThat(res.get()).isEqualToComparingFieldByField(addedMeasure);
   }
 
   @Test
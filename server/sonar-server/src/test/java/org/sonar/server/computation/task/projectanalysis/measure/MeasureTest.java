@@ -170,6 +170,12 @@ public class MeasureTest {
     assertThat(LONG_MEASURE.getLongValue()).isEqualTo(1);
   }
 
+  @Test
+  public void getLongValue_returns_exact_value_above_precision_of_double() {
+    assertThat(newMeasureBuilder().create(Long.MAX_VALUE).getLongValue()).isEqualTo(Long.MAX_VALUE);
+    assertThat(Measure.updatedMeasureBuilder(newMeasureBuilder().create(Long.MAX_VALUE)).setVariation(1d).create().getLongValue()).isEqualTo(Long.MAX_VALUE);
+  }
+
   @Test(expected = IllegalStateException.class)
   @UseDataProvider("all_but_DOUBLE_MEASURE")
   public void getDoubleValue_throws_ISE_for_all_value_types_except_DOUBLE(Measure measure) {
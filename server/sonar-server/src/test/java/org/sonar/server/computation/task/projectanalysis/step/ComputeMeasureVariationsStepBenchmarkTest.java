@@ -0,0 +1,109 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.step;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.measure.MeasureDto;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.period.Period;
+import org.sonar.server.computation.task.projectanalysis.period.PeriodHolderRule;
+import org.sonar.test.Benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+/**
+ * Duration of {@link ComputeMeasureVariationsStep} on a tree of {@value #COMPONENTS} components having
+ * {@value #METRICS} past measures each.
+ */
+public class ComputeMeasureVariationsStepBenchmarkTest {
+
+  private static final int COMPONENTS = 100_000;
+  private static final int METRICS = 3;
+  private static final String ANALYSIS_UUID = "ANALYSIS";
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public PeriodHolderRule periodsHolder = new PeriodHolderRule();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
+  @Rule
+  public MetricRepositoryRule metricRepository = new MetricRepositoryRule();
+  @Rule
+  public MeasureRepositoryRule measureRepository = MeasureRepositoryRule.create(treeRootHolder, metricRepository);
+
+  private DbClient dbClient = dbTester.getDbClient();
+  private Component[] directories = new Component[COMPONENTS - 1];
+
+  private ComputeMeasureVariationsStep underTest = new ComputeMeasureVariationsStep(dbClient, treeRootHolder, periodsHolder, metricRepository, measureRepository);
+
+  @Before
+  public void setUp() {
+    Benchmark.assumeEnabled();
+    for (int i = 0; i < METRICS; i++) {
+      metricRepository.add(new MetricImpl(i + 1, "metric" + i, "metric " + i, Metric.MetricType.INT));
+    }
+    for (int i = 0; i < directories.length; i++) {
+      directories[i] = ReportComponent.builder(Component.Type.DIRECTORY, i + 2).setUuid("DIR_" + i).build();
+    }
+    Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid("PROJECT").addChildren(directories).build();
+    treeRootHolder.setRoot(project);
+    periodsHolder.setPeriod(new Period("mode", null, 1_000L, ANALYSIS_UUID));
+
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      for (int i = 0; i < directories.length; i++) {
+        for (int m = 0; m < METRICS; m++) {
+          dbClient.measureDao().insert(dbSession, new MeasureDto()
+            .setMetricId(m + 1)
+            .setComponentUuid(directories[i].getUuid())
+            .setAnalysisUuid(ANALYSIS_UUID)
+            .setValue((double) i));
+          measureRepository.addRawMeasure(directories[i].getReportAttributes().getRef(), "metric" + m, newMeasureBuilder().create(i + m));
+        }
+      }
+      dbSession.commit();
+    }
+  }
+
+  @Test
+  public void compute_variations_of_large_tree() {
+    long duration = benchmark.measure("Compute variations of " + COMPONENTS + " components", underTest::execute);
+
+    Component last = directories[directories.length - 1];
+    assertThat(measureRepository.getRawMeasure(last, metricRepository.getByKey("metric2")).get().getVariation())
+      .isEqualTo(2d);
+    benchmark.expectLessThanOrEqualTo("Duration of variations of " + COMPONENTS + " components (ms)", duration, 10_000L);
+  }
+}
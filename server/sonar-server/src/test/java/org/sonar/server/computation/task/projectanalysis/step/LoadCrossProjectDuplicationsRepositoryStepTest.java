@@ -21,6 +21,7 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -49,12 +50,14 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -101,10 +104,12 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
 
   IntegrateCrossProjectDuplications integrateCrossProjectDuplications = mock(IntegrateCrossProjectDuplications.class);
 
+  CrossProjectDuplicationIndex crossProjectDuplicationIndex = new CrossProjectDuplicationIndex(dbClient);
+
   Analysis baseProjectAnalysis;
 
   ComputationStep underTest = new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
-    integrateCrossProjectDuplications, dbClient);
+    integrateCrossProjectDuplications, crossProjectDuplicationIndex, dbClient);
 
   @Before
   public void setUp() throws Exception {
@@ -259,6 +264,42 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
         .build());
   }
 
+  @Test
+  public void call_compute_cpd_on_duplication_persisted_after_index_is_loaded() throws Exception {
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+
+    String hash = "a8998353e96320ec";
+    ScannerReport.CpdTextBlock originBlock = ScannerReport.CpdTextBlock.newBuilder()
+      .setHash(hash)
+      .setStartLine(30)
+      .setEndLine(45)
+      .setStartTokenIndex(0)
+      .setEndTokenIndex(10)
+      .build();
+    batchReportReader.putDuplicationBlocks(FILE_REF, asList(originBlock));
+
+    underTest.execute();
+    verifyZeroInteractions(integrateCrossProjectDuplications);
+
+    ComponentDto otherProject = createProject("OTHER_PROJECT_KEY");
+    SnapshotDto otherProjectSnapshot = createProjectSnapshot(otherProject);
+    ComponentDto otherFile = createFile("OTHER_FILE_KEY", otherProject);
+    crossProjectDuplicationIndex.add(otherProject.uuid(), otherProjectSnapshot.getUuid(), asList(hash));
+    dbClient.duplicationDao().insert(dbSession, new DuplicationUnitDto()
+      .setHash(hash)
+      .setStartLine(40)
+      .setEndLine(55)
+      .setIndexInFile(0)
+      .setAnalysisUuid(otherProjectSnapshot.getUuid())
+      .setComponentUuid(otherFile.uuid()));
+    dbSession.commit();
+
+    underTest.execute();
+
+    verify(integrateCrossProjectDuplications).computeCpd(eq(CURRENT_FILE), any(Collection.class), any(Collection.class));
+  }
+
   @Test
   public void nothing_to_do_when_cross_project_duplication_is_disabled() throws Exception {
     when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(false);
@@ -35,12 +35,15 @@ import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class PersistCrossProjectDuplicationIndexStepTest {
@@ -70,9 +73,12 @@ public class PersistCrossProjectDuplicationIndexStepTest {
 
   CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder = mock(CrossProjectDuplicationStatusHolder.class);
 
+  CrossProjectDuplicationIndex crossProjectDuplicationIndex = mock(CrossProjectDuplicationIndex.class);
+
   DbClient dbClient = dbTester.getDbClient();
 
-  ComputationStep underTest = new PersistCrossProjectDuplicationIndexStep(crossProjectDuplicationStatusHolder, dbClient, treeRootHolder, analysisMetadataHolder, reportReader);
+  ComputationStep underTest = new PersistCrossProjectDuplicationIndexStep(crossProjectDuplicationStatusHolder, dbClient, treeRootHolder, analysisMetadataHolder, reportReader,
+    crossProjectDuplicationIndex);
 
   @Before
   public void setUp() throws Exception {
@@ -115,6 +121,7 @@ public class PersistCrossProjectDuplicationIndexStepTest {
     assertThat(dtos).extracting("INDEX_IN_FILE").containsOnly(0L, 1L);
     assertThat(dtos).extracting("COMPONENT_UUID").containsOnly(FILE.getUuid());
     assertThat(dtos).extracting("ANALYSIS_UUID").containsOnly(ANALYSIS_UUID);
+    verify(crossProjectDuplicationIndex).add(PROJECT.getUuid(), ANALYSIS_UUID, Arrays.asList(CPD_TEXT_BLOCK.getHash(), "b1234353e96320ff"));
   }
 
   @Test
@@ -135,6 +142,7 @@ public class PersistCrossProjectDuplicationIndexStepTest {
     underTest.execute();
 
     assertThat(dbTester.countRowsOfTable("duplications_index")).isEqualTo(0);
+    verifyZeroInteractions(crossProjectDuplicationIndex);
   }
 
 }
@@ -19,11 +19,15 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.base.Strings;
 import java.util.Arrays;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.DisableOnDebug;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -46,11 +50,14 @@ import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplic
 import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
 import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepositoryRule;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -66,6 +73,8 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
+  @Rule
+  public TestRule safeguardTimeout = new DisableOnDebug(Timeout.seconds(60));
 
   @Rule
   public DbTester dbTester = DbTester.create(system2);
@@ -281,7 +290,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     long past = 150000L;
     String srcHash = "137f72c3708c6bd0de00a0e5a69c699b";
     String lineHashes = "137f72c3708c6bd0de00a0e5a69c699b";
-    String dataHash = "29f25900140c94db38035128cb6de6a2";
+    String dataHash = "98aef0646cc2e12e9ecac522897aaeb3";
 
     dbClient.fileSourceDao().insert(dbTester.getSession(), new FileSourceDto()
       .setProjectUuid(PROJECT_UUID)
@@ -456,6 +465,104 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getRevision()).isNull();
   }
 
+  @Test
+  public void persist_sources_of_all_files() {
+    int fileCount = 3 * PersistFileSourcesStep.ENCODING_THREADS + 1;
+    ReportComponent.Builder project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY);
+    for (int i = 0; i < fileCount; i++) {
+      int ref = 10 + i;
+      project.addChildren(ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + i).setKey(PROJECT_KEY + ":src/Foo" + i + ".java")
+        .setFileAttributes(new FileAttributes(false, null, 1)).build());
+      fileSourceRepository.addLine(ref, "line of file " + i);
+    }
+    treeRootHolder.setRoot(project.build());
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(fileCount);
+    for (int i = 0; i < fileCount; i++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i);
+      assertThat(fileSourceDto.getSourceData().getLines(0).getSource()).isEqualTo("line of file " + i);
+    }
+  }
+
+  @Test
+  public void persist_sources_of_files_bigger_than_maximum_number_of_pending_bytes() {
+    // estimated from the number of lines, bytes of each file must be reserved again once encoded
+    int fileCount = 3 * PersistFileSourcesStep.ENCODING_THREADS + 1;
+    initFiles(fileCount, 1, Strings.repeat("x", 4 * PersistFileSourcesStep.ESTIMATED_BYTES_PER_LINE));
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository,
+      2 * PersistFileSourcesStep.ESTIMATED_BYTES_PER_LINE, Integer.MAX_VALUE);
+
+    underTest.execute();
+
+    verifyFiles(fileCount, 1);
+  }
+
+  @Test
+  public void persist_sources_of_all_files_in_several_batches() {
+    int fileCount = 100;
+    initFiles(fileCount, 2, "line");
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository,
+      4 * 2 * PersistFileSourcesStep.ESTIMATED_BYTES_PER_LINE, 512);
+
+    underTest.execute();
+
+    verifyFiles(fileCount, 2);
+  }
+
+  @Test
+  public void fail_with_key_of_file_when_sources_can_not_be_computed() {
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
+      ReportComponent.builder(Component.Type.FILE, FILE_REF).setUuid(FILE_UUID).setKey("MODULE_KEY:src/Foo.java")
+        .setFileAttributes(new FileAttributes(false, null, 1)).build())
+      .build());
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Cannot persist sources of MODULE_KEY:src/Foo.java");
+
+    underTest.execute();
+  }
+
+  @Test
+  public void fail_with_key_of_file_when_encoding_of_sources_throws_an_error() {
+    initBasicReport(1);
+    StackOverflowError error = new StackOverflowError();
+    SourceLinesRepository sourceLinesRepository = mock(SourceLinesRepository.class);
+    when(sourceLinesRepository.readLines(any(Component.class))).thenThrow(error);
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, sourceLinesRepository, scmInfoRepository, duplicationRepository);
+
+    try {
+      underTest.execute();
+      fail("An IllegalStateException should have been raised");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Cannot persist sources of MODULE_KEY:src/Foo.java");
+      assertThat(e.getCause()).isSameAs(error);
+    }
+  }
+
+  private void initFiles(int fileCount, int numberOfLines, String linePrefix) {
+    ReportComponent.Builder project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY);
+    for (int i = 0; i < fileCount; i++) {
+      int ref = 10 + i;
+      project.addChildren(ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + i).setKey(PROJECT_KEY + ":src/Foo" + i + ".java")
+        .setFileAttributes(new FileAttributes(false, null, numberOfLines)).build());
+      for (int line = 1; line <= numberOfLines; line++) {
+        fileSourceRepository.addLine(ref, linePrefix + " " + line + " of file " + i);
+      }
+    }
+    treeRootHolder.setRoot(project.build());
+  }
+
+  private void verifyFiles(int fileCount, int numberOfLines) {
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(fileCount);
+    for (int i = 0; i < fileCount; i++) {
+      DbFileSources.Data data = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i).getSourceData();
+      assertThat(data.getLinesCount()).isEqualTo(numberOfLines);
+      assertThat(data.getLines(numberOfLines - 1).getSource()).endsWith(" " + numberOfLines + " of file " + i);
+    }
+  }
+
   private void initBasicReport(int numberOfLines) {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
       ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
@@ -19,8 +19,14 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -32,9 +38,11 @@ import org.sonar.server.computation.task.ChangeLogLevel;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -152,6 +160,98 @@ public class ComputationStepExecutorTest {
     new ComputationStepExecutor(mockComputationSteps(computationStep1), listener).execute();
   }
 
+  @Test
+  public void execute_runs_concurrently_ConcurrentComputationSteps_which_do_not_conflict() {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    List<Boolean> awaited = Collections.synchronizedList(new ArrayList<>());
+    Runnable awaitOtherStep = () -> {
+      bothStarted.countDown();
+      try {
+        awaited.add(bothStarted.await(10, TimeUnit.SECONDS));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+
+    new ComputationStepExecutor(mockComputationSteps(
+      new TestConcurrentStep("step1", ImmutableSet.of("report"), ImmutableSet.of("a"), awaitOtherStep),
+      new TestConcurrentStep("step2", ImmutableSet.of("report"), ImmutableSet.of("b"), awaitOtherStep))).execute();
+
+    assertThat(awaited).containsExactly(true, true);
+  }
+
+  @Test
+  public void execute_runs_in_sequence_ConcurrentComputationSteps_which_access_same_data() {
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+    new ComputationStepExecutor(mockComputationSteps(
+      new TestConcurrentStep("step1", Collections.emptySet(), ImmutableSet.of("a"), () -> sleepAndAdd(executed, "step1")),
+      new TestConcurrentStep("step2", ImmutableSet.of("a"), ImmutableSet.of("b"), () -> executed.add("step2")),
+      new TestConcurrentStep("step3", Collections.emptySet(), ImmutableSet.of("b"), () -> executed.add("step3")))).execute();
+
+    assertThat(executed).containsExactly("step1", "step2", "step3");
+  }
+
+  @Test
+  public void execute_runs_ComputationStep_once_all_previous_ConcurrentComputationSteps_are_done() {
+    List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    ComputationStep step3 = mockComputationStep("step3");
+    doAnswer(invocation -> executed.add("step3")).when(step3).execute();
+
+    new ComputationStepExecutor(mockComputationSteps(
+      new TestConcurrentStep("step1", Collections.emptySet(), ImmutableSet.of("a"), () -> sleepAndAdd(executed, "step1")),
+      new TestConcurrentStep("step2", Collections.emptySet(), ImmutableSet.of("b"), () -> sleepAndAdd(executed, "step2")),
+      step3,
+      new TestConcurrentStep("step4", Collections.emptySet(), ImmutableSet.of("c"), () -> executed.add("step4")))).execute();
+
+    assertThat(executed).hasSize(4);
+    assertThat(executed.subList(0, 2)).containsOnly("step1", "step2");
+    assertThat(executed.subList(2, 4)).containsExactly("step3", "step4");
+  }
+
+  @Test
+  public void execute_let_exception_thrown_by_ConcurrentComputationStep_go_up_as_is_and_stops_execution() {
+    RuntimeException toBeThrown = new RuntimeException("simulating failing concurrent step");
+    ComputationStep nextStep = mockComputationStep("step2");
+
+    try {
+      new ComputationStepExecutor(mockComputationSteps(
+        new TestConcurrentStep("step1", Collections.emptySet(), ImmutableSet.of("a"), () -> {
+          throw toBeThrown;
+        }),
+        nextStep), listener).execute();
+      fail("exception toBeThrown should have been raised");
+    } catch (RuntimeException e) {
+      assertThat(e).isSameAs(toBeThrown);
+      verify(listener).finished(false);
+      verify(nextStep, never()).execute();
+    }
+  }
+
+  @Test
+  public void execute_logs_end_timing_of_ConcurrentComputationSteps_when_level_is_DEBUG() {
+    try (ChangeLogLevel executor = new ChangeLogLevel(ComputationStepExecutor.class, LoggerLevel.DEBUG)) {
+      new ComputationStepExecutor(mockComputationSteps(
+        new TestConcurrentStep("step1", Collections.emptySet(), ImmutableSet.of("a"), () -> {
+        }),
+        new TestConcurrentStep("step2", Collections.emptySet(), ImmutableSet.of("b"), () -> {
+        }))).execute();
+
+      List<String> logs = logTester.logs(LoggerLevel.DEBUG);
+      assertThat(logs).hasSize(2);
+      assertThat(String.join("\n", logs)).contains("step1 | time=").contains("step2 | time=");
+    }
+  }
+
+  private static void sleepAndAdd(List<String> executed, String stepName) {
+    try {
+      Thread.sleep(50);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    executed.add(stepName);
+  }
+
   private static ComputationSteps mockComputationSteps(ComputationStep... computationSteps) {
     ComputationSteps steps = mock(ComputationSteps.class);
     when(steps.instances()).thenReturn(Arrays.asList(computationSteps));
@@ -163,4 +263,38 @@ public class ComputationStepExecutorTest {
     when(mock.getDescription()).thenReturn(desc);
     return mock;
   }
+
+  private static class TestConcurrentStep implements ConcurrentComputationStep {
+    private final String description;
+    private final Set<String> reads;
+    private final Set<String> writes;
+    private final Runnable execution;
+
+    private TestConcurrentStep(String description, Set<String> reads, Set<String> writes, Runnable execution) {
+      this.description = description;
+      this.reads = reads;
+      this.writes = writes;
+      this.execution = execution;
+    }
+
+    @Override
+    public Set<String> reads() {
+      return reads;
+    }
+
+    @Override
+    public Set<String> writes() {
+      return writes;
+    }
+
+    @Override
+    public void execute() {
+      execution.run();
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
+  }
 }
@@ -0,0 +1,79 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ComputationStepGraphTest {
+
+  @Test
+  public void step_which_is_not_concurrent_conflicts_with_any_step() {
+    ComputationStep step = mock(ComputationStep.class);
+
+    assertThat(ComputationStepGraph.conflict(step, mock(ComputationStep.class))).isTrue();
+    assertThat(ComputationStepGraph.conflict(step, concurrentStep(Collections.emptySet(), Collections.emptySet()))).isTrue();
+    assertThat(ComputationStepGraph.conflict(concurrentStep(Collections.emptySet(), Collections.emptySet()), step)).isTrue();
+  }
+
+  @Test
+  public void concurrent_steps_conflict_when_one_writes_data_accessed_by_the_other() {
+    assertThat(ComputationStepGraph.conflict(concurrentStep(ImmutableSet.of("a"), ImmutableSet.of("b")), concurrentStep(ImmutableSet.of("a"), ImmutableSet.of("c"))))
+      .isFalse();
+    assertThat(ComputationStepGraph.conflict(concurrentStep(ImmutableSet.of("a"), ImmutableSet.of("b")), concurrentStep(ImmutableSet.of("b"), ImmutableSet.of("c"))))
+      .isTrue();
+    assertThat(ComputationStepGraph.conflict(concurrentStep(ImmutableSet.of("a"), ImmutableSet.of("b")), concurrentStep(ImmutableSet.of("c"), ImmutableSet.of("a"))))
+      .isTrue();
+    assertThat(ComputationStepGraph.conflict(concurrentStep(ImmutableSet.of("a"), ImmutableSet.of("b")), concurrentStep(ImmutableSet.of("c"), ImmutableSet.of("b"))))
+      .isTrue();
+  }
+
+  @Test
+  public void step_depends_on_previous_conflicting_steps() {
+    ComputationStep step0 = concurrentStep(Collections.emptySet(), ImmutableSet.of("a"));
+    ComputationStep step1 = concurrentStep(Collections.emptySet(), ImmutableSet.of("b"));
+    ComputationStep step2 = concurrentStep(ImmutableSet.of("a"), ImmutableSet.of("c"));
+    ComputationStep step3 = mock(ComputationStep.class);
+    ComputationStep step4 = concurrentStep(Collections.emptySet(), ImmutableSet.of("d"));
+
+    ComputationStepGraph underTest = new ComputationStepGraph(Arrays.asList(step0, step1, step2, step3, step4));
+
+    assertThat(underTest.size()).isEqualTo(5);
+    assertThat(underTest.dependenciesOf(0)).isEmpty();
+    assertThat(underTest.dependenciesOf(1)).isEmpty();
+    assertThat(underTest.dependenciesOf(2)).containsExactly(0);
+    assertThat(underTest.dependenciesOf(3)).containsExactly(0, 1, 2);
+    assertThat(underTest.dependenciesOf(4)).containsExactly(3);
+  }
+
+  private static ConcurrentComputationStep concurrentStep(Set<String> reads, Set<String> writes) {
+    ConcurrentComputationStep step = mock(ConcurrentComputationStep.class);
+    when(step.reads()).thenReturn(reads);
+    when(step.writes()).thenReturn(writes);
+    return step;
+  }
+}
@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.step;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import java.lang.reflect.Modifier;
+import java.util.HashSet;
 import java.util.Set;
 import javax.annotation.Nonnull;
 import org.reflections.Reflections;
@@ -35,8 +36,11 @@ public class StepsExplorer {
    */
   public static Set<String> retrieveStepPackageStepsCanonicalNames(String packageName) {
     Reflections reflections = new Reflections(packageName);
+    // ConcurrentComputationStep is not in the scanned package, so its implementations are not known as sub types of ComputationStep
+    Set<Class<? extends ComputationStep>> stepClasses = new HashSet<>(reflections.getSubTypesOf(ComputationStep.class));
+    stepClasses.addAll(reflections.getSubTypesOf(ConcurrentComputationStep.class));
 
-    return from(reflections.getSubTypesOf(ComputationStep.class))
+    return from(stepClasses)
         .filter(NotAbstractClass.INSTANCE)
         .transform(ClassToCanonicalName.INSTANCE)
         // anonymous classes do not have canonical names
@@ -0,0 +1,179 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Collection;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.es.EsQueueDto;
+import org.sonar.db.issue.IssueDto;
+import org.sonar.db.issue.IssueTesting;
+import org.sonar.db.rule.RuleDto;
+import org.sonar.server.issue.index.IssueIndexDefinition;
+import org.sonar.server.issue.index.IssueIndexer;
+import org.sonar.server.issue.index.IssueIteratorFactory;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toSet;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.server.issue.index.IssueIndexDefinition.INDEX_TYPE_ISSUE;
+
+public class EsQueueIndexerTest {
+
+  @Rule
+  public EsTester esTester = new EsTester(new IssueIndexDefinition(new MapSettings()));
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private DbSession dbSession = db.getSession();
+  private IssueIndexer issueIndexer = new IssueIndexer(esTester.client(), new IssueIteratorFactory(db.getDbClient()));
+  private System2 system2 = mock(System2.class);
+  private EsQueueIndexer underTest = new EsQueueIndexer(db.getDbClient(), issueIndexer, system2, new MapSettings());
+
+  @Test
+  public void consume_indexes_issues_and_empties_the_queue() {
+    IssueDto issue = insertIssue();
+    enqueue(INDEX_TYPE_ISSUE.getType(), issue.getKey());
+    enqueue(INDEX_TYPE_ISSUE.getType(), issue.getKey());
+    enqueue(INDEX_TYPE_ISSUE.getType(), "does_not_exist");
+
+    underTest.consume();
+
+    assertThat(esTester.getIds(INDEX_TYPE_ISSUE)).containsOnly(issue.getKey());
+    assertThat(db.countRowsOfTable(dbSession, "es_queue")).isEqualTo(0);
+  }
+
+  @Test
+  public void consume_removes_documents_of_unsupported_type() {
+    enqueue("unknown", "ID_1");
+
+    underTest.consume();
+
+    assertThat(db.countRowsOfTable(dbSession, "es_queue")).isEqualTo(0);
+  }
+
+  @Test
+  public void consume_keeps_in_queue_the_documents_that_failed_to_be_indexed() {
+    IssueIndexer failingIndexer = mock(IssueIndexer.class);
+    when(failingIndexer.tryIndex(anyCollection())).thenReturn(ImmutableSet.of("ISSUE_2"));
+    underTest = new EsQueueIndexer(db.getDbClient(), failingIndexer, system2, new MapSettings());
+    enqueue(INDEX_TYPE_ISSUE.getType(), "ISSUE_1");
+    enqueue(INDEX_TYPE_ISSUE.getType(), "ISSUE_2");
+
+    underTest.consume();
+
+    assertThat(db.getDbClient().esQueueDao().selectOldest(dbSession, 10))
+      .extracting(EsQueueDto::getDocId)
+      .containsExactly("ISSUE_2");
+  }
+
+  @Test
+  public void documents_that_failed_to_be_indexed_do_not_prevent_newer_ones_from_being_indexed() {
+    IssueIndexer failingIndexer = mockIndexerFailingOn("POISON");
+    underTest = new EsQueueIndexer(db.getDbClient(), failingIndexer, system2, new MapSettings());
+    for (int i = 0; i < EsQueueIndexer.BATCH_SIZE; i++) {
+      enqueue(INDEX_TYPE_ISSUE.getType(), "POISON_" + i);
+    }
+    enqueue(INDEX_TYPE_ISSUE.getType(), "ISSUE_1");
+
+    underTest.consume();
+
+    assertThat(db.getDbClient().esQueueDao().selectOldest(dbSession, 2 * EsQueueIndexer.BATCH_SIZE))
+      .extracting(EsQueueDto::getDocId)
+      .hasSize(EsQueueIndexer.BATCH_SIZE)
+      .doesNotContain("ISSUE_1");
+  }
+
+  @Test
+  public void documents_that_failed_to_be_indexed_are_retried_after_a_delay() {
+    IssueIndexer failingIndexer = mockIndexerFailingOn("POISON");
+    underTest = new EsQueueIndexer(db.getDbClient(), failingIndexer, system2, new MapSettings().setProperty(EsQueueIndexer.DELAY_PROPERTY, 1_000L));
+    enqueue(INDEX_TYPE_ISSUE.getType(), "POISON_1");
+
+    when(system2.now()).thenReturn(10_000L);
+    underTest.consume();
+    underTest.consume();
+    verify(failingIndexer, times(1)).tryIndex(anyCollection());
+
+    when(system2.now()).thenReturn(11_000L);
+    underTest.consume();
+    verify(failingIndexer, times(2)).tryIndex(anyCollection());
+    assertThat(db.countRowsOfTable(dbSession, "es_queue")).isEqualTo(1);
+  }
+
+  @Test
+  public void documents_are_removed_from_queue_when_they_failed_too_many_times() {
+    IssueIndexer failingIndexer = mockIndexerFailingOn("POISON");
+    underTest = new EsQueueIndexer(db.getDbClient(), failingIndexer, system2, new MapSettings());
+    enqueue(INDEX_TYPE_ISSUE.getType(), "POISON_1");
+
+    for (int i = 1; i < EsQueueIndexer.MAX_ATTEMPTS; i++) {
+      when(system2.now()).thenReturn(i * 24 * 60 * 60 * 1_000L);
+      underTest.consume();
+      assertThat(db.countRowsOfTable(dbSession, "es_queue")).isEqualTo(1);
+    }
+    when(system2.now()).thenReturn(EsQueueIndexer.MAX_ATTEMPTS * 24 * 60 * 60 * 1_000L);
+    underTest.consume();
+
+    verify(failingIndexer, times(EsQueueIndexer.MAX_ATTEMPTS)).tryIndex(anyCollection());
+    assertThat(db.countRowsOfTable(dbSession, "es_queue")).isEqualTo(0);
+  }
+
+  @Test
+  public void wakeUp_is_ignored_once_stopped() {
+    underTest.start();
+    underTest.stop();
+
+    underTest.wakeUp();
+  }
+
+  private static IssueIndexer mockIndexerFailingOn(String idPrefix) {
+    IssueIndexer indexer = mock(IssueIndexer.class);
+    when(indexer.tryIndex(anyCollection())).thenAnswer(invocation -> {
+      Collection<String> ids = (Collection<String>) invocation.getArguments()[0];
+      return ids.stream().filter(id -> id.startsWith(idPrefix)).collect(toSet());
+    });
+    return indexer;
+  }
+
+  private IssueDto insertIssue() {
+    ComponentDto project = db.components().insertPrivateProject();
+    ComponentDto file = db.components().insertComponent(newFileDto(project));
+    RuleDto rule = db.rules().insertRule();
+    return db.issues().insertIssue(IssueTesting.newDto(rule, file, project));
+  }
+
+  private void enqueue(String docType, String docId) {
+    db.getDbClient().esQueueDao().insert(dbSession, asList(EsQueueDto.create(docType, docId)));
+    dbSession.commit();
+  }
+}
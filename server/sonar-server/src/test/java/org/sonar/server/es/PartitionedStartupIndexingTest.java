@@ -0,0 +1,133 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+import org.sonar.db.organization.OrganizationDto;
+import org.sonar.server.property.InternalProperties;
+import org.sonar.server.property.InternalPropertiesImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.sonar.server.es.FakeIndexDefinition.INDEX;
+import static org.sonar.server.es.FakeIndexDefinition.INDEX_TYPE_FAKE;
+import static org.sonar.server.es.FakeIndexDefinition.INT_FIELD;
+
+public class PartitionedStartupIndexingTest {
+
+  private static final int PROJECTS = 250;
+  private static final String PROGRESS_KEY = "es.startupIndexing.fakes.fake";
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+  @Rule
+  public EsTester es = new EsTester(new FakeIndexDefinition());
+
+  private MapSettings settings = new MapSettings();
+  private InternalProperties internalProperties = new InternalPropertiesImpl(db.getDbClient());
+  private PartitionedStartupIndexing underTest = new PartitionedStartupIndexing(es.client(), db.getDbClient(), internalProperties, settings);
+  private List<String> projectUuids = new ArrayList<>();
+  private List<ProjectUuidRange> indexedRanges = Collections.synchronizedList(new ArrayList<>());
+
+  @Before
+  public void setUp() {
+    OrganizationDto organization = db.organizations().insert();
+    for (int i = 0; i < PROJECTS; i++) {
+      projectUuids.add(db.components().insertPrivateProject(organization).uuid());
+    }
+  }
+
+  @Test
+  public void index_all_projects_by_ranges() {
+    underTest.index(INDEX_TYPE_FAKE, this::indexRange);
+
+    assertThat(indexedRanges).hasSize(3);
+    assertThat(es.countDocuments(INDEX_TYPE_FAKE)).isEqualTo(PROJECTS);
+    assertThat(internalProperties.read(PROGRESS_KEY)).contains("");
+  }
+
+  @Test
+  public void resume_indexing_after_failure() {
+    settings.setProperty(PartitionedStartupIndexing.THREADS_PROPERTY, 1);
+    try {
+      underTest.index(INDEX_TYPE_FAKE, (range, bulk) -> {
+        if (!indexedRanges.isEmpty()) {
+          throw new IllegalStateException("BOOM");
+        }
+        indexRange(range, bulk);
+      });
+      fail("An IllegalStateException should be raised");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to index " + INDEX_TYPE_FAKE);
+    }
+    assertThat(indexedRanges).hasSize(1);
+    ProjectUuidRange firstRange = indexedRanges.get(0);
+    assertThat(firstRange.getFromInclusive()).isNull();
+
+    indexedRanges.clear();
+    underTest.index(INDEX_TYPE_FAKE, this::indexRange);
+
+    // first range is not indexed again
+    assertThat(indexedRanges).hasSize(2);
+    assertThat(indexedRanges.get(0).getFromInclusive()).isEqualTo(firstRange.getToExclusive());
+    assertThat(indexedRanges.get(1).getToExclusive()).isNull();
+    assertThat(es.countDocuments(INDEX_TYPE_FAKE)).isEqualTo(PROJECTS);
+  }
+
+  @Test
+  public void ignore_progress_of_another_index() {
+    internalProperties.write(PROGRESS_KEY, "another_index_uuid\n\n0");
+
+    underTest.index(INDEX_TYPE_FAKE, this::indexRange);
+
+    assertThat(indexedRanges).hasSize(3);
+  }
+
+  @Test
+  public void index_in_a_single_range_if_there_are_no_projects() {
+    db.executeUpdateSql("delete from projects");
+
+    underTest.index(INDEX_TYPE_FAKE, this::indexRange);
+
+    assertThat(indexedRanges).extracting(ProjectUuidRange::getFromInclusive, ProjectUuidRange::getToExclusive).containsOnly(tuple(null, null));
+  }
+
+  private void indexRange(ProjectUuidRange range, BulkIndexer bulk) {
+    indexedRanges.add(range);
+    for (int i = 0; i < PROJECTS; i++) {
+      String uuid = projectUuids.get(i);
+      if ((range.getFromInclusive() == null || range.getFromInclusive().compareTo(uuid) <= 0)
+        && (range.getToExclusive() == null || range.getToExclusive().compareTo(uuid) > 0)) {
+        bulk.add(new IndexRequest(INDEX, INDEX_TYPE_FAKE.getType()).source(ImmutableMap.of(INT_FIELD, i)));
+      }
+    }
+  }
+}
@@ -36,10 +36,16 @@ import org.sonar.core.issue.DefaultIssueComment;
 import org.sonar.core.issue.IssueChangeContext;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
+import org.sonar.db.es.EsQueueDto;
+import org.sonar.server.es.EsQueueIndexer;
+import org.sonar.server.issue.index.IssueIndexDefinition;
 import org.sonar.server.issue.index.IssueIndexer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class ServerIssueStorageTest {
@@ -156,6 +162,32 @@ public class ServerIssueStorageTest {
       new String[] {"id", "created_at", "updated_at", "issue_change_creation_date"}, "issues", "issue_changes");
   }
 
+  @Test
+  public void should_enqueue_saved_issues_when_indexing_is_asynchronous() {
+    dbTester.prepareDbUnit(getClass(), "should_insert_new_issues.xml");
+    IssueIndexer indexer = mock(IssueIndexer.class);
+    EsQueueIndexer esQueueIndexer = mock(EsQueueIndexer.class);
+    ServerIssueStorage underTest = new ServerIssueStorage(system2, new FakeRuleFinder(), dbClient, indexer, esQueueIndexer);
+
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ABCDE")
+      .setType(RuleType.BUG)
+      .setNew(true)
+      .setRuleKey(RuleKey.of("squid", "AvoidCycle"))
+      .setProjectKey("struts")
+      .setStatus("OPEN")
+      .setSeverity("BLOCKER")
+      .setComponentKey("struts:Action");
+
+    underTest.save(issue);
+
+    assertThat(dbClient.esQueueDao().selectOldest(dbTester.getSession(), 10))
+      .extracting(EsQueueDto::getDocType, EsQueueDto::getDocId)
+      .containsExactly(tuple(IssueIndexDefinition.INDEX_TYPE_ISSUE.getType(), "ABCDE"));
+    verify(esQueueIndexer).wakeUp();
+    verifyZeroInteractions(indexer);
+  }
+
   static class FakeRuleFinder implements RuleFinder {
 
     @Override
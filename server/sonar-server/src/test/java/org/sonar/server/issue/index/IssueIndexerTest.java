@@ -23,7 +23,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.NoSuchElementException;
 import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
@@ -38,11 +37,12 @@ import org.sonar.db.issue.IssueTesting;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.server.es.EsTester;
+import org.sonar.server.es.PartitionedStartupIndexing;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.property.InternalPropertiesImpl;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
@@ -94,6 +94,27 @@ public class IssueIndexerTest {
     verifyDoc(docs.get(0), org, project, file, rule, issue);
   }
 
+  @Test
+  public void index_on_startup_by_ranges_of_projects() {
+    OrganizationDto org = dbTester.organizations().insert();
+    ComponentDto project1 = dbTester.components().insertPrivateProject(org);
+    ComponentDto file1 = dbTester.components().insertComponent(ComponentTesting.newFileDto(project1));
+    ComponentDto project2 = dbTester.components().insertPrivateProject(org);
+    ComponentDto file2 = dbTester.components().insertComponent(ComponentTesting.newFileDto(project2));
+    RuleDto rule = dbTester.rules().insertRule();
+    IssueDto issue1 = dbTester.issues().insertIssue(IssueTesting.newDto(rule, file1, project1));
+    IssueDto issue2 = dbTester.issues().insertIssue(IssueTesting.newDto(rule, file2, project2));
+    PartitionedStartupIndexing partitionedStartupIndexing = new PartitionedStartupIndexing(esTester.client(), dbTester.getDbClient(),
+      new InternalPropertiesImpl(dbTester.getDbClient()), new MapSettings());
+    underTest = new IssueIndexer(esTester.client(), new IssueIteratorFactory(dbTester.getDbClient()), partitionedStartupIndexing);
+
+    underTest.indexOnStartup(null);
+
+    assertThat(esTester.getDocuments(IssueIndexDefinition.INDEX_TYPE_ISSUE, IssueDoc.class))
+      .extracting(IssueDoc::key)
+      .containsOnly(issue1.getKey(), issue2.getKey());
+  }
+
   @Test
   public void index_loads_and_indexes_issues_with_specified_keys() {
     OrganizationDto org = dbTester.organizations().insert();
@@ -112,13 +133,23 @@ public class IssueIndexerTest {
   }
 
   @Test
-  public void index_throws_NoSuchElementException_if_the_specified_key_does_not_exist() {
-    try {
-      underTest.index(asList("does_not_exist"));
-      fail();
-    } catch (NoSuchElementException e) {
-      assertThat(esTester.countDocuments(IssueIndexDefinition.INDEX_TYPE_ISSUE)).isEqualTo(0);
-    }
+  public void index_ignores_keys_of_issues_which_do_not_exist() {
+    underTest.index(asList("does_not_exist"));
+
+    assertThat(esTester.countDocuments(IssueIndexDefinition.INDEX_TYPE_ISSUE)).isEqualTo(0);
+  }
+
+  @Test
+  public void tryIndex_returns_no_failures_when_issues_are_indexed() {
+    OrganizationDto org = dbTester.organizations().insert();
+    ComponentDto project = dbTester.components().insertPrivateProject(org);
+    ComponentDto file = dbTester.components().insertComponent(ComponentTesting.newFileDto(project));
+    RuleDto rule = dbTester.rules().insertRule();
+    IssueDto issue = dbTester.issues().insertIssue(IssueTesting.newDto(rule, file, project));
+
+    assertThat(underTest.tryIndex(asList(issue.getKey(), "does_not_exist"))).isEmpty();
+
+    assertThat(esTester.getIds(IssueIndexDefinition.INDEX_TYPE_ISSUE)).containsOnly(issue.getKey());
   }
 
   @Test
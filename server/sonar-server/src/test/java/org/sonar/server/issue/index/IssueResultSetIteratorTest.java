@@ -28,6 +28,7 @@ import org.junit.Test;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
+import org.sonar.server.es.ProjectUuidRange;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -135,6 +136,17 @@ public class IssueResultSetIteratorTest {
     assertThat(issuesByKey).hasSize(2);
   }
 
+  @Test
+  public void iterator_over_issues_of_project_range() {
+    dbTester.prepareDbUnit(getClass(), "many_projects.xml");
+
+    assertThat(issuesByKey(factory -> factory.createForProjectRange(new ProjectUuidRange(null, "THE_PROJECT_2")))).hasSize(2);
+    assertThat(issuesByKey(factory -> factory.createForProjectRange(new ProjectUuidRange("THE_PROJECT_2", null)))).hasSize(1);
+    assertThat(issuesByKey(factory -> factory.createForProjectRange(new ProjectUuidRange("THE_PROJECT_1", "THE_PROJECT_2")))).hasSize(2);
+    assertThat(issuesByKey(factory -> factory.createForProjectRange(ProjectUuidRange.ALL))).hasSize(3);
+    assertThat(issuesByKey(factory -> factory.createForProjectRange(new ProjectUuidRange("THE_PROJECT_3", null)))).isEmpty();
+  }
+
   @Test
   public void extract_directory_path() {
     dbTester.prepareDbUnit(getClass(), "extract_directory_path.xml");
@@ -44,6 +44,7 @@ import org.sonar.server.es.SearchOptions;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.permission.PermissionCache;
 import org.sonar.server.tester.UserSessionRule;
 import org.sonar.server.user.index.UserIndex;
 import org.sonar.server.user.index.UserIndexDefinition;
@@ -54,6 +55,7 @@ import org.sonar.server.ws.TestResponse;
 import org.sonar.server.ws.WsActionTester;
 
 import static java.net.HttpURLConnection.HTTP_NO_CONTENT;
+import static java.util.Collections.singleton;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.groups.Tuple.tuple;
 import static org.sonar.api.CoreProperties.DEFAULT_ISSUE_ASSIGNEE;
@@ -79,8 +81,9 @@ public class RemoveMemberActionTest {
 
   private UserIndex userIndex = new UserIndex(es.client());
   private UserIndexer userIndexer = new UserIndexer(dbClient, es.client());
+  private PermissionCache permissionCache = new PermissionCache();
 
-  private WsActionTester ws = new WsActionTester(new RemoveMemberAction(dbClient, userSession, userIndexer));
+  private WsActionTester ws = new WsActionTester(new RemoveMemberAction(dbClient, userSession, userIndexer, permissionCache));
 
   private OrganizationDto organization;
   private ComponentDto project;
@@ -134,6 +137,17 @@ public class RemoveMemberActionTest {
     assertNotAMember(organization.getUuid(), user);
   }
 
+  @Test
+  public void invalidate_cached_permissions_of_removed_member() {
+    permissionCache.getOrganizationPermissions(user.getId(), organization.getUuid(), () -> singleton(SCAN.getKey()));
+    permissionCache.getProjectPermissions(user.getId(), project.uuid(), () -> singleton(CODEVIEWER));
+    assertThat(permissionCache.size()).isEqualTo(2);
+
+    call(organization.getKey(), user.getLogin());
+
+    assertThat(permissionCache.size()).isEqualTo(0);
+  }
+
   @Test
   public void remove_organization_permissions() {
     UserDto anotherUser = db.users().insertUser();
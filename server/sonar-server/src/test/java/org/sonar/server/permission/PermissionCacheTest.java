@@ -0,0 +1,124 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.permission;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PermissionCacheTest {
+
+  private static final int USER_ID = 10;
+  private static final int OTHER_USER_ID = 11;
+
+  private AtomicInteger loads = new AtomicInteger();
+  private PermissionCache underTest = new PermissionCache();
+
+  @Test
+  public void permissions_are_loaded_once() {
+    assertThat(underTest.getProjectPermissions(USER_ID, "P1", loader("user"))).containsOnly("user");
+    assertThat(underTest.getProjectPermissions(USER_ID, "P1", loader("admin"))).containsOnly("user");
+
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(underTest.stats().hitCount()).isEqualTo(1);
+    assertThat(underTest.stats().missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void entries_are_distinct_by_user_scope_and_uuid() {
+    underTest.getProjectPermissions(USER_ID, "P1", loader("user"));
+    underTest.getProjectPermissions(OTHER_USER_ID, "P1", loader("user"));
+    underTest.getProjectPermissions(null, "P1", loader("user"));
+    underTest.getProjectPermissions(USER_ID, "P2", loader("user"));
+    underTest.getOrganizationPermissions(USER_ID, "P1", loader("admin"));
+
+    assertThat(loads.get()).isEqualTo(5);
+    assertThat(underTest.size()).isEqualTo(5);
+  }
+
+  @Test
+  public void invalidateProjects_removes_permissions_of_all_users_on_projects() {
+    underTest.getProjectPermissions(USER_ID, "P1", loader("user"));
+    underTest.getProjectPermissions(null, "P1", loader("user"));
+    underTest.getProjectPermissions(USER_ID, "P2", loader("user"));
+    underTest.getOrganizationPermissions(USER_ID, "P1", loader("admin"));
+
+    underTest.invalidateProjects(singletonList("P1"));
+
+    assertThat(underTest.size()).isEqualTo(2);
+    assertThat(underTest.getProjectPermissions(USER_ID, "P1", loader("admin"))).containsOnly("admin");
+  }
+
+  @Test
+  public void invalidateOrganization_removes_permissions_of_all_users_on_organization() {
+    underTest.getOrganizationPermissions(USER_ID, "O1", loader("scan"));
+    underTest.getOrganizationPermissions(OTHER_USER_ID, "O1", loader("scan"));
+    underTest.getOrganizationPermissions(USER_ID, "O2", loader("scan"));
+
+    underTest.invalidateOrganization("O1");
+
+    assertThat(underTest.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void invalidateUser_removes_all_permissions_of_user() {
+    underTest.getOrganizationPermissions(USER_ID, "O1", loader("scan"));
+    underTest.getProjectPermissions(USER_ID, "P1", loader("user"));
+    underTest.getProjectPermissions(OTHER_USER_ID, "P1", loader("user"));
+    underTest.getProjectPermissions(null, "P1", loader("user"));
+
+    underTest.invalidateUser(USER_ID);
+
+    assertThat(underTest.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void invalidateAll_removes_all_entries() {
+    underTest.getOrganizationPermissions(USER_ID, "O1", loader("scan"));
+    underTest.getProjectPermissions(USER_ID, "P1", loader("user"));
+
+    underTest.invalidateAll();
+
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void permissions_loaded_during_invalidation_are_not_cached() {
+    Set<String> permissions = underTest.getProjectPermissions(USER_ID, "P1", () -> {
+      underTest.invalidateProjects(singletonList("P1"));
+      return ImmutableSet.of("user");
+    });
+
+    assertThat(permissions).containsOnly("user");
+    assertThat(underTest.size()).isEqualTo(0);
+  }
+
+  private Supplier<Set<String>> loader(String... permissions) {
+    return () -> {
+      loads.incrementAndGet();
+      return ImmutableSet.copyOf(permissions);
+    };
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Map;
+import org.junit.Test;
+import org.sonar.server.permission.PermissionCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PermissionCacheMonitorTest {
+
+  private PermissionCache permissionCache = new PermissionCache();
+  private PermissionCacheMonitor underTest = new PermissionCacheMonitor(permissionCache);
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("Permission Cache");
+  }
+
+  @Test
+  public void attributes_contain_hit_rate() {
+    permissionCache.getProjectPermissions(10, "P1", () -> ImmutableSet.of("user"));
+    permissionCache.getProjectPermissions(10, "P1", () -> ImmutableSet.of("user"));
+
+    Map<String, Object> attributes = underTest.attributes();
+
+    assertThat(attributes)
+      .containsEntry("Entries", 1L)
+      .containsEntry("Hits", 1L)
+      .containsEntry("Misses", 1L)
+      .containsEntry("Hit Rate", "50.0%")
+      .containsEntry("Evictions", 0L);
+  }
+}
@@ -29,6 +29,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.PropertyType;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.config.PropertyDefinitions;
 import org.sonar.api.config.PropertyFieldDefinition;
@@ -45,6 +46,8 @@ import org.sonar.db.property.PropertyDbTester;
 import org.sonar.db.property.PropertyDto;
 import org.sonar.db.property.PropertyQuery;
 import org.sonar.scanner.protocol.GsonHelper;
+import org.sonar.scanner.protocol.input.ProjectRepositories;
+import org.sonar.server.batch.ProjectDataCache;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
@@ -86,7 +89,8 @@ public class SetActionTest {
   private FakeSettingsNotifier settingsChangeNotifier = new FakeSettingsNotifier(dbClient);
   private SettingsUpdater settingsUpdater = new SettingsUpdater(dbClient, definitions);
   private SettingValidations validations = new SettingValidations(definitions, dbClient, i18n);
-  private SetAction underTest = new SetAction(definitions, dbClient, componentFinder, userSession, settingsUpdater, settingsChangeNotifier, validations);
+  private ProjectDataCache projectDataCache = new ProjectDataCache(new MapSettings());
+  private SetAction underTest = new SetAction(definitions, dbClient, componentFinder, userSession, settingsUpdater, settingsChangeNotifier, validations, projectDataCache);
 
   private WsActionTester ws = new WsActionTester(underTest);
 
@@ -149,6 +153,17 @@ public class SetActionTest {
     assertComponentSetting("my.key", "my value", project.getId());
   }
 
+  @Test
+  public void invalidate_project_repositories_served_to_scanners() {
+    ComponentDto project = db.components().insertPrivateProject();
+    projectDataCache.get(project.uuid(), true, null, ProjectRepositories::new);
+    logInAsProjectAdministrator(project);
+
+    callForProjectSettingByKey("my.key", "my value", project.key());
+
+    assertThat(projectDataCache.size()).isZero();
+  }
+
   @Test
   public void update_existing_project_setting() {
     propertyDb.insertProperty(newGlobalPropertyDto("my.key", "my global value"));
@@ -0,0 +1,101 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.db.protobuf.DbFileSources;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceLinesCacheTest {
+
+  private static final List<DbFileSources.Line> LINES = asList(
+    DbFileSources.Line.newBuilder().setLine(1).setSource("foo").build(),
+    DbFileSources.Line.newBuilder().setLine(2).setSource("bar").build());
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private SourceLinesCache underTest = new SourceLinesCache(new MapSettings());
+
+  @Test
+  public void load_lines_once_per_version_of_file() {
+    assertThat(underTest.get("FILE", "HASH_1", () -> LINES).lines()).isEqualTo(LINES);
+    assertThat(underTest.get("FILE", "HASH_1", () -> Collections.emptyList()).lines()).isEqualTo(LINES);
+    assertThat(underTest.get("FILE", "HASH_2", () -> Collections.emptyList()).lines()).isEmpty();
+
+    assertThat(underTest.getHitCount()).isEqualTo(1);
+    assertThat(underTest.getMissCount()).isEqualTo(2);
+    assertThat(underTest.getSize()).isEqualTo(2);
+  }
+
+  @Test
+  public void decorate_line_on_first_call() {
+    SourceLinesCache.Source source = underTest.get("FILE", "HASH", () -> LINES);
+
+    assertThat(source.html(1, new HtmlSourceDecorator())).isEqualTo("bar");
+    assertThat(source.html(1, null)).isEqualTo("bar");
+  }
+
+  @Test
+  public void evict_least_recently_used_files_when_max_size_is_reached() {
+    underTest = new SourceLinesCache(new MapSettings().setProperty(SourceLinesCache.SIZE_PROPERTY, 1));
+    DbFileSources.Line.Builder line = DbFileSources.Line.newBuilder().setLine(1).setSource(new String(new char[50_000]));
+    for (int i = 0; i < 20; i++) {
+      underTest.get("FILE_" + i, "HASH", () -> asList(line.build()));
+    }
+
+    assertThat(underTest.getEvictionCount()).isGreaterThan(0);
+    assertThat(underTest.getSize()).isLessThan(20);
+  }
+
+  @Test
+  public void caching_is_disabled_when_size_is_zero() {
+    underTest = new SourceLinesCache(new MapSettings().setProperty(SourceLinesCache.SIZE_PROPERTY, 0));
+
+    assertThat(underTest.isEnabled()).isFalse();
+    assertThat(new SourceLinesCache(new MapSettings()).isEnabled()).isTrue();
+  }
+
+  @Test
+  public void propagate_failure_of_loader() {
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("BOOM");
+
+    underTest.get("FILE", "HASH", () -> {
+      throw new IllegalStateException("BOOM");
+    });
+  }
+
+  @Test
+  public void export_statistics() {
+    underTest.get("FILE", "HASH", () -> LINES);
+
+    assertThat(underTest.name()).isEqualTo("Source Lines Cache");
+    assertThat(underTest.getMaxSizeInMb()).isEqualTo(64);
+    assertThat(underTest.attributes()).containsEntry("Max Size (MB)", 64).containsEntry("Files", 1L).containsEntry("Misses", 1L);
+  }
+}
@@ -27,6 +27,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.protobuf.DbFileSources;
@@ -35,6 +36,8 @@ import org.sonar.server.source.index.FileSourceTesting;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SourceServiceTest {
@@ -49,7 +52,9 @@ public class SourceServiceTest {
 
   HtmlSourceDecorator htmlDecorator = mock(HtmlSourceDecorator.class);
 
-  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator);
+  SourceLinesCache cache = new SourceLinesCache(new MapSettings());
+
+  SourceService underTest = new SourceService(dbTester.getDbClient(), htmlDecorator, cache);
 
   @Before
   public void injectFakeLines() throws IOException {
@@ -120,4 +125,37 @@ public class SourceServiceTest {
     assertThat(lines.isPresent()).isFalse();
   }
 
+  @Test
+  public void cache_lines_of_same_version_of_file() throws Exception {
+    FileSourceDto dto = dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), FILE_UUID);
+    dbTester.getDbClient().fileSourceDao().update(dbTester.getSession(), dto.setDataHash("HASH_1"));
+    dbTester.commit();
+
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), FILE_UUID, 1, 2).get()).containsExactly("SOURCE_1", "SOURCE_2");
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), FILE_UUID, 9, 20).get()).containsExactly("SOURCE_9", "SOURCE_10");
+    assertThat(cache.getMissCount()).isEqualTo(1);
+    assertThat(cache.getHitCount()).isEqualTo(1);
+
+    // new analysis
+    dbTester.getDbClient().fileSourceDao().update(dbTester.getSession(), dto
+      .setSourceData(FileSourceTesting.newFakeData(3).build())
+      .setDataHash("HASH_2"));
+    dbTester.commit();
+
+    assertThat(underTest.getLinesAsRawText(dbTester.getSession(), FILE_UUID, 1, 10).get()).containsExactly("SOURCE_1", "SOURCE_2", "SOURCE_3");
+    assertThat(cache.getMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void decorate_cached_lines_only_once() {
+    FileSourceDto dto = dbTester.getDbClient().fileSourceDao().selectSourceByFileUuid(dbTester.getSession(), FILE_UUID);
+    dbTester.getDbClient().fileSourceDao().update(dbTester.getSession(), dto.setDataHash("HASH_1"));
+    dbTester.commit();
+    when(htmlDecorator.getDecoratedSourceAsHtml("SOURCE_5", "HIGHLIGHTING_5", "SYMBOLS_5")).thenReturn("HTML_5");
+
+    assertThat(underTest.getLinesAsHtml(dbTester.getSession(), FILE_UUID, 5, 5).get()).containsExactly("HTML_5");
+    assertThat(underTest.getLinesAsHtml(dbTester.getSession(), FILE_UUID, 5, 5).get()).containsExactly("HTML_5");
+
+    verify(htmlDecorator, times(1)).getDecoratedSourceAsHtml("SOURCE_5", "HIGHLIGHTING_5", "SYMBOLS_5");
+  }
 }
@@ -26,6 +26,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
 import org.sonar.db.DbTester;
@@ -38,6 +39,7 @@ import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.source.HtmlSourceDecorator;
+import org.sonar.server.source.SourceLinesCache;
 import org.sonar.server.source.SourceService;
 import org.sonar.server.source.index.FileSourceTesting;
 import org.sonar.server.tester.UserSessionRule;
@@ -80,7 +82,7 @@ public class LinesActionTest {
         return "<p>" + invocationOnMock.getArguments()[0] + "</p>";
       }
     });
-    sourceService = new SourceService(dbTester.getDbClient(), htmlSourceDecorator);
+    sourceService = new SourceService(dbTester.getDbClient(), htmlSourceDecorator, new SourceLinesCache(new MapSettings()));
     componentDao = new ComponentDao();
     wsTester = new WsTester(new SourcesWs(
       new LinesAction(new ComponentFinder(dbTester.getDbClient()), dbTester.getDbClient(), sourceService, htmlSourceDecorator, userSessionRule)));
@@ -39,6 +39,7 @@ import org.sonar.db.user.UserDto;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
 import org.sonar.server.organization.TestOrganizationFlags;
+import org.sonar.server.permission.PermissionCache;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.core.permission.GlobalPermissions.PROVISIONING;
@@ -233,6 +234,26 @@ public class ServerUserSessionTest {
     assertThat(session.hasPermission(SCAN, org.getUuid())).isFalse();
   }
 
+  @Test
+  public void permissions_are_shared_by_sessions_until_invalidated() {
+    OrganizationDto org = db.organizations().insert();
+    db.users().insertPermissionOnUser(org, user, PROVISIONING);
+    db.users().insertProjectPermissionOnUser(user, UserRole.ADMIN, privateProject);
+    PermissionCache permissionCache = new PermissionCache();
+
+    assertThat(newUserSession(user, permissionCache).hasPermission(PROVISION_PROJECTS, org.getUuid())).isTrue();
+    assertThat(newUserSession(user, permissionCache).hasComponentPermission(UserRole.ADMIN, privateProject)).isTrue();
+
+    db.users().deletePermissionFromUser(org, user, PROVISION_PROJECTS);
+    db.users().deletePermissionFromUser(privateProject, user, UserRole.ADMIN);
+    assertThat(newUserSession(user, permissionCache).hasPermission(PROVISION_PROJECTS, org.getUuid())).isTrue();
+    assertThat(newUserSession(user, permissionCache).hasComponentPermission(UserRole.ADMIN, privateProject)).isTrue();
+
+    permissionCache.invalidateUser(user.getId());
+    assertThat(newUserSession(user, permissionCache).hasPermission(PROVISION_PROJECTS, org.getUuid())).isFalse();
+    assertThat(newUserSession(user, permissionCache).hasComponentPermission(UserRole.ADMIN, privateProject)).isFalse();
+  }
+
   @Test
   public void hasPermission_on_organization_keeps_cache_of_permissions_of_anonymous_user() {
     OrganizationDto org = db.organizations().insert();
@@ -513,7 +534,11 @@ public class ServerUserSessionTest {
   }
 
   private ServerUserSession newUserSession(@Nullable UserDto userDto) {
-    return new ServerUserSession(dbClient, organizationFlags, defaultOrganizationProvider, userDto);
+    return newUserSession(userDto, new PermissionCache());
+  }
+
+  private ServerUserSession newUserSession(@Nullable UserDto userDto, PermissionCache permissionCache) {
+    return new ServerUserSession(dbClient, organizationFlags, defaultOrganizationProvider, permissionCache, userDto);
   }
 
   private ServerUserSession newAnonymousSession() {
@@ -44,6 +44,7 @@ import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.exceptions.UnauthorizedException;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
+import org.sonar.server.permission.PermissionCache;
 import org.sonar.server.tester.UserSessionRule;
 import org.sonar.server.user.index.UserIndex;
 import org.sonar.server.user.index.UserIndexDefinition;
@@ -51,6 +52,7 @@ import org.sonar.server.user.index.UserIndexer;
 import org.sonar.server.ws.TestResponse;
 import org.sonar.server.ws.WsActionTester;
 
+import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.api.web.UserRole.CODEVIEWER;
@@ -86,9 +88,10 @@ public class DeactivateActionTest {
   private DbClient dbClient = db.getDbClient();
   private UserIndexer userIndexer = new UserIndexer(dbClient, esTester.client());
   private DbSession dbSession = db.getSession();
+  private PermissionCache permissionCache = new PermissionCache();
 
   private WsActionTester ws = new WsActionTester(new DeactivateAction(
-    dbClient, userIndexer, userSession, new UserJsonWriter(userSession), defaultOrganizationProvider));
+    dbClient, userIndexer, userSession, new UserJsonWriter(userSession), defaultOrganizationProvider, permissionCache));
 
   @Test
   public void deactivate_user_and_delete_his_related_data() {
@@ -118,6 +121,18 @@ public class DeactivateActionTest {
     assertThat(db.getDbClient().groupMembershipDao().selectGroupIdsByUserId(dbSession, user.getId())).isEmpty();
   }
 
+  @Test
+  public void deactivate_user_invalidates_his_cached_permissions() {
+    logInAsSystemAdministrator();
+    UserDto user = insertUser(newUserDto());
+    permissionCache.getOrganizationPermissions(user.getId(), db.getDefaultOrganization().getUuid(), () -> singleton(SCAN.getKey()));
+    assertThat(permissionCache.size()).isEqualTo(1);
+
+    deactivate(user.getLogin()).getInput();
+
+    assertThat(permissionCache.size()).isEqualTo(0);
+  }
+
   @Test
   public void deactivate_user_deletes_his_tokens() {
     logInAsSystemAdministrator();
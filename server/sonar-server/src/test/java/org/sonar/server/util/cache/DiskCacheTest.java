@@ -25,11 +25,16 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
 
 public class DiskCacheTest {
 
@@ -77,4 +82,66 @@ public class DiskCacheTest {
       assertThat(e).hasMessage("expected error");
     }
   }
+
+  @Test
+  public void write_and_read_with_codec() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec());
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender()
+      .append("foo")
+      .append("bar")
+      .close();
+    cache.newAppender()
+      .append("baz")
+      .close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar", "baz");
+    }
+  }
+
+  @Test
+  public void read_with_codec_without_memory_mapping() throws Exception {
+    System2 system2 = spy(System2.INSTANCE);
+    doReturn(true).when(system2).isOsWindows();
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), system2, new StringCodec());
+
+    cache.newAppender()
+      .append("foo")
+      .append("bar")
+      .close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar");
+    }
+  }
+
+  @Test
+  public void fail_to_encode() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec() {
+      @Override
+      public void write(String object, DataOutput output) throws IOException {
+        throw new IOException("expected error");
+      }
+    });
+    try {
+      cache.newAppender().append("foo");
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Fail to write into file");
+    }
+  }
+
+  private static class StringCodec implements Codec<String> {
+    @Override
+    public void write(String object, DataOutput output) throws IOException {
+      output.writeUTF(object);
+    }
+
+    @Override
+    public String read(DataInput input) throws IOException {
+      return input.readUTF();
+    }
+  }
 }
@@ -44,6 +44,10 @@ import javax.annotation.Nullable;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * Queries don't modify the index once it is sorted, which happens on first query. From then on, queries can be
+ * executed concurrently by several threads, as long as no block is inserted.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
@@ -58,7 +62,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   /**
    * Indicates that index requires sorting to perform queries.
    */
-  private boolean sorted;
+  private volatile boolean sorted;
 
   /**
    * Current number of blocks in index.
@@ -70,8 +74,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   private int[] resourceIdsIndex;
 
-  private final Block.Builder blockBuilder = Block.builder();
-
   public PackedMemoryCloneIndex() {
     this(8, DEFAULT_INITIAL_CAPACITY);
   }
@@ -100,24 +102,65 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getByResourceId(String resourceId) {
     ensureSorted();
 
-    // prepare resourceId for binary search
-    resourceIds[size] = resourceId;
-    resourceIdsIndex[size] = size;
-
-    int index = DataUtils.binarySearch(byResourceId);
+    int index = binarySearchByResourceId(resourceId);
 
     List<Block> result = new ArrayList<>();
-    int realIndex = resourceIdsIndex[index];
-    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[realIndex], resourceId) == 0) {
-      result.add(getBlock(realIndex, resourceId));
-
+    Block.Builder blockBuilder = Block.builder();
+    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[index]], resourceId) == 0) {
+      result.add(getBlock(blockBuilder, resourceIdsIndex[index], resourceId));
       index++;
-      realIndex = resourceIdsIndex[index];
     }
     return result;
   }
 
-  private Block createBlock(int index, String resourceId, @Nullable ByteArray byteHash) {
+  /**
+   * @return position in {@link #resourceIdsIndex} of the first block of the resource, or of the next resource if there's none
+   */
+  private int binarySearchByResourceId(String resourceId) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[mid]], resourceId) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  /**
+   * @return position of the first block with the hash, or of the next hash if there's none
+   */
+  private int binarySearchByHash(int[] hash) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  private int compareHash(int index, int[] hash) {
+    int offset = index * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      if (blockData[offset] != hash[k]) {
+        return blockData[offset] < hash[k] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * @param blockBuilder builder owned by the caller, as queries can be executed concurrently
+   */
+  private Block createBlock(Block.Builder blockBuilder, int index, String resourceId, @Nullable ByteArray byteHash) {
     int offset = index * blockInts;
     ByteArray blockHash;
 
@@ -147,11 +190,12 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
       .build();
   }
 
-  private Block getBlock(int index, String resourceId) {
-    return createBlock(index, resourceId, null);
+  private Block getBlock(Block.Builder blockBuilder, int index, String resourceId) {
+    return createBlock(blockBuilder, index, resourceId, null);
   }
 
   private class ResourceIterator implements Iterator<ResourceBlocks> {
+    private final Block.Builder blockBuilder = Block.builder();
     private int index = 0;
 
     @Override
@@ -170,7 +214,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
       // while we are at the same resource, keep going
       do {
-        blocks.add(getBlock(resourceIdsIndex[index], resourceId));
+        blocks.add(getBlock(blockBuilder, resourceIdsIndex[index], resourceId));
         index++;
       } while (hasNext() && FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[index]], resourceId) == 0);
 
@@ -217,23 +261,19 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
     ensureSorted();
 
-    // prepare hash for binary search
     int[] hash = sequenceHash.toIntArray();
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
-    }
 
-    int index = DataUtils.binarySearch(byBlockHash);
+    int index = binarySearchByHash(hash);
 
     List<Block> result = new ArrayList<>();
-    while (index < size && !isLessByHash(size, index)) {
+    Block.Builder blockBuilder = Block.builder();
+    while (index < size && compareHash(index, hash) == 0) {
       // extract block (note that there is no need to extract hash)
       String resourceId = resourceIds[index];
-      result.add(createBlock(index, resourceId, sequenceHash));
+      result.add(createBlock(blockBuilder, index, resourceId, sequenceHash));
       index++;
     }
     return result;
@@ -294,6 +334,15 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
    * Performs sorting, if necessary.
    */
   private void ensureSorted() {
+    if (!sorted) {
+      sort();
+    }
+  }
+
+  /**
+   * Synchronized, so that queries executed concurrently on an index which is not sorted yet wait for the sorting to complete.
+   */
+  private synchronized void sort() {
     if (sorted) {
       return;
     }
@@ -48,6 +48,7 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
 
   private final DefaultIndexedFile indexedFile;
   private final Consumer<DefaultInputFile> metadataGenerator;
+  private final ContentOpener contentOpener;
   private Status status;
   private Charset charset;
   private Metadata metadata;
@@ -55,20 +56,33 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
   private String contents;
 
   public DefaultInputFile(DefaultIndexedFile indexedFile, Consumer<DefaultInputFile> metadataGenerator) {
-    this(indexedFile, metadataGenerator, null);
+    this(indexedFile, metadataGenerator, (String) null);
   }
 
   // For testing
   public DefaultInputFile(DefaultIndexedFile indexedFile, Consumer<DefaultInputFile> metadataGenerator, @Nullable String contents) {
+    this(indexedFile, metadataGenerator, Files::newInputStream, contents);
+  }
+
+  /**
+   * @param contentOpener opens the raw content of the file, including its BOM if any
+   * @since 6.4
+   */
+  public DefaultInputFile(DefaultIndexedFile indexedFile, Consumer<DefaultInputFile> metadataGenerator, ContentOpener contentOpener) {
+    this(indexedFile, metadataGenerator, contentOpener, null);
+  }
+
+  private DefaultInputFile(DefaultIndexedFile indexedFile, Consumer<DefaultInputFile> metadataGenerator, ContentOpener contentOpener, @Nullable String contents) {
     super(indexedFile.batchId());
     this.indexedFile = indexedFile;
     this.metadataGenerator = metadataGenerator;
+    this.contentOpener = contentOpener;
     this.metadata = null;
     this.publish = false;
     this.contents = contents;
   }
 
-  public void checkMetadata() {
+  public synchronized void checkMetadata() {
     if (metadata == null) {
       metadataGenerator.accept(this);
     }
@@ -76,7 +90,7 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
 
   @Override
   public InputStream inputStream() throws IOException {
-    return contents != null ? new ByteArrayInputStream(contents.getBytes(charset())) : new BOMInputStream(Files.newInputStream(path()),
+    return contents != null ? new ByteArrayInputStream(contents.getBytes(charset())) : new BOMInputStream(contentOpener.open(path()),
       ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
   }
 
@@ -336,4 +350,12 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
     return true;
   }
 
+  /**
+   * Opens the content of files, for example from a cache shared by all the readers of files.
+   * @since 6.4
+   */
+  @FunctionalInterface
+  public interface ContentOpener {
+    InputStream open(Path path) throws IOException;
+  }
 }
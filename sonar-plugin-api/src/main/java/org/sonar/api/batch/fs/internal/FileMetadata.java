@@ -19,22 +19,14 @@
  */
 package org.sonar.api.batch.fs.internal;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetEncoder;
-import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 
-import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import org.apache.commons.codec.binary.Hex;
@@ -56,6 +48,9 @@ public class FileMetadata {
 
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
+  private static final byte REPLACEMENT = '?';
+  private static final int BUFFER_SIZE = 16 * 1024;
+  private static final CharHandler[] NO_HANDLERS = {};
 
   public abstract static class CharHandler {
 
@@ -72,198 +67,219 @@ public class FileMetadata {
     }
   }
 
-  private static class LineCounter extends CharHandler {
+  /**
+   * Reads the file by blocks of chars and computes the built-in metrics (lines, hash, offsets, line hashes)
+   * in a single loop, without per-char virtual calls nor intermediate buffers. Other {@link CharHandler}s,
+   * if any, are notified as before.
+   */
+  private static class CharStreamProcessor {
+    private final CharHandler[] handlers;
+    private final boolean computeMetadata;
+    @Nullable
+    private final LineHashConsumer lineHashConsumer;
+    private final String filePath;
+    private final Charset encoding;
+
+    private boolean afterCR = false;
     private int lines = 1;
     private int nonBlankLines = 0;
     private boolean blankLine = true;
-    boolean alreadyLoggedInvalidCharacter = false;
-    private final String filePath;
-    private final Charset encoding;
+    private boolean alreadyLoggedInvalidCharacter = false;
+    private long currentOriginalOffset = 0;
+    private IntArrayList originalLineOffsets;
+    private Utf8Md5 fileHash;
+    private Utf8Md5 lineHash;
+    private String hash;
+    private long lastValidOffset = 0;
 
-    LineCounter(String filePath, Charset encoding) {
+    CharStreamProcessor(String filePath, Charset encoding, boolean computeMetadata, @Nullable LineHashConsumer lineHashConsumer, CharHandler[] handlers) {
       this.filePath = filePath;
       this.encoding = encoding;
-    }
-
-    @Override
-    protected void handleAll(char c) {
-      if (!alreadyLoggedInvalidCharacter && c == '\ufffd') {
-        LOG.warn("Invalid character encountered in file {} at line {} for encoding {}. Please fix file content or configure the encoding to be used using property '{}'.", filePath,
-          lines, encoding, CoreProperties.ENCODING_PROPERTY);
-        alreadyLoggedInvalidCharacter = true;
+      this.computeMetadata = computeMetadata;
+      this.lineHashConsumer = lineHashConsumer;
+      this.handlers = handlers;
+      if (computeMetadata) {
+        fileHash = new Utf8Md5();
+        originalLineOffsets = new IntArrayList();
+        originalLineOffsets.add(0);
       }
-    }
-
-    @Override
-    protected void newLine() {
-      lines++;
-      if (!blankLine) {
-        nonBlankLines++;
+      if (lineHashConsumer != null) {
+        lineHash = new Utf8Md5();
       }
-      blankLine = true;
     }
 
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
-        blankLine = false;
+    void read(Reader reader) throws IOException {
+      char[] buffer = new char[BUFFER_SIZE];
+      int read;
+      while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+        for (int i = 0; i < read; i++) {
+          process(buffer[i]);
+        }
       }
-    }
-
-    @Override
-    protected void eof() {
-      if (!blankLine) {
-        nonBlankLines++;
+      if (afterCR) {
+        newLine();
       }
+      eof();
     }
 
-    public int lines() {
-      return lines;
-    }
-
-    public int nonBlankLines() {
-      return nonBlankLines;
-    }
-
-  }
-
-  private static class FileHashComputer extends CharHandler {
-    private MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
-    private StringBuilder sb = new StringBuilder();
-    private final CharsetEncoder encoder;
-    private final String filePath;
-
-    public FileHashComputer(String filePath) {
-      encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-      this.filePath = filePath;
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      sb.append(c);
-    }
-
-    @Override
-    protected void newLine() {
-      sb.append(LINE_FEED);
-      processBuffer();
-      sb.setLength(0);
-    }
-
-    @Override
-    protected void eof() {
-      if (sb.length() > 0) {
-        processBuffer();
+    private void process(char c) {
+      if (afterCR) {
+        if (c == CARRIAGE_RETURN) {
+          newLine();
+          handleAll(c);
+        } else if (c == LINE_FEED) {
+          handleAll(c);
+          newLine();
+        } else {
+          newLine();
+          handleIgnoreEoL(c);
+          handleAll(c);
+        }
+        afterCR = c == CARRIAGE_RETURN;
+      } else if (c == LINE_FEED) {
+        handleAll(c);
+        newLine();
+      } else if (c == CARRIAGE_RETURN) {
+        afterCR = true;
+        handleAll(c);
+      } else {
+        handleIgnoreEoL(c);
+        handleAll(c);
       }
     }
 
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          globalMd5Digest.update(encoded.array(), 0, encoded.limit());
+    private void handleAll(char c) {
+      if (computeMetadata) {
+        currentOriginalOffset++;
+        if (c == '\ufffd' && !alreadyLoggedInvalidCharacter) {
+          LOG.warn("Invalid character encountered in file {} at line {} for encoding {}. Please fix file content or configure the encoding to be used using property '{}'.",
+            filePath, lines, encoding, CoreProperties.ENCODING_PROPERTY);
+          alreadyLoggedInvalidCharacter = true;
         }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + filePath, e);
+      }
+      for (CharHandler handler : handlers) {
+        handler.handleAll(c);
       }
     }
 
-    @CheckForNull
-    public String getHash() {
-      return Hex.encodeHexString(globalMd5Digest.digest());
-    }
-  }
-
-  private static class LineHashComputer extends CharHandler {
-    private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
-    private final CharsetEncoder encoder;
-    private final StringBuilder sb = new StringBuilder();
-    private final LineHashConsumer consumer;
-    private final File file;
-    private int line = 1;
-
-    public LineHashComputer(LineHashConsumer consumer, File f) {
-      this.consumer = consumer;
-      this.file = f;
-      this.encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
+    private void handleIgnoreEoL(char c) {
       if (!Character.isWhitespace(c)) {
-        sb.append(c);
+        blankLine = false;
+        if (lineHash != null) {
+          lineHash.update(c);
+        }
       }
-    }
-
-    @Override
-    protected void newLine() {
-      processBuffer();
-      sb.setLength(0);
-      line++;
-    }
-
-    @Override
-    protected void eof() {
-      if (this.line > 0) {
-        processBuffer();
+      if (computeMetadata) {
+        fileHash.update(c);
+      }
+      for (CharHandler handler : handlers) {
+        handler.handleIgnoreEoL(c);
       }
     }
 
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          lineMd5Digest.update(encoded.array(), 0, encoded.limit());
-          consumer.consume(line, lineMd5Digest.digest());
+    private void newLine() {
+      endOfLine();
+      lines++;
+      if (computeMetadata) {
+        fileHash.update(LINE_FEED);
+        if (currentOriginalOffset > Integer.MAX_VALUE) {
+          throw new IllegalStateException("File is too big: " + currentOriginalOffset);
         }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
+        originalLineOffsets.add((int) currentOriginalOffset);
+      }
+      for (CharHandler handler : handlers) {
+        handler.newLine();
       }
-    }
-  }
-
-  private static class LineOffsetCounter extends CharHandler {
-    private long currentOriginalOffset = 0;
-    private IntArrayList originalLineOffsets = new IntArrayList();
-    private long lastValidOffset = 0;
-
-    public LineOffsetCounter() {
-      originalLineOffsets.add(0);
     }
 
-    @Override
-    protected void handleAll(char c) {
-      currentOriginalOffset++;
+    private void endOfLine() {
+      if (!blankLine) {
+        nonBlankLines++;
+        if (lineHash != null) {
+          lineHashConsumer.consume(lines, lineHash.digest());
+        }
+      }
+      blankLine = true;
     }
 
-    @Override
-    protected void newLine() {
-      if (currentOriginalOffset > Integer.MAX_VALUE) {
-        throw new IllegalStateException("File is too big: " + currentOriginalOffset);
+    private void eof() {
+      endOfLine();
+      if (computeMetadata) {
+        hash = Hex.encodeHexString(fileHash.digest());
+        lastValidOffset = currentOriginalOffset;
+      }
+      for (CharHandler handler : handlers) {
+        handler.eof();
       }
-      originalLineOffsets.add((int) currentOriginalOffset);
     }
 
-    @Override
-    protected void eof() {
-      lastValidOffset = currentOriginalOffset;
+    Metadata toMetadata() {
+      if (lastValidOffset > Integer.MAX_VALUE) {
+        throw new IllegalStateException("File is too big: " + lastValidOffset);
+      }
+      return new Metadata(lines, nonBlankLines, hash, originalLineOffsets.trimAndGet(), (int) lastValidOffset);
     }
+  }
 
-    public int[] getOriginalLineOffsets() {
-      return originalLineOffsets.trimAndGet();
+  /**
+   * Feeds a MD5 digest with the UTF-8 encoding of chars, replacing malformed surrogates by '?'
+   * as {@link java.nio.charset.CodingErrorAction#REPLACE} does.
+   */
+  private static class Utf8Md5 {
+    private final MessageDigest md5 = DigestUtils.getMd5Digest();
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private int length = 0;
+    private char pendingHighSurrogate = 0;
+
+    void update(char c) {
+      if (length > bytes.length - 4) {
+        flush();
+      }
+      if (pendingHighSurrogate != 0) {
+        char high = pendingHighSurrogate;
+        pendingHighSurrogate = 0;
+        if (Character.isLowSurrogate(c)) {
+          int codePoint = Character.toCodePoint(high, c);
+          bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+          bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+          return;
+        }
+        bytes[length++] = REPLACEMENT;
+      }
+      if (c < 0x80) {
+        bytes[length++] = (byte) c;
+      } else if (c < 0x800) {
+        bytes[length++] = (byte) (0xC0 | (c >> 6));
+        bytes[length++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)) {
+        pendingHighSurrogate = c;
+      } else if (Character.isLowSurrogate(c)) {
+        bytes[length++] = REPLACEMENT;
+      } else {
+        bytes[length++] = (byte) (0xE0 | (c >> 12));
+        bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[length++] = (byte) (0x80 | (c & 0x3F));
+      }
     }
 
-    public int getLastValidOffset() {
-      if (lastValidOffset > Integer.MAX_VALUE) {
-        throw new IllegalStateException("File is too big: " + lastValidOffset);
+    /**
+     * Returns the digest of all chars received since the previous call, and resets it.
+     */
+    byte[] digest() {
+      if (pendingHighSurrogate != 0) {
+        pendingHighSurrogate = 0;
+        bytes[length++] = REPLACEMENT;
       }
-      return (int) lastValidOffset;
+      flush();
+      return md5.digest();
     }
 
+    private void flush() {
+      md5.update(bytes, 0, length);
+      length = 0;
+    }
   }
 
   /**
@@ -271,19 +287,10 @@ public class FileMetadata {
    * Maximum performance is needed.
    */
   public Metadata readMetadata(InputStream stream, Charset encoding, String filePath, @Nullable CharHandler otherHandler) {
-    LineCounter lineCounter = new LineCounter(filePath, encoding);
-    FileHashComputer fileHashComputer = new FileHashComputer(filePath);
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-
-    if (otherHandler != null) {
-      CharHandler[] handlers = {lineCounter, fileHashComputer, lineOffsetCounter, otherHandler};
-      readFile(stream, encoding, filePath, handlers);
-    } else {
-      CharHandler[] handlers = {lineCounter, fileHashComputer, lineOffsetCounter};
-      readFile(stream, encoding, filePath, handlers);
-    }
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+    CharHandler[] handlers = otherHandler != null ? new CharHandler[] {otherHandler} : NO_HANDLERS;
+    CharStreamProcessor processor = new CharStreamProcessor(filePath, encoding, true, null, handlers);
+    readFile(stream, encoding, filePath, processor);
+    return processor.toMetadata();
   }
 
   public Metadata readMetadata(InputStream stream, Charset encoding, String filePath) {
@@ -294,72 +301,24 @@ public class FileMetadata {
    * For testing purpose
    */
   public Metadata readMetadata(Reader reader) {
-    LineCounter lineCounter = new LineCounter("fromString", StandardCharsets.UTF_16);
-    FileHashComputer fileHashComputer = new FileHashComputer("fromString");
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-    CharHandler[] handlers = {lineCounter, fileHashComputer, lineOffsetCounter};
-
+    CharStreamProcessor processor = new CharStreamProcessor("fromString", StandardCharsets.UTF_16, true, null, NO_HANDLERS);
     try {
-      read(reader, handlers);
+      processor.read(reader);
     } catch (IOException e) {
       throw new IllegalStateException("Should never occur", e);
     }
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+    return processor.toMetadata();
   }
 
   public static void readFile(InputStream stream, Charset encoding, String filePath, CharHandler[] handlers) {
-    try (Reader reader = new BufferedReader(new InputStreamReader(stream, encoding))) {
-      read(reader, handlers);
-    } catch (IOException e) {
-      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", filePath, encoding), e);
-    }
+    readFile(stream, encoding, filePath, new CharStreamProcessor(filePath, encoding, false, null, handlers));
   }
 
-  private static void read(Reader reader, CharHandler[] handlers) throws IOException {
-    char c;
-    int i = reader.read();
-    boolean afterCR = false;
-    while (i != -1) {
-      c = (char) i;
-      if (afterCR) {
-        for (CharHandler handler : handlers) {
-          if (c == CARRIAGE_RETURN) {
-            handler.newLine();
-            handler.handleAll(c);
-          } else if (c == LINE_FEED) {
-            handler.handleAll(c);
-            handler.newLine();
-          } else {
-            handler.newLine();
-            handler.handleIgnoreEoL(c);
-            handler.handleAll(c);
-          }
-        }
-        afterCR = c == CARRIAGE_RETURN;
-      } else if (c == LINE_FEED) {
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-          handler.newLine();
-        }
-      } else if (c == CARRIAGE_RETURN) {
-        afterCR = true;
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-        }
-      } else {
-        for (CharHandler handler : handlers) {
-          handler.handleIgnoreEoL(c);
-          handler.handleAll(c);
-        }
-      }
-      i = reader.read();
-    }
-    for (CharHandler handler : handlers) {
-      if (afterCR) {
-        handler.newLine();
-      }
-      handler.eof();
+  private static void readFile(InputStream stream, Charset encoding, String filePath, CharStreamProcessor processor) {
+    try (Reader reader = new InputStreamReader(stream, encoding)) {
+      processor.read(reader);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", filePath, encoding), e);
     }
   }
 
@@ -373,7 +332,7 @@ public class FileMetadata {
    */
   public static void computeLineHashesForIssueTracking(InputFile f, LineHashConsumer consumer) {
     try {
-      readFile(f.inputStream(), f.charset(), f.absolutePath(), new CharHandler[] {new LineHashComputer(consumer, f.file())});
+      readFile(f.inputStream(), f.charset(), f.absolutePath(), new CharStreamProcessor(f.absolutePath(), f.charset(), false, consumer, NO_HANDLERS));
     } catch (IOException e) {
       throw new IllegalStateException("Failed to compute line hashes for " + f.absolutePath(), e);
     }
@@ -84,4 +84,12 @@ public interface SensorDescriptor {
    * @since 6.4
    */
   SensorDescriptor global();
+
+  /**
+   * This {@link Sensor} can be executed concurrently with other thread-safe sensors. It must not share mutable
+   * state with other sensors, nor depend on data saved by other sensors during the same analysis.
+   * Default is to execute the sensor alone.
+   * @since 6.4
+   */
+  SensorDescriptor threadSafe();
 }
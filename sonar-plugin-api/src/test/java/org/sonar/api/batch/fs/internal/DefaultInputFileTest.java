@@ -21,6 +21,7 @@ package org.sonar.api.batch.fs.internal;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -283,4 +284,16 @@ public class DefaultInputFileTest {
     assertThat(file.newRange(file.newPointer(1, 0), file.newPointer(1, 1)).overlap(file.newRange(file.newPointer(1, 1), file.newPointer(1, 2)))).isFalse();
     assertThat(file.newRange(file.newPointer(1, 2), file.newPointer(1, 3)).overlap(file.newRange(file.newPointer(1, 0), file.newPointer(1, 2)))).isFalse();
   }
+
+  @Test
+  public void read_content_with_content_opener() throws Exception {
+    Path baseDir = temp.newFolder().toPath();
+    byte[] content = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'f', 'o', 'o'};
+
+    DefaultInputFile inputFile = new DefaultInputFile(new DefaultIndexedFile("ABCDE", baseDir, "src/Foo.php", InputFile.Type.MAIN, 0),
+      f -> f.setMetadata(mock(Metadata.class)), path -> new ByteArrayInputStream(content))
+        .setCharset(StandardCharsets.UTF_8);
+
+    assertThat(inputFile.contents()).isEqualTo("foo");
+  }
 }
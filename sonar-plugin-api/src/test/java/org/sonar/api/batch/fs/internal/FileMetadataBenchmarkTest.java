@@ -0,0 +1,97 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.test.Benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reads the metadata and the line hashes of a Java-like file of {@value #LINES} lines, {@value #ITERATIONS} times.
+ */
+public class FileMetadataBenchmarkTest {
+
+  private static final int LINES = 50_000;
+  private static final int ITERATIONS = 20;
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private byte[] content;
+  private DefaultInputFile inputFile;
+
+  @Before
+  public void setUp() throws Exception {
+    Benchmark.assumeEnabled();
+    StringBuilder sb = new StringBuilder();
+    for (int line = 0; line < LINES; line++) {
+      if (line % 5 == 4) {
+        sb.append("\r\n");
+      } else {
+        sb.append("    int field").append(line).append(" = computeValue(\"\u00e9l\u00e9ment\", ").append(line).append("); // \u20ac\r\n");
+      }
+    }
+    content = sb.toString().getBytes(StandardCharsets.UTF_8);
+    File file = temp.newFile("HugeFile.java");
+    FileUtils.writeByteArrayToFile(file, content);
+    inputFile = new TestInputFileBuilder("foo", file.getName())
+      .setModuleBaseDir(file.getParentFile().toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+  }
+
+  @Test
+  public void read_metadata() {
+    FileMetadata fileMetadata = new FileMetadata();
+    long duration = benchmark.measure("Read metadata of " + ITERATIONS + " files of " + LINES + " lines", () -> {
+      for (int i = 0; i < ITERATIONS; i++) {
+        Metadata metadata = fileMetadata.readMetadata(new ByteArrayInputStream(content), StandardCharsets.UTF_8, "HugeFile.java");
+        assertThat(metadata.lines()).isEqualTo(LINES + 1);
+      }
+    });
+
+    benchmark.expectLessThanOrEqualTo("Duration of metadata reading (ms)", duration, 1_500);
+  }
+
+  @Test
+  public void compute_line_hashes() {
+    AtomicInteger hashes = new AtomicInteger();
+    long duration = benchmark.measure("Compute line hashes of " + ITERATIONS + " files of " + LINES + " lines", () -> {
+      for (int i = 0; i < ITERATIONS; i++) {
+        FileMetadata.computeLineHashesForIssueTracking(inputFile, (line, hash) -> hashes.incrementAndGet());
+      }
+    });
+
+    assertThat(hashes.get()).isEqualTo(ITERATIONS * LINES * 4 / 5);
+    benchmark.expectLessThanOrEqualTo("Duration of line hashes computation (ms)", duration, 1_500);
+  }
+}
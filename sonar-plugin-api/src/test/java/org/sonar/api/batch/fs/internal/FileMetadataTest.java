@@ -21,6 +21,7 @@ package org.sonar.api.batch.fs.internal;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
@@ -299,4 +300,30 @@ public class FileMetadataTest {
       "glyphicons-halflings-regular.woff at line 1 for encoding UTF-8. Please fix file content or configure the encoding to be used using property 'sonar.sourceEncoding'.");
   }
 
+  @Test
+  public void read_file_bigger_than_read_buffer() throws Exception {
+    // line ends and surrogate pairs are split between consecutive blocks of chars
+    StringBuilder content = new StringBuilder();
+    StringBuilder withUnixEol = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      content.append("line ").append(i).append(" \uD83D\uDE00\r\n");
+      withUnixEol.append("line ").append(i).append(" \uD83D\uDE00\n");
+    }
+
+    Metadata metadata = new FileMetadata().readMetadata(new StringReader(content.toString()));
+
+    assertThat(metadata.lines()).isEqualTo(10_001);
+    assertThat(metadata.nonBlankLines()).isEqualTo(10_000);
+    assertThat(metadata.hash()).isEqualTo(md5Hex(withUnixEol.toString()));
+    assertThat(metadata.originalLineOffsets()).hasSize(10_001);
+    assertThat(metadata.lastValidOffset()).isEqualTo(content.length());
+  }
+
+  @Test
+  public void unpaired_surrogates_are_replaced_in_hash() throws Exception {
+    Metadata metadata = new FileMetadata().readMetadata(new StringReader("a\uD83D\nb\uDE00c\n\uD83D"));
+
+    assertThat(metadata.hash()).isEqualTo(md5Hex("a?\nb?c\n?"));
+  }
+
 }
@@ -22,15 +22,18 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputComponent;
@@ -56,6 +59,9 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p>
+ * Detection can run on several threads (see {@link #THREADS_PROPERTY}). Whatever the number of threads, duplications
+ * are written to the report in the order of the block index, so that the report does not depend on scheduling.
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
@@ -63,6 +69,9 @@ public class CpdExecutor {
   private static final int TIMEOUT = 5 * 60 * 1000;
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
+  // max number of files submitted but not yet saved, per thread. Bounds the memory used by pending results.
+  private static final int PENDING_FILES_PER_THREAD = 4;
 
   private final SonarCpdBlockIndex index;
   private final ReportPublisher publisher;
@@ -86,20 +95,34 @@ public class CpdExecutor {
 
   @VisibleForTesting
   void execute(long timeout) {
+    // sorts the index, which is then only read, concurrently by the detection tasks
     total = index.noResources();
     int filesWithoutBlocks = index.noIndexedFiles() - total;
     if (filesWithoutBlocks > 0) {
       LOG.info("{} {} had no CPD blocks", filesWithoutBlocks, pluralize(filesWithoutBlocks));
     }
     progressReport.start(String.format("Calculating CPD for %d %s", total, pluralize(total)));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    int threads = getThreads();
+    ExecutorService executorService = threads == 1 ? Executors.newSingleThreadExecutor() : Executors.newWorkStealingPool(threads);
     try {
       Iterator<ResourceBlocks> it = index.iterator();
+      Deque<FileDetection> pending = new ArrayDeque<>();
+      int maxPending = threads * PENDING_FILES_PER_THREAD;
 
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
-        count++;
+        FileDetection detection = submit(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+        if (detection == null) {
+          count++;
+        } else {
+          pending.add(detection);
+        }
+        if (pending.size() >= maxPending) {
+          complete(pending.poll(), timeout);
+        }
+      }
+      while (!pending.isEmpty()) {
+        complete(pending.poll(), timeout);
       }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
@@ -110,30 +133,55 @@ public class CpdExecutor {
     }
   }
 
+  @VisibleForTesting
+  int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    return threads <= 0 ? 1 : threads;
+  }
+
   private static String pluralize(int files) {
     return files == 1 ? "file" : "files";
   }
 
   @VisibleForTesting
   void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+    FileDetection detection = submit(executorService, componentKey, fileBlocks);
+    if (detection != null) {
+      complete(detection, timeout);
+    }
+  }
+
+  @CheckForNull
+  private FileDetection submit(ExecutorService executorService, String componentKey, Collection<Block> fileBlocks) {
     DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
-      return;
+      return null;
     }
+    FileDetection detection = new FileDetection((InputFile) component);
+    detection.future = executorService.submit(() -> {
+      detection.startedAt = System.currentTimeMillis();
+      return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
+    });
+    return detection;
+  }
 
-    InputFile inputFile = (InputFile) component;
+  private void complete(FileDetection detection, long timeout) {
+    InputFile inputFile = detection.inputFile;
     LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
+    count++;
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
+      duplications = detection.await(timeout);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
+      detection.future.cancel(true);
       return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during detection of duplication for " + inputFile.absolutePath(), e);
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
     }
@@ -146,7 +194,7 @@ public class CpdExecutor {
       filtered = duplications;
     }
 
-    saveDuplications(component, filtered);
+    saveDuplications((DefaultInputComponent) inputFile, filtered);
   }
 
   @VisibleForTesting
@@ -221,4 +269,32 @@ public class CpdExecutor {
     }
     return dupBuilder.build();
   }
+
+  private static class FileDetection {
+    private final InputFile inputFile;
+    private Future<List<CloneGroup>> future;
+    // 0 as long as the detection is waiting for a thread
+    private volatile long startedAt = 0L;
+
+    private FileDetection(InputFile inputFile) {
+      this.inputFile = inputFile;
+    }
+
+    /**
+     * The timeout applies to the detection itself, not to the time spent in the queue of the executor.
+     */
+    private List<CloneGroup> await(long timeout) throws InterruptedException, ExecutionException, TimeoutException {
+      while (true) {
+        long started = startedAt;
+        long wait = started == 0L ? timeout : (started + timeout - System.currentTimeMillis());
+        try {
+          return future.get(Math.max(wait, 0L), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          if (startedAt != 0L && System.currentTimeMillis() - startedAt >= timeout) {
+            throw e;
+          }
+        }
+      }
+    }
+  }
 }
@@ -66,6 +66,8 @@ public class IssueTransition {
       localIssueTracking.init();
     }
 
+    // make issues of a packed report readable
+    reportPublisher.getWriter().flush();
     ScannerReportReader reader = new ScannerReportReader(reportPublisher.getReportDir());
     int nbComponents = inputComponentStore.all().size();
 
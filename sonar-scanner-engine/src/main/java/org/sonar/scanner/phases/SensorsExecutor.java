@@ -27,6 +27,7 @@ import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
@@ -34,20 +35,33 @@ import org.sonar.scanner.sensor.SensorStrategy;
 
 @ScannerSide
 public class SensorsExecutor {
+  /**
+   * Maximum number of thread-safe sensors executed concurrently. Default is the number of processors.
+   * @since 6.4
+   */
+  static final String THREADS_PROPERTY = "sonar.scanner.sensorThreads";
+
   private final ScannerExtensionDictionnary selector;
   private final DefaultInputModule module;
   private final EventBus eventBus;
   private final SensorStrategy strategy;
+  private final SensorsScheduler scheduler;
   private final boolean isRoot;
 
-  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, EventBus eventBus, SensorStrategy strategy) {
+  public SensorsExecutor(ScannerExtensionDictionnary selector, DefaultInputModule module, EventBus eventBus, SensorStrategy strategy, Settings settings) {
     this.selector = selector;
     this.module = module;
     this.eventBus = eventBus;
     this.strategy = strategy;
+    this.scheduler = new SensorsScheduler(getThreads(settings));
     this.isRoot = module.definition().getParent() == null;
   }
 
+  private static int getThreads(Settings settings) {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    return threads <= 0 ? Runtime.getRuntime().availableProcessors() : threads;
+  }
+
   public void execute(SensorContext context) {
     Collection<Sensor> perModuleSensors = selector.selectSensors(module, false);
     Collection<Sensor> globalSensors;
@@ -77,14 +91,19 @@ public class SensorsExecutor {
   }
 
   private void execute(SensorContext context, Collection<Sensor> sensors) {
-    for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
-    }
+    scheduler.execute(sensors, sensor -> executeSensor(context, sensor));
   }
 
   private void executeSensor(SensorContext context, Sensor sensor) {
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    fireSensorEvent(new SensorExecutionEvent(sensor, true));
     sensor.analyse(new Project(module.definition()), context);
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+    fireSensorEvent(new SensorExecutionEvent(sensor, false));
+  }
+
+  /**
+   * Handlers are not expected to be thread-safe
+   */
+  private synchronized void fireSensorEvent(SensorExecutionEvent event) {
+    eventBus.fireEvent(event);
   }
 }
@@ -0,0 +1,99 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.phases;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import org.sonar.api.batch.Sensor;
+import org.sonar.scanner.sensor.SensorWrapper;
+
+/**
+ * Executes sensors in the given order. Consecutive sensors which declare themselves thread-safe
+ * (see {@link org.sonar.api.batch.sensor.SensorDescriptor#threadSafe()}) are executed concurrently, on
+ * at most {@code threads} threads. Other sensors are executed alone on the calling thread, once all
+ * the previous sensors are done.
+ */
+class SensorsScheduler {
+
+  private final int threads;
+
+  SensorsScheduler(int threads) {
+    this.threads = threads;
+  }
+
+  void execute(Collection<Sensor> sensors, Consumer<Sensor> executor) {
+    List<Sensor> concurrentSensors = new ArrayList<>();
+    for (Sensor sensor : sensors) {
+      if (threads > 1 && isThreadSafe(sensor)) {
+        concurrentSensors.add(sensor);
+      } else {
+        executeConcurrently(concurrentSensors, executor);
+        concurrentSensors.clear();
+        executor.accept(sensor);
+      }
+    }
+    executeConcurrently(concurrentSensors, executor);
+  }
+
+  private void executeConcurrently(List<Sensor> sensors, Consumer<Sensor> executor) {
+    if (sensors.size() <= 1) {
+      sensors.forEach(executor);
+      return;
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, sensors.size()),
+      new ThreadFactoryBuilder().setNameFormat("sensor-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> futures = new ArrayList<>(sensors.size());
+      for (Sensor sensor : sensors) {
+        futures.add(executorService.submit(() -> executor.accept(sensor)));
+      }
+      for (Future<?> future : futures) {
+        waitFor(future);
+      }
+    } finally {
+      // sensors which are not started yet are cancelled if one of them failed
+      executorService.shutdownNow();
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new IllegalStateException("Fail to execute sensor", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while executing sensors", e);
+    }
+  }
+
+  private static boolean isThreadSafe(Sensor sensor) {
+    return sensor instanceof SensorWrapper && ((SensorWrapper) sensor).isThreadSafe();
+  }
+}
@@ -31,6 +31,10 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.Nullable;
 import okhttp3.HttpUrl;
 import org.apache.commons.io.FileUtils;
@@ -65,6 +69,15 @@ public class ReportPublisher implements Startable {
   public static final String KEEP_REPORT_PROP_KEY = "sonar.batch.keepReport";
   public static final String VERBOSE_KEY = "sonar.verbose";
   public static final String METADATA_DUMP_FILENAME = "report-task.txt";
+  /**
+   * When enabled, the report is compressed and uploaded while it is being generated
+   */
+  public static final String STREAM_REPORT_PROP_KEY = "sonar.scanner.streamReport";
+  /**
+   * When enabled, the data of components is packed in a few segment files instead of one file per component
+   */
+  public static final String PACKED_REPORT_PROP_KEY = "sonar.scanner.packedReport";
+  private static final int MAX_COMPRESSION_THREADS = 4;
 
   private final Settings settings;
   private final ScannerWsClient wsClient;
@@ -93,7 +106,7 @@ public class ReportPublisher implements Startable {
   @Override
   public void start() {
     reportDir = new File(projectReactor.getRoot().getWorkDir(), "batch-report");
-    writer = new ScannerReportWriter(reportDir);
+    writer = new ScannerReportWriter(reportDir, settings.getBoolean(PACKED_REPORT_PROP_KEY));
     contextPublisher.init(writer);
 
     if (!analysisMode.isIssues() && !analysisMode.isMediumTest()) {
@@ -123,17 +136,26 @@ public class ReportPublisher implements Startable {
     // If this is a issues mode analysis then we should not upload reports
     String taskId = null;
     if (!analysisMode.isIssues()) {
-      File report = generateReportFile();
-      if (shouldKeepReport()) {
-        LOG.info("Analysis report generated in " + reportDir);
-      }
-      if (!analysisMode.isMediumTest()) {
-        taskId = upload(report);
+      if (!analysisMode.isMediumTest() && settings.getBoolean(STREAM_REPORT_PROP_KEY)) {
+        taskId = generateAndStreamReport();
+        logIfKeptReport();
+      } else {
+        File report = generateReportFile();
+        logIfKeptReport();
+        if (!analysisMode.isMediumTest()) {
+          taskId = upload(report);
+        }
       }
     }
     logSuccess(taskId);
   }
 
+  private void logIfKeptReport() {
+    if (shouldKeepReport()) {
+      LOG.info("Analysis report generated in " + reportDir);
+    }
+  }
+
   private boolean shouldKeepReport() {
     return settings.getBoolean(KEEP_REPORT_PROP_KEY) || settings.getBoolean(VERBOSE_KEY);
   }
@@ -142,8 +164,11 @@ public class ReportPublisher implements Startable {
     try {
       long startTime = System.currentTimeMillis();
       for (ReportPublisherStep publisher : publishers) {
+        // some publishers read the data written so far
+        writer.flush();
         publisher.publish(writer);
       }
+      writer.flush();
       long stopTime = System.currentTimeMillis();
       LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
 
@@ -158,15 +183,61 @@ public class ReportPublisher implements Startable {
     }
   }
 
+  /**
+   * Runs the publishers while the files of the report are compressed and uploaded, then returns the generated task id
+   */
+  private String generateAndStreamReport() {
+    long startTime = System.currentTimeMillis();
+    int compressionThreads = Math.min(MAX_COMPRESSION_THREADS, Runtime.getRuntime().availableProcessors());
+    ExecutorService uploadExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "report-upload"));
+    try (StreamingReportZip reportZip = new StreamingReportZip(reportDir, temp.newFile("batch-report", ".zip"), compressionThreads)) {
+      // files written during the analysis are complete
+      writer.flush();
+      reportZip.addNewFiles();
+      Future<String> taskId = uploadExecutor.submit(() -> upload(new PostRequest.Part(MediaTypes.ZIP, "batch-report.zip", reportZip::writeTo)));
+      try {
+        for (ReportPublisherStep publisher : publishers) {
+          publisher.publish(writer);
+          writer.flush();
+          reportZip.addNewFiles();
+        }
+      } catch (RuntimeException e) {
+        reportZip.abort();
+        throw e;
+      }
+      reportZip.finish();
+      long stopTime = System.currentTimeMillis();
+      LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
+      return waitFor(taskId);
+    } finally {
+      uploadExecutor.shutdownNow();
+    }
+  }
+
+  private static String waitFor(Future<String> taskId) {
+    try {
+      return taskId.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while uploading analysis report", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new IllegalStateException("Unable to upload analysis report", e.getCause());
+    }
+  }
+
   /**
    * Uploads the report file to server and returns the generated task id
    */
   @VisibleForTesting
   String upload(File report) {
+    return upload(new PostRequest.Part(MediaTypes.ZIP, report));
+  }
+
+  private String upload(PostRequest.Part filePart) {
     LOG.debug("Upload report");
     long startTime = System.currentTimeMillis();
     ProjectDefinition projectDefinition = projectReactor.getRoot();
-    PostRequest.Part filePart = new PostRequest.Part(MediaTypes.ZIP, report);
     PostRequest post = new PostRequest("api/ce/submit")
       .setMediaType(MediaTypes.PROTOBUF)
       .setParam("organization", settings.getString(CoreProperties.PROJECT_ORGANIZATION_PROPERTY))
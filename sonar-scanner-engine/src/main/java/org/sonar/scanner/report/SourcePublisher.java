@@ -29,14 +29,17 @@ import java.nio.charset.StandardCharsets;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.scan.filesystem.FileContentCache;
 import org.sonar.scanner.scan.filesystem.InputComponentStore;
 
 public class SourcePublisher implements ReportPublisherStep {
 
   private final InputComponentStore componentCache;
+  private final FileContentCache contentCache;
 
-  public SourcePublisher(InputComponentStore componentStore) {
+  public SourcePublisher(InputComponentStore componentStore, FileContentCache contentCache) {
     this.componentCache = componentStore;
+    this.contentCache = contentCache;
   }
 
   @Override
@@ -51,6 +54,8 @@ public class SourcePublisher implements ReportPublisherStep {
       } catch (IOException e) {
         throw new IllegalStateException("Unable to store file source in the report", e);
       }
+      // report is the last reader of files
+      contentCache.evict(inputFile.path());
     }
   }
 
@@ -0,0 +1,553 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.report;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.sonar.api.utils.ZipUtils;
+
+/**
+ * Zip of the report directory which is written while the report is still being generated, so that it can be uploaded
+ * at the same time.
+ * <p>
+ * Files are added with {@link #addNewFiles()} once they are complete, typically after each {@link ReportPublisherStep}.
+ * Their content must not change afterwards. {@link #writeTo(OutputStream)} writes the entries in the order they are
+ * added and waits for new files until {@link #finish()} is called.
+ * </p>
+ * <p>
+ * Files are split in blocks which are compressed in parallel, as pigz does: each block is deflated with the end of the
+ * previous block as dictionary and all blocks but the last one are flushed on a byte boundary, so that the compressed
+ * blocks can be concatenated. The number of blocks in memory is bounded.
+ * </p>
+ * <p>
+ * Entries have a data descriptor, as their sizes are known only once they are written. The output can be read by
+ * {@link ZipUtils#unzip(InputStream, File)} and {@link java.util.zip.ZipFile}.
+ * </p>
+ * The zip is also written to a spool file, so that it can be written again when the HTTP client replays the
+ * request, for instance to follow an authentication challenge or to retry on another connection.
+ */
+class StreamingReportZip implements AutoCloseable {
+
+  private static final int BLOCK_SIZE = 1024 * 1024;
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+  private static final long MAX_ZIP32_VALUE = 0xFFFFFFFFL;
+  private static final int MAX_ZIP32_ENTRIES = 0xFFFF;
+  private static final ReportFile END = new ReportFile(null, null);
+
+  private final File reportDir;
+  private final File spoolFile;
+  private final ExecutorService executor;
+  private final int maxPendingBlocks;
+  private final Set<Path> addedFiles = new HashSet<>();
+  private final BlockingQueue<ReportFile> files = new LinkedBlockingQueue<>();
+  private final AtomicBoolean written = new AtomicBoolean(false);
+  private volatile boolean aborted = false;
+  private volatile boolean spooled = false;
+
+  /**
+   * @param spoolFile file outside {@code reportDir} where the zip is copied while it is written
+   */
+  StreamingReportZip(File reportDir, File spoolFile, int threads) {
+    this.reportDir = reportDir;
+    this.spoolFile = spoolFile;
+    this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "report-zip");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.maxPendingBlocks = 2 * threads;
+  }
+
+  /**
+   * Adds the files of the report directory which have not been added yet.
+   */
+  void addNewFiles() {
+    Path root = reportDir.toPath();
+    List<Path> newFiles;
+    try (Stream<Path> paths = Files.walk(root)) {
+      newFiles = paths.filter(Files::isRegularFile).filter(path -> !addedFiles.contains(path)).sorted().collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to list files of " + reportDir, e);
+    }
+    for (Path path : newFiles) {
+      addedFiles.add(path);
+      files.add(new ReportFile(path.toFile(), root.relativize(path).toString().replace('\\', '/')));
+    }
+  }
+
+  /**
+   * No more files will be added. {@link #writeTo(OutputStream)} returns once all the added files are written.
+   */
+  void finish() {
+    files.add(END);
+  }
+
+  /**
+   * The report will not be complete, {@link #writeTo(OutputStream)} fails.
+   */
+  void abort() {
+    aborted = true;
+    files.add(END);
+  }
+
+  /**
+   * Writes the zip. The first call generates it and can't be concurrent to other calls. Next calls write the
+   * spooled copy, provided that the first one has completed the zip, even if it failed to write to its own output.
+   */
+  void writeTo(OutputStream output) throws IOException {
+    if (!written.compareAndSet(false, true)) {
+      writeSpooledTo(output);
+      return;
+    }
+    try (SpoolingOutputStream spoolingOutput = new SpoolingOutputStream(output, new FileOutputStream(spoolFile))) {
+      generate(spoolingOutput);
+      spooled = true;
+      spoolingOutput.checkOutput();
+    }
+  }
+
+  private void writeSpooledTo(OutputStream output) throws IOException {
+    if (!spooled) {
+      throw new IOException("Report zip can't be written again as it has not been completed");
+    }
+    Files.copy(spoolFile.toPath(), output);
+  }
+
+  private void generate(OutputStream output) throws IOException {
+    ZipWriter zip = new ZipWriter(output);
+    Deque<Block> pendingBlocks = new ArrayDeque<>();
+    EntryReader reader = null;
+    boolean allFilesAdded = false;
+    try {
+      while (true) {
+        while (!allFilesAdded && pendingBlocks.size() < maxPendingBlocks) {
+          if (reader == null) {
+            // wait for new files only if there is nothing else to do
+            ReportFile file = pendingBlocks.isEmpty() ? takeFile() : files.poll();
+            if (file == null) {
+              break;
+            }
+            if (file == END) {
+              allFilesAdded = true;
+              break;
+            }
+            reader = new EntryReader(file);
+          }
+          Block block = reader.readBlock();
+          pendingBlocks.add(block);
+          if (block.last) {
+            reader.close();
+            reader = null;
+          }
+        }
+        checkNotAborted();
+        Block block = pendingBlocks.poll();
+        if (block == null) {
+          break;
+        }
+        zip.write(block);
+      }
+      zip.finish();
+    } finally {
+      if (reader != null) {
+        reader.close();
+      }
+      pendingBlocks.forEach(block -> block.data.cancel(true));
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private ReportFile takeFile() throws IOException {
+    try {
+      return files.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for report files");
+    }
+  }
+
+  private void checkNotAborted() throws IOException {
+    if (aborted) {
+      throw new IOException("Generation of report has been aborted");
+    }
+  }
+
+  private static byte[] deflate(byte[] data, int length, byte[] dictionary, boolean last) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      if (dictionary.length > 0) {
+        deflater.setDictionary(dictionary);
+      }
+      deflater.setInput(data, 0, length);
+      ByteArrayOutputStream output = new ByteArrayOutputStream(length / 4 + 64);
+      byte[] buffer = new byte[16 * 1024];
+      if (last) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          int count = deflater.deflate(buffer);
+          output.write(buffer, 0, count);
+        }
+      } else {
+        int count;
+        do {
+          count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+          output.write(buffer, 0, count);
+        } while (count == buffer.length);
+      }
+      return output.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Writes to the spool file and to the output. The generation of the zip goes on when the output fails, so that
+   * it can be written again from the spool file. The failure is raised by {@link #checkOutput()}.
+   */
+  private static final class SpoolingOutputStream extends OutputStream {
+    private final OutputStream output;
+    private final OutputStream spool;
+    private IOException outputFailure;
+
+    private SpoolingOutputStream(OutputStream output, OutputStream spool) {
+      this.output = output;
+      this.spool = spool;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+      spool.write(bytes, off, len);
+      if (outputFailure == null) {
+        try {
+          output.write(bytes, off, len);
+        } catch (IOException e) {
+          outputFailure = e;
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      spool.flush();
+      if (outputFailure == null) {
+        try {
+          output.flush();
+        } catch (IOException e) {
+          outputFailure = e;
+        }
+      }
+    }
+
+    private void checkOutput() throws IOException {
+      if (outputFailure != null) {
+        throw outputFailure;
+      }
+    }
+
+    /**
+     * Closes only the spool file, the output is owned by the caller
+     */
+    @Override
+    public void close() throws IOException {
+      spool.close();
+    }
+  }
+
+  private static final class ReportFile {
+    private final File file;
+    private final String entryName;
+
+    private ReportFile(File file, String entryName) {
+      this.file = file;
+      this.entryName = entryName;
+    }
+  }
+
+  private static final class Entry {
+    private final String name;
+    private final CRC32 crc = new CRC32();
+    private long size = 0L;
+    private long compressedSize = 0L;
+    private long offset = 0L;
+
+    private Entry(String name) {
+      this.name = name;
+    }
+  }
+
+  private static final class Block {
+    private final Entry entry;
+    private final Future<byte[]> data;
+    private final boolean first;
+    private final boolean last;
+
+    private Block(Entry entry, Future<byte[]> data, boolean first, boolean last) {
+      this.entry = entry;
+      this.data = data;
+      this.first = first;
+      this.last = last;
+    }
+  }
+
+  /**
+   * Reads a file block by block. The CRC and the size of the entry are complete once the last block is read.
+   */
+  private final class EntryReader implements AutoCloseable {
+    private final Entry entry;
+    private final InputStream input;
+    private long remaining;
+    private byte[] dictionary = new byte[0];
+    private boolean first = true;
+
+    private EntryReader(ReportFile file) throws IOException {
+      this.entry = new Entry(file.entryName);
+      this.input = new FileInputStream(file.file);
+      this.remaining = file.file.length();
+    }
+
+    private Block readBlock() throws IOException {
+      // one more byte than expected, so that the end of the file is detected without reading another block
+      byte[] data = new byte[(int) Math.min(BLOCK_SIZE, remaining + 1)];
+      int length = readFully(data);
+      remaining -= length;
+      boolean last = length < data.length;
+      entry.crc.update(data, 0, length);
+      entry.size += length;
+      byte[] blockDictionary = dictionary;
+      dictionary = Arrays.copyOfRange(data, Math.max(0, length - DICTIONARY_SIZE), length);
+      Block block = new Block(entry, executor.submit(() -> deflate(data, length, blockDictionary, last)), first, last);
+      first = false;
+      return block;
+    }
+
+    private int readFully(byte[] data) throws IOException {
+      int length = 0;
+      while (length < data.length) {
+        int count = input.read(data, length, data.length - length);
+        if (count < 0) {
+          break;
+        }
+        length += count;
+      }
+      return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+
+  private static final class ZipWriter {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int VERSION = 20;
+    private static final int ZIP64_VERSION = 45;
+    // data descriptor and UTF-8 names
+    private static final int FLAGS = 0x0808;
+    private static final int DEFLATED = 8;
+
+    private final OutputStream output;
+    private final List<Entry> entries = new ArrayList<>();
+    private final int dosTime;
+    private final int dosDate;
+    private long offset = 0L;
+
+    private ZipWriter(OutputStream output) {
+      this.output = new BufferedOutputStream(output, 64 * 1024);
+      Calendar now = Calendar.getInstance();
+      this.dosTime = (now.get(Calendar.HOUR_OF_DAY) << 11) | (now.get(Calendar.MINUTE) << 5) | (now.get(Calendar.SECOND) >> 1);
+      this.dosDate = ((now.get(Calendar.YEAR) - 1980) << 9) | ((now.get(Calendar.MONTH) + 1) << 5) | now.get(Calendar.DAY_OF_MONTH);
+    }
+
+    private void write(Block block) throws IOException {
+      Entry entry = block.entry;
+      if (block.first) {
+        entry.offset = offset;
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(FLAGS);
+        writeShort(DEFLATED);
+        writeShort(dosTime);
+        writeShort(dosDate);
+        // CRC and sizes are in the data descriptor
+        writeInt(0);
+        writeInt(0);
+        writeInt(0);
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        writeShort(name.length);
+        writeShort(0);
+        writeBytes(name);
+      }
+      byte[] data = get(block.data);
+      entry.compressedSize += data.length;
+      writeBytes(data);
+      if (block.last) {
+        checkZip32(entry.size, "Size of " + entry.name);
+        checkZip32(entry.compressedSize, "Compressed size of " + entry.name);
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt((int) entry.crc.getValue());
+        writeInt((int) entry.compressedSize);
+        writeInt((int) entry.size);
+        entries.add(entry);
+      }
+    }
+
+    private void finish() throws IOException {
+      long centralDirectoryOffset = offset;
+      for (Entry entry : entries) {
+        checkZip32(entry.offset, "Offset of " + entry.name);
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        writeInt(CENTRAL_HEADER_SIGNATURE);
+        writeShort(VERSION);
+        writeShort(VERSION);
+        writeShort(FLAGS);
+        writeShort(DEFLATED);
+        writeShort(dosTime);
+        writeShort(dosDate);
+        writeInt((int) entry.crc.getValue());
+        writeInt((int) entry.compressedSize);
+        writeInt((int) entry.size);
+        writeShort(name.length);
+        // extra field, comment, disk number, internal and external attributes
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeShort(0);
+        writeInt(0);
+        writeInt((int) entry.offset);
+        writeBytes(name);
+      }
+      long centralDirectorySize = offset - centralDirectoryOffset;
+      checkZip32(centralDirectoryOffset, "Offset of central directory");
+      checkZip32(centralDirectorySize, "Size of central directory");
+
+      int entryCount = entries.size();
+      if (entryCount >= MAX_ZIP32_ENTRIES) {
+        // number of entries does not fit in the end of central directory
+        long zip64EndOffset = offset;
+        writeInt(ZIP64_END_SIGNATURE);
+        writeLong(44L);
+        writeShort(ZIP64_VERSION);
+        writeShort(ZIP64_VERSION);
+        writeInt(0);
+        writeInt(0);
+        writeLong(entryCount);
+        writeLong(entryCount);
+        writeLong(centralDirectorySize);
+        writeLong(centralDirectoryOffset);
+        writeInt(ZIP64_LOCATOR_SIGNATURE);
+        writeInt(0);
+        writeLong(zip64EndOffset);
+        writeInt(1);
+        entryCount = MAX_ZIP32_ENTRIES;
+      }
+      writeInt(END_SIGNATURE);
+      writeShort(0);
+      writeShort(0);
+      writeShort(entryCount);
+      writeShort(entryCount);
+      writeInt((int) centralDirectorySize);
+      writeInt((int) centralDirectoryOffset);
+      writeShort(0);
+      output.flush();
+    }
+
+    private static byte[] get(Future<byte[]> data) throws IOException {
+      try {
+        return data.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while compressing report");
+      } catch (ExecutionException e) {
+        throw new IOException("Fail to compress report", e.getCause());
+      }
+    }
+
+    private static void checkZip32(long value, String label) throws IOException {
+      if (value > MAX_ZIP32_VALUE) {
+        throw new IOException(label + " exceeds 4GB, which is not supported when streaming the report");
+      }
+    }
+
+    private void writeShort(int value) throws IOException {
+      output.write(value & 0xFF);
+      output.write((value >>> 8) & 0xFF);
+      offset += 2;
+    }
+
+    private void writeInt(int value) throws IOException {
+      writeShort(value & 0xFFFF);
+      writeShort((value >>> 16) & 0xFFFF);
+    }
+
+    private void writeLong(long value) throws IOException {
+      writeInt((int) value);
+      writeInt((int) (value >>> 32));
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+      output.write(bytes);
+      offset += bytes.length;
+    }
+  }
+}
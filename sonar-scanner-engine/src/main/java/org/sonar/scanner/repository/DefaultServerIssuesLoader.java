@@ -19,41 +19,156 @@
  */
 package org.sonar.scanner.repository;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.function.Consumer;
-import org.apache.commons.io.IOUtils;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.home.cache.FileCache;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssuesSync;
 import org.sonar.scanner.util.ScannerUtils;
 import org.sonarqube.ws.client.GetRequest;
 
+/**
+ * Loads the issues of server and keeps a snapshot of them in the user cache, so that next loads
+ * only download the issues changed since the previous one. As the visible issues depend on permissions,
+ * snapshots are not shared by users.
+ */
 public class DefaultServerIssuesLoader implements ServerIssuesLoader {
 
+  private static final Logger LOG = Loggers.get(DefaultServerIssuesLoader.class);
+  private static final String SNAPSHOTS_DIR = "_issues";
+
   private final ScannerWsClient wsClient;
+  private final String login;
+  private final File snapshotsDir;
+
+  public DefaultServerIssuesLoader(ScannerWsClient wsClient, GlobalProperties globalProperties, FileCache fileCache) {
+    this(wsClient, globalProperties.property(CoreProperties.LOGIN), new File(fileCache.getDir(), SNAPSHOTS_DIR));
+  }
 
-  public DefaultServerIssuesLoader(ScannerWsClient wsClient) {
+  @VisibleForTesting
+  DefaultServerIssuesLoader(ScannerWsClient wsClient, @Nullable String login, File snapshotsDir) {
     this.wsClient = wsClient;
+    this.login = Strings.nullToEmpty(login);
+    this.snapshotsDir = snapshotsDir;
   }
 
   @Override
   public void load(String componentKey, Consumer<ServerIssue> consumer) {
-    GetRequest getRequest = new GetRequest("/batch/issues.protobuf?key=" + ScannerUtils.encodeForUrl(componentKey));
-    InputStream is = wsClient.call(getRequest).contentStream();
-    parseIssues(is, consumer);
-  }
-
-  private static void parseIssues(InputStream is, Consumer<ServerIssue> consumer) {
-    try {
-      ServerIssue previousIssue = ServerIssue.parseDelimitedFrom(is);
-      while (previousIssue != null) {
-        consumer.accept(previousIssue);
-        previousIssue = ServerIssue.parseDelimitedFrom(is);
+    File snapshot = new File(snapshotsDir, DigestUtils.sha1Hex(wsClient.baseUrl() + "|" + login + "|" + componentKey) + ".pb");
+    Long snapshotDate = readSnapshotDate(snapshot);
+    GetRequest getRequest = new GetRequest("/batch/issues.protobuf?key=" + ScannerUtils.encodeForUrl(componentKey)
+      + "&changedSince=" + (snapshotDate == null ? 0L : snapshotDate));
+    File newSnapshot = null;
+    try (InputStream is = wsClient.call(getRequest).contentStream()) {
+      ServerIssuesSync sync = ServerIssuesSync.parseDelimitedFrom(is);
+      if (sync == null) {
+        throw new IllegalStateException("Missing synchronization header");
+      }
+      Files.createDirectories(snapshotsDir.toPath());
+      newSnapshot = File.createTempFile(snapshot.getName(), ".tmp", snapshotsDir);
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(newSnapshot.toPath()))) {
+        ServerIssuesSync.newBuilder().setSyncDate(sync.getSyncDate()).setFull(true).build().writeDelimitedTo(out);
+        Consumer<ServerIssue> storingConsumer = issue -> {
+          consumer.accept(issue);
+          write(issue, out);
+        };
+        if (sync.getFull() || snapshotDate == null) {
+          LOG.debug("Load all server issues");
+          parseIssues(is, storingConsumer);
+        } else {
+          mergeChanges(is, snapshot, storingConsumer);
+        }
       }
+      Files.move(newSnapshot.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     } catch (IOException e) {
       throw new IllegalStateException("Unable to get previous issues", e);
     } finally {
-      IOUtils.closeQuietly(is);
+      deleteQuietly(newSnapshot);
+    }
+  }
+
+  /**
+   * The changes are expected to be few, so they are kept in memory while the previous snapshot is streamed.
+   */
+  private static void mergeChanges(InputStream changesStream, File snapshot, Consumer<ServerIssue> consumer) throws IOException {
+    Map<String, ServerIssue> changesByKey = new LinkedHashMap<>();
+    parseIssues(changesStream, issue -> changesByKey.put(issue.getKey(), issue));
+    LOG.debug("Load {} changed server issues", changesByKey.size());
+    try (InputStream is = new BufferedInputStream(Files.newInputStream(snapshot.toPath()))) {
+      // skip header
+      ServerIssuesSync.parseDelimitedFrom(is);
+      parseIssues(is, issue -> {
+        if (!changesByKey.containsKey(issue.getKey())) {
+          consumer.accept(issue);
+        }
+      });
+    } catch (IOException e) {
+      // next load will download all issues
+      deleteQuietly(snapshot);
+      throw e;
+    }
+    changesByKey.values().forEach(consumer);
+  }
+
+  /**
+   * Closed issues are not forwarded to consumer
+   */
+  private static void parseIssues(InputStream is, Consumer<ServerIssue> consumer) throws IOException {
+    ServerIssue issue = ServerIssue.parseDelimitedFrom(is);
+    while (issue != null) {
+      if (!Issue.STATUS_CLOSED.equals(issue.getStatus())) {
+        consumer.accept(issue);
+      }
+      issue = ServerIssue.parseDelimitedFrom(is);
+    }
+  }
+
+  @CheckForNull
+  private static Long readSnapshotDate(File snapshot) {
+    if (!snapshot.isFile()) {
+      return null;
+    }
+    try (InputStream is = new BufferedInputStream(Files.newInputStream(snapshot.toPath()))) {
+      ServerIssuesSync sync = ServerIssuesSync.parseDelimitedFrom(is);
+      return sync == null ? null : sync.getSyncDate();
+    } catch (IOException e) {
+      LOG.debug("Ignore invalid snapshot of server issues {}", snapshot);
+      deleteQuietly(snapshot);
+      return null;
+    }
+  }
+
+  private static void write(ServerIssue issue, OutputStream out) {
+    try {
+      issue.writeDelimitedTo(out);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to store previous issues", e);
+    }
+  }
+
+  private static void deleteQuietly(@Nullable File file) {
+    if (file != null && !file.delete() && file.exists()) {
+      LOG.debug("Unable to delete {}", file);
     }
   }
 }
@@ -87,6 +87,7 @@ import org.sonar.scanner.rule.DefaultRulesLoader;
 import org.sonar.scanner.rule.RulesLoader;
 import org.sonar.scanner.rule.RulesProvider;
 import org.sonar.scanner.scan.filesystem.BatchIdGenerator;
+import org.sonar.scanner.scan.filesystem.FileContentCache;
 import org.sonar.scanner.scan.filesystem.InputComponentStore;
 import org.sonar.scanner.scan.measure.DefaultMetricFinder;
 import org.sonar.scanner.scan.measure.DeprecatedMetricFinder;
@@ -147,6 +148,7 @@ public class ProjectScanContainer extends ComponentContainer {
       // file system
       ModuleIndexer.class,
       InputComponentStore.class,
+      FileContentCache.class,
       PathResolver.class,
       DefaultInputModuleHierarchy.class,
       DefaultComponentTree.class,
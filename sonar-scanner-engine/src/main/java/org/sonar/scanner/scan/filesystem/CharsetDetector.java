@@ -31,6 +31,7 @@ import javax.annotation.CheckForNull;
 
 import org.apache.commons.io.ByteOrderMark;
 import org.apache.commons.io.IOUtils;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
 
 public class CharsetDetector {
   private static final int BYTES_TO_DECODE = 4192;
@@ -38,10 +39,16 @@ public class CharsetDetector {
   private BufferedInputStream stream;
   private Charset detectedCharset;
   private Charset userEncoding;
+  private DefaultInputFile.ContentOpener contentOpener;
 
   public CharsetDetector(Path filePath, Charset userEncoding) {
+    this(filePath, userEncoding, Files::newInputStream);
+  }
+
+  public CharsetDetector(Path filePath, Charset userEncoding, DefaultInputFile.ContentOpener contentOpener) {
     this.filePath = filePath;
     this.userEncoding = userEncoding;
+    this.contentOpener = contentOpener;
   }
 
   public boolean run() {
@@ -65,7 +72,7 @@ public class CharsetDetector {
   }
 
   private byte[] readBuffer() throws IOException {
-    stream = new BufferedInputStream(Files.newInputStream(filePath), BYTES_TO_DECODE * 2);
+    stream = new BufferedInputStream(contentOpener.open(filePath), BYTES_TO_DECODE * 2);
     stream.mark(BYTES_TO_DECODE);
     byte[] buf = new byte[BYTES_TO_DECODE];
     int read = IOUtils.read(stream, buf, 0, BYTES_TO_DECODE);
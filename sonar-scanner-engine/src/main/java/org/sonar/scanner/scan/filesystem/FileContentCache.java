@@ -0,0 +1,106 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import org.picocontainer.Startable;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.Settings;
+
+/**
+ * Raw content of the files of the project, shared by all the readers of files during analysis: generation of
+ * metadata, sensors, computation of duplications, issue tracking and report. Each file is read once from disk
+ * as long as it stays in memory.
+ * <p>
+ * Total size is bounded by property {@link #SIZE_PROPERTY}, in MB. Least recently read files are evicted first.
+ * Files that are too big to be kept are read from disk every time.
+ * </p>
+ */
+@ScannerSide
+public class FileContentCache implements DefaultInputFile.ContentOpener, Startable {
+
+  public static final String SIZE_PROPERTY = "sonar.scanner.fileContentCacheSizeInMb";
+  private static final int DEFAULT_SIZE_IN_MB = 64;
+  private static final long MB = 1024L * 1024L;
+
+  /**
+   * Files bigger than this ratio of the cache are not cached, so that they don't evict all other files
+   */
+  private static final int MAX_FILE_RATIO = 16;
+
+  private final long maxFileSize;
+  private final Cache<Path, byte[]> cache;
+
+  public FileContentCache(Settings settings) {
+    long maxSize = (settings.hasKey(SIZE_PROPERTY) ? settings.getInt(SIZE_PROPERTY) : DEFAULT_SIZE_IN_MB) * MB;
+    this.maxFileSize = maxSize / MAX_FILE_RATIO;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumWeight(maxSize)
+      .weigher((Path path, byte[] content) -> content.length)
+      .build();
+  }
+
+  @Override
+  public InputStream open(Path path) throws IOException {
+    Path key = path.toAbsolutePath();
+    byte[] content = cache.getIfPresent(key);
+    if (content == null) {
+      if (Files.size(key) > maxFileSize) {
+        return Files.newInputStream(key);
+      }
+      content = load(key);
+    }
+    return new ByteArrayInputStream(content);
+  }
+
+  private byte[] load(Path path) throws IOException {
+    try {
+      return cache.get(path, () -> Files.readAllBytes(path));
+    } catch (ExecutionException e) {
+      // only checked exception of loader
+      throw (IOException) e.getCause();
+    }
+  }
+
+  /**
+   * Releases the content of a file that won't be read anymore
+   */
+  public void evict(Path path) {
+    cache.invalidate(path.toAbsolutePath());
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    cache.invalidateAll();
+  }
+}
@@ -42,16 +42,18 @@ public class InputFileBuilder {
   private final LanguageDetection langDetection;
   private final BatchIdGenerator idGenerator;
   private final MetadataGenerator metadataGenerator;
+  private final FileContentCache contentCache;
   private final boolean preloadMetadata;
 
   public InputFileBuilder(DefaultInputModule module, PathResolver pathResolver, LanguageDetection langDetection, MetadataGenerator metadataGenerator,
-    BatchIdGenerator idGenerator, Settings settings) {
+    BatchIdGenerator idGenerator, FileContentCache contentCache, Settings settings) {
     this.moduleKey = module.key();
     this.moduleBaseDir = module.definition().getBaseDir().toPath();
     this.pathResolver = pathResolver;
     this.langDetection = langDetection;
     this.metadataGenerator = metadataGenerator;
     this.idGenerator = idGenerator;
+    this.contentCache = contentCache;
     this.preloadMetadata = settings.getBoolean(PRELOAD_FILE_METADATA_KEY);
   }
 
@@ -70,7 +72,7 @@ public class InputFileBuilder {
     }
     indexedFile.setLanguage(language);
 
-    DefaultInputFile inputFile = new DefaultInputFile(indexedFile, f -> metadataGenerator.setMetadata(f, defaultEncoding));
+    DefaultInputFile inputFile = new DefaultInputFile(indexedFile, f -> metadataGenerator.setMetadata(f, defaultEncoding), contentCache);
     if (language != null) {
       inputFile.setPublish(true);
     }
@@ -45,12 +45,15 @@ class MetadataGenerator {
   private final FileMetadata fileMetadata;
   private final DefaultInputModule inputModule;
   private final IssueExclusionsLoader exclusionsScanner;
+  private final FileContentCache contentCache;
 
-  MetadataGenerator(DefaultInputModule inputModule, StatusDetection statusDetection, FileMetadata fileMetadata, IssueExclusionsLoader exclusionsScanner) {
+  MetadataGenerator(DefaultInputModule inputModule, StatusDetection statusDetection, FileMetadata fileMetadata, IssueExclusionsLoader exclusionsScanner,
+    FileContentCache contentCache) {
     this.inputModule = inputModule;
     this.statusDetection = statusDetection;
     this.fileMetadata = fileMetadata;
     this.exclusionsScanner = exclusionsScanner;
+    this.contentCache = contentCache;
   }
 
   /**
@@ -58,7 +61,7 @@ class MetadataGenerator {
    * It is an expensive computation, reading the entire file.
    */
   public void setMetadata(final DefaultInputFile inputFile, Charset defaultEncoding) {
-    CharsetDetector charsetDetector = new CharsetDetector(inputFile.path(), defaultEncoding);
+    CharsetDetector charsetDetector = new CharsetDetector(inputFile.path(), defaultEncoding, contentCache);
     try {
       Charset charset;
       if (charsetDetector.run()) {
@@ -28,7 +28,7 @@ import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsLoader;
 @ScannerSide
 public class MetadataGeneratorProvider extends ProviderAdapter {
   public MetadataGenerator provide(DefaultInputModule inputModule, StatusDetectionFactory statusDetectionFactory, FileMetadata fileMetadata,
-    IssueExclusionsLoader exclusionsScanner) {
-    return new MetadataGenerator(inputModule, statusDetectionFactory.create(), fileMetadata, exclusionsScanner);
+    IssueExclusionsLoader exclusionsScanner, FileContentCache contentCache) {
+    return new MetadataGenerator(inputModule, statusDetectionFactory.create(), fileMetadata, exclusionsScanner, contentCache);
   }
 }
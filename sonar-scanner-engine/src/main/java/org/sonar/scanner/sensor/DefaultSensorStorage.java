@@ -112,6 +112,10 @@ import static org.sonar.api.measures.CoreMetrics.TEST_SUCCESS_DENSITY_KEY;
 import static org.sonar.api.measures.CoreMetrics.UNCOVERED_CONDITIONS;
 import static org.sonar.api.measures.CoreMetrics.UNCOVERED_LINES;
 
+/**
+ * Saves the data of sensors. Methods are synchronized, as thread-safe sensors can be executed concurrently
+ * (see {@link org.sonar.api.batch.sensor.SensorDescriptor#threadSafe()}) while caches and report writer are not thread-safe.
+ */
 public class DefaultSensorStorage implements SensorStorage {
 
   private static final Logger LOG = Loggers.get(DefaultSensorStorage.class);
@@ -203,7 +207,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(Measure newMeasure) {
+  public synchronized void store(Measure newMeasure) {
     if (newMeasure.inputComponent() instanceof DefaultInputFile) {
       ((DefaultInputFile) newMeasure.inputComponent()).setPublish(true);
     }
@@ -217,7 +221,7 @@ public class DefaultSensorStorage implements SensorStorage {
     }
   }
 
-  public void saveMeasure(InputComponent component, DefaultMeasure<?> measure) {
+  public synchronized void saveMeasure(InputComponent component, DefaultMeasure<?> measure) {
     if (component.isFile()) {
       ((DefaultInputFile) component).setPublish(true);
     }
@@ -350,7 +354,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(Issue issue) {
+  public synchronized void store(Issue issue) {
     if (issue.primaryLocation().inputComponent() instanceof DefaultInputFile) {
       ((DefaultInputFile) issue.primaryLocation().inputComponent()).setPublish(true);
     }
@@ -358,7 +362,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(DefaultHighlighting highlighting) {
+  public synchronized void store(DefaultHighlighting highlighting) {
     ScannerReportWriter writer = reportPublisher.getWriter();
     DefaultInputFile inputFile = (DefaultInputFile) highlighting.inputFile();
     inputFile.setPublish(true);
@@ -383,7 +387,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(DefaultSymbolTable symbolTable) {
+  public synchronized void store(DefaultSymbolTable symbolTable) {
     ScannerReportWriter writer = reportPublisher.getWriter();
     DefaultInputFile inputFile = (DefaultInputFile) symbolTable.inputFile();
     inputFile.setPublish(true);
@@ -416,7 +420,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(DefaultCoverage defaultCoverage) {
+  public synchronized void store(DefaultCoverage defaultCoverage) {
     DefaultInputFile inputFile = (DefaultInputFile) defaultCoverage.inputFile();
     inputFile.setPublish(true);
     if (coverageExclusions.isExcluded(inputFile)) {
@@ -445,9 +449,12 @@ public class DefaultSensorStorage implements SensorStorage {
   public void store(DefaultCpdTokens defaultCpdTokens) {
     DefaultInputFile inputFile = (DefaultInputFile) defaultCpdTokens.inputFile();
     inputFile.setPublish(true);
+    // chunking does not need to hold the lock
     PmdBlockChunker blockChunker = new PmdBlockChunker(getBlockSize(inputFile.language()));
     List<Block> blocks = blockChunker.chunk(inputFile.key(), defaultCpdTokens.getTokenLines());
-    index.insert(inputFile, blocks);
+    synchronized (this) {
+      index.insert(inputFile, blocks);
+    }
   }
 
   @VisibleForTesting
@@ -460,13 +467,13 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(AnalysisError analysisError) {
+  public synchronized void store(AnalysisError analysisError) {
     ((DefaultInputFile) analysisError.inputFile()).setPublish(true);
     // no op
   }
 
   @Override
-  public void storeProperty(String key, String value) {
+  public synchronized void storeProperty(String key, String value) {
     contextPropertiesCache.put(key, value);
   }
 }
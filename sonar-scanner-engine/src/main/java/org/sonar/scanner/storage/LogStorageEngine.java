@@ -0,0 +1,343 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import com.google.common.collect.ImmutableMap;
+import com.persistit.Persistit;
+import com.persistit.Value;
+import java.io.File;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Lightweight engine: keys are kept sorted in memory and point to values which are serialized
+ * in a memory-mapped {@link ValueLog}. Reads and writes don't involve any page cache, lock or
+ * journal, unlike {@link PersistitStorageEngine}.
+ * <p>
+ * Values are still encoded with the Persistit {@link Value}, so that the value coders registered
+ * with {@link Storages#registerValueCoder(Class, com.persistit.encoding.ValueCoder)} apply, and
+ * so that stored values are copies of the given objects.
+ * </p>
+ * The log is compacted when garbage (overwritten or removed values) exceeds live data.
+ */
+class LogStorageEngine<V> implements StorageEngine<V> {
+
+  /**
+   * Minimum size of garbage before compacting, as a number of segments
+   */
+  private static final int MIN_GARBAGE_SEGMENTS_FOR_COMPACTION = 4;
+
+  private final String name;
+  private final File dir;
+  private final int segmentSize;
+  private final Value value;
+  private final NavigableMap<Object[], Long> index = new TreeMap<>(KeyComparator.INSTANCE);
+  private ValueLog log;
+  private byte[] buffer = new byte[1024];
+
+  LogStorageEngine(String name, Persistit persistit, File dir, int segmentSize) {
+    this.name = name;
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+    this.value = new Value(persistit);
+    this.value.setMaximumSize(Value.MAXIMUM_SIZE);
+    this.log = new ValueLog(dir, segmentSize);
+  }
+
+  @Override
+  public void put(Object[] key, @Nullable V v) {
+    long address;
+    try {
+      value.clear();
+      value.put(v);
+      address = log.append(value.getEncodedBytes(), value.getEncodedSize());
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to put element in the storage '" + name + "'", e);
+    }
+    Long previous = index.put(key, address);
+    if (previous != null) {
+      log.discard(previous);
+      compactIfNeeded();
+    }
+  }
+
+  @CheckForNull
+  @Override
+  public V get(Object[] key) {
+    Long address = index.get(key);
+    return address == null ? null : read(address);
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) {
+    return index.containsKey(key);
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    Long address = index.remove(key);
+    if (address == null) {
+      return false;
+    }
+    log.discard(address);
+    compactIfNeeded();
+    return true;
+  }
+
+  @Override
+  public void clear(Object[] key) {
+    Map<Object[], Long> range = index.subMap(key, true, KeyComparator.after(key), false);
+    for (Long address : range.values()) {
+      log.discard(address);
+    }
+    range.clear();
+    compactIfNeeded();
+  }
+
+  @Override
+  public void clear() {
+    index.clear();
+    log.reset();
+  }
+
+  @Override
+  public Set<Object> keySet(Object[] prefix) {
+    Set<Object> keys = new LinkedHashSet<>();
+    Map.Entry<Object[], Long> entry = index.higherEntry(prefix);
+    while (entry != null && KeyComparator.isChild(entry.getKey(), prefix)) {
+      Object part = entry.getKey()[prefix.length];
+      keys.add(part);
+      // skip the other keys starting with the same part
+      Object[] partKey = new Object[prefix.length + 1];
+      System.arraycopy(prefix, 0, partKey, 0, prefix.length);
+      partKey[prefix.length] = part;
+      entry = index.higherEntry(KeyComparator.after(partKey));
+    }
+    return keys;
+  }
+
+  @Override
+  public Iterator<V> values(Object[] prefix) {
+    return new ChildIterator<V>(prefix) {
+      @Override
+      V toElement(Map.Entry<Object[], Long> entry) {
+        return read(entry.getValue());
+      }
+    };
+  }
+
+  @Override
+  public Iterator<Storage.Entry<V>> entries(Object[] prefix) {
+    return new ChildIterator<Storage.Entry<V>>(prefix) {
+      @Override
+      Storage.Entry<V> toElement(Map.Entry<Object[], Long> entry) {
+        return new Storage.Entry<>(entry.getKey().clone(), read(entry.getValue()));
+      }
+    };
+  }
+
+  @Override
+  public void close() {
+    index.clear();
+    log.close();
+  }
+
+  @SuppressWarnings("unchecked")
+  @CheckForNull
+  private V read(long address) {
+    int size = log.sizeOf(address);
+    if (buffer.length < size) {
+      buffer = new byte[Math.max(size, buffer.length * 2)];
+    }
+    log.read(address, buffer);
+    try {
+      value.clear();
+      value.putEncodedBytes(buffer, 0, size);
+      return (V) value.get();
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to get element from cache " + name, e);
+    }
+  }
+
+  /**
+   * Copies live values into a new log when the current one contains more garbage than live data.
+   */
+  private void compactIfNeeded() {
+    if (log.garbageSize() < (long) MIN_GARBAGE_SEGMENTS_FOR_COMPACTION * segmentSize || log.garbageSize() < log.liveSize()) {
+      return;
+    }
+    ValueLog compacted = new ValueLog(dir, segmentSize);
+    for (Map.Entry<Object[], Long> entry : index.entrySet()) {
+      int size = log.sizeOf(entry.getValue());
+      if (buffer.length < size) {
+        buffer = new byte[size];
+      }
+      log.read(entry.getValue(), buffer);
+      entry.setValue(compacted.append(buffer, size));
+    }
+    log.close();
+    log = compacted;
+  }
+
+  private abstract class ChildIterator<T> implements Iterator<T> {
+    private final Object[] prefix;
+    private Object[] lastKey;
+    private Map.Entry<Object[], Long> next;
+
+    private ChildIterator(Object[] prefix) {
+      this.prefix = prefix;
+      this.lastKey = prefix;
+    }
+
+    abstract T toElement(Map.Entry<Object[], Long> entry);
+
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        // look up from the last returned key, so that the storage can be modified while iterating
+        Map.Entry<Object[], Long> entry = index.higherEntry(lastKey);
+        if (entry != null && KeyComparator.isChild(entry.getKey(), prefix)) {
+          next = entry;
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      T element = toElement(next);
+      lastKey = next.getKey();
+      next = null;
+      return element;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Removing an item is not supported");
+    }
+  }
+
+  /**
+   * Orders keys part by part, a key being before its children. Parts of different types are ordered
+   * by type, as Persistit does, so that for example {@code 1} and {@code 1L} are different parts.
+   */
+  static class KeyComparator implements Comparator<Object[]> {
+    static final KeyComparator INSTANCE = new KeyComparator();
+
+    /**
+     * Marker of the end of a range of keys. It's greater than any part.
+     */
+    private static final Object AFTER = new Object();
+
+    private static final int COMPARABLE_RANK = 20;
+    private static final Map<Class<?>, Integer> RANKS = ImmutableMap.<Class<?>, Integer>builder()
+      .put(Boolean.class, 1)
+      .put(Byte.class, 2)
+      .put(Short.class, 3)
+      .put(Character.class, 4)
+      .put(Integer.class, 5)
+      .put(Long.class, 6)
+      .put(Float.class, 7)
+      .put(Double.class, 8)
+      .put(String.class, 9)
+      .build();
+
+    private KeyComparator() {
+      // singleton
+    }
+
+    /**
+     * Key that is greater than the given key and all its children, but lower than any following key.
+     */
+    static Object[] after(Object[] key) {
+      Object[] after = new Object[key.length + 1];
+      System.arraycopy(key, 0, after, 0, key.length);
+      after[key.length] = AFTER;
+      return after;
+    }
+
+    static boolean isChild(Object[] key, Object[] prefix) {
+      if (key.length <= prefix.length) {
+        return false;
+      }
+      for (int i = 0; i < prefix.length; i++) {
+        if (compareParts(key[i], prefix[i]) != 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int compare(Object[] k1, Object[] k2) {
+      int length = Math.min(k1.length, k2.length);
+      for (int i = 0; i < length; i++) {
+        int c = compareParts(k1[i], k2[i]);
+        if (c != 0) {
+          return c;
+        }
+      }
+      return Integer.compare(k1.length, k2.length);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareParts(@Nullable Object p1, @Nullable Object p2) {
+      if (p1 == p2) {
+        return 0;
+      }
+      int c = Integer.compare(rank(p1), rank(p2));
+      if (c != 0 || p1 == null || p1 == AFTER) {
+        return c;
+      }
+      if (p1.getClass() != p2.getClass()) {
+        return p1.getClass().getName().compareTo(p2.getClass().getName());
+      }
+      return ((Comparable) p1).compareTo(p2);
+    }
+
+    private static int rank(@Nullable Object part) {
+      if (part == null) {
+        return 0;
+      }
+      if (part == AFTER) {
+        return Integer.MAX_VALUE;
+      }
+      Integer rank = RANKS.get(part.getClass());
+      if (rank != null) {
+        return rank;
+      }
+      if (part instanceof Comparable) {
+        return COMPARABLE_RANK;
+      }
+      throw new IllegalArgumentException("Type of key is not supported: " + part.getClass());
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.Iterator;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Key-value engine behind a {@link Storage}. Keys are arrays of parts, ordered part by part, so that
+ * a key is a prefix of the keys of its "children". Implementations are not required to be thread-safe.
+ *
+ * @since 6.4
+ */
+interface StorageEngine<V> {
+
+  void put(Object[] key, @Nullable V value);
+
+  @CheckForNull
+  V get(Object[] key);
+
+  boolean containsKey(Object[] key);
+
+  /**
+   * Removes the value of the given key, but not the values of its children.
+   */
+  boolean remove(Object[] key);
+
+  /**
+   * Removes the value of the given key and the values of all its children.
+   */
+  void clear(Object[] key);
+
+  void clear();
+
+  /**
+   * Distinct parts following the given prefix, in key order.
+   */
+  Set<Object> keySet(Object[] prefix);
+
+  /**
+   * Lazy iterator on the values of the children of the given prefix, in key order.
+   * Storage can be modified while iterating.
+   */
+  Iterator<V> values(Object[] prefix);
+
+  /**
+   * Same as {@link #values(Object[])}, with the keys.
+   */
+  Iterator<Storage.Entry<V>> entries(Object[] prefix);
+
+  /**
+   * Releases the resources of the engine. It can't be used anymore.
+   */
+  void close();
+}
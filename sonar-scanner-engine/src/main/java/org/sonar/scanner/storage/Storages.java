@@ -28,19 +28,29 @@ import com.persistit.encoding.CoderManager;
 import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.scanner.storage.StoragesManager.Engine;
 
 @ScannerSide
 public class Storages implements Startable {
-  private final Map<String, Exchange> cacheMap = new HashMap<>();
+  private final Map<String, StorageEngine<?>> cacheMap = new HashMap<>();
+  private final Engine engine;
+  private final File tempDir;
   private Persistit persistit;
   private Volume volume;
+  private boolean started = false;
 
   public Storages(StoragesManager storagesManager) {
+    this(storagesManager, storagesManager.engine());
+  }
+
+  Storages(StoragesManager storagesManager, Engine engine) {
+    this.engine = engine;
+    this.tempDir = storagesManager.tempDir();
     persistit = storagesManager.persistit();
     doStart();
   }
@@ -51,12 +61,15 @@ public class Storages implements Startable {
   }
 
   private void doStart() {
-    try {
-      persistit.flush();
-      volume = persistit.createTemporaryVolume();
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to create a cache volume", e);
+    if (engine == Engine.PERSISTIT) {
+      try {
+        persistit.flush();
+        volume = persistit.createTemporaryVolume();
+      } catch (Exception e) {
+        throw new IllegalStateException("Fail to create a cache volume", e);
+      }
     }
+    started = true;
   }
 
   public void registerValueCoder(Class<?> clazz, ValueCoder coder) {
@@ -65,26 +78,34 @@ public class Storages implements Startable {
   }
 
   public <V> Storage<V> createCache(String cacheName) {
-    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
+    Preconditions.checkState(started && (volume == null || volume.isOpened()), "Caches are not initialized");
     Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: %s", cacheName);
     try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Storage<V> cache = new Storage<>(cacheName, exchange);
-      cacheMap.put(cacheName, exchange);
-      return cache;
+      StorageEngine<V> storageEngine = createEngine(cacheName);
+      cacheMap.put(cacheName, storageEngine);
+      return new Storage<>(storageEngine);
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create cache: " + cacheName, e);
     }
   }
 
+  private <V> StorageEngine<V> createEngine(String cacheName) throws PersistitException {
+    if (engine == Engine.PERSISTIT) {
+      Exchange exchange = persistit.getExchange(volume, cacheName, true);
+      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+      return new PersistitStorageEngine<>(cacheName, persistit, exchange);
+    }
+    return new LogStorageEngine<>(cacheName, persistit, tempDir, ValueLog.DEFAULT_SEGMENT_SIZE);
+  }
+
   @Override
   public void stop() {
-    for (Entry<String, Exchange> e : cacheMap.entrySet()) {
-      persistit.releaseExchange(e.getValue());
+    for (StorageEngine<?> storageEngine : cacheMap.values()) {
+      storageEngine.close();
     }
 
     cacheMap.clear();
+    started = false;
 
     if (volume != null) {
       try {
@@ -23,11 +23,14 @@ import com.persistit.Persistit;
 import com.persistit.exception.PersistitException;
 import com.persistit.logging.Slf4jAdapter;
 import java.io.File;
+import java.util.Locale;
 import java.util.Properties;
+import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.sonar.core.util.FileUtils.deleteQuietly;
 
@@ -38,15 +41,38 @@ import static org.sonar.core.util.FileUtils.deleteQuietly;
  */
 @ScannerSide
 public class StoragesManager implements Startable {
+  /**
+   * Engine of the storages: "log" (default) or "persistit"
+   * @since 6.4
+   */
+  public static final String ENGINE_PROP_KEY = "sonar.scanner.storageEngine";
+
+  enum Engine {
+    LOG, PERSISTIT
+  }
+
   private File tempDir;
   private Persistit persistit;
   private final TempFolder tempFolder;
+  private final Engine engine;
 
-  public StoragesManager(TempFolder tempFolder) {
+  public StoragesManager(TempFolder tempFolder, GlobalProperties globalProperties) {
     this.tempFolder = tempFolder;
+    this.engine = parseEngine(globalProperties.property(ENGINE_PROP_KEY));
     initPersistit();
   }
 
+  private static Engine parseEngine(String value) {
+    if (StringUtils.isBlank(value)) {
+      return Engine.LOG;
+    }
+    try {
+      return Engine.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unsupported value of property " + ENGINE_PROP_KEY + ": " + value, e);
+    }
+  }
+
   private void initPersistit() {
     try {
       tempDir = tempFolder.newDir("caches");
@@ -95,4 +121,8 @@ public class StoragesManager implements Startable {
   Persistit persistit() {
     return persistit;
   }
+
+  Engine engine() {
+    return engine;
+  }
 }
@@ -0,0 +1,182 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
+/**
+ * Append-only log of records stored in segments of a memory-mapped temporary file, so
+ * that values are kept outside of the heap and paged by the operating system.
+ * <p>
+ * A record is the size of its content followed by the content. It is addressed by the index
+ * of its segment (high 32 bits) and its offset in the segment (low 32 bits). Records which are
+ * overwritten or removed are only accounted as garbage, the caller is responsible for
+ * compacting the log (see {@link #garbageSize()}).
+ * </p>
+ * This class is not thread-safe.
+ */
+class ValueLog {
+
+  static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+  private static final int HEADER_SIZE = Integer.BYTES;
+
+  private final int segmentSize;
+  private final Path path;
+  private final FileChannel channel;
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+  private long fileSize = 0L;
+  private int currentSegment = -1;
+  private int writeOffset = 0;
+  private long liveSize = 0L;
+  private long garbageSize = 0L;
+
+  ValueLog(File dir, int segmentSize) {
+    this.segmentSize = segmentSize;
+    try {
+      this.path = Files.createTempFile(dir.toPath(), "storage", ".log");
+      this.channel = FileChannel.open(path, READ, WRITE);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create storage log in " + dir, e);
+    }
+  }
+
+  long append(byte[] bytes, int length) {
+    int recordSize = HEADER_SIZE + length;
+    if (currentSegment < 0 || segments.get(currentSegment).capacity() - writeOffset < recordSize) {
+      moveToNextSegment(recordSize);
+    }
+    MappedByteBuffer segment = segments.get(currentSegment);
+    segment.position(writeOffset);
+    segment.putInt(length);
+    segment.put(bytes, 0, length);
+    long address = ((long) currentSegment << 32) | writeOffset;
+    writeOffset += recordSize;
+    liveSize += recordSize;
+    return address;
+  }
+
+  /**
+   * Size in bytes of the content of the record.
+   */
+  int sizeOf(long address) {
+    return segment(address).getInt(offset(address));
+  }
+
+  /**
+   * Copies the content of the record into the given array, which must be large
+   * enough (see {@link #sizeOf(long)}).
+   */
+  void read(long address, byte[] to) {
+    MappedByteBuffer segment = segment(address);
+    int offset = offset(address);
+    int length = segment.getInt(offset);
+    segment.position(offset + HEADER_SIZE);
+    segment.get(to, 0, length);
+  }
+
+  /**
+   * Marks the record as garbage. It must not be read anymore.
+   */
+  void discard(long address) {
+    int recordSize = HEADER_SIZE + sizeOf(address);
+    liveSize -= recordSize;
+    garbageSize += recordSize;
+  }
+
+  /**
+   * Discards all the records. Segments are reused by the next appends.
+   */
+  void reset() {
+    currentSegment = segments.isEmpty() ? -1 : 0;
+    writeOffset = 0;
+    liveSize = 0L;
+    garbageSize = 0L;
+  }
+
+  long liveSize() {
+    return liveSize;
+  }
+
+  long garbageSize() {
+    return garbageSize;
+  }
+
+  /**
+   * Deletes the file. Mappings are released when segments are garbage-collected.
+   */
+  void close() {
+    segments.clear();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to close storage log " + path, e);
+    } finally {
+      deleteQuietly(path.toFile());
+    }
+  }
+
+  private void moveToNextSegment(int recordSize) {
+    if (currentSegment >= 0) {
+      // the end of the current segment is lost
+      garbageSize += segments.get(currentSegment).capacity() - writeOffset;
+    }
+    currentSegment++;
+    writeOffset = 0;
+    // segments following the current one are reused after a reset, as long as they are large enough
+    if (currentSegment < segments.size() && segments.get(currentSegment).capacity() >= recordSize) {
+      return;
+    }
+    MappedByteBuffer segment = map(Math.max(segmentSize, recordSize));
+    if (currentSegment < segments.size()) {
+      segments.set(currentSegment, segment);
+    } else {
+      segments.add(segment);
+    }
+  }
+
+  private MappedByteBuffer map(int size) {
+    try {
+      MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, fileSize, size);
+      fileSize += size;
+      return segment;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to extend storage log " + path, e);
+    }
+  }
+
+  private MappedByteBuffer segment(long address) {
+    return segments.get((int) (address >>> 32));
+  }
+
+  private static int offset(long address) {
+    return (int) address;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.cpd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
+import org.sonar.scanner.protocol.output.ScannerReport.Duplication;
+import org.sonar.scanner.protocol.output.ScannerReportReader;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.report.ReportPublisher;
+import org.sonar.scanner.scan.filesystem.InputComponentStore;
+import org.sonar.test.Benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Wall-clock scaling of {@link CpdExecutor} on a large synthetic block index
+ */
+public class CpdExecutorBenchmarkTest {
+
+  private static final int FILES = 10_000;
+  private static final int BLOCKS_PER_FILE = 200;
+  // a small pool of distinct hashes, so that many blocks are duplicated
+  private static final int DISTINCT_HASHES = 50_000;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  private File baseDir;
+  private InputComponentStore componentStore;
+  private List<DefaultInputFile> files = new ArrayList<>();
+  private List<List<Block>> blocks = new ArrayList<>();
+
+  @Before
+  public void setUp() throws IOException {
+    Benchmark.assumeEnabled();
+    baseDir = temp.newFolder();
+    componentStore = new InputComponentStore(new PathResolver());
+    componentStore.put(TestInputFileBuilder.newDefaultInputModule("foo", baseDir));
+
+    Random random = new Random(42L);
+    for (int i = 0; i < FILES; i++) {
+      DefaultInputFile file = new TestInputFileBuilder("foo", "src/File" + i + ".java")
+        .setModuleBaseDir(baseDir.toPath())
+        .setLanguage("java")
+        .setLines(BLOCKS_PER_FILE + 10)
+        .build();
+      componentStore.put(file);
+      files.add(file);
+
+      List<Block> fileBlocks = new ArrayList<>(BLOCKS_PER_FILE);
+      long hash = random.nextInt(DISTINCT_HASHES);
+      for (int j = 1; j <= BLOCKS_PER_FILE; j++) {
+        // sequences of consecutive hashes are shared by several files
+        hash = random.nextInt(10) == 0 ? random.nextInt(DISTINCT_HASHES) : ((hash + 1) % DISTINCT_HASHES);
+        fileBlocks.add(Block.builder()
+          .setResourceId(file.key())
+          .setIndexInFile(j)
+          .setLines(j, j + 1)
+          .setUnit(j, j + 1)
+          .setBlockHash(new ByteArray(hash))
+          .build());
+      }
+      blocks.add(fileBlocks);
+    }
+  }
+
+  @Test
+  public void scale_with_number_of_threads() throws IOException {
+    File sequentialReport = temp.newFolder();
+    long sequential = run(1, sequentialReport);
+
+    int processors = Runtime.getRuntime().availableProcessors();
+    for (int threads = 2; threads <= processors; threads *= 2) {
+      File parallelReport = temp.newFolder();
+      long parallel = run(threads, parallelReport);
+      assertSameDuplications(sequentialReport, parallelReport);
+      benchmark.expectLessThanOrEqualTo("CPD duration with " + threads + " threads (ms)", parallel, sequential * 2 / threads);
+    }
+  }
+
+  private long run(int threads, File reportDir) {
+    MapSettings settings = new MapSettings();
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, threads);
+    ReportPublisher publisher = mock(ReportPublisher.class);
+    when(publisher.getWriter()).thenReturn(new ScannerReportWriter(reportDir));
+    SonarCpdBlockIndex index = new SonarCpdBlockIndex(publisher, settings);
+    for (int i = 0; i < files.size(); i++) {
+      index.insert(files.get(i), blocks.get(i));
+    }
+    CpdExecutor executor = new CpdExecutor(settings, index, publisher, componentStore);
+    return benchmark.measure("CPD of " + FILES + " files with " + threads + " thread(s)", executor::execute);
+  }
+
+  private void assertSameDuplications(File expectedReport, File actualReport) {
+    ScannerReportReader expectedReader = new ScannerReportReader(expectedReport);
+    ScannerReportReader actualReader = new ScannerReportReader(actualReport);
+    for (DefaultInputFile file : files) {
+      assertThat(readAll(actualReader, file)).isEqualTo(readAll(expectedReader, file));
+    }
+  }
+
+  private static List<Duplication> readAll(ScannerReportReader reader, DefaultInputFile file) {
+    List<Duplication> result = new ArrayList<>();
+    try (CloseableIterator<Duplication> it = reader.readComponentDuplications(file.batchId())) {
+      while (it.hasNext()) {
+        result.add(it.next());
+      }
+    }
+    return result;
+  }
+}
@@ -24,7 +24,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -239,6 +242,125 @@ public class CpdExecutorTest {
         "Timeout during detection of duplications for .*Foo2.php");
   }
 
+  @Test
+  public void single_thread_by_default() {
+    assertThat(executor.getThreads()).isEqualTo(1);
+
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "0");
+    assertThat(executor.getThreads()).isEqualTo(1);
+
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "4");
+    assertThat(executor.getThreads()).isEqualTo(4);
+  }
+
+  @Test
+  public void parallel_detection_saves_duplications_of_every_file() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "4");
+    List<DefaultInputFile> files = new ArrayList<>();
+    for (int i = 1; i <= 20; i++) {
+      DefaultInputFile file = new TestInputFileBuilder("foo", "src/Bar" + i + ".java")
+        .setModuleBaseDir(baseDir.toPath())
+        .setLanguage("java")
+        .setLines(100)
+        .build();
+      componentStore.put(file);
+      files.add(file);
+      index.insert(file, newBlocks(file.key(), 10));
+    }
+
+    executor.execute();
+
+    for (DefaultInputFile file : files) {
+      assertThat(reader.readComponentDuplications(file.batchId())).hasSize(1);
+      Duplication duplication = reader.readComponentDuplications(file.batchId()).next();
+      assertThat(duplication.getOriginPosition().getStartLine()).isEqualTo(1);
+      assertThat(duplication.getDuplicateList()).hasSize(files.size() - 1);
+    }
+  }
+
+  @Test
+  public void parallel_detection_finds_the_same_duplications_as_sequential_detection() throws IOException {
+    List<String> sequential = detectDuplications(1);
+    List<String> parallel = detectDuplications(8);
+
+    assertThat(sequential.stream().filter(duplications -> !duplications.isEmpty()).count()).isGreaterThan(10);
+    assertThat(parallel).isEqualTo(sequential);
+  }
+
+  /**
+   * Detects the duplications of files with random blocks, always the same ones, and returns their description, file by file.
+   */
+  private List<String> detectDuplications(int threads) throws IOException {
+    File outputDir = temp.newFolder();
+    Settings detectionSettings = new MapSettings().setProperty(CpdExecutor.THREADS_PROPERTY, String.valueOf(threads));
+    ReportPublisher detectionPublisher = mock(ReportPublisher.class);
+    when(detectionPublisher.getWriter()).thenReturn(new ScannerReportWriter(outputDir));
+    SonarCpdBlockIndex detectionIndex = new SonarCpdBlockIndex(detectionPublisher, detectionSettings);
+    InputComponentStore store = new InputComponentStore(new PathResolver());
+    File moduleDir = temp.newFolder();
+    store.put(TestInputFileBuilder.newDefaultInputModule("foo", moduleDir));
+
+    Random random = new Random(42);
+    List<DefaultInputFile> files = new ArrayList<>();
+    Map<Integer, String> pathsByRef = new HashMap<>();
+    for (int i = 0; i < 100; i++) {
+      DefaultInputFile file = new TestInputFileBuilder("foo", "src/Bar" + i + ".java")
+        .setModuleBaseDir(moduleDir.toPath())
+        .setLanguage("java")
+        .setLines(200)
+        .build();
+      store.put(file);
+      files.add(file);
+      pathsByRef.put(file.batchId(), file.relativePath());
+      List<Block> blocks = new ArrayList<>();
+      for (int j = 1; j <= 50; j++) {
+        blocks.add(Block.builder()
+          .setResourceId(file.key())
+          .setIndexInFile(j)
+          .setLines(j, j + 1)
+          .setUnit(j, j + 1)
+          .setBlockHash(new ByteArray((long) random.nextInt(40)))
+          .build());
+      }
+      detectionIndex.insert(file, blocks);
+    }
+
+    new CpdExecutor(detectionSettings, detectionIndex, detectionPublisher, store).execute();
+
+    ScannerReportReader detectionReader = new ScannerReportReader(outputDir);
+    List<String> result = new ArrayList<>();
+    for (DefaultInputFile file : files) {
+      StringBuilder description = new StringBuilder();
+      try (CloseableIterator<Duplication> duplications = detectionReader.readComponentDuplications(file.batchId())) {
+        while (duplications.hasNext()) {
+          Duplication duplication = duplications.next();
+          description.append(duplication.getOriginPosition().getStartLine()).append('-').append(duplication.getOriginPosition().getEndLine());
+          for (Duplicate duplicate : duplication.getDuplicateList()) {
+            description.append(' ').append(duplicate.getOtherFileRef() == 0 ? "self" : pathsByRef.get(duplicate.getOtherFileRef()))
+              .append(':').append(duplicate.getRange().getStartLine()).append('-').append(duplicate.getRange().getEndLine());
+          }
+          description.append('\n');
+        }
+      }
+      result.add(description.toString());
+    }
+    return result;
+  }
+
+  private static List<Block> newBlocks(String resourceKey, int count) {
+    List<Block> blocks = new ArrayList<>();
+    for (int j = 1; j <= count; j++) {
+      blocks.add(Block.builder()
+        .setResourceId(resourceKey)
+        .setIndexInFile(j)
+        .setLines(j, j + 1)
+        .setUnit(j, j + 1)
+        .setBlockHash(new ByteArray((long) j))
+        .build());
+    }
+    return blocks;
+  }
+
   private Duplication[] readDuplications(int expected) {
     assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
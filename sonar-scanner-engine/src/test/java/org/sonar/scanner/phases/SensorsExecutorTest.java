@@ -27,6 +27,7 @@ import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.ScannerExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
@@ -79,11 +80,11 @@ public class SensorsExecutorTest {
     when(selector.selectSensors(any(DefaultInputModule.class), eq(true))).thenReturn(Collections.singleton(globalSensor));
 
     DefaultInputModule rootModule = TestInputFileBuilder.newDefaultInputModule("root", temp.newFolder());
-    rootModuleExecutor = new SensorsExecutor(selector, rootModule, mock(EventBus.class), strategy);
+    rootModuleExecutor = new SensorsExecutor(selector, rootModule, mock(EventBus.class), strategy, new MapSettings());
 
     DefaultInputModule subModule = TestInputFileBuilder.newDefaultInputModule("sub", temp.newFolder());
     rootModule.definition().addSubProject(subModule.definition());
-    subModuleExecutor = new SensorsExecutor(selector, subModule, mock(EventBus.class), strategy);
+    subModuleExecutor = new SensorsExecutor(selector, subModule, mock(EventBus.class), strategy, new MapSettings());
   }
 
   @Test
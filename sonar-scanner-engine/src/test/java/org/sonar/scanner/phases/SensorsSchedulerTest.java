@@ -0,0 +1,130 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.phases;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.scanner.sensor.SensorOptimizer;
+import org.sonar.scanner.sensor.SensorWrapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SensorsSchedulerTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+  @Test
+  public void execute_thread_safe_sensors_concurrently() {
+    Sensor first = sensor("first", true);
+    Sensor second = sensor("second", true);
+    CountDownLatch started = new CountDownLatch(2);
+
+    new SensorsScheduler(2).execute(Arrays.asList(first, second), sensor -> {
+      started.countDown();
+      // fails if sensors are executed one after the other
+      await(started);
+      executed.add(sensor.toString());
+    });
+
+    assertThat(executed).containsOnly("first", "second");
+  }
+
+  @Test
+  public void execute_other_sensors_alone_in_order() {
+    Sensor first = sensor("first", true);
+    Sensor second = sensor("second", true);
+    Sensor third = sensor("third", false);
+    Sensor fourth = sensor("fourth", true);
+
+    new SensorsScheduler(4).execute(Arrays.asList(first, second, third, fourth), sensor -> executed.add(sensor.toString()));
+
+    assertThat(executed).hasSize(4);
+    assertThat(executed.subList(0, 2)).containsOnly("first", "second");
+    assertThat(executed.subList(2, 4)).containsExactly("third", "fourth");
+  }
+
+  @Test
+  public void execute_sensors_in_order_on_calling_thread_if_single_thread() {
+    Sensor first = sensor("first", true);
+    Sensor second = sensor("second", true);
+    Thread callingThread = Thread.currentThread();
+
+    new SensorsScheduler(1).execute(Arrays.asList(second, first), sensor -> {
+      assertThat(Thread.currentThread()).isSameAs(callingThread);
+      executed.add(sensor.toString());
+    });
+
+    assertThat(executed).containsExactly("second", "first");
+  }
+
+  @Test
+  public void propagate_failure_of_concurrent_sensor() {
+    Sensor first = sensor("first", true);
+    Sensor second = sensor("second", true);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("failure of second");
+
+    new SensorsScheduler(2).execute(Arrays.asList(first, second), sensor -> {
+      if (sensor == second) {
+        throw new IllegalArgumentException("failure of second");
+      }
+    });
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Sensor sensor(String name, boolean threadSafe) {
+    return new SensorWrapper(new org.sonar.api.batch.sensor.Sensor() {
+      @Override
+      public void describe(SensorDescriptor descriptor) {
+        descriptor.name(name);
+        if (threadSafe) {
+          descriptor.threadSafe();
+        }
+      }
+
+      @Override
+      public void execute(SensorContext context) {
+        // executed by the scheduler
+      }
+    }, mock(SensorContext.class), mock(SensorOptimizer.class));
+  }
+}
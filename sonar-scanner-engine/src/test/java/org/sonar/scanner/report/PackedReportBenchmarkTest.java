@@ -0,0 +1,123 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.report;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.ZipUtils;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportReader;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.test.Benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Generates, compresses, extracts and reads back the report of a large project, with and without
+ * packing the data of components.
+ */
+public class PackedReportBenchmarkTest {
+
+  private static final int FILES = 20_000;
+  private static final int MEASURES_PER_FILE = 20;
+  private static final int ISSUES_PER_FILE = 3;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  @Before
+  public void setUp() {
+    Benchmark.assumeEnabled();
+  }
+
+  @Test
+  public void packed_report_is_faster_than_one_file_per_component() throws Exception {
+    // warm up
+    replay(false, FILES / 10);
+    replay(true, FILES / 10);
+
+    long files = benchmark.measure("Report of " + FILES + " files, one file per component", () -> replay(false, FILES));
+    long packed = benchmark.measure("Packed report of " + FILES + " files", () -> replay(true, FILES));
+
+    benchmark.expectLessThanOrEqualTo("Duration of packed report (ms), unpacked report taking " + files + "ms", packed, files / 2);
+  }
+
+  private void replay(boolean packed, int files) {
+    try {
+      File reportDir = temp.newFolder();
+      ScannerReportWriter writer = new ScannerReportWriter(reportDir, packed);
+      for (int ref = 1; ref <= files; ref++) {
+        writer.writeComponent(ScannerReport.Component.newBuilder().setRef(ref).setPath("src/main/java/File" + ref + ".java").build());
+        writer.writeComponentMeasures(ref, measures());
+        for (int issue = 0; issue < ISSUES_PER_FILE; issue++) {
+          writer.appendComponentIssue(ref, ScannerReport.Issue.newBuilder().setRuleKey("S" + issue).setMsg("Issue " + issue).build());
+        }
+      }
+      writer.flush();
+
+      File zip = temp.newFile();
+      ZipUtils.zipDir(reportDir, zip);
+      File extractedDir = ZipUtils.unzip(zip, temp.newFolder());
+
+      ScannerReportReader reader = new ScannerReportReader(extractedDir);
+      int count = 0;
+      for (int ref = 1; ref <= files; ref++) {
+        assertThat(reader.readComponent(ref).getRef()).isEqualTo(ref);
+        count += size(reader.readComponentMeasures(ref));
+        count += size(reader.readComponentIssues(ref));
+      }
+      assertThat(count).isEqualTo(files * (MEASURES_PER_FILE + ISSUES_PER_FILE));
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static List<ScannerReport.Measure> measures() {
+    List<ScannerReport.Measure> measures = new ArrayList<>();
+    for (int metric = 0; metric < MEASURES_PER_FILE; metric++) {
+      measures.add(ScannerReport.Measure.newBuilder()
+        .setMetricKey("metric" + metric)
+        .setIntValue(ScannerReport.Measure.IntValue.newBuilder().setValue(metric))
+        .build());
+    }
+    return measures;
+  }
+
+  private static int size(CloseableIterator<?> it) {
+    try (CloseableIterator<?> closeable = it) {
+      int size = 0;
+      while (closeable.hasNext()) {
+        closeable.next();
+        size++;
+      }
+      return size;
+    }
+  }
+}
@@ -19,6 +19,8 @@
  */
 package org.sonar.scanner.report;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PipedInputStream;
@@ -40,14 +42,18 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.config.CorePropertyDefinitions;
 import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportReader;
 import org.sonar.scanner.scan.ImmutableProjectReactor;
 import org.sonarqube.ws.WsCe;
 import org.sonarqube.ws.client.HttpException;
+import org.sonarqube.ws.client.PostRequest;
 import org.sonarqube.ws.client.WsRequest;
 import org.sonarqube.ws.client.WsResponse;
 
@@ -219,4 +225,62 @@ public class ReportPublisherTest {
       entry("projectKey", "struts"));
   }
 
+  @Test
+  public void stream_report_while_publishers_are_executed() throws Exception {
+    settings.setProperty(ReportPublisher.STREAM_REPORT_PROP_KEY, true);
+    ReportPublisherStep publisher1 = writer -> writer.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("struts").build());
+    ReportPublisherStep publisher2 = writer -> writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, spoolingTempFolder(),
+      new ReportPublisherStep[] {publisher1, publisher2});
+    ByteArrayOutputStream uploadedZip = new ByteArrayOutputStream();
+    when(wsClient.call(any(WsRequest.class))).thenAnswer(invocation -> {
+      PostRequest request = (PostRequest) invocation.getArguments()[0];
+      request.getParts().get("report").getContentWriter().writeTo(uploadedZip);
+      return submitResponse("TASK-1");
+    });
+
+    underTest.start();
+    underTest.execute();
+
+    File unzipped = ZipUtils.unzip(new ByteArrayInputStream(uploadedZip.toByteArray()), temp.newFolder());
+    assertThat(new ScannerReportReader(unzipped).readMetadata().getProjectKey()).isEqualTo("struts");
+    assertThat(new ScannerReportReader(unzipped).readComponent(1)).isNotNull();
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("More about the report processing at https://localhost/api/ce/task?id=TASK-1");
+  }
+
+  @Test
+  public void abort_streamed_report_if_a_publisher_fails() throws Exception {
+    settings.setProperty(ReportPublisher.STREAM_REPORT_PROP_KEY, true);
+    ReportPublisherStep failingPublisher = writer -> {
+      throw new IllegalStateException("publisher failure");
+    };
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, spoolingTempFolder(),
+      new ReportPublisherStep[] {failingPublisher});
+    when(wsClient.call(any(WsRequest.class))).thenAnswer(invocation -> {
+      PostRequest request = (PostRequest) invocation.getArguments()[0];
+      request.getParts().get("report").getContentWriter().writeTo(new ByteArrayOutputStream());
+      return submitResponse("TASK-1");
+    });
+    underTest.start();
+
+    exception.expect(IllegalStateException.class);
+    exception.expectMessage("publisher failure");
+
+    underTest.execute();
+  }
+
+  private TempFolder spoolingTempFolder() throws IOException {
+    TempFolder tempFolder = mock(TempFolder.class);
+    when(tempFolder.newFile("batch-report", ".zip")).thenReturn(temp.newFile());
+    return tempFolder;
+  }
+
+  private static WsResponse submitResponse(String taskId) throws IOException {
+    ByteArrayOutputStream protobuf = new ByteArrayOutputStream();
+    WsCe.SubmitResponse.newBuilder().setTaskId(taskId).build().writeTo(protobuf);
+    WsResponse response = mock(WsResponse.class);
+    when(response.failIfNotSuccessful()).thenReturn(response);
+    when(response.contentStream()).thenReturn(new ByteArrayInputStream(protobuf.toByteArray()));
+    return response;
+  }
 }
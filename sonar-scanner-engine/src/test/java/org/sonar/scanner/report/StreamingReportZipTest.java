@@ -0,0 +1,192 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.report;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.ZipUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class StreamingReportZipTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private File reportDir;
+  private StreamingReportZip underTest;
+  private ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @Before
+  public void setUp() throws Exception {
+    reportDir = temp.newFolder();
+    underTest = new StreamingReportZip(reportDir, temp.newFile(), 2);
+  }
+
+  @After
+  public void tearDown() {
+    underTest.close();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void zip_files_added_while_zip_is_written() throws Exception {
+    File zip = temp.newFile();
+    Future<?> writing = executor.submit(() -> writeTo(zip));
+
+    write("metadata.pb", "metadata");
+    underTest.addNewFiles();
+    write("component-1.pb", "component");
+    write("empty.pb", "");
+    underTest.addNewFiles();
+    // already added, not added twice
+    underTest.addNewFiles();
+    underTest.finish();
+    writing.get();
+
+    File unzipped = ZipUtils.unzip(zip, temp.newFolder());
+    assertThat(unzipped.list()).containsOnly("metadata.pb", "component-1.pb", "empty.pb");
+    assertThat(FileUtils.readFileToString(new File(unzipped, "metadata.pb"))).isEqualTo("metadata");
+    assertThat(FileUtils.readFileToString(new File(unzipped, "component-1.pb"))).isEqualTo("component");
+    assertThat(new File(unzipped, "empty.pb")).exists().hasContent("");
+  }
+
+  @Test
+  public void zip_large_files_compressed_in_several_blocks() throws Exception {
+    byte[] large = new byte[3 * 1024 * 1024 + 7];
+    Random random = new Random(42);
+    for (int i = 0; i < large.length; i++) {
+      // compressible content
+      large[i] = (byte) ('a' + random.nextInt(4));
+    }
+    FileUtils.writeByteArrayToFile(new File(reportDir, "source-1.txt"), large);
+    underTest.addNewFiles();
+    underTest.finish();
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    underTest.writeTo(output);
+
+    assertThat(output.size()).isLessThan(large.length / 2);
+    File fromStream = ZipUtils.unzip(new ByteArrayInputStream(output.toByteArray()), temp.newFolder());
+    assertThat(FileUtils.readFileToByteArray(new File(fromStream, "source-1.txt"))).isEqualTo(large);
+    File zip = temp.newFile();
+    FileUtils.writeByteArrayToFile(zip, output.toByteArray());
+    try (ZipFile zipFile = new ZipFile(zip)) {
+      assertThat(zipFile.getEntry("source-1.txt").getSize()).isEqualTo(large.length);
+    }
+  }
+
+  @Test
+  public void writeTo_fails_if_report_is_aborted() throws Exception {
+    write("metadata.pb", "metadata");
+    underTest.addNewFiles();
+    underTest.abort();
+
+    expectedException.expect(IOException.class);
+    expectedException.expectMessage("Generation of report has been aborted");
+
+    underTest.writeTo(new ByteArrayOutputStream());
+  }
+
+  @Test
+  public void zip_is_written_again_when_request_is_replayed() throws Exception {
+    write("metadata.pb", "metadata");
+    underTest.addNewFiles();
+    underTest.finish();
+    ByteArrayOutputStream first = new ByteArrayOutputStream();
+    underTest.writeTo(first);
+
+    ByteArrayOutputStream second = new ByteArrayOutputStream();
+    underTest.writeTo(second);
+
+    assertThat(second.toByteArray()).isEqualTo(first.toByteArray());
+  }
+
+  @Test
+  public void zip_is_completed_and_written_again_when_first_output_fails() throws Exception {
+    write("metadata.pb", "metadata");
+    underTest.addNewFiles();
+    underTest.finish();
+    try {
+      underTest.writeTo(new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          throw new IOException("Connection reset");
+        }
+      });
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("Connection reset");
+    }
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    underTest.writeTo(output);
+
+    File unzipped = ZipUtils.unzip(new ByteArrayInputStream(output.toByteArray()), temp.newFolder());
+    assertThat(FileUtils.readFileToString(new File(unzipped, "metadata.pb"))).isEqualTo("metadata");
+  }
+
+  @Test
+  public void zip_can_not_be_written_again_if_it_has_not_been_completed() throws Exception {
+    underTest.abort();
+    try {
+      underTest.writeTo(new ByteArrayOutputStream());
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("Generation of report has been aborted");
+    }
+
+    expectedException.expect(IOException.class);
+    expectedException.expectMessage("Report zip can't be written again as it has not been completed");
+
+    underTest.writeTo(new ByteArrayOutputStream());
+  }
+
+  private void write(String fileName, String content) throws IOException {
+    FileUtils.write(new File(reportDir, fileName), content, StandardCharsets.UTF_8);
+  }
+
+  private Void writeTo(File zip) throws IOException {
+    try (OutputStream output = new FileOutputStream(zip)) {
+      underTest.writeTo(output);
+    }
+    return null;
+  }
+}
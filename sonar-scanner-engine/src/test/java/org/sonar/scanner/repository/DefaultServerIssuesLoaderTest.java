@@ -21,56 +21,117 @@ package org.sonar.scanner.repository;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonar.scanner.protocol.input.ScannerInput.ServerIssuesSync;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class DefaultServerIssuesLoaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private DefaultServerIssuesLoader loader;
   private ScannerWsClient wsClient;
+  private File snapshotsDir;
 
   @Before
-  public void prepare() {
+  public void prepare() throws IOException {
     wsClient = mock(ScannerWsClient.class);
-    loader = new DefaultServerIssuesLoader(wsClient);
+    when(wsClient.baseUrl()).thenReturn("http://localhost:9000");
+    snapshotsDir = temp.newFolder();
+    loader = new DefaultServerIssuesLoader(wsClient, "john", snapshotsDir);
   }
 
   @Test
   public void loadFromWs() throws Exception {
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo&changedSince=0", response(1_000L, true,
+      ServerIssue.newBuilder().setKey("ab1").build(),
+      ServerIssue.newBuilder().setKey("ab2").build()));
+
+    assertThat(load("foo")).extracting("key").containsExactly("ab1", "ab2");
+  }
+
+  @Test
+  public void load_only_changes_since_previous_load() throws Exception {
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo&changedSince=0", response(1_000L, true,
+      ServerIssue.newBuilder().setKey("ab1").setStatus("OPEN").build(),
+      ServerIssue.newBuilder().setKey("ab2").setStatus("OPEN").build(),
+      ServerIssue.newBuilder().setKey("ab3").setStatus("OPEN").build()));
+    load("foo");
+
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo&changedSince=1000", response(2_000L, false,
+      ServerIssue.newBuilder().setKey("ab2").setStatus("CLOSED").build(),
+      ServerIssue.newBuilder().setKey("ab3").setStatus("CONFIRMED").build(),
+      ServerIssue.newBuilder().setKey("ab4").setStatus("OPEN").build()));
+    assertThat(load("foo")).extracting(ServerIssue::getKey, ServerIssue::getStatus)
+      .containsExactly(tuple("ab1", "OPEN"), tuple("ab3", "CONFIRMED"), tuple("ab4", "OPEN"));
+
+    // nothing changed
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo&changedSince=2000", response(3_000L, false));
+    assertThat(load("foo")).extracting(ServerIssue::getKey).containsExactly("ab1", "ab3", "ab4");
+  }
 
-    ServerIssue.newBuilder().setKey("ab1").build()
-      .writeDelimitedTo(bos);
-    ServerIssue.newBuilder().setKey("ab2").build()
-      .writeDelimitedTo(bos);
+  @Test
+  public void replace_previous_issues_when_server_returns_all_issues() throws Exception {
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo&changedSince=0", response(1_000L, true,
+      ServerIssue.newBuilder().setKey("ab1").build()));
+    load("foo");
+
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo&changedSince=1000", response(2_000L, true,
+      ServerIssue.newBuilder().setKey("ab2").build()));
 
-    InputStream is = new ByteArrayInputStream(bos.toByteArray());
-    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo", is);
+    assertThat(load("foo")).extracting(ServerIssue::getKey).containsExactly("ab2");
+  }
+
+  @Test
+  public void previous_issues_are_not_shared_by_users() throws Exception {
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo&changedSince=0", response(1_000L, true,
+      ServerIssue.newBuilder().setKey("ab1").build()));
+    load("foo");
 
-    final List<ServerIssue> result = new ArrayList<>();
-    loader.load("foo", issue -> {
-      result.add(issue);
-    });
+    loader = new DefaultServerIssuesLoader(wsClient, "jane", snapshotsDir);
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo&changedSince=0", response(2_000L, true,
+      ServerIssue.newBuilder().setKey("ab2").build()));
 
-    assertThat(result).extracting("key").containsExactly("ab1", "ab2");
+    assertThat(load("foo")).extracting(ServerIssue::getKey).containsExactly("ab2");
   }
 
   @Test(expected = IllegalStateException.class)
   public void testError() throws IOException {
     InputStream is = mock(InputStream.class);
     when(is.read()).thenThrow(IOException.class);
-    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo", is);
+    WsTestUtil.mockStream(wsClient, "/batch/issues.protobuf?key=foo&changedSince=0", is);
     loader.load("foo", mock(Consumer.class));
   }
+
+  private List<ServerIssue> load(String componentKey) {
+    List<ServerIssue> result = new ArrayList<>();
+    loader.load(componentKey, result::add);
+    return result;
+  }
+
+  private static InputStream response(long syncDate, boolean full, ServerIssue... issues) throws IOException {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    ServerIssuesSync.newBuilder().setSyncDate(syncDate).setFull(full).build().writeDelimitedTo(bos);
+    for (ServerIssue issue : issues) {
+      issue.writeDelimitedTo(bos);
+    }
+    return new ByteArrayInputStream(bos.toByteArray());
+  }
 }
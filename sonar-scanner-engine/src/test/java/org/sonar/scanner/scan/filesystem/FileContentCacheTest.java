@@ -0,0 +1,88 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.MapSettings;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileContentCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private FileContentCache underTest = new FileContentCache(new MapSettings());
+
+  @Test
+  public void read_file_once() throws Exception {
+    Path file = temp.newFile().toPath();
+    FileUtils.write(file.toFile(), "foo", UTF_8);
+    assertThat(read(file)).isEqualTo("foo");
+
+    FileUtils.write(file.toFile(), "bar", UTF_8);
+    assertThat(read(file)).isEqualTo("foo");
+
+    underTest.evict(file);
+    assertThat(read(file)).isEqualTo("bar");
+  }
+
+  @Test
+  public void do_not_cache_big_files() throws Exception {
+    underTest = new FileContentCache(new MapSettings().setProperty(FileContentCache.SIZE_PROPERTY, 1));
+    Path file = temp.newFile().toPath();
+    FileUtils.write(file.toFile(), new String(new char[100_000]).replace('\0', 'a'), UTF_8);
+    assertThat(read(file)).hasSize(100_000);
+
+    FileUtils.write(file.toFile(), "bar", UTF_8);
+    assertThat(read(file)).isEqualTo("bar");
+  }
+
+  @Test
+  public void release_all_files_on_stop() throws Exception {
+    Path file = temp.newFile().toPath();
+    FileUtils.write(file.toFile(), "foo", UTF_8);
+    assertThat(read(file)).isEqualTo("foo");
+
+    underTest.stop();
+    FileUtils.write(file.toFile(), "bar", UTF_8);
+    assertThat(read(file)).isEqualTo("bar");
+  }
+
+  @Test(expected = NoSuchFileException.class)
+  public void fail_if_file_does_not_exist() throws Exception {
+    underTest.open(temp.getRoot().toPath().resolve("missing"));
+  }
+
+  private String read(Path file) throws IOException {
+    try (InputStream input = underTest.open(file)) {
+      return IOUtils.toString(input, UTF_8);
+    }
+  }
+}
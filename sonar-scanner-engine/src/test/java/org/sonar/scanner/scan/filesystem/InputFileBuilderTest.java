@@ -57,7 +57,7 @@ public class InputFileBuilderTest {
     MetadataGenerator metadataGenerator = mock(MetadataGenerator.class);
     BatchIdGenerator idGenerator = new BatchIdGenerator();
     Settings settings = new MapSettings();
-    builder = new InputFileBuilder(module, pathResolver, langDetection, metadataGenerator, idGenerator, settings);
+    builder = new InputFileBuilder(module, pathResolver, langDetection, metadataGenerator, idGenerator, new FileContentCache(settings), settings);
   }
 
   @Test
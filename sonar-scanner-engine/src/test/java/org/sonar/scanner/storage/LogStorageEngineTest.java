@@ -0,0 +1,114 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.scanner.index.AbstractCachesTest;
+
+import static org.apache.commons.lang.StringUtils.repeat;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogStorageEngineTest extends AbstractCachesTest {
+
+  private static final int SEGMENT_SIZE = 1024;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private File dir;
+  private LogStorageEngine<String> underTest;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = temp.newFolder();
+    underTest = new LogStorageEngine<>("test", cachesManager.persistit(), dir, SEGMENT_SIZE);
+  }
+
+  @After
+  public void tearDown() {
+    underTest.close();
+  }
+
+  @Test
+  public void compact_log_when_it_contains_mostly_garbage() {
+    for (int i = 0; i < 1_000; i++) {
+      underTest.put(new Object[] {"key" + (i % 10)}, repeat("a", 100) + i);
+    }
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(underTest.get(new Object[] {"key" + i})).isEqualTo(repeat("a", 100) + (990 + i));
+    }
+    // 1_000 values of 100+ bytes can't fit in 4 segments of 1KB
+    assertThat(dir.listFiles()).hasSize(1);
+  }
+
+  @Test
+  public void store_values_larger_than_segments() {
+    String large = repeat("a", 3 * SEGMENT_SIZE);
+    underTest.put(new Object[] {"small"}, "b");
+    underTest.put(new Object[] {"large"}, large);
+    underTest.put(new Object[] {"small2"}, "c");
+
+    assertThat(underTest.get(new Object[] {"small"})).isEqualTo("b");
+    assertThat(underTest.get(new Object[] {"large"})).isEqualTo(large);
+    assertThat(underTest.get(new Object[] {"small2"})).isEqualTo("c");
+  }
+
+  @Test
+  public void reuse_log_after_clear() {
+    for (int i = 0; i < 100; i++) {
+      underTest.put(new Object[] {"key" + i}, repeat("a", 100));
+    }
+    long fileSize = dir.listFiles()[0].length();
+
+    underTest.clear();
+    for (int i = 0; i < 100; i++) {
+      underTest.put(new Object[] {"key" + i}, repeat("b", 100));
+    }
+
+    assertThat(dir.listFiles()[0].length()).isEqualTo(fileSize);
+    assertThat(underTest.values(new Object[0])).containsOnly(repeat("b", 100));
+  }
+
+  @Test
+  public void close_deletes_log() {
+    underTest.put(new Object[] {"key"}, "value");
+
+    underTest.close();
+
+    assertThat(dir.listFiles()).isEmpty();
+  }
+
+  @Test
+  public void fail_on_unsupported_type_of_key() {
+    underTest.put(new Object[] {"key"}, "value");
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Type of key is not supported: class java.lang.Object");
+
+    underTest.put(new Object[] {new Object()}, "value");
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.scanner.index.AbstractCachesTest;
+import org.sonar.scanner.storage.StoragesManager.Engine;
+import org.sonar.test.Benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays the usage of storages by the scanner on a large module: measures and issues
+ * are saved file by file, read back by decorators, then iterated by the report publishers.
+ */
+public class StorageBenchmarkTest extends AbstractCachesTest {
+
+  private static final int FILES = 10_000;
+  private static final int MEASURES_PER_FILE = 30;
+  private static final int ISSUES_PER_FILE = 5;
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  @Before
+  public void setUp() {
+    Benchmark.assumeEnabled();
+  }
+
+  @Test
+  public void log_engine_is_faster_than_persistit() {
+    // warm up
+    replay(Engine.PERSISTIT, FILES / 10);
+    replay(Engine.LOG, FILES / 10);
+
+    long persistit = benchmark.measure("Persistit engine on " + FILES + " files", () -> replay(Engine.PERSISTIT, FILES));
+    long log = benchmark.measure("Log engine on " + FILES + " files", () -> replay(Engine.LOG, FILES));
+
+    benchmark.expectLessThanOrEqualTo("Duration of log engine (ms), Persistit engine taking " + persistit + "ms", log, persistit / 2);
+  }
+
+  private void replay(Engine engine, int files) {
+    caches.stop();
+    caches = new Storages(cachesManager, engine);
+    Storage<String> measures = caches.createCache("measures");
+    Storage<String> issues = caches.createCache("issues");
+    Random random = new Random(42L);
+
+    for (int file = 0; file < files; file++) {
+      String componentKey = "project:src/main/java/org/sonar/File" + file + ".java";
+      for (int metric = 0; metric < MEASURES_PER_FILE; metric++) {
+        String metricKey = "metric" + metric;
+        if (!measures.containsKey(componentKey, metricKey)) {
+          measures.put(componentKey, metricKey, String.valueOf(random.nextInt()));
+        }
+      }
+      for (int issue = 0; issue < ISSUES_PER_FILE; issue++) {
+        issues.put(componentKey, "AV" + file + "_" + issue, "Issue message of rule " + random.nextInt(100) + " on line " + random.nextInt(1_000));
+      }
+      // decorators read the measures of the file
+      for (int metric = 0; metric < MEASURES_PER_FILE; metric += 3) {
+        assertThat(measures.get(componentKey, "metric" + metric)).isNotNull();
+      }
+      int fileIssues = 0;
+      for (String issue : issues.values(componentKey)) {
+        fileIssues++;
+      }
+      assertThat(fileIssues).isEqualTo(ISSUES_PER_FILE);
+    }
+
+    // report publishers iterate on all the data
+    int count = 0;
+    for (Storage.Entry<String> entry : measures.entries()) {
+      count++;
+    }
+    assertThat(count).isEqualTo(files * MEASURES_PER_FILE);
+    count = 0;
+    for (Object componentKey : issues.keySet()) {
+      for (String issue : issues.values(componentKey)) {
+        count++;
+      }
+    }
+    assertThat(count).isEqualTo(files * ISSUES_PER_FILE);
+  }
+}
@@ -20,15 +20,41 @@
 package org.sonar.scanner.storage;
 
 import com.google.common.collect.Iterables;
+import java.util.Arrays;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
+import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage;
 import org.sonar.scanner.storage.Storage.Entry;
+import org.sonar.scanner.storage.StoragesManager.Engine;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+@RunWith(Parameterized.class)
 public class StorageTest extends AbstractCachesTest {
 
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> engines() {
+    return Arrays.asList(new Object[][] {{Engine.LOG}, {Engine.PERSISTIT}});
+  }
+
+  private final Engine engine;
+
+  public StorageTest(Engine engine) {
+    this.engine = engine;
+  }
+
+  @Before
+  public void startEngine() {
+    caches.stop();
+    caches = new Storages(cachesManager, engine);
+  }
+
   @Test
   public void one_part_key() {
     Storage<String> cache = caches.createCache("capitals");
@@ -249,4 +275,73 @@ public class StorageTest extends AbstractCachesTest {
     cache.clear("foo", "bar", "baz");
     cache.clear();
   }
+
+  @Test
+  public void values_are_copies() {
+    Storage<MutableValue> cache = caches.createCache("mutables");
+    MutableValue value = new MutableValue("foo");
+    cache.put("key", value);
+    value.text = "bar";
+
+    assertThat(cache.get("key").text).isEqualTo("foo");
+    assertThat(cache.get("key")).isNotSameAs(cache.get("key"));
+  }
+
+  @Test
+  public void storage_can_be_modified_while_iterating() {
+    Storage<String> cache = caches.createCache("capitals");
+    cache.put("europe", "france", "paris");
+    cache.put("europe", "italy", "rome");
+    cache.put("europe", "spain", "madrid");
+
+    Iterator<String> it = cache.values("europe").iterator();
+    assertThat(it.next()).isEqualTo("paris");
+    cache.remove("europe", "italy");
+    cache.put("europe", "andorra", "andorra la vella");
+    cache.put("europe", "portugal", "lisbon");
+    assertThat(it.next()).isEqualTo("lisbon");
+    assertThat(it.next()).isEqualTo("madrid");
+    assertThat(it.hasNext()).isFalse();
+  }
+
+  @Test
+  public void overwrite_value() {
+    Storage<String> cache = caches.createCache("capitals");
+    cache.put("europe", "germany", "bonn");
+    cache.put("europe", "germany", "berlin");
+
+    assertThat(cache.get("europe", "germany")).isEqualTo("berlin");
+    assertThat(cache.values()).containsExactly("berlin");
+  }
+
+  @Test
+  public void integer_parts_of_keys() {
+    Storage<String> cache = caches.createCache("issues");
+    cache.put(10, "issue3", "c");
+    cache.put(2, "issue2", "b");
+    cache.put(2, "issue1", "a");
+
+    assertThat(cache.keySet()).containsExactly(2, 10);
+    assertThat(cache.values(2)).containsExactly("a", "b");
+    assertThat(cache.get(10, "issue3")).isEqualTo("c");
+    assertThat(cache.get(10L, "issue3")).isNull();
+  }
+
+  @Test
+  public void null_value() {
+    Storage<String> cache = caches.createCache("nulls");
+    cache.put("foo", null);
+
+    assertThat(cache.containsKey("foo")).isTrue();
+    assertThat(cache.get("foo")).isNull();
+  }
+
+  private static class MutableValue implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String text;
+
+    private MutableValue(String text) {
+      this.text = text;
+    }
+  }
 }
@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ValueLogTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private ValueLog underTest;
+
+  @Before
+  public void setUp() throws IOException {
+    underTest = new ValueLog(temp.newFolder(), 16);
+  }
+
+  @After
+  public void tearDown() {
+    underTest.close();
+  }
+
+  @Test
+  public void append_and_read_records() {
+    long foo = append("foo");
+    long bar = append("bar");
+    long large = append("larger than a segment");
+
+    assertThat(read(foo)).isEqualTo("foo");
+    assertThat(read(bar)).isEqualTo("bar");
+    assertThat(read(large)).isEqualTo("larger than a segment");
+    assertThat(underTest.liveSize()).isEqualTo(4 + 3 + 4 + 3 + 4 + 21);
+    // end of the first segment is lost when appending the large record
+    assertThat(underTest.garbageSize()).isEqualTo(16 - 14);
+  }
+
+  @Test
+  public void discard_record() {
+    long foo = append("foo");
+    append("bar");
+
+    underTest.discard(foo);
+
+    assertThat(underTest.liveSize()).isEqualTo(7);
+    assertThat(underTest.garbageSize()).isEqualTo(7);
+  }
+
+  @Test
+  public void reset_discards_all_records() {
+    append("foo");
+    append("bar");
+
+    underTest.reset();
+    long baz = append("baz");
+
+    assertThat(baz).isEqualTo(0L);
+    assertThat(read(baz)).isEqualTo("baz");
+    assertThat(underTest.liveSize()).isEqualTo(7);
+    assertThat(underTest.garbageSize()).isEqualTo(0);
+  }
+
+  private long append(String s) {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    return underTest.append(bytes, bytes.length);
+  }
+
+  private String read(long address) {
+    byte[] bytes = new byte[underTest.sizeOf(address)];
+    underTest.read(address, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
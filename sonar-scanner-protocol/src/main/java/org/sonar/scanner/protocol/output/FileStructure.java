@@ -27,29 +27,41 @@ import java.io.File;
 public class FileStructure {
 
   public enum Domain {
-    ISSUES("issues-", Domain.PB),
-    COMPONENT("component-", Domain.PB),
-    MEASURES("measures-", Domain.PB),
-    DUPLICATIONS("duplications-", Domain.PB),
-    CPD_TEXT_BLOCKS("cpd-text-block-", Domain.PB),
-    SYNTAX_HIGHLIGHTINGS("syntax-highlightings-", Domain.PB),
-    CHANGESETS("changesets-", Domain.PB),
-    SYMBOLS("symbols-", Domain.PB),
-    COVERAGES("coverages-", Domain.PB),
-    TESTS("tests-", Domain.PB),
-    COVERAGE_DETAILS("coverage-details-", Domain.PB),
-    SOURCE("source-", ".txt");
+    ISSUES("issues-", Domain.PB, true),
+    COMPONENT("component-", Domain.PB, true),
+    MEASURES("measures-", Domain.PB, true),
+    DUPLICATIONS("duplications-", Domain.PB, true),
+    CPD_TEXT_BLOCKS("cpd-text-block-", Domain.PB, true),
+    SYNTAX_HIGHLIGHTINGS("syntax-highlightings-", Domain.PB, true),
+    CHANGESETS("changesets-", Domain.PB, true),
+    SYMBOLS("symbols-", Domain.PB, true),
+    COVERAGES("coverages-", Domain.PB, true),
+    TESTS("tests-", Domain.PB, false),
+    COVERAGE_DETAILS("coverage-details-", Domain.PB, false),
+    SOURCE("source-", ".txt", false);
 
     private static final String PB = ".pb";
     private final String filePrefix;
     private final String fileSuffix;
+    private final boolean packable;
 
-    Domain(String filePrefix, String fileSuffix) {
+    Domain(String filePrefix, String fileSuffix, boolean packable) {
       this.filePrefix = filePrefix;
       this.fileSuffix = fileSuffix;
+      this.packable = packable;
+    }
+
+    /**
+     * Whether data of this domain is appended to segments when report is packed (see {@link ScannerReportWriter#ScannerReportWriter(File, boolean)}).
+     * Other domains are always written in one file per component, as they are read as files.
+     */
+    public boolean isPackable() {
+      return packable;
     }
   }
 
+  private static final String PACKED_PREFIX = "packed-";
+
   private final File dir;
 
   public FileStructure(File dir) {
@@ -75,6 +87,20 @@ public class FileStructure {
     return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
   }
 
+  /**
+   * Segment of a packed report, containing the data of the given domain written during the given generation
+   */
+  public File packedSegmentFile(Domain domain, int generation) {
+    return new File(dir, PACKED_PREFIX + domain.filePrefix + generation + ".seg");
+  }
+
+  /**
+   * Index of the data written in segments of a packed report during the given generation
+   */
+  public File packedIndexFile(int generation) {
+    return new File(dir, PACKED_PREFIX + "index-" + generation + ".idx");
+  }
+
   public File contextProperties() {
     return new File(dir, "context-props.pb");
   }
@@ -0,0 +1,165 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.sonar.core.util.ContextException;
+
+/**
+ * Location of the data of components in the segments of a packed report (see {@link PackedReportWriter}).
+ * Data is read by random access in segments. This class is immutable once loaded, so it can be shared by threads.
+ */
+class PackedReportIndex {
+
+  private static final FileStructure.Domain[] DOMAINS = FileStructure.Domain.values();
+
+  private final FileStructure fileStructure;
+  private final Map<FileStructure.Domain, Map<Integer, List<Extent>>> extentsByDomain = new EnumMap<>(FileStructure.Domain.class);
+
+  private PackedReportIndex(FileStructure fileStructure) {
+    this.fileStructure = fileStructure;
+  }
+
+  /**
+   * @return {@code null} if the report is not packed
+   */
+  @CheckForNull
+  static PackedReportIndex load(FileStructure fileStructure) {
+    if (!fileStructure.packedIndexFile(0).isFile()) {
+      return null;
+    }
+    PackedReportIndex index = new PackedReportIndex(fileStructure);
+    for (int generation = 0; fileStructure.packedIndexFile(generation).isFile(); generation++) {
+      index.load(generation);
+    }
+    return index;
+  }
+
+  private void load(int generation) {
+    File file = fileStructure.packedIndexFile(generation);
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      int version = input.readInt();
+      if (version != PackedReportWriter.FORMAT_VERSION) {
+        throw new IllegalStateException("Unsupported version of packed report: " + version);
+      }
+      while (true) {
+        int domainOrdinal;
+        try {
+          domainOrdinal = input.readUnsignedByte();
+        } catch (EOFException e) {
+          // end of index
+          return;
+        }
+        byte mode = input.readByte();
+        int componentRef = input.readInt();
+        Extent extent = new Extent(generation, input.readLong(), input.readInt());
+        List<Extent> extents = extentsByDomain.computeIfAbsent(DOMAINS[domainOrdinal], d -> new HashMap<>())
+          .computeIfAbsent(componentRef, ref -> new ArrayList<>(1));
+        if (mode == PackedReportWriter.REPLACE) {
+          extents.clear();
+        }
+        extents.add(extent);
+      }
+    } catch (IOException e) {
+      throw ContextException.of("Unable to read index of report", e).addContext("file", file);
+    }
+  }
+
+  boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    Map<Integer, List<Extent>> extentsByRef = extentsByDomain.get(domain);
+    return extentsByRef != null && extentsByRef.containsKey(componentRef);
+  }
+
+  /**
+   * Stream of the data of the component, or {@code null} if there's no such data. It must be closed by caller.
+   */
+  @CheckForNull
+  InputStream open(FileStructure.Domain domain, int componentRef) {
+    Map<Integer, List<Extent>> extentsByRef = extentsByDomain.get(domain);
+    List<Extent> extents = extentsByRef == null ? null : extentsByRef.get(componentRef);
+    if (extents == null) {
+      return null;
+    }
+    if (extents.size() == 1) {
+      return open(domain, extents.get(0));
+    }
+    Iterator<Extent> it = extents.iterator();
+    // segments are opened only when the previous extent is fully read
+    return new SequenceInputStream(new Enumeration<InputStream>() {
+      @Override
+      public boolean hasMoreElements() {
+        return it.hasNext();
+      }
+
+      @Override
+      public InputStream nextElement() {
+        return open(domain, it.next());
+      }
+    });
+  }
+
+  private InputStream open(FileStructure.Domain domain, Extent extent) {
+    if (extent.length == 0) {
+      return new ByteArrayInputStream(new byte[0]);
+    }
+    File segmentFile = fileStructure.packedSegmentFile(domain, extent.generation);
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(segmentFile, "r");
+      file.seek(extent.offset);
+      return new BoundedInputStream(new BufferedInputStream(Channels.newInputStream(file.getChannel())), extent.length);
+    } catch (IOException e) {
+      IOUtils.closeQuietly(file);
+      throw ContextException.of("Unable to read report", e).addContext("file", segmentFile);
+    }
+  }
+
+  static class Extent {
+    private final int generation;
+    private final long offset;
+    private final int length;
+
+    Extent(int generation, long offset, int length) {
+      this.generation = generation;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
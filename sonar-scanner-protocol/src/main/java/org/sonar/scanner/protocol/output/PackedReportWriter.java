@@ -0,0 +1,129 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.sonar.core.util.ContextException;
+
+/**
+ * Appends the data of components to a few large segment files, instead of creating one file per component
+ * and per domain. Data is appended to one segment per domain and per generation, and its location is
+ * recorded in the index of the generation (see {@link PackedReportIndex}).
+ * <p>
+ * {@link #flush()} closes the files of the current generation, so that they can be packaged. Next writes
+ * go to the files of a new generation.
+ * </p>
+ */
+class PackedReportWriter {
+
+  static final int FORMAT_VERSION = 1;
+  static final byte REPLACE = 0;
+  static final byte APPEND = 1;
+
+  @FunctionalInterface
+  interface Content {
+    void writeTo(OutputStream output) throws IOException;
+  }
+
+  private final FileStructure fileStructure;
+  private final Map<FileStructure.Domain, CountingOutputStream> segments = new EnumMap<>(FileStructure.Domain.class);
+  private final Map<FileStructure.Domain, Set<Integer>> componentRefsByDomain = new EnumMap<>(FileStructure.Domain.class);
+  private DataOutputStream index;
+  private int generation = 0;
+
+  PackedReportWriter(FileStructure fileStructure) {
+    this.fileStructure = fileStructure;
+  }
+
+  synchronized File write(FileStructure.Domain domain, int componentRef, boolean append, Content content) {
+    File segmentFile = fileStructure.packedSegmentFile(domain, generation);
+    try {
+      DataOutputStream indexOutput = index();
+      CountingOutputStream segment = segments.get(domain);
+      if (segment == null) {
+        segment = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(segmentFile)));
+        segments.put(domain, segment);
+      }
+      long offset = segment.getByteCount();
+      content.writeTo(segment);
+      long length = segment.getByteCount() - offset;
+      if (length > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Data is too large: " + length + " bytes");
+      }
+
+      indexOutput.writeByte(domain.ordinal());
+      indexOutput.writeByte(append ? APPEND : REPLACE);
+      indexOutput.writeInt(componentRef);
+      indexOutput.writeLong(offset);
+      indexOutput.writeInt((int) length);
+    } catch (IOException e) {
+      throw ContextException.of("Unable to write report", e).addContext("file", segmentFile);
+    }
+    componentRefsByDomain.computeIfAbsent(domain, d -> new HashSet<>()).add(componentRef);
+    return segmentFile;
+  }
+
+  synchronized boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    Set<Integer> componentRefs = componentRefsByDomain.get(domain);
+    return componentRefs != null && componentRefs.contains(componentRef);
+  }
+
+  /**
+   * Closes the files of the current generation, if any. Does nothing if nothing was written since the previous call.
+   */
+  synchronized void flush() {
+    if (index == null) {
+      return;
+    }
+    try {
+      for (OutputStream segment : segments.values()) {
+        segment.close();
+      }
+      index.close();
+    } catch (IOException e) {
+      throw ContextException.of("Unable to close report segments", e).addContext("dir", fileStructure.root());
+    } finally {
+      segments.values().forEach(IOUtils::closeQuietly);
+      IOUtils.closeQuietly(index);
+      segments.clear();
+      index = null;
+      generation++;
+    }
+  }
+
+  private DataOutputStream index() throws IOException {
+    if (index == null) {
+      index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileStructure.packedIndexFile(generation))));
+      index.writeInt(FORMAT_VERSION);
+    }
+    return index;
+  }
+}
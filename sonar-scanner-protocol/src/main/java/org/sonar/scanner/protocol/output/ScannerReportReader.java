@@ -19,19 +19,29 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import java.io.File;
+import java.io.InputStream;
 import javax.annotation.CheckForNull;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.Protobuf;
 
 import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
 
+/**
+ * Reads a report, whether it is packed or not (see {@link ScannerReportWriter#ScannerReportWriter(File, boolean)}).
+ * Data of a packed report written after the creation of the reader is ignored.
+ */
 public class ScannerReportReader {
 
   private final FileStructure fileStructure;
+  @CheckForNull
+  private final PackedReportIndex packedIndex;
 
   public ScannerReportReader(File dir) {
     this.fileStructure = new FileStructure(dir);
+    this.packedIndex = PackedReportIndex.load(fileStructure);
   }
 
   public ScannerReport.Metadata readMetadata() {
@@ -51,86 +61,53 @@ public class ScannerReportReader {
   }
 
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Measure.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.MEASURES, componentRef, ScannerReport.Measure.parser());
   }
 
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, ScannerReport.Changesets.parser());
-    }
-    return null;
+    return read(FileStructure.Domain.CHANGESETS, componentRef, ScannerReport.Changesets.parser());
   }
 
   public ScannerReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    ScannerReport.Component component = read(FileStructure.Domain.COMPONENT, componentRef, ScannerReport.Component.parser());
+    if (component == null) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: "
+        + fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef));
     }
-    return Protobuf.read(file, ScannerReport.Component.parser());
+    return component;
   }
 
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Issue.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.ISSUES, componentRef, ScannerReport.Issue.parser());
   }
 
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Duplication.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.DUPLICATIONS, componentRef, ScannerReport.Duplication.parser());
   }
 
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef, ScannerReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Symbol.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.SYMBOLS, componentRef, ScannerReport.Symbol.parser());
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return hasComponentData(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
   }
 
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.SyntaxHighlightingRule.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef, ScannerReport.SyntaxHighlightingRule.parser());
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return hasComponentData(FileStructure.Domain.COVERAGES, componentRef);
   }
 
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.LineCoverage.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.COVERAGES, fileRef, ScannerReport.LineCoverage.parser());
   }
 
   @CheckForNull
@@ -170,6 +147,43 @@ public class ScannerReportReader {
     return Protobuf.readStream(file, ScannerReport.ContextProperty.parser());
   }
 
+  private boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    if (isPacked(domain)) {
+      return packedIndex.hasComponentData(domain, componentRef);
+    }
+    return fileStructure.fileFor(domain, componentRef).exists();
+  }
+
+  @CheckForNull
+  private <MSG extends Message> MSG read(FileStructure.Domain domain, int componentRef, Parser<MSG> parser) {
+    if (isPacked(domain)) {
+      InputStream input = packedIndex.open(domain, componentRef);
+      return input == null ? null : Protobuf.read(input, parser);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (fileExists(file)) {
+      return Protobuf.read(file, parser);
+    }
+    return null;
+  }
+
+  private <MSG extends Message> CloseableIterator<MSG> readStream(FileStructure.Domain domain, int componentRef, Parser<MSG> parser) {
+    if (isPacked(domain)) {
+      // the input stream is closed by the CloseableIterator
+      InputStream input = packedIndex.open(domain, componentRef);
+      return input == null ? emptyCloseableIterator() : Protobuf.readStream(input, parser);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    if (fileExists(file)) {
+      return Protobuf.readStream(file, parser);
+    }
+    return emptyCloseableIterator();
+  }
+
+  private boolean isPacked(FileStructure.Domain domain) {
+    return packedIndex != null && domain.isPackable();
+  }
+
   private static boolean fileExists(File file) {
     return file.exists() && file.isFile();
   }
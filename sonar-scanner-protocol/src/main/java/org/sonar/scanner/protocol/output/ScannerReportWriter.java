@@ -19,22 +19,36 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
+import javax.annotation.CheckForNull;
 import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
 public class ScannerReportWriter {
 
   private final FileStructure fileStructure;
+  @CheckForNull
+  private final PackedReportWriter packedWriter;
 
   public ScannerReportWriter(File dir) {
+    this(dir, false);
+  }
+
+  /**
+   * @param packed if true, then data of {@link FileStructure.Domain#isPackable() packable domains} is appended
+   *               to a few segment files instead of being written in one file per component. See {@link #flush()}.
+   * @since 6.4
+   */
+  public ScannerReportWriter(File dir, boolean packed) {
     if (!dir.exists() && !dir.mkdirs()) {
       throw new IllegalStateException("Unable to create directory: " + dir);
     }
     this.fileStructure = new FileStructure(dir);
+    this.packedWriter = packed ? new PackedReportWriter(fileStructure) : null;
   }
 
   public FileStructure getFileStructure() {
@@ -42,10 +56,24 @@ public class ScannerReportWriter {
   }
 
   public boolean hasComponentData(FileStructure.Domain domain, int componentRef) {
+    if (isPacked(domain)) {
+      return packedWriter.hasComponentData(domain, componentRef);
+    }
     File file = fileStructure.fileFor(domain, componentRef);
     return file.exists() && file.isFile();
   }
 
+  /**
+   * Closes the segment files of a packed report, so that data written so far can be read or packaged. Next data
+   * is written to new segments. Does nothing if report is not packed.
+   * @since 6.4
+   */
+  public void flush() {
+    if (packedWriter != null) {
+      packedWriter.flush();
+    }
+  }
+
   /**
    * Metadata is mandatory
    */
@@ -60,18 +88,18 @@ public class ScannerReportWriter {
   }
 
   public File writeComponent(ScannerReport.Component component) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, component.getRef());
-    Protobuf.write(component, file);
-    return file;
+    return write(FileStructure.Domain.COMPONENT, component.getRef(), component);
   }
 
   public File writeComponentIssues(int componentRef, Iterable<ScannerReport.Issue> issues) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    Protobuf.writeStream(issues, file, false);
-    return file;
+    return writeStream(FileStructure.Domain.ISSUES, componentRef, issues);
   }
 
   public void appendComponentIssue(int componentRef, ScannerReport.Issue issue) {
+    if (isPacked(FileStructure.Domain.ISSUES)) {
+      packedWriter.write(FileStructure.Domain.ISSUES, componentRef, true, issue::writeDelimitedTo);
+      return;
+    }
     File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
     try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
       issue.writeDelimitedTo(out);
@@ -81,57 +109,39 @@ public class ScannerReportWriter {
   }
 
   public File writeComponentMeasures(int componentRef, Iterable<ScannerReport.Measure> measures) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    Protobuf.writeStream(measures, file, false);
-    return file;
+    return writeStream(FileStructure.Domain.MEASURES, componentRef, measures);
   }
 
   public File writeComponentChangesets(ScannerReport.Changesets changesets) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, changesets.getComponentRef());
-    Protobuf.write(changesets, file);
-    return file;
+    return write(FileStructure.Domain.CHANGESETS, changesets.getComponentRef(), changesets);
   }
 
   public File writeComponentDuplications(int componentRef, Iterable<ScannerReport.Duplication> duplications) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    Protobuf.writeStream(duplications, file, false);
-    return file;
+    return writeStream(FileStructure.Domain.DUPLICATIONS, componentRef, duplications);
   }
 
   public File writeCpdTextBlocks(int componentRef, Iterable<ScannerReport.CpdTextBlock> blocks) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    Protobuf.writeStream(blocks, file, false);
-    return file;
+    return writeStream(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef, blocks);
   }
 
   public File writeComponentSymbols(int componentRef, Iterable<ScannerReport.Symbol> symbols) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    Protobuf.writeStream(symbols, file, false);
-    return file;
+    return writeStream(FileStructure.Domain.SYMBOLS, componentRef, symbols);
   }
 
   public File writeComponentSyntaxHighlighting(int componentRef, Iterable<ScannerReport.SyntaxHighlightingRule> syntaxHighlightingRules) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    Protobuf.writeStream(syntaxHighlightingRules, file, false);
-    return file;
+    return writeStream(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef, syntaxHighlightingRules);
   }
 
   public File writeComponentCoverage(int componentRef, Iterable<ScannerReport.LineCoverage> coverageList) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    Protobuf.writeStream(coverageList, file, false);
-    return file;
+    return writeStream(FileStructure.Domain.COVERAGES, componentRef, coverageList);
   }
 
   public File writeTests(int componentRef, Iterable<ScannerReport.Test> tests) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, componentRef);
-    Protobuf.writeStream(tests, file, false);
-    return file;
+    return writeStream(FileStructure.Domain.TESTS, componentRef, tests);
   }
 
   public File writeCoverageDetails(int componentRef, Iterable<ScannerReport.CoverageDetail> tests) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, componentRef);
-    Protobuf.writeStream(tests, file, false);
-    return file;
+    return writeStream(FileStructure.Domain.COVERAGE_DETAILS, componentRef, tests);
   }
 
   public File writeContextProperties(Iterable<ScannerReport.ContextProperty> properties) {
@@ -144,4 +154,26 @@ public class ScannerReportWriter {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  private File write(FileStructure.Domain domain, int componentRef, Message message) {
+    if (isPacked(domain)) {
+      return packedWriter.write(domain, componentRef, false, message::writeTo);
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    Protobuf.write(message, file);
+    return file;
+  }
+
+  private <MSG extends Message> File writeStream(FileStructure.Domain domain, int componentRef, Iterable<MSG> messages) {
+    if (isPacked(domain)) {
+      return packedWriter.write(domain, componentRef, false, output -> Protobuf.writeStream(messages, output));
+    }
+    File file = fileStructure.fileFor(domain, componentRef);
+    Protobuf.writeStream(messages, file, false);
+    return file;
+  }
+
+  private boolean isPacked(FileStructure.Domain domain) {
+    return packedWriter != null && domain.isPackable();
+  }
+
 }
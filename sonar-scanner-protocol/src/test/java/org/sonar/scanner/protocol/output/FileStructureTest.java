@@ -80,4 +80,13 @@ public class FileStructureTest {
     FileStructure structure = new FileStructure(dir);
     assertThat(structure.contextProperties()).exists().isFile().isEqualTo(file);
   }
+
+  @Test
+  public void locate_packed_files() throws Exception {
+    File dir = temp.newFolder();
+
+    FileStructure structure = new FileStructure(dir);
+    assertThat(structure.packedSegmentFile(FileStructure.Domain.ISSUES, 2)).isEqualTo(new File(dir, "packed-issues-2.seg"));
+    assertThat(structure.packedIndexFile(2)).isEqualTo(new File(dir, "packed-index-2.idx"));
+  }
 }
@@ -377,4 +377,50 @@ public class ScannerReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void read_packed_report() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir, true);
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).setPath("src/main/java/Foo.java").build());
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("foo").build()));
+    writer.writeComponentIssues(2, asList(ScannerReport.Issue.newBuilder().setMsg("bar").build()));
+    writer.writeComponentMeasures(1, asList(ScannerReport.Measure.getDefaultInstance(), ScannerReport.Measure.getDefaultInstance()));
+    writer.writeComponentCoverage(1, asList(ScannerReport.LineCoverage.newBuilder().setLine(1).build()));
+    writer.flush();
+
+    underTest = new ScannerReportReader(dir);
+    assertThat(underTest.readComponent(1).getPath()).isEqualTo("src/main/java/Foo.java");
+    assertThat(Lists.newArrayList(underTest.readComponentIssues(1))).extracting(ScannerReport.Issue::getMsg).containsExactly("foo");
+    assertThat(Lists.newArrayList(underTest.readComponentIssues(2))).extracting(ScannerReport.Issue::getMsg).containsExactly("bar");
+    assertThat(underTest.readComponentMeasures(1)).hasSize(2);
+    assertThat(underTest.readComponentIssues(UNKNOWN_COMPONENT_REF)).isEmpty();
+    assertThat(underTest.readChangesets(1)).isNull();
+    assertThat(underTest.hasCoverage(1)).isTrue();
+    assertThat(underTest.hasCoverage(2)).isFalse();
+    assertThat(underTest.hasSyntaxHighlighting(1)).isFalse();
+  }
+
+  @Test
+  public void read_packed_report_written_in_several_generations() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir, true);
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("replaced").build()));
+    writer.flush();
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("foo").build()));
+    writer.flush();
+    writer.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("bar").build());
+    writer.appendComponentIssue(1, ScannerReport.Issue.newBuilder().setMsg("baz").build());
+    writer.flush();
+
+    underTest = new ScannerReportReader(dir);
+    assertThat(Lists.newArrayList(underTest.readComponentIssues(1))).extracting(ScannerReport.Issue::getMsg).containsExactly("foo", "bar", "baz");
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_if_missing_component_in_packed_report() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir, true);
+    writer.writeComponentIssues(1, asList(ScannerReport.Issue.getDefaultInstance()));
+    writer.flush();
+
+    new ScannerReportReader(dir).readComponent(1);
+  }
 }
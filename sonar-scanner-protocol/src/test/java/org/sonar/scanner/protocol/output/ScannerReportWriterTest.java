@@ -299,4 +299,54 @@ public class ScannerReportWriterTest {
 
     assertThat(underTest.hasComponentData(FileStructure.Domain.COVERAGE_DETAILS, 1)).isTrue();
   }
+
+  @Test
+  public void packed_report_appends_data_to_segments() {
+    underTest = new ScannerReportWriter(dir, true);
+    assertThat(underTest.hasComponentData(FileStructure.Domain.ISSUES, 1)).isFalse();
+
+    File segment = underTest.writeComponentIssues(1, asList(ScannerReport.Issue.newBuilder().setMsg("foo").build()));
+    underTest.writeComponentIssues(2, asList(ScannerReport.Issue.newBuilder().setMsg("bar").build()));
+    underTest.writeComponentMeasures(1, asList(ScannerReport.Measure.getDefaultInstance()));
+
+    assertThat(segment).isEqualTo(underTest.getFileStructure().packedSegmentFile(FileStructure.Domain.ISSUES, 0));
+    assertThat(underTest.hasComponentData(FileStructure.Domain.ISSUES, 1)).isTrue();
+    assertThat(underTest.hasComponentData(FileStructure.Domain.ISSUES, 2)).isTrue();
+    assertThat(underTest.hasComponentData(FileStructure.Domain.MEASURES, 2)).isFalse();
+    assertThat(underTest.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 1)).doesNotExist();
+  }
+
+  @Test
+  public void packed_report_starts_new_generation_after_flush() {
+    underTest = new ScannerReportWriter(dir, true);
+    FileStructure fileStructure = underTest.getFileStructure();
+
+    underTest.writeComponentIssues(1, asList(ScannerReport.Issue.getDefaultInstance()));
+    underTest.flush();
+    assertThat(fileStructure.packedIndexFile(0)).isFile();
+    assertThat(fileStructure.packedIndexFile(1)).doesNotExist();
+
+    // nothing written, nothing to flush
+    underTest.flush();
+    assertThat(fileStructure.packedIndexFile(1)).doesNotExist();
+
+    underTest.appendComponentIssue(1, ScannerReport.Issue.getDefaultInstance());
+    underTest.flush();
+    assertThat(fileStructure.packedIndexFile(1)).isFile();
+    assertThat(fileStructure.packedSegmentFile(FileStructure.Domain.ISSUES, 1)).isFile();
+    assertThat(underTest.hasComponentData(FileStructure.Domain.ISSUES, 1)).isTrue();
+  }
+
+  @Test
+  public void packed_report_keeps_one_file_per_component_for_sources_tests_and_coverage_details() {
+    underTest = new ScannerReportWriter(dir, true);
+
+    underTest.writeTests(1, asList(ScannerReport.Test.getDefaultInstance()));
+    underTest.writeCoverageDetails(1, asList(ScannerReport.CoverageDetail.getDefaultInstance()));
+
+    assertThat(underTest.hasComponentData(FileStructure.Domain.TESTS, 1)).isTrue();
+    assertThat(underTest.getFileStructure().fileFor(FileStructure.Domain.TESTS, 1)).isFile();
+    assertThat(underTest.getFileStructure().fileFor(FileStructure.Domain.COVERAGE_DETAILS, 1)).isFile();
+    assertThat(underTest.getSourceFile(1)).isEqualTo(underTest.getFileStructure().fileFor(FileStructure.Domain.SOURCE, 1));
+  }
 }
@@ -0,0 +1,82 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.junit.Assume;
+import org.junit.rules.ErrorCollector;
+
+import static java.lang.String.format;
+
+/**
+ * JUnit rule for benchmarks. Benchmarks are slow, so they are executed only when the system
+ * property {@code enableBenchmarkAssertions} is {@code true} (see Maven profile {@code runBenchmarks}).
+ * Measures are logged, and the expectations are checked only when benchmarks are enabled.
+ * <p>
+ * Expectations are calibrated for a dedicated box. They can be relaxed or disabled by setting the property to {@code false}.
+ *
+ * @since 6.4
+ */
+public class Benchmark extends ErrorCollector {
+
+  public static final String ENABLED_PROPERTY = "enableBenchmarkAssertions";
+  private static final Logger LOGGER = Logger.getLogger(Benchmark.class.getName());
+
+  public static boolean isEnabled() {
+    return "true".equals(System.getProperty(ENABLED_PROPERTY));
+  }
+
+  /**
+   * Skips the current test if benchmarks are not enabled
+   */
+  public static void assumeEnabled() {
+    Assume.assumeTrue("Benchmarks are disabled. Set -D" + ENABLED_PROPERTY + "=true to run them", isEnabled());
+  }
+
+  /**
+   * Executes the task and returns its duration in milliseconds.
+   */
+  public long measure(String label, Runnable task) {
+    long start = System.nanoTime();
+    task.run();
+    long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    LOGGER.info(format("%s: %d ms", label, duration));
+    return duration;
+  }
+
+  public void expectAround(String label, long val, long expected, int distanceFromExpectedInPercent) {
+    LOGGER.info(format("%s: %d (expected %d +/- %d%%)", label, val, expected, distanceFromExpectedInPercent));
+    if (isEnabled()) {
+      long min = expected - expected * distanceFromExpectedInPercent / 100;
+      long max = expected + expected * distanceFromExpectedInPercent / 100;
+      if (val < min || val > max) {
+        addError(new AssertionError(format("%s: expected %d +/- %d%%, got %d", label, expected, distanceFromExpectedInPercent, val)));
+      }
+    }
+  }
+
+  public void expectLessThanOrEqualTo(String label, long val, long max) {
+    LOGGER.info(format("%s: %d (expected <= %d)", label, val, max));
+    if (isEnabled() && val > max) {
+      addError(new AssertionError(format("%s: expected <= %d, got %d", label, max, val)));
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.test;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BenchmarkTest {
+
+  @Rule
+  public Benchmark underTest = new Benchmark();
+
+  @Test
+  public void measure_executes_task() {
+    boolean[] executed = {false};
+
+    long duration = underTest.measure("task", () -> executed[0] = true);
+
+    assertThat(executed[0]).isTrue();
+    assertThat(duration).isGreaterThanOrEqualTo(0L);
+  }
+
+  @Test
+  public void disabled_by_default() {
+    System.clearProperty(Benchmark.ENABLED_PROPERTY);
+    assertThat(Benchmark.isEnabled()).isFalse();
+
+    // expectations are not verified when disabled, the rule does not fail the test
+    underTest.expectAround("around", 1000L, 10L, 5);
+    underTest.expectLessThanOrEqualTo("max", 1000L, 10L);
+  }
+}
@@ -20,8 +20,11 @@
 package org.sonarqube.ws.client;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import javax.annotation.CheckForNull;
 
 /**
  * @since 5.3
@@ -51,19 +54,66 @@ public class PostRequest extends BaseRequest<PostRequest> {
   public static class Part {
     private final String mediaType;
     private final File file;
+    private final String fileName;
+    private final ContentWriter contentWriter;
 
     public Part(String mediaType, File file) {
       this.mediaType = mediaType;
       this.file = file;
+      this.fileName = file.getName();
+      this.contentWriter = null;
+    }
+
+    /**
+     * Part whose content is written while the request is sent, for example because it is still being produced.
+     * Its length is not known in advance, so the request is sent with chunked transfer encoding. The content
+     * is written again each time the request is replayed, for example on authentication challenges or retries.
+     *
+     * @since 6.4
+     */
+    public Part(String mediaType, String fileName, ContentWriter contentWriter) {
+      this.mediaType = mediaType;
+      this.file = null;
+      this.fileName = fileName;
+      this.contentWriter = contentWriter;
     }
 
     public String getMediaType() {
       return mediaType;
     }
 
+    /**
+     * @return {@code null} if the content is written by a {@link ContentWriter}
+     */
+    @CheckForNull
     public File getFile() {
       return file;
     }
+
+    public String getFileName() {
+      return fileName;
+    }
+
+    /**
+     * @return {@code null} if the content is read from a {@link File}
+     * @since 6.4
+     */
+    @CheckForNull
+    public ContentWriter getContentWriter() {
+      return contentWriter;
+    }
+  }
+
+  /**
+   * @since 6.4
+   */
+  @FunctionalInterface
+  public interface ContentWriter {
+    /**
+     * Writes the content of the part. The stream must not be closed. Can be called several times, each call must
+     * write the whole content.
+     */
+    void writeTo(OutputStream output) throws IOException;
   }
 
 }
@@ -22,6 +22,7 @@ package org.sonarqube.ws.client;
 import java.io.File;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import javax.net.ssl.SSLSocketFactory;
 import okhttp3.ConnectionSpec;
@@ -249,6 +250,27 @@ public class HttpConnectorTest {
       .contains("the report content");
   }
 
+  @Test
+  public void upload_content_written_while_request_is_sent() throws Exception {
+    answerHelloWorld();
+    PostRequest request = new PostRequest("api/report/upload")
+      .setParam("project", "theKey")
+      .setPart("report", new PostRequest.Part(MediaTypes.TXT, "report.txt", output -> output.write("the report content".getBytes(StandardCharsets.UTF_8))))
+      .setMediaType(MediaTypes.PROTOBUF);
+
+    underTest = HttpConnector.newBuilder().url(serverUrl).build();
+    WsResponse response = underTest.call(request);
+
+    assertThat(response.hasContent()).isTrue();
+    RecordedRequest recordedRequest = server.takeRequest();
+    assertThat(recordedRequest.getHeader("Transfer-Encoding")).isEqualTo("chunked");
+    String body = IOUtils.toString(recordedRequest.getBody().inputStream());
+    assertThat(body)
+      .contains("Content-Disposition: form-data; name=\"report\"; filename=\"report.txt\"")
+      .contains("Content-Type: text/plain")
+      .contains("the report content");
+  }
+
   @Test
   public void http_error() throws Exception {
     server.enqueue(new MockResponse().setResponseCode(404));
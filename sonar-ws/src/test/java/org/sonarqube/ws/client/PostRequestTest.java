@@ -57,4 +57,17 @@ public class PostRequestTest {
     assertThat(part.getMediaType()).isEqualTo(MediaTypes.JSON);
     assertThat(part.getFile()).isSameAs(reportFile);
   }
+
+  @Test
+  public void add_part_written_by_content_writer() {
+    PostRequest.ContentWriter contentWriter = output -> output.write(1);
+    PostRequest request = new PostRequest("api/issues/search")
+      .setPart("report", new PostRequest.Part(MediaTypes.ZIP, "report.zip", contentWriter));
+
+    PostRequest.Part part = request.getParts().get("report");
+    assertThat(part.getMediaType()).isEqualTo(MediaTypes.ZIP);
+    assertThat(part.getFileName()).isEqualTo("report.zip");
+    assertThat(part.getFile()).isNull();
+    assertThat(part.getContentWriter()).isSameAs(contentWriter);
+  }
 }